@@ -43,6 +43,8 @@ public class BenchmarkSuite
                 new CountAggregationBenchmark(localQueryRunner),
                 new DoubleSumAggregationBenchmark(localQueryRunner),
                 new HashAggregationBenchmark(localQueryRunner),
+                new HashAggregationBenchmark(localQueryRunner, "hash_agg_fixed_width_keys", "custkey", "orderdate", "shippriority"),
+                new HashAggregationBenchmark(localQueryRunner, "hash_agg_variable_width_keys", "custkey", "orderdate", "orderpriority"),
                 new PredicateFilterBenchmark(localQueryRunner),
                 new RawStreamingBenchmark(localQueryRunner),
                 new Top100Benchmark(localQueryRunner),
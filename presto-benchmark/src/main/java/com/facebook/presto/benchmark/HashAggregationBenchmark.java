@@ -22,25 +22,39 @@ import com.facebook.presto.spi.plan.AggregationNode.Step;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.testing.LocalQueryRunner;
 import com.google.common.collect.ImmutableList;
-import com.google.common.primitives.Ints;
+import com.google.common.collect.ObjectArrays;
 import io.airlift.units.DataSize;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.benchmark.BenchmarkQueryRunner.createLocalQueryRunner;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 
 public class HashAggregationBenchmark
         extends AbstractSimpleOperatorBenchmark
 {
     private final InternalAggregationFunction doubleSum;
+    private final String[] groupByColumns;
 
     public HashAggregationBenchmark(LocalQueryRunner localQueryRunner)
     {
-        super(localQueryRunner, "hash_agg", 5, 25);
+        this(localQueryRunner, "hash_agg", "orderstatus");
+    }
+
+    /**
+     * Groups the orders table by the given columns and sums the total price.
+     */
+    public HashAggregationBenchmark(LocalQueryRunner localQueryRunner, String benchmarkName, String... groupByColumns)
+    {
+        super(localQueryRunner, benchmarkName, 5, 25);
+        checkArgument(groupByColumns.length > 0, "groupByColumns is empty");
+        this.groupByColumns = groupByColumns.clone();
 
         FunctionAndTypeManager functionAndTypeManager = localQueryRunner.getMetadata().getFunctionAndTypeManager();
         doubleSum = functionAndTypeManager.getAggregateFunctionImplementation(
@@ -50,16 +64,17 @@ public class HashAggregationBenchmark
     @Override
     protected List<? extends OperatorFactory> createOperatorFactories()
     {
-        List<Type> tableTypes = getColumnTypes("orders", "orderstatus", "totalprice");
-        OperatorFactory tableScanOperator = createTableScanOperator(0, new PlanNodeId("test"), "orders", "orderstatus", "totalprice");
+        String[] columns = ObjectArrays.concat(groupByColumns, "totalprice");
+        List<Type> tableTypes = getColumnTypes("orders", columns);
+        OperatorFactory tableScanOperator = createTableScanOperator(0, new PlanNodeId("test"), "orders", columns);
         HashAggregationOperatorFactory aggregationOperator = new HashAggregationOperatorFactory(
                 1,
                 new PlanNodeId("test"),
-                ImmutableList.of(tableTypes.get(0)),
-                Ints.asList(0),
+                tableTypes.subList(0, groupByColumns.length),
+                IntStream.range(0, groupByColumns.length).boxed().collect(toImmutableList()),
                 ImmutableList.of(),
                 Step.SINGLE,
-                ImmutableList.of(doubleSum.bind(ImmutableList.of(1), Optional.empty())),
+                ImmutableList.of(doubleSum.bind(ImmutableList.of(groupByColumns.length), Optional.empty())),
                 Optional.empty(),
                 Optional.empty(),
                 100_000,
@@ -71,6 +86,11 @@ public class HashAggregationBenchmark
 
     public static void main(String[] args)
     {
-        new HashAggregationBenchmark(createLocalQueryRunner()).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        LocalQueryRunner localQueryRunner = createLocalQueryRunner();
+        new HashAggregationBenchmark(localQueryRunner).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        // composite fixed width keys use the packed group by hash
+        new HashAggregationBenchmark(localQueryRunner, "hash_agg_fixed_width_keys", "custkey", "orderdate", "shippriority").runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        // the same number of keys with a variable width column use the generic group by hash
+        new HashAggregationBenchmark(localQueryRunner, "hash_agg_variable_width_keys", "custkey", "orderdate", "orderpriority").runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
     }
 }
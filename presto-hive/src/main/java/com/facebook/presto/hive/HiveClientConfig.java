@@ -185,6 +185,9 @@ public class HiveClientConfig
     private boolean preferManifestToListFiles;
     private boolean manifestVerificationEnabled;
 
+    private boolean sizeBasedSplitWeightsEnabled;
+    private double minimumAssignedSplitWeight = 0.05;
+
     public int getMaxInitialSplits()
     {
         return maxInitialSplits;
@@ -1552,4 +1555,32 @@ public class HiveClientConfig
     {
         return this.manifestVerificationEnabled;
     }
+
+    @Config("hive.size-based-split-weights-enabled")
+    @ConfigDescription("Weight splits by their size relative to the max split size, so that the scheduler balances the amount of data assigned to the nodes")
+    public HiveClientConfig setSizeBasedSplitWeightsEnabled(boolean sizeBasedSplitWeightsEnabled)
+    {
+        this.sizeBasedSplitWeightsEnabled = sizeBasedSplitWeightsEnabled;
+        return this;
+    }
+
+    public boolean isSizeBasedSplitWeightsEnabled()
+    {
+        return sizeBasedSplitWeightsEnabled;
+    }
+
+    @Config("hive.minimum-assigned-split-weight")
+    @ConfigDescription("Minimum weight of a split when size based split weights are enabled")
+    public HiveClientConfig setMinimumAssignedSplitWeight(double minimumAssignedSplitWeight)
+    {
+        this.minimumAssignedSplitWeight = minimumAssignedSplitWeight;
+        return this;
+    }
+
+    @DecimalMin(value = "0.0", inclusive = false)
+    @DecimalMax("1.0")
+    public double getMinimumAssignedSplitWeight()
+    {
+        return minimumAssignedSplitWeight;
+    }
 }
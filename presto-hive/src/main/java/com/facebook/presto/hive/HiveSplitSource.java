@@ -22,6 +22,7 @@ import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SplitWeight;
 import com.facebook.presto.spi.connector.ConnectorPartitionHandle;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -55,6 +56,8 @@ import static com.facebook.presto.hive.HiveErrorCode.HIVE_FILE_NOT_FOUND;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_UNKNOWN_ERROR;
 import static com.facebook.presto.hive.HiveSessionProperties.getMaxInitialSplitSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getMaxSplitSize;
+import static com.facebook.presto.hive.HiveSessionProperties.getMinimumAssignedSplitWeight;
+import static com.facebook.presto.hive.HiveSessionProperties.isSizeBasedSplitWeightsEnabled;
 import static com.facebook.presto.hive.HiveSplitSource.StateKind.CLOSED;
 import static com.facebook.presto.hive.HiveSplitSource.StateKind.FAILED;
 import static com.facebook.presto.hive.HiveSplitSource.StateKind.INITIAL;
@@ -83,6 +86,8 @@ class HiveSplitSource
     private final long maxOutstandingSplitsBytes;
 
     private final DataSize maxSplitSize;
+    private final boolean sizeBasedSplitWeightsEnabled;
+    private final double minimumAssignedSplitWeight;
     private final DataSize maxInitialSplitSize;
     private final boolean useRewindableSplitSource;
     private final AtomicInteger remainingInitialSplits;
@@ -118,6 +123,8 @@ class HiveSplitSource
         this.highMemorySplitSourceCounter = requireNonNull(highMemorySplitSourceCounter, "highMemorySplitSourceCounter is null");
 
         this.maxSplitSize = getMaxSplitSize(session);
+        this.sizeBasedSplitWeightsEnabled = isSizeBasedSplitWeightsEnabled(session);
+        this.minimumAssignedSplitWeight = getMinimumAssignedSplitWeight(session);
         this.maxInitialSplitSize = getMaxInitialSplitSize(session);
         this.useRewindableSplitSource = useRewindableSplitSource;
         this.remainingInitialSplits = new AtomicInteger(maxInitialSplits);
@@ -504,7 +511,8 @@ class HiveSplitSource
                         internalSplit.getExtraFileInfo(),
                         cacheQuotaRequirement,
                         internalSplit.getEncryptionInformation(),
-                        internalSplit.getCustomSplitInfo()));
+                        internalSplit.getCustomSplitInfo(),
+                        getSplitWeight(splitBytes)));
 
                 internalSplit.increaseStart(splitBytes);
 
@@ -593,6 +601,16 @@ class HiveSplitSource
         }
     }
 
+    private SplitWeight getSplitWeight(long splitBytes)
+    {
+        if (!sizeBasedSplitWeightsEnabled) {
+            return SplitWeight.standard();
+        }
+        // a split of the maximum size has the standard weight, smaller splits are weighted in proportion to their size
+        double proportion = (double) splitBytes / maxSplitSize.toBytes();
+        return SplitWeight.fromProportion(Math.max(proportion, minimumAssignedSplitWeight));
+    }
+
     private static OptionalInt toBucketNumber(ConnectorPartitionHandle partitionHandle)
     {
         if (partitionHandle == NOT_PARTITIONED) {
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.tests.AbstractTestJoinQueries;
+import org.intellij.lang.annotations.Language;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.SystemSessionProperties.DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT;
+import static com.facebook.presto.SystemSessionProperties.ENABLE_DISTRIBUTED_DYNAMIC_FILTERING;
+import static com.facebook.presto.SystemSessionProperties.ENABLE_DYNAMIC_FILTERING;
+import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
+import static com.facebook.presto.hive.HiveQueryRunner.createQueryRunner;
+import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.PARTITIONED;
+import static com.facebook.presto.tests.QueryAssertions.assertEqualsIgnoreOrder;
+import static io.airlift.tpch.TpchTable.getTables;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestHiveDistributedJoinQueriesWithDistributedDynamicFiltering
+        extends AbstractTestJoinQueries
+{
+    public TestHiveDistributedJoinQueriesWithDistributedDynamicFiltering()
+    {
+        super(() -> createQueryRunner(getTables()));
+    }
+
+    @Override
+    protected Session getSession()
+    {
+        return Session.builder(super.getSession())
+                .setSystemProperty(ENABLE_DYNAMIC_FILTERING, "true")
+                .setSystemProperty(ENABLE_DISTRIBUTED_DYNAMIC_FILTERING, "true")
+                .setSystemProperty(JOIN_DISTRIBUTION_TYPE, PARTITIONED.name())
+                .build();
+    }
+
+    @Test
+    public void testPartitionedJoinWithEmptyBuildSide()
+    {
+        MaterializedResult result = assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT * FROM lineitem JOIN orders ON lineitem.orderkey = orders.orderkey AND orders.totalprice = 123.4567");
+        assertEquals(result.getRowCount(), 0);
+    }
+
+    @Test
+    public void testPartitionedJoinWithSelectiveBuildSide()
+    {
+        MaterializedResult result = assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT * FROM lineitem JOIN orders ON lineitem.orderkey = orders.orderkey AND orders.custkey = 1");
+        assertTrue(result.getRowCount() > 0);
+    }
+
+    @Test
+    public void testPartitionedJoinWithBuildSideOverMaxDiscreteValues()
+    {
+        // the build side has more distinct keys than the merged filter may keep, so the filter collapses
+        Session session = Session.builder(getSession())
+                .setSystemProperty(DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT, "10")
+                .build();
+        MaterializedResult result = assertSameResultsWithoutDistributedDynamicFiltering(
+                session,
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM lineitem JOIN orders ON lineitem.orderkey = orders.orderkey AND orders.custkey <= 10");
+        assertTrue(result.getRowCount() > 10);
+    }
+
+    @Test
+    public void testPartitionedLeftJoin()
+    {
+        MaterializedResult result = assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM lineitem LEFT JOIN orders ON lineitem.orderkey = orders.orderkey AND orders.custkey = 1");
+        assertEquals(result.getRowCount(), (long) computeScalar("SELECT count(*) FROM lineitem"));
+    }
+
+    @Test
+    public void testPartitionedSemiJoin()
+    {
+        assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT orderkey, linenumber FROM lineitem WHERE orderkey IN (SELECT orderkey FROM orders WHERE custkey = 1)");
+        assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT orderkey, linenumber, orderkey IN (SELECT orderkey FROM orders WHERE custkey = 1) FROM lineitem");
+        assertSameResultsWithoutDistributedDynamicFiltering(
+                getSession(),
+                "SELECT orderkey, linenumber FROM lineitem WHERE orderkey IN (SELECT orderkey FROM orders WHERE totalprice = 123.4567)");
+    }
+
+    private MaterializedResult assertSameResultsWithoutDistributedDynamicFiltering(Session session, @Language("SQL") String sql)
+    {
+        Session withoutDistributedDynamicFiltering = Session.builder(session)
+                .setSystemProperty(ENABLE_DISTRIBUTED_DYNAMIC_FILTERING, "false")
+                .build();
+        MaterializedResult actual = computeActual(session, sql);
+        MaterializedResult expected = computeActual(withoutDistributedDynamicFiltering, sql);
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+        assertQuery(session, sql);
+        return actual;
+    }
+}
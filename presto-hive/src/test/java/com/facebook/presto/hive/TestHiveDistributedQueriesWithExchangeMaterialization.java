@@ -14,16 +14,35 @@
 package com.facebook.presto.hive;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.execution.QueryInfo;
+import com.facebook.presto.execution.StageInfo;
+import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.testing.MaterializedResult;
 import com.facebook.presto.tests.AbstractTestDistributedQueries;
+import com.facebook.presto.tests.DistributedQueryRunner;
+import com.facebook.presto.tests.ResultWithQueryId;
+import org.intellij.lang.annotations.Language;
 import org.testng.annotations.Test;
 
+import java.util.Optional;
+
 import static com.facebook.presto.SystemSessionProperties.ENABLE_STATS_COLLECTION_FOR_TEMPORARY_TABLE;
+import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
+import static com.facebook.presto.SystemSessionProperties.JOIN_REORDERING_STRATEGY;
+import static com.facebook.presto.SystemSessionProperties.RUNTIME_BROADCAST_JOIN_MAX_BUILD_SIZE;
+import static com.facebook.presto.SystemSessionProperties.RUNTIME_JOIN_DISTRIBUTION_ENABLED;
+import static com.facebook.presto.execution.StageInfo.getAllStages;
 import static com.facebook.presto.hive.HiveQueryRunner.createMaterializingQueryRunner;
 import static com.facebook.presto.hive.HiveStorageFormat.ORC;
 import static com.facebook.presto.hive.HiveStorageFormat.PAGEFILE;
 import static com.facebook.presto.hive.TestHiveIntegrationSmokeTest.assertRemoteMaterializedExchangesCount;
+import static com.facebook.presto.spi.StandardWarningCode.PERFORMANCE_WARNING;
+import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.PARTITIONED;
+import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinReorderingStrategy.NONE;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
 import static com.facebook.presto.sql.tree.ExplainType.Type.LOGICAL;
+import static com.facebook.presto.tests.QueryAssertions.assertEqualsIgnoreOrder;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static io.airlift.tpch.TpchTable.getTables;
 import static org.testng.Assert.assertEquals;
@@ -366,6 +385,72 @@ public class TestHiveDistributedQueriesWithExchangeMaterialization
         }
     }
 
+    @Test
+    public void testRuntimeJoinDistribution()
+    {
+        Session partitionedJoins = Session.builder(getSession())
+                .setSystemProperty(JOIN_DISTRIBUTION_TYPE, PARTITIONED.name())
+                .setSystemProperty(JOIN_REORDERING_STRATEGY, NONE.name())
+                .build();
+        Session runtimeJoinDistribution = Session.builder(partitionedJoins)
+                .setSystemProperty(RUNTIME_JOIN_DISTRIBUTION_ENABLED, "true")
+                .build();
+
+        // the materialized orders are smaller than the materialized lineitems, so the joins become broadcast joins
+        assertRuntimeJoinDistribution(
+                runtimeJoinDistribution,
+                partitionedJoins,
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM lineitem JOIN orders ON lineitem.orderkey = orders.orderkey",
+                true);
+        assertRuntimeJoinDistribution(
+                runtimeJoinDistribution,
+                partitionedJoins,
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM lineitem LEFT JOIN orders ON lineitem.orderkey = orders.orderkey AND orders.custkey = 1",
+                true);
+
+        // the build side is larger than the probe side
+        assertRuntimeJoinDistribution(
+                runtimeJoinDistribution,
+                partitionedJoins,
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM orders JOIN lineitem ON lineitem.orderkey = orders.orderkey",
+                false);
+
+        // the build side is larger than the maximum build size
+        Session smallMaxBuildSize = Session.builder(runtimeJoinDistribution)
+                .setSystemProperty(RUNTIME_BROADCAST_JOIN_MAX_BUILD_SIZE, "1B")
+                .build();
+        assertRuntimeJoinDistribution(
+                smallMaxBuildSize,
+                partitionedJoins,
+                "SELECT lineitem.orderkey, lineitem.linenumber, orders.custkey FROM lineitem JOIN orders ON lineitem.orderkey = orders.orderkey",
+                false);
+    }
+
+    private void assertRuntimeJoinDistribution(Session session, Session expectedSession, @Language("SQL") String sql, boolean switchedToBroadcast)
+    {
+        DistributedQueryRunner queryRunner = (DistributedQueryRunner) getQueryRunner();
+        ResultWithQueryId<MaterializedResult> result = queryRunner.executeWithQueryId(session, sql);
+        QueryInfo queryInfo = queryRunner.getCoordinator().getQueryManager().getFullQueryInfo(result.getQueryId());
+
+        boolean broadcastJoin = getAllStages(queryInfo.getOutputStage()).stream()
+                .map(StageInfo::getPlan)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .anyMatch(fragment -> searchFrom(fragment.getRoot())
+                        .where(node -> node instanceof JoinNode && ((JoinNode) node).getDistributionType().equals(Optional.of(REPLICATED)))
+                        .matches());
+        assertEquals(broadcastJoin, switchedToBroadcast);
+
+        long warnings = queryInfo.getWarnings().stream()
+                .filter(warning -> warning.getWarningCode().equals(PERFORMANCE_WARNING.toWarningCode()))
+                .filter(warning -> warning.getMessage().contains("was changed from a partitioned join to a broadcast join at runtime"))
+                .count();
+        assertEquals(warnings, switchedToBroadcast ? 1 : 0);
+
+        MaterializedResult expected = computeActual(expectedSession, sql);
+        assertEqualsIgnoreOrder(result.getResult().getMaterializedRows(), expected.getMaterializedRows());
+    }
+
     @Test
     public void testExplainOfCreateTableAs()
     {
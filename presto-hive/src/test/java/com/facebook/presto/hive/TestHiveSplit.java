@@ -31,6 +31,7 @@ import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.HandleJsonModule;
 import com.facebook.presto.metadata.HandleResolver;
 import com.facebook.presto.spi.HostAddress;
+import com.facebook.presto.spi.SplitWeight;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.type.TypeDeserializer;
 import com.google.common.collect.ImmutableList;
@@ -100,7 +101,8 @@ public class TestHiveSplit
                         ImmutableMap.of(),
                         "test_algo",
                         "test_provider"))),
-                customSplitInfo);
+                customSplitInfo,
+                SplitWeight.fromProportion(2.0));
 
         JsonCodec<HiveSplit> codec = getJsonCodec();
         String json = codec.toJson(expected);
@@ -124,6 +126,7 @@ public class TestHiveSplit
         assertEquals(actual.getCacheQuotaRequirement(), expected.getCacheQuotaRequirement());
         assertEquals(actual.getEncryptionInformation(), expected.getEncryptionInformation());
         assertEquals(actual.getCustomSplitInfo(), expected.getCustomSplitInfo());
+        assertEquals(actual.getSplitWeight(), expected.getSplitWeight());
     }
 
     private JsonCodec<HiveSplit> getJsonCodec()
@@ -16,9 +16,12 @@ package com.facebook.presto.hive;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.presto.hive.metastore.Storage;
 import com.facebook.presto.hive.metastore.StorageFormat;
+import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SplitWeight;
+import com.facebook.presto.testing.TestingConnectorSession;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.SettableFuture;
@@ -120,6 +123,44 @@ public class TestHiveSplitSource
         assertEquals(second.getLength(), fileSize.toBytes() - halfOfSize);
     }
 
+    @Test
+    public void testSizeBasedSplitWeight()
+    {
+        HiveClientConfig config = new HiveClientConfig()
+                .setMaxSplitSize(new DataSize(64, MEGABYTE))
+                .setSizeBasedSplitWeightsEnabled(true)
+                .setMinimumAssignedSplitWeight(0.1);
+        HiveSplitSource hiveSplitSource = createSplitSource(getSession(config));
+
+        // a split of the maximum size has the standard weight
+        hiveSplitSource.addToQueue(new TestSplit(1, OptionalInt.empty(), new DataSize(64, MEGABYTE)));
+        assertEquals(getSplits(hiveSplitSource, 1).get(0).getSplitWeight(), SplitWeight.standard());
+
+        // smaller splits are weighted in proportion to their size
+        hiveSplitSource.addToQueue(new TestSplit(2, OptionalInt.empty(), new DataSize(16, MEGABYTE)));
+        assertEquals(getSplits(hiveSplitSource, 1).get(0).getSplitWeight(), SplitWeight.fromProportion(0.25));
+
+        // tiny splits are assigned the minimum weight
+        hiveSplitSource.addToQueue(new TestSplit(3, OptionalInt.empty(), new DataSize(100, BYTE)));
+        assertEquals(getSplits(hiveSplitSource, 1).get(0).getSplitWeight(), SplitWeight.fromProportion(0.1));
+    }
+
+    @Test
+    public void testSizeBasedSplitWeightDisabled()
+    {
+        HiveClientConfig config = new HiveClientConfig()
+                .setMaxSplitSize(new DataSize(64, MEGABYTE))
+                .setSizeBasedSplitWeightsEnabled(false)
+                .setMinimumAssignedSplitWeight(0.1);
+        HiveSplitSource hiveSplitSource = createSplitSource(getSession(config));
+
+        hiveSplitSource.addToQueue(new TestSplit(1, OptionalInt.empty(), new DataSize(16, MEGABYTE)));
+        assertEquals(getSplits(hiveSplitSource, 1).get(0).getSplitWeight(), SplitWeight.standard());
+
+        hiveSplitSource.addToQueue(new TestSplit(2, OptionalInt.empty(), new DataSize(100, BYTE)));
+        assertEquals(getSplits(hiveSplitSource, 1).get(0).getSplitWeight(), SplitWeight.standard());
+    }
+
     @Test
     public void testSplitCacheQuota()
     {
@@ -474,6 +515,27 @@ public class TestHiveSplitSource
         assertEquals(hiveSplitSource.getBufferedInternalSplitCount(), 19);
     }
 
+    private static HiveSplitSource createSplitSource(ConnectorSession session)
+    {
+        // no initial splits, so every split is sized against the maximum split size
+        return HiveSplitSource.allAtOnce(
+                session,
+                "database",
+                "table",
+                new CacheQuotaRequirement(TABLE, DEFAULT_QUOTA_SIZE),
+                0,
+                10,
+                new DataSize(1, GIGABYTE),
+                new TestingHiveSplitLoader(),
+                EXECUTOR,
+                new CounterStat());
+    }
+
+    private static ConnectorSession getSession(HiveClientConfig config)
+    {
+        return new TestingConnectorSession(new HiveSessionProperties(config, new OrcFileWriterConfig(), new ParquetFileWriterConfig()).getSessionProperties());
+    }
+
     private static List<ConnectorSplit> getSplits(ConnectorSplitSource source, int maxSize)
     {
         return getSplits(source, OptionalInt.empty(), maxSize);
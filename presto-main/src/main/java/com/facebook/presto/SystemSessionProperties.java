@@ -16,6 +16,7 @@ package com.facebook.presto;
 import com.facebook.presto.execution.QueryManagerConfig;
 import com.facebook.presto.execution.QueryManagerConfig.ExchangeMaterializationStrategy;
 import com.facebook.presto.execution.TaskManagerConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.execution.warnings.WarningCollectorConfig;
 import com.facebook.presto.execution.warnings.WarningHandlingLevel;
 import com.facebook.presto.memory.MemoryManagerConfig;
@@ -42,6 +43,7 @@ import java.util.stream.Stream;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
@@ -49,6 +51,7 @@ import static com.facebook.presto.spi.session.PropertyMetadata.booleanProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.dataSizeProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.doubleProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.integerProperty;
+import static com.facebook.presto.spi.session.PropertyMetadata.longProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.stringProperty;
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.BROADCAST;
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.PARTITIONED;
@@ -75,6 +78,8 @@ public final class SystemSessionProperties
     public static final String RECOVERABLE_GROUPED_EXECUTION = "recoverable_grouped_execution";
     public static final String MAX_FAILED_TASK_PERCENTAGE = "max_failed_task_percentage";
     public static final String MAX_STAGE_RETRIES = "max_stage_retries";
+    public static final String SPECULATIVE_EXECUTION = "speculative_execution";
+    public static final String SPECULATIVE_EXECUTION_SLOW_TASK_THRESHOLD = "speculative_execution_slow_task_threshold";
     public static final String PREFER_STREAMING_OPERATORS = "prefer_streaming_operators";
     public static final String TASK_WRITER_COUNT = "task_writer_count";
     public static final String TASK_PARTITIONED_WRITER_COUNT = "task_partitioned_writer_count";
@@ -96,6 +101,9 @@ public final class SystemSessionProperties
     public static final String SCALE_WRITERS = "scale_writers";
     public static final String WRITER_MIN_SIZE = "writer_min_size";
     public static final String OPTIMIZED_SCALE_WRITER_PRODUCER_BUFFER = "optimized_scale_writer_producer_buffer";
+    public static final String SPLIT_SKEWED_WRITER_PARTITIONS = "split_skewed_writer_partitions";
+    public static final String SKEWED_JOIN_CONSUMERS_PER_PARTITION = "skewed_join_consumers_per_partition";
+    public static final String SPOOLING_OUTPUT_BUFFER_ENABLED = "spooling_output_buffer_enabled";
     public static final String PUSH_TABLE_WRITE_THROUGH_UNION = "push_table_write_through_union";
     public static final String EXECUTION_POLICY = "execution_policy";
     public static final String DICTIONARY_AGGREGATION = "dictionary_aggregation";
@@ -112,6 +120,8 @@ public final class SystemSessionProperties
     public static final String SPLIT_CONCURRENCY_ADJUSTMENT_INTERVAL = "split_concurrency_adjustment_interval";
     public static final String OPTIMIZE_METADATA_QUERIES = "optimize_metadata_queries";
     public static final String FAST_INEQUALITY_JOINS = "fast_inequality_joins";
+    public static final String RANGE_JOINS = "range_joins";
+    public static final String SEMI_JOIN_BLOOM_FILTER_ENABLED = "semi_join_bloom_filter_enabled";
     public static final String QUERY_PRIORITY = "query_priority";
     public static final String SPILL_ENABLED = "spill_enabled";
     public static final String JOIN_SPILL_ENABLED = "join_spill_enabled";
@@ -122,7 +132,11 @@ public final class SystemSessionProperties
     public static final String ITERATIVE_OPTIMIZER = "iterative_optimizer_enabled";
     public static final String ITERATIVE_OPTIMIZER_TIMEOUT = "iterative_optimizer_timeout";
     public static final String RUNTIME_OPTIMIZER_ENABLED = "runtime_optimizer_enabled";
+    public static final String RUNTIME_JOIN_DISTRIBUTION_ENABLED = "runtime_join_distribution_enabled";
+    public static final String RUNTIME_BROADCAST_JOIN_MAX_BUILD_SIZE = "runtime_broadcast_join_max_build_size";
     public static final String EXCHANGE_COMPRESSION = "exchange_compression";
+    public static final String EXCHANGE_COMPRESSION_CODEC = "exchange_compression_codec";
+    public static final String EXCHANGE_ADAPTIVE_COMPRESSION = "exchange_adaptive_compression";
     public static final String LEGACY_TIMESTAMP = "legacy_timestamp";
     public static final String ENABLE_INTERMEDIATE_AGGREGATIONS = "enable_intermediate_aggregations";
     public static final String PUSH_AGGREGATION_THROUGH_JOIN = "push_aggregation_through_join";
@@ -134,10 +148,14 @@ public final class SystemSessionProperties
     public static final String DISTRIBUTED_SORT = "distributed_sort";
     public static final String USE_MARK_DISTINCT = "use_mark_distinct";
     public static final String PREFER_PARTIAL_AGGREGATION = "prefer_partial_aggregation";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION = "adaptive_partial_aggregation";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS = "adaptive_partial_aggregation_min_rows";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD = "adaptive_partial_aggregation_unique_rows_ratio_threshold";
     public static final String OPTIMIZE_TOP_N_ROW_NUMBER = "optimize_top_n_row_number";
     public static final String MAX_GROUPING_SETS = "max_grouping_sets";
     public static final String LEGACY_UNNEST = "legacy_unnest";
     public static final String STATISTICS_CPU_TIMER_ENABLED = "statistics_cpu_timer_enabled";
+    public static final String PER_OPERATOR_ALLOCATION_TRACKING_ENABLED = "per_operator_allocation_tracking_enabled";
     public static final String ENABLE_STATS_CALCULATOR = "enable_stats_calculator";
     public static final String ENABLE_STATS_COLLECTION_FOR_TEMPORARY_TABLE = "enable_stats_collection_for_temporary_table";
     public static final String IGNORE_STATS_CALCULATOR_FAILURES = "ignore_stats_calculator_failures";
@@ -163,8 +181,10 @@ public final class SystemSessionProperties
     public static final String TARGET_RESULT_SIZE = "target_result_size";
     public static final String PUSHDOWN_DEREFERENCE_ENABLED = "pushdown_dereference_enabled";
     public static final String ENABLE_DYNAMIC_FILTERING = "enable_dynamic_filtering";
+    public static final String ENABLE_DISTRIBUTED_DYNAMIC_FILTERING = "enable_distributed_dynamic_filtering";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
+    public static final String BROADCAST_JOIN_BUILD_SHARING_ENABLED = "broadcast_join_build_sharing_enabled";
     public static final String FRAGMENT_RESULT_CACHING_ENABLED = "fragment_result_caching_enabled";
     public static final String LEGACY_TYPE_COERCION_WARNING_ENABLED = "legacy_type_coercion_warning_enabled";
     public static final String INLINE_SQL_FUNCTIONS = "inline_sql_functions";
@@ -276,6 +296,26 @@ public final class SystemSessionProperties
                         "Maximum number of times that stages can be retried",
                         featuresConfig.getMaxStageRetries(),
                         false),
+                booleanProperty(
+                        SPECULATIVE_EXECUTION,
+                        "Experimental: Execute the lifespans of slow tasks speculatively on other tasks in recoverable grouped execution",
+                        featuresConfig.isSpeculativeExecutionEnabled(),
+                        false),
+                new PropertyMetadata<>(
+                        SPECULATIVE_EXECUTION_SLOW_TASK_THRESHOLD,
+                        "A task is slow when its lifespans run longer than this multiple of the median lifespan execution time of the stage",
+                        DOUBLE,
+                        Double.class,
+                        featuresConfig.getSpeculativeExecutionSlowTaskThreshold(),
+                        false,
+                        value -> {
+                            double doubleValue = ((Number) requireNonNull(value, "value is null")).doubleValue();
+                            if (doubleValue < 1) {
+                                throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s must be greater than or equal to 1: %s", SPECULATIVE_EXECUTION_SLOW_TASK_THRESHOLD, doubleValue));
+                            }
+                            return doubleValue;
+                        },
+                        value -> value),
                 booleanProperty(
                         PREFER_STREAMING_OPERATORS,
                         "Prefer source table layouts that produce streaming operators",
@@ -323,6 +363,25 @@ public final class SystemSessionProperties
                         "Optimize scale writer creation based on producer buffer",
                         featuresConfig.isOptimizedScaleWriterProducerBuffer(),
                         true),
+                booleanProperty(
+                        SPLIT_SKEWED_WRITER_PARTITIONS,
+                        "Spread the rows of partitions that receive a disproportionate share of the data over several writers when the write partitioning is only preferred",
+                        featuresConfig.isSplitSkewedWriterPartitions(),
+                        false),
+                new PropertyMetadata<>(
+                        SKEWED_JOIN_CONSUMERS_PER_PARTITION,
+                        "Number of tasks the build rows of a partitioned join partition are sent to, so that a skewed probe partition can be spread over them. 1 disables this",
+                        INTEGER,
+                        Integer.class,
+                        featuresConfig.getSkewedJoinConsumersPerPartition(),
+                        false,
+                        value -> validateIntegerValue(value, SKEWED_JOIN_CONSUMERS_PER_PARTITION, 1, false),
+                        object -> object),
+                booleanProperty(
+                        SPOOLING_OUTPUT_BUFFER_ENABLED,
+                        "Spool the output of the root stage to temp storage when the client does not fetch it fast enough",
+                        featuresConfig.isSpoolingOutputBufferEnabled(),
+                        false),
                 booleanProperty(
                         PUSH_TABLE_WRITE_THROUGH_UNION,
                         "Parallelize writes when using UNION ALL in queries that write data",
@@ -517,6 +576,16 @@ public final class SystemSessionProperties
                         "Use faster handling of inequality join if it is possible",
                         featuresConfig.isFastInequalityJoins(),
                         false),
+                booleanProperty(
+                        RANGE_JOINS,
+                        "Execute inner joins that only have range conditions by binary searching the sorted build side",
+                        featuresConfig.isRangeJoinsEnabled(),
+                        false),
+                booleanProperty(
+                        SEMI_JOIN_BLOOM_FILTER_ENABLED,
+                        "Check probe rows of a semi join against a Bloom filter of the filtering source before looking them up in the set",
+                        featuresConfig.isSemiJoinBloomFilterEnabled(),
+                        false),
                 booleanProperty(
                         COLOCATED_JOIN,
                         "Experimental: Use a colocated join when possible",
@@ -604,11 +673,38 @@ public final class SystemSessionProperties
                         "Experimental: enable runtime optimizer",
                         featuresConfig.isRuntimeOptimizerEnabled(),
                         false),
+                booleanProperty(
+                        RUNTIME_JOIN_DISTRIBUTION_ENABLED,
+                        "Experimental: switch partitioned joins over materialized exchanges to broadcast joins based on the actual size of the exchanges",
+                        featuresConfig.isRuntimeJoinDistributionEnabled(),
+                        false),
+                dataSizeProperty(
+                        RUNTIME_BROADCAST_JOIN_MAX_BUILD_SIZE,
+                        "Experimental: maximum size of the materialized build side of a join that is switched to a broadcast join at runtime",
+                        featuresConfig.getRuntimeBroadcastJoinMaxBuildSize(),
+                        false),
                 booleanProperty(
                         EXCHANGE_COMPRESSION,
                         "Enable compression in exchanges",
                         featuresConfig.isExchangeCompressionEnabled(),
                         false),
+                new PropertyMetadata<>(
+                        EXCHANGE_COMPRESSION_CODEC,
+                        format("Codec used to compress pages in exchanges when exchange compression is enabled. Options are %s",
+                                Stream.of(CompressionCodec.values())
+                                        .map(CompressionCodec::name)
+                                        .collect(joining(","))),
+                        VARCHAR,
+                        CompressionCodec.class,
+                        featuresConfig.getExchangeCompressionCodec(),
+                        false,
+                        value -> CompressionCodec.valueOf(((String) value).toUpperCase()),
+                        CompressionCodec::name),
+                booleanProperty(
+                        EXCHANGE_ADAPTIVE_COMPRESSION,
+                        "Stop compressing pages in exchanges while they do not shrink",
+                        featuresConfig.isExchangeAdaptiveCompressionEnabled(),
+                        false),
                 booleanProperty(
                         LEGACY_TIMESTAMP,
                         "Use legacy TIME & TIMESTAMP semantics (warning: this will be removed)",
@@ -668,6 +764,21 @@ public final class SystemSessionProperties
                         "Prefer splitting aggregations into partial and final stages",
                         featuresConfig.isPreferPartialAggregation(),
                         false),
+                booleanProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION,
+                        "Pass rows through partial aggregation when it does not reduce the number of rows",
+                        featuresConfig.isAdaptivePartialAggregationEnabled(),
+                        false),
+                longProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS,
+                        "Number of input rows partial aggregation processes before deciding whether to pass rows through",
+                        featuresConfig.getAdaptivePartialAggregationMinRows(),
+                        false),
+                doubleProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD,
+                        "Ratio of output groups to input rows above which partial aggregation passes rows through",
+                        featuresConfig.getAdaptivePartialAggregationUniqueRowsRatioThreshold(),
+                        false),
                 booleanProperty(
                         OPTIMIZE_TOP_N_ROW_NUMBER,
                         "Use top N row number optimization",
@@ -688,6 +799,11 @@ public final class SystemSessionProperties
                         "Experimental: Enable cpu time tracking for automatic column statistics collection on write",
                         taskManagerConfig.isStatisticsCpuTimerEnabled(),
                         false),
+                booleanProperty(
+                        PER_OPERATOR_ALLOCATION_TRACKING_ENABLED,
+                        "Track the bytes allocated by each operator, which are reported in the operator stats and by EXPLAIN ANALYZE",
+                        taskManagerConfig.isPerOperatorAllocationTrackingEnabled(),
+                        false),
                 booleanProperty(
                         ENABLE_STATS_CALCULATOR,
                         "Experimental: Enable statistics calculator",
@@ -846,6 +962,11 @@ public final class SystemSessionProperties
                         "Experimental: Enable dynamic filtering",
                         featuresConfig.isEnableDynamicFiltering(),
                         false),
+                booleanProperty(
+                        ENABLE_DISTRIBUTED_DYNAMIC_FILTERING,
+                        "Experimental: Enable dynamic filtering of joins whose build and probe sides run in different stages",
+                        featuresConfig.isEnableDistributedDynamicFiltering(),
+                        false),
                 integerProperty(
                         DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT,
                         "Experimental: maximum number of build-side rows to be collected for dynamic filtering per-driver",
@@ -860,6 +981,11 @@ public final class SystemSessionProperties
                         false,
                         value -> DataSize.valueOf((String) value),
                         DataSize::toString),
+                booleanProperty(
+                        BROADCAST_JOIN_BUILD_SHARING_ENABLED,
+                        "Build the hash table of a broadcast join once per worker and share it between the tasks of the query",
+                        featuresConfig.isBroadcastJoinBuildSharingEnabled(),
+                        false),
                 booleanProperty(
                         FRAGMENT_RESULT_CACHING_ENABLED,
                         "Enable fragment result caching and read/write leaf fragment result pages from/to cache when applicable",
@@ -961,6 +1087,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(MAX_FAILED_TASK_PERCENTAGE, Double.class);
     }
 
+    public static boolean isSpeculativeExecutionEnabled(Session session)
+    {
+        return session.getSystemProperty(SPECULATIVE_EXECUTION, Boolean.class);
+    }
+
+    public static double getSpeculativeExecutionSlowTaskThreshold(Session session)
+    {
+        return session.getSystemProperty(SPECULATIVE_EXECUTION_SLOW_TASK_THRESHOLD, Double.class);
+    }
+
     public static int getMaxStageRetries(Session session)
     {
         return session.getSystemProperty(MAX_STAGE_RETRIES, Integer.class);
@@ -1000,6 +1136,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(WRITER_MIN_SIZE, DataSize.class);
     }
 
+    public static boolean isSplitSkewedWriterPartitions(Session session)
+    {
+        return session.getSystemProperty(SPLIT_SKEWED_WRITER_PARTITIONS, Boolean.class);
+    }
+
+    public static int getSkewedJoinConsumersPerPartition(Session session)
+    {
+        return session.getSystemProperty(SKEWED_JOIN_CONSUMERS_PER_PARTITION, Integer.class);
+    }
+
+    public static boolean isSpoolingOutputBufferEnabled(Session session)
+    {
+        return session.getSystemProperty(SPOOLING_OUTPUT_BUFFER_ENABLED, Boolean.class);
+    }
+
     public static boolean isOptimizedScaleWriterProducerBuffer(Session session)
     {
         return session.getSystemProperty(OPTIMIZED_SCALE_WRITER_PRODUCER_BUFFER, Boolean.class);
@@ -1085,6 +1236,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(FAST_INEQUALITY_JOINS, Boolean.class);
     }
 
+    public static boolean isRangeJoinsEnabled(Session session)
+    {
+        return session.getSystemProperty(RANGE_JOINS, Boolean.class);
+    }
+
+    public static boolean isSemiJoinBloomFilterEnabled(Session session)
+    {
+        return session.getSystemProperty(SEMI_JOIN_BLOOM_FILTER_ENABLED, Boolean.class);
+    }
+
     public static JoinReorderingStrategy getJoinReorderingStrategy(Session session)
     {
         Boolean reorderJoins = session.getSystemProperty(REORDER_JOINS, Boolean.class);
@@ -1208,6 +1369,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(RUNTIME_OPTIMIZER_ENABLED, Boolean.class);
     }
 
+    public static boolean isRuntimeJoinDistributionEnabled(Session session)
+    {
+        return session.getSystemProperty(RUNTIME_JOIN_DISTRIBUTION_ENABLED, Boolean.class);
+    }
+
+    public static DataSize getRuntimeBroadcastJoinMaxBuildSize(Session session)
+    {
+        return session.getSystemProperty(RUNTIME_BROADCAST_JOIN_MAX_BUILD_SIZE, DataSize.class);
+    }
+
     @Deprecated
     public static boolean isLegacyTimestamp(Session session)
     {
@@ -1224,6 +1395,22 @@ public final class SystemSessionProperties
         return session.getSystemProperty(EXCHANGE_COMPRESSION, Boolean.class);
     }
 
+    /**
+     * Codec to compress exchanged pages with, or {@link CompressionCodec#NONE} when exchange compression is disabled.
+     */
+    public static CompressionCodec getExchangeCompressionCodec(Session session)
+    {
+        if (!isExchangeCompressionEnabled(session)) {
+            return CompressionCodec.NONE;
+        }
+        return session.getSystemProperty(EXCHANGE_COMPRESSION_CODEC, CompressionCodec.class);
+    }
+
+    public static boolean isExchangeAdaptiveCompressionEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_ADAPTIVE_COMPRESSION, Boolean.class);
+    }
+
     public static boolean isEnableIntermediateAggregations(Session session)
     {
         return session.getSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, Boolean.class);
@@ -1269,6 +1456,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(PREFER_PARTIAL_AGGREGATION, Boolean.class);
     }
 
+    public static boolean isAdaptivePartialAggregationEnabled(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION, Boolean.class);
+    }
+
+    public static long getAdaptivePartialAggregationMinRows(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS, Long.class);
+    }
+
+    public static double getAdaptivePartialAggregationUniqueRowsRatioThreshold(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD, Double.class);
+    }
+
     public static boolean isOptimizeTopNRowNumber(Session session)
     {
         return session.getSystemProperty(OPTIMIZE_TOP_N_ROW_NUMBER, Boolean.class);
@@ -1345,6 +1547,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(STATISTICS_CPU_TIMER_ENABLED, Boolean.class);
     }
 
+    public static boolean isPerOperatorAllocationTrackingEnabled(Session session)
+    {
+        return session.getSystemProperty(PER_OPERATOR_ALLOCATION_TRACKING_ENABLED, Boolean.class);
+    }
+
     public static boolean isEnableStatsCalculator(Session session)
     {
         return session.getSystemProperty(ENABLE_STATS_CALCULATOR, Boolean.class);
@@ -1461,6 +1668,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(ENABLE_DYNAMIC_FILTERING, Boolean.class);
     }
 
+    public static boolean isEnableDistributedDynamicFiltering(Session session)
+    {
+        return isEnableDynamicFiltering(session) && session.getSystemProperty(ENABLE_DISTRIBUTED_DYNAMIC_FILTERING, Boolean.class);
+    }
+
     public static int getDynamicFilteringMaxPerDriverRowCount(Session session)
     {
         return session.getSystemProperty(DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT, Integer.class);
@@ -1471,6 +1683,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE, DataSize.class);
     }
 
+    public static boolean isBroadcastJoinBuildSharingEnabled(Session session)
+    {
+        return session.getSystemProperty(BROADCAST_JOIN_BUILD_SHARING_ENABLED, Boolean.class);
+    }
+
     public static boolean isFragmentResultCachingEnabled(Session session)
     {
         return session.getSystemProperty(FRAGMENT_RESULT_CACHING_ENABLED, Boolean.class);
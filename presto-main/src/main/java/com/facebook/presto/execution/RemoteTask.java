@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.execution;
 
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.metadata.Split;
@@ -21,6 +22,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.net.URI;
+import java.util.Map;
 
 public interface RemoteTask
 {
@@ -64,7 +66,23 @@ public interface RemoteTask
      */
     void addFinalTaskInfoListener(StateChangeListener<TaskInfo> stateChangeListener);
 
-    ListenableFuture<?> whenSplitQueueHasSpace(int threshold);
+    /**
+     * Add a listener for the dynamic filter domains collected by the task. The listener is notified with all the
+     * domains collected so far whenever the task collects a new one. Listener is always notified asynchronously
+     * using a dedicated notification thread pool.
+     */
+    void addDynamicFilterDomainsListener(StateChangeListener<Map<String, Domain>> stateChangeListener);
+
+    /**
+     * Sends dynamic filter domains collected by other stages to the probe sides of the task.
+     */
+    void addDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains);
+
+    /**
+     * Returns a future that completes once the weight of the partitioned splits queued for the task is
+     * below the threshold.
+     */
+    ListenableFuture<?> whenSplitQueueHasSpace(long weightThreshold);
 
     void cancel();
 
@@ -73,4 +91,11 @@ public interface RemoteTask
     int getPartitionedSplitCount();
 
     int getQueuedPartitionedSplitCount();
+
+    /**
+     * The raw {@link com.facebook.presto.spi.SplitWeight} of the partitioned splits queued or running in the task.
+     */
+    long getPartitionedSplitsWeight();
+
+    long getQueuedPartitionedSplitsWeight();
 }
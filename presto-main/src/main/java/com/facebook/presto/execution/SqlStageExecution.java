@@ -14,6 +14,7 @@
 package com.facebook.presto.execution;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.execution.scheduler.SplitSchedulerStats;
@@ -44,6 +45,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -51,12 +53,14 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static com.facebook.presto.SystemSessionProperties.getMaxFailedTaskPercentage;
@@ -116,6 +120,8 @@ public final class SqlStageExecution
     private final Set<TaskId> failedTasks = newConcurrentHashSet();
     @GuardedBy("this")
     private final Set<TaskId> tasksWithFinalInfo = newConcurrentHashSet();
+    @GuardedBy("this")
+    private final Set<TaskId> canceledSpeculatedTasks = newConcurrentHashSet();
 
     private final Set<Lifespan> finishedLifespans = ConcurrentHashMap.newKeySet();
     private final int totalLifespans;
@@ -132,7 +138,11 @@ public final class SqlStageExecution
 
     private final AtomicReference<OutputBuffers> outputBuffers = new AtomicReference<>();
 
-    private final ListenerManager<Set<Lifespan>> completedLifespansChangeListeners = new ListenerManager<>();
+    private final ListenerManager<TaskId, Set<Lifespan>> completedLifespansChangeListeners = new ListenerManager<>();
+
+    private final List<BiConsumer<TaskId, Map<String, Domain>>> dynamicFilterDomainsListeners = new CopyOnWriteArrayList<>();
+    @GuardedBy("this")
+    private final Map<String, Domain> dynamicFilterDomains = new HashMap<>();
 
     @GuardedBy("this")
     private Optional<StageTaskRecoveryCallback> stageTaskRecoveryCallback = Optional.empty();
@@ -211,7 +221,7 @@ public final class SqlStageExecution
     private void initialize()
     {
         stateMachine.addStateChangeListener(newState -> checkAllTaskFinal());
-        completedLifespansChangeListeners.addListener(lifespans -> finishedLifespans.addAll(lifespans));
+        addCompletedDriverGroupsChangedListener(finishedLifespans::addAll);
     }
 
     public StageExecutionId getStageExecutionId()
@@ -246,7 +256,37 @@ public final class SqlStageExecution
 
     public void addCompletedDriverGroupsChangedListener(Consumer<Set<Lifespan>> newlyCompletedDriverGroupConsumer)
     {
-        completedLifespansChangeListeners.addListener(newlyCompletedDriverGroupConsumer);
+        requireNonNull(newlyCompletedDriverGroupConsumer, "newlyCompletedDriverGroupConsumer is null");
+        completedLifespansChangeListeners.addListener((taskId, lifespans) -> newlyCompletedDriverGroupConsumer.accept(lifespans));
+    }
+
+    /**
+     * Same as {@link #addCompletedDriverGroupsChangedListener(Consumer)}, the listener is also given the task that completed the driver groups.
+     */
+    public void addTaskCompletedDriverGroupsChangedListener(BiConsumer<TaskId, Set<Lifespan>> newlyCompletedDriverGroupConsumer)
+    {
+        completedLifespansChangeListeners.addListener(requireNonNull(newlyCompletedDriverGroupConsumer, "newlyCompletedDriverGroupConsumer is null"));
+    }
+
+    /**
+     * Add a listener for the dynamic filter domains collected by the tasks of this stage. The listener is notified
+     * with the id of a task and all the domains it collected so far, whenever the task collects a new one.
+     * Listeners must be added before the tasks of the stage are scheduled.
+     */
+    public void addDynamicFilterDomainsListener(BiConsumer<TaskId, Map<String, Domain>> listener)
+    {
+        dynamicFilterDomainsListeners.add(requireNonNull(listener, "listener is null"));
+    }
+
+    /**
+     * Sends dynamic filter domains collected by other stages to the current and future tasks of this stage.
+     */
+    public synchronized void addDynamicFilterDomains(Map<String, Domain> newDynamicFilterDomains)
+    {
+        dynamicFilterDomains.putAll(newDynamicFilterDomains);
+        for (RemoteTask task : getAllTasks()) {
+            task.addDynamicFilterDomains(newDynamicFilterDomains);
+        }
     }
 
     public synchronized void registerStageTaskRecoveryCallback(StageTaskRecoveryCallback stageTaskRecoveryCallback)
@@ -318,6 +358,29 @@ public final class SqlStageExecution
         getAllTasks().forEach(RemoteTask::abort);
     }
 
+    /**
+     * Cancels a task whose driver groups have all been executed by speculative copies on other tasks.
+     * The task counts as finished once it is canceled.
+     */
+    public synchronized void cancelSpeculatedTask(TaskId taskId)
+    {
+        checkArgument(allTasks.contains(taskId), "Task %s does not belong to this stage", taskId);
+        canceledSpeculatedTasks.add(taskId);
+        getAllTasks().stream()
+                .filter(task -> task.getTaskId().equals(taskId))
+                .forEach(RemoteTask::cancel);
+    }
+
+    public void recordSpeculativeAttempts(int speculativeAttempts)
+    {
+        stateMachine.recordSpeculativeAttempts(speculativeAttempts);
+    }
+
+    public void recordSpeculativeWins(int speculativeWins)
+    {
+        stateMachine.recordSpeculativeWins(speculativeWins);
+    }
+
     public long getUserMemoryReservation()
     {
         return stateMachine.getUserMemoryReservation();
@@ -530,6 +593,9 @@ public final class SqlStageExecution
 
         task.addStateChangeListener(new StageTaskListener(taskId));
         task.addFinalTaskInfoListener(this::updateFinalTaskInfo);
+        if (!dynamicFilterDomainsListeners.isEmpty()) {
+            task.addDynamicFilterDomainsListener(domains -> dynamicFilterDomainsListeners.forEach(listener -> listener.accept(taskId, domains)));
+        }
 
         if (!stateMachine.getState().isDone()) {
             task.start();
@@ -539,6 +605,10 @@ public final class SqlStageExecution
             task.abort();
         }
 
+        if (!dynamicFilterDomains.isEmpty()) {
+            task.addDynamicFilterDomains(ImmutableMap.copyOf(dynamicFilterDomains));
+        }
+
         return task;
     }
 
@@ -601,6 +671,10 @@ public final class SqlStageExecution
             else if (taskState == TaskState.FINISHED) {
                 finishedTasks.add(taskId);
             }
+            else if (taskState == TaskState.CANCELED && canceledSpeculatedTasks.contains(taskId)) {
+                // the driver groups of the task have been executed on other tasks
+                finishedTasks.add(taskId);
+            }
 
             // The finishedTasks.add(taskStatus.getTaskId()) must happen before the getState() (see schedulingComplete)
             stageExecutionState = getState();
@@ -725,7 +799,7 @@ public final class SqlStageExecution
             if (newlyCompletedDriverGroups.isEmpty()) {
                 return;
             }
-            completedLifespansChangeListeners.invoke(newlyCompletedDriverGroups, executor);
+            completedLifespansChangeListeners.invoke(taskId, newlyCompletedDriverGroups, executor);
             // newlyCompletedDriverGroups is a view.
             // Making changes to completedDriverGroups will change newlyCompletedDriverGroups.
             completedDriverGroups.addAll(newlyCompletedDriverGroups);
@@ -738,22 +812,22 @@ public final class SqlStageExecution
         void recover(TaskId taskId);
     }
 
-    private static class ListenerManager<T>
+    private static class ListenerManager<K, T>
     {
-        private final List<Consumer<T>> listeners = new ArrayList<>();
+        private final List<BiConsumer<K, T>> listeners = new ArrayList<>();
         private boolean frozen;
 
-        public synchronized void addListener(Consumer<T> listener)
+        public synchronized void addListener(BiConsumer<K, T> listener)
         {
             checkState(!frozen, "Listeners have been invoked");
             listeners.add(listener);
         }
 
-        public synchronized void invoke(T payload, Executor executor)
+        public synchronized void invoke(K key, T payload, Executor executor)
         {
             frozen = true;
-            for (Consumer<T> listener : listeners) {
-                executor.execute(() -> listener.accept(payload));
+            for (BiConsumer<K, T> listener : listeners) {
+                executor.execute(() -> listener.accept(key, payload));
             }
         }
     }
@@ -17,12 +17,14 @@ import com.facebook.airlift.concurrent.SetThreadName;
 import com.facebook.airlift.log.Logger;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.LazyOutputBuffer;
 import com.facebook.presto.execution.buffer.OutputBuffer;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.buffer.SpoolingOutputBufferFactory;
 import com.facebook.presto.execution.scheduler.TableWriteInfo;
 import com.facebook.presto.memory.QueryContext;
 import com.facebook.presto.metadata.MetadataUpdates;
@@ -39,6 +41,7 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.PlanFragment;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -49,6 +52,7 @@ import javax.annotation.Nullable;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -98,6 +102,33 @@ public class SqlTask
             Function<SqlTask, ?> onDone,
             DataSize maxBufferSize,
             CounterStat failedTasks)
+    {
+        return createSqlTask(
+                taskId,
+                location,
+                nodeId,
+                queryContext,
+                sqlTaskExecutionFactory,
+                exchangeClientSupplier,
+                taskNotificationExecutor,
+                onDone,
+                maxBufferSize,
+                failedTasks,
+                Optional.empty());
+    }
+
+    public static SqlTask createSqlTask(
+            TaskId taskId,
+            URI location,
+            String nodeId,
+            QueryContext queryContext,
+            SqlTaskExecutionFactory sqlTaskExecutionFactory,
+            ExchangeClientSupplier exchangeClientSupplier,
+            ExecutorService taskNotificationExecutor,
+            Function<SqlTask, ?> onDone,
+            DataSize maxBufferSize,
+            CounterStat failedTasks,
+            Optional<SpoolingOutputBufferFactory> spoolingOutputBufferFactory)
     {
         SqlTask sqlTask = new SqlTask(
                 taskId,
@@ -107,7 +138,8 @@ public class SqlTask
                 sqlTaskExecutionFactory,
                 exchangeClientSupplier,
                 taskNotificationExecutor,
-                maxBufferSize);
+                maxBufferSize,
+                spoolingOutputBufferFactory);
         sqlTask.initialize(onDone, failedTasks);
         return sqlTask;
     }
@@ -120,7 +152,8 @@ public class SqlTask
             SqlTaskExecutionFactory sqlTaskExecutionFactory,
             ExchangeClientSupplier exchangeClientSupplier,
             ExecutorService taskNotificationExecutor,
-            DataSize maxBufferSize)
+            DataSize maxBufferSize,
+            Optional<SpoolingOutputBufferFactory> spoolingOutputBufferFactory)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.taskInstanceId = new TaskInstanceId(UUID.randomUUID());
@@ -140,7 +173,8 @@ public class SqlTask
                 maxBufferSize,
                 // Pass a memory context supplier instead of a memory context to the output buffer,
                 // because we haven't created the task context that holds the the memory context yet.
-                () -> queryContext.getTaskContextByTaskId(taskId).localSystemMemoryContext());
+                () -> queryContext.getTaskContextByTaskId(taskId).localSystemMemoryContext(),
+                spoolingOutputBufferFactory);
         taskStateMachine = new TaskStateMachine(taskId, taskNotificationExecutor);
     }
 
@@ -249,6 +283,8 @@ public class SqlTask
 
         int queuedPartitionedDrivers = 0;
         int runningPartitionedDrivers = 0;
+        long queuedPartitionedSplitsWeight = 0L;
+        long runningPartitionedSplitsWeight = 0L;
         long physicalWrittenDataSizeInBytes = 0L;
         long userMemoryReservationInBytes = 0L;
         long systemMemoryReservationInBytes = 0L;
@@ -273,6 +309,8 @@ public class SqlTask
                 PipelineStatus pipelineStatus = pipelineContext.getPipelineStatus();
                 queuedPartitionedDrivers += pipelineStatus.getQueuedPartitionedDrivers();
                 runningPartitionedDrivers += pipelineStatus.getRunningPartitionedDrivers();
+                queuedPartitionedSplitsWeight += pipelineStatus.getQueuedPartitionedSplitsWeight();
+                runningPartitionedSplitsWeight += pipelineStatus.getRunningPartitionedSplitsWeight();
                 physicalWrittenBytes += pipelineContext.getPhysicalWrittenDataSize();
             }
             physicalWrittenDataSizeInBytes = physicalWrittenBytes;
@@ -293,6 +331,8 @@ public class SqlTask
                 failures,
                 queuedPartitionedDrivers,
                 runningPartitionedDrivers,
+                queuedPartitionedSplitsWeight,
+                runningPartitionedSplitsWeight,
                 outputBuffer.getUtilization(),
                 isOutputBufferOverutilized(),
                 physicalWrittenDataSizeInBytes,
@@ -349,6 +389,19 @@ public class SqlTask
         return ImmutableSet.of();
     }
 
+    private static Map<String, Domain> getDynamicFilterDomains(TaskHolder taskHolder)
+    {
+        TaskInfo finalTaskInfo = taskHolder.getFinalTaskInfo();
+        if (finalTaskInfo != null) {
+            return finalTaskInfo.getDynamicFilterDomains();
+        }
+        SqlTaskExecution taskExecution = taskHolder.getTaskExecution();
+        if (taskExecution != null) {
+            return taskExecution.getTaskContext().getCollectedDynamicFilterDomains();
+        }
+        return ImmutableMap.of();
+    }
+
     private TaskInfo createTaskInfo(TaskHolder taskHolder)
     {
         TaskStats taskStats = getTaskStats(taskHolder);
@@ -364,7 +417,8 @@ public class SqlTask
                 noMoreSplits,
                 taskStats,
                 needsPlan.get(),
-                metadataRequests);
+                metadataRequests,
+                getDynamicFilterDomains(taskHolder));
     }
 
     public ListenableFuture<TaskStatus> getTaskStatus(TaskState callersCurrentState)
@@ -454,6 +508,17 @@ public class SqlTask
         return taskHolderReference.get().taskExecution.getTaskContext().getTaskMetadataContext();
     }
 
+    public void updateDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains)
+    {
+        requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null");
+
+        // the domains arrive with task updates, and the first update creates the task execution
+        SqlTaskExecution taskExecution = taskHolderReference.get().getTaskExecution();
+        if (taskExecution != null) {
+            taskExecution.getTaskContext().addRemoteDynamicFilterDomains(dynamicFilterDomains);
+        }
+    }
+
     public ListenableFuture<BufferResult> getTaskResults(OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
     {
         requireNonNull(bufferId, "bufferId is null");
@@ -34,6 +34,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.List;
 import java.util.concurrent.Executor;
 
+import static com.facebook.presto.SystemSessionProperties.isPerOperatorAllocationTrackingEnabled;
 import static com.facebook.presto.execution.FragmentResultCacheContext.createFragmentResultCacheContext;
 import static com.facebook.presto.execution.SqlTaskExecution.createSqlTaskExecution;
 import static com.fasterxml.jackson.databind.SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS;
@@ -54,7 +55,6 @@ public class SqlTaskExecutionFactory
     private final ObjectMapper objectMapper;
     private final boolean perOperatorCpuTimerEnabled;
     private final boolean cpuTimerEnabled;
-    private final boolean perOperatorAllocationTrackingEnabled;
     private final boolean allocationTrackingEnabled;
     private final boolean legacyLifespanCompletionCondition;
 
@@ -81,7 +81,6 @@ public class SqlTaskExecutionFactory
         requireNonNull(config, "config is null");
         this.perOperatorCpuTimerEnabled = config.isPerOperatorCpuTimerEnabled();
         this.cpuTimerEnabled = config.isTaskCpuTimerEnabled();
-        this.perOperatorAllocationTrackingEnabled = config.isPerOperatorAllocationTrackingEnabled();
         this.allocationTrackingEnabled = config.isTaskAllocationTrackingEnabled();
         this.legacyLifespanCompletionCondition = config.isLegacyLifespanCompletionCondition();
     }
@@ -96,13 +95,16 @@ public class SqlTaskExecutionFactory
             List<TaskSource> sources,
             TableWriteInfo tableWriteInfo)
     {
+        // the default of the session property comes from the task manager config
+        boolean perOperatorAllocationTrackingEnabled = isPerOperatorAllocationTrackingEnabled(session);
         TaskContext taskContext = queryContext.addTaskContext(
                 taskStateMachine,
                 session,
                 perOperatorCpuTimerEnabled,
                 cpuTimerEnabled,
                 perOperatorAllocationTrackingEnabled,
-                allocationTrackingEnabled,
+                // operation allocation can only be tracked along with the overall allocation
+                allocationTrackingEnabled || perOperatorAllocationTrackingEnabled,
                 legacyLifespanCompletionCondition,
                 createFragmentResultCacheContext(fragmentResultCacheManager, fragment.getRoot(), fragment.getPartitioningScheme(), session, objectMapper));
 
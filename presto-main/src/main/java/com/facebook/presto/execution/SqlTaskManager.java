@@ -20,11 +20,13 @@ import com.facebook.airlift.stats.CounterStat;
 import com.facebook.airlift.stats.GcMonitor;
 import com.facebook.presto.Session;
 import com.facebook.presto.common.block.BlockEncodingSerde;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.event.SplitMonitor;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.buffer.SpoolingOutputBufferFactory;
 import com.facebook.presto.execution.executor.TaskExecutor;
 import com.facebook.presto.execution.scheduler.TableWriteInfo;
 import com.facebook.presto.memory.LocalMemoryManager;
@@ -65,6 +67,7 @@ import javax.inject.Inject;
 
 import java.io.Closeable;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -136,7 +139,8 @@ public class SqlTaskManager
             BlockEncodingSerde blockEncodingSerde,
             OrderingCompiler orderingCompiler,
             FragmentResultCacheManager fragmentResultCacheManager,
-            ObjectMapper objectMapper)
+            ObjectMapper objectMapper,
+            SpoolingOutputBufferFactory spoolingOutputBufferFactory)
     {
         requireNonNull(nodeInfo, "nodeInfo is null");
         requireNonNull(config, "config is null");
@@ -186,7 +190,8 @@ public class SqlTaskManager
                             return null;
                         },
                         maxBufferSize,
-                        failedTasks)));
+                        failedTasks,
+                        Optional.of(spoolingOutputBufferFactory))));
     }
 
     private QueryContext createQueryContext(
@@ -415,6 +420,15 @@ public class SqlTaskManager
         }
     }
 
+    @Override
+    public void updateDynamicFilterDomains(TaskId taskId, Map<String, Domain> dynamicFilterDomains)
+    {
+        requireNonNull(taskId, "taskId is null");
+        requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null");
+
+        tasks.getUnchecked(taskId).updateDynamicFilterDomains(dynamicFilterDomains);
+    }
+
     @Override
     public ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
     {
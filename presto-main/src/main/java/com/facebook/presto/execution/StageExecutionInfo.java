@@ -59,7 +59,9 @@ public class StageExecutionInfo
             DataSize peakUserMemoryReservation,
             DataSize peakNodeTotalMemoryReservation,
             int finishedLifespans,
-            int totalLifespans)
+            int totalLifespans,
+            int speculativeAttempts,
+            int speculativeWins)
     {
         int totalTasks = taskInfos.size();
         int runningTasks = 0;
@@ -130,7 +132,8 @@ public class StageExecutionInfo
 
             totalScheduledTime += taskStats.getTotalScheduledTimeInNanos();
             totalCpuTime += taskStats.getTotalCpuTimeInNanos();
-            if (state == FINISHED && taskInfo.getTaskStatus().getState() == TaskState.FAILED) {
+            if (state == FINISHED && (taskState == TaskState.FAILED || taskState == TaskState.CANCELED)) {
+                // the work of failed tasks was retried, and the work of canceled tasks was executed speculatively on other tasks
                 retriedCpuTime += taskStats.getTotalCpuTimeInNanos();
             }
             totalBlockedTime += taskStats.getTotalBlockedTimeInNanos();
@@ -179,6 +182,8 @@ public class StageExecutionInfo
 
                 totalLifespans,
                 finishedLifespans,
+                speculativeAttempts,
+                speculativeWins,
 
                 totalDrivers,
                 queuedDrivers,
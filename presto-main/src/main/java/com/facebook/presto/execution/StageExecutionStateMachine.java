@@ -32,6 +32,7 @@ import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -78,6 +79,9 @@ public class StageExecutionStateMachine
     private final AtomicLong currentUserMemory = new AtomicLong();
     private final AtomicLong currentTotalMemory = new AtomicLong();
 
+    private final AtomicInteger speculativeAttempts = new AtomicInteger();
+    private final AtomicInteger speculativeWins = new AtomicInteger();
+
     public StageExecutionStateMachine(
             StageExecutionId stageExecutionId,
             ExecutorService executor,
@@ -342,7 +346,9 @@ public class StageExecutionStateMachine
                 succinctBytes(peakUserMemory.get()),
                 succinctBytes(peakNodeTotalMemory.get()),
                 finishedLifespans,
-                totalLifespans);
+                totalLifespans,
+                speculativeAttempts.get(),
+                speculativeWins.get());
     }
 
     public void recordGetSplitTime(long startNanos)
@@ -352,6 +358,16 @@ public class StageExecutionStateMachine
         scheduledStats.getGetSplitTime().add(elapsedNanos, NANOSECONDS);
     }
 
+    public void recordSpeculativeAttempts(int attempts)
+    {
+        speculativeAttempts.addAndGet(attempts);
+    }
+
+    public void recordSpeculativeWins(int wins)
+    {
+        speculativeWins.addAndGet(wins);
+    }
+
     @Override
     public String toString()
     {
@@ -52,6 +52,8 @@ public class StageExecutionStats
 
     private final int totalLifespans;
     private final int completedLifespans;
+    private final int speculativeAttempts;
+    private final int speculativeWins;
 
     private final int totalDrivers;
     private final int queuedDrivers;
@@ -102,6 +104,8 @@ public class StageExecutionStats
 
             @JsonProperty("totalLifespans") int totalLifespans,
             @JsonProperty("completedLifespans") int completedLifespans,
+            @JsonProperty("speculativeAttempts") int speculativeAttempts,
+            @JsonProperty("speculativeWins") int speculativeWins,
 
             @JsonProperty("totalDrivers") int totalDrivers,
             @JsonProperty("queuedDrivers") int queuedDrivers,
@@ -154,6 +158,10 @@ public class StageExecutionStats
         this.totalLifespans = totalLifespans;
         checkArgument(completedLifespans >= 0, "completedLifespans is negative");
         this.completedLifespans = completedLifespans;
+        checkArgument(speculativeAttempts >= 0, "speculativeAttempts is negative");
+        this.speculativeAttempts = speculativeAttempts;
+        checkArgument(speculativeWins >= 0, "speculativeWins is negative");
+        this.speculativeWins = speculativeWins;
 
         checkArgument(totalDrivers >= 0, "totalDrivers is negative");
         this.totalDrivers = totalDrivers;
@@ -243,6 +251,18 @@ public class StageExecutionStats
         return completedLifespans;
     }
 
+    @JsonProperty
+    public int getSpeculativeAttempts()
+    {
+        return speculativeAttempts;
+    }
+
+    @JsonProperty
+    public int getSpeculativeWins()
+    {
+        return speculativeWins;
+    }
+
     @JsonProperty
     public int getTotalDrivers()
     {
@@ -449,6 +469,8 @@ public class StageExecutionStats
                 0,
                 0,
                 0,
+                0,
+                0,
                 new DataSize(0, BYTE),
                 new DataSize(0, BYTE),
                 new DataSize(0, BYTE),
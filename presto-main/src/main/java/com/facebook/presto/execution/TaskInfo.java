@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.execution;
 
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.buffer.BufferInfo;
 import com.facebook.presto.execution.buffer.OutputBufferInfo;
 import com.facebook.presto.metadata.MetadataUpdates;
@@ -20,6 +21,7 @@ import com.facebook.presto.operator.TaskStats;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.joda.time.DateTime;
 
@@ -27,6 +29,7 @@ import javax.annotation.concurrent.Immutable;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.facebook.presto.execution.TaskStatus.initialTaskStatus;
@@ -48,6 +51,9 @@ public class TaskInfo
     private final boolean needsPlan;
     private final MetadataUpdates metadataUpdates;
 
+    // dynamic filter domains collected by the joins of the task, for the probe sides that run in other stages
+    private final Map<String, Domain> dynamicFilterDomains;
+
     @JsonCreator
     public TaskInfo(
             @JsonProperty("taskId") TaskId taskId,
@@ -57,7 +63,8 @@ public class TaskInfo
             @JsonProperty("noMoreSplits") Set<PlanNodeId> noMoreSplits,
             @JsonProperty("stats") TaskStats stats,
             @JsonProperty("needsPlan") boolean needsPlan,
-            @JsonProperty("metadataUpdates") MetadataUpdates metadataUpdates)
+            @JsonProperty("metadataUpdates") MetadataUpdates metadataUpdates,
+            @JsonProperty("dynamicFilterDomains") Map<String, Domain> dynamicFilterDomains)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.taskStatus = requireNonNull(taskStatus, "taskStatus is null");
@@ -68,6 +75,7 @@ public class TaskInfo
 
         this.needsPlan = needsPlan;
         this.metadataUpdates = metadataUpdates;
+        this.dynamicFilterDomains = ImmutableMap.copyOf(requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null"));
     }
 
     @JsonProperty
@@ -118,12 +126,18 @@ public class TaskInfo
         return metadataUpdates;
     }
 
+    @JsonProperty
+    public Map<String, Domain> getDynamicFilterDomains()
+    {
+        return dynamicFilterDomains;
+    }
+
     public TaskInfo summarize()
     {
         if (taskStatus.getState().isDone()) {
-            return new TaskInfo(taskId, taskStatus, lastHeartbeat, outputBuffers.summarize(), noMoreSplits, stats.summarizeFinal(), needsPlan, metadataUpdates);
+            return new TaskInfo(taskId, taskStatus, lastHeartbeat, outputBuffers.summarize(), noMoreSplits, stats.summarizeFinal(), needsPlan, metadataUpdates, dynamicFilterDomains);
         }
-        return new TaskInfo(taskId, taskStatus, lastHeartbeat, outputBuffers.summarize(), noMoreSplits, stats.summarize(), needsPlan, metadataUpdates);
+        return new TaskInfo(taskId, taskStatus, lastHeartbeat, outputBuffers.summarize(), noMoreSplits, stats.summarize(), needsPlan, metadataUpdates, dynamicFilterDomains);
     }
 
     @Override
@@ -145,11 +159,12 @@ public class TaskInfo
                 ImmutableSet.of(),
                 taskStats,
                 true,
-                DEFAULT_METADATA_UPDATES);
+                DEFAULT_METADATA_UPDATES,
+                ImmutableMap.of());
     }
 
     public TaskInfo withTaskStatus(TaskStatus newTaskStatus)
     {
-        return new TaskInfo(taskId, newTaskStatus, lastHeartbeat, outputBuffers, noMoreSplits, stats, needsPlan, metadataUpdates);
+        return new TaskInfo(taskId, newTaskStatus, lastHeartbeat, outputBuffers, noMoreSplits, stats, needsPlan, metadataUpdates, dynamicFilterDomains);
     }
 }
@@ -0,0 +1,479 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.execution.buffer.BufferInfo;
+import com.facebook.presto.execution.buffer.OutputBufferInfo;
+import com.facebook.presto.execution.buffer.PageBufferInfo;
+import com.facebook.presto.metadata.MetadataUpdates;
+import com.facebook.presto.operator.PipelineStats;
+import com.facebook.presto.operator.TaskStats;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import org.joda.time.DateTime;
+
+import javax.annotation.concurrent.Immutable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The parts of a {@link TaskInfo} that changed since a previous task info, which is identified by the
+ * fingerprints of its parts. The task status, the output buffers, the task stats without pipelines and each
+ * pipeline are omitted when their fingerprint matches the previous one, so the delta can be applied only to
+ * the task info the fingerprints were computed for. The remaining fields are small and always included.
+ * <p>
+ * A fingerprint hashes the counters, sizes, times and states of its part instead of its serialized form, so
+ * creating a delta does not need the serialized form of its parts. The omitted parts are only measured, to
+ * report how many bytes the delta saved. The operator and driver stats of a
+ * pipeline are not hashed: they only change while drivers of the pipeline are queued, running or blocked,
+ * which also moves the driver counts and the time and input and output totals of the pipeline.
+ */
+@Immutable
+public class TaskInfoDelta
+{
+    private static final int TASK_STATUS = 0;
+    private static final int OUTPUT_BUFFERS = 1;
+    private static final int STATS = 2;
+    private static final int FIRST_PIPELINE = 3;
+
+    private final TaskId taskId;
+    private final Optional<TaskStatus> taskStatus;
+    private final DateTime lastHeartbeat;
+    private final Optional<OutputBufferInfo> outputBuffers;
+    private final Set<PlanNodeId> noMoreSplits;
+    private final Optional<TaskStats> stats;
+    private final Map<Integer, PipelineStats> pipelines;
+    private final boolean needsPlan;
+    private final MetadataUpdates metadataUpdates;
+    private final Map<String, Domain> dynamicFilterDomains;
+
+    private final List<Long> fingerprints;
+    private final int omittedParts;
+    private final long omittedBytes;
+
+    @JsonCreator
+    public TaskInfoDelta(
+            @JsonProperty("taskId") TaskId taskId,
+            @JsonProperty("taskStatus") Optional<TaskStatus> taskStatus,
+            @JsonProperty("lastHeartbeat") DateTime lastHeartbeat,
+            @JsonProperty("outputBuffers") Optional<OutputBufferInfo> outputBuffers,
+            @JsonProperty("noMoreSplits") Set<PlanNodeId> noMoreSplits,
+            @JsonProperty("stats") Optional<TaskStats> stats,
+            @JsonProperty("pipelines") Map<Integer, PipelineStats> pipelines,
+            @JsonProperty("needsPlan") boolean needsPlan,
+            @JsonProperty("metadataUpdates") MetadataUpdates metadataUpdates,
+            @JsonProperty("dynamicFilterDomains") Map<String, Domain> dynamicFilterDomains,
+            @JsonProperty("fingerprints") List<Long> fingerprints,
+            @JsonProperty("omittedParts") int omittedParts,
+            @JsonProperty("omittedBytes") long omittedBytes)
+    {
+        this.taskId = requireNonNull(taskId, "taskId is null");
+        this.taskStatus = requireNonNull(taskStatus, "taskStatus is null");
+        this.lastHeartbeat = requireNonNull(lastHeartbeat, "lastHeartbeat is null");
+        this.outputBuffers = requireNonNull(outputBuffers, "outputBuffers is null");
+        this.noMoreSplits = ImmutableSet.copyOf(requireNonNull(noMoreSplits, "noMoreSplits is null"));
+        this.stats = requireNonNull(stats, "stats is null");
+        this.pipelines = ImmutableMap.copyOf(requireNonNull(pipelines, "pipelines is null"));
+        this.needsPlan = needsPlan;
+        this.metadataUpdates = metadataUpdates;
+        this.dynamicFilterDomains = ImmutableMap.copyOf(requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null"));
+        this.fingerprints = ImmutableList.copyOf(requireNonNull(fingerprints, "fingerprints is null"));
+        checkArgument(this.fingerprints.size() >= FIRST_PIPELINE, "fingerprints is missing parts");
+        checkArgument(omittedParts >= 0, "omittedParts is negative");
+        this.omittedParts = omittedParts;
+        checkArgument(omittedBytes >= 0, "omittedBytes is negative");
+        this.omittedBytes = omittedBytes;
+    }
+
+    /**
+     * Creates the delta between {@code taskInfo} and the task info with the fingerprints {@code previousFingerprints}.
+     *
+     * @param serializedSize the size of a part in the response, which is applied to the omitted parts only
+     */
+    public static TaskInfoDelta createTaskInfoDelta(TaskInfo taskInfo, List<Long> previousFingerprints, ToLongFunction<Object> serializedSize)
+    {
+        requireNonNull(taskInfo, "taskInfo is null");
+        requireNonNull(previousFingerprints, "previousFingerprints is null");
+        requireNonNull(serializedSize, "serializedSize is null");
+
+        TaskStats stats = taskInfo.getStats();
+        List<PipelineStats> pipelines = stats.getPipelines();
+        ImmutableList.Builder<Long> fingerprintsBuilder = ImmutableList.<Long>builder()
+                .add(fingerprint(taskInfo.getTaskStatus()))
+                .add(fingerprint(taskInfo.getOutputBuffers()))
+                .add(fingerprint(stats));
+        for (PipelineStats pipeline : pipelines) {
+            fingerprintsBuilder.add(fingerprint(pipeline));
+        }
+        List<Long> fingerprints = fingerprintsBuilder.build();
+
+        boolean[] omitted = new boolean[fingerprints.size()];
+        int omittedParts = 0;
+        for (int part = 0; part < fingerprints.size(); part++) {
+            if (part < previousFingerprints.size() && previousFingerprints.get(part).equals(fingerprints.get(part))) {
+                omitted[part] = true;
+                omittedParts++;
+            }
+        }
+
+        long omittedBytes = 0;
+        if (omitted[TASK_STATUS]) {
+            omittedBytes += serializedSize.applyAsLong(taskInfo.getTaskStatus());
+        }
+        if (omitted[OUTPUT_BUFFERS]) {
+            omittedBytes += serializedSize.applyAsLong(taskInfo.getOutputBuffers());
+        }
+        TaskStats statsWithoutPipelines = stats.withPipelines(ImmutableList.of());
+        if (omitted[STATS]) {
+            omittedBytes += serializedSize.applyAsLong(statsWithoutPipelines);
+        }
+        ImmutableMap.Builder<Integer, PipelineStats> changedPipelines = ImmutableMap.builder();
+        for (int pipeline = 0; pipeline < pipelines.size(); pipeline++) {
+            if (omitted[FIRST_PIPELINE + pipeline]) {
+                omittedBytes += serializedSize.applyAsLong(pipelines.get(pipeline));
+            }
+            else {
+                changedPipelines.put(pipeline, pipelines.get(pipeline));
+            }
+        }
+
+        return new TaskInfoDelta(
+                taskInfo.getTaskId(),
+                omitted[TASK_STATUS] ? Optional.empty() : Optional.of(taskInfo.getTaskStatus()),
+                taskInfo.getLastHeartbeat(),
+                omitted[OUTPUT_BUFFERS] ? Optional.empty() : Optional.of(taskInfo.getOutputBuffers()),
+                taskInfo.getNoMoreSplits(),
+                omitted[STATS] ? Optional.empty() : Optional.of(statsWithoutPipelines),
+                changedPipelines.build(),
+                taskInfo.isNeedsPlan(),
+                taskInfo.getMetadataUpdates(),
+                taskInfo.getDynamicFilterDomains(),
+                fingerprints,
+                omittedParts,
+                omittedBytes);
+    }
+
+    private static long fingerprint(TaskStatus taskStatus)
+    {
+        Hasher hasher = newHasher()
+                .putLong(taskStatus.getTaskInstanceIdLeastSignificantBits())
+                .putLong(taskStatus.getTaskInstanceIdMostSignificantBits())
+                .putLong(taskStatus.getVersion())
+                .putInt(taskStatus.getState().ordinal())
+                .putUnencodedChars(taskStatus.getSelf().toString())
+                .putInt(taskStatus.getCompletedDriverGroups().hashCode())
+                .putInt(taskStatus.getFailures().size())
+                .putInt(taskStatus.getQueuedPartitionedDrivers())
+                .putInt(taskStatus.getRunningPartitionedDrivers())
+                .putLong(taskStatus.getQueuedPartitionedSplitsWeight())
+                .putLong(taskStatus.getRunningPartitionedSplitsWeight())
+                .putDouble(taskStatus.getOutputBufferUtilization())
+                .putBoolean(taskStatus.isOutputBufferOverutilized())
+                .putLong(taskStatus.getPhysicalWrittenDataSizeInBytes())
+                .putLong(taskStatus.getMemoryReservationInBytes())
+                .putLong(taskStatus.getSystemMemoryReservationInBytes())
+                .putLong(taskStatus.getPeakNodeTotalMemoryReservationInBytes())
+                .putLong(taskStatus.getFullGcCount())
+                .putLong(taskStatus.getFullGcTimeInMillis());
+        return hasher.hash().asLong();
+    }
+
+    private static long fingerprint(OutputBufferInfo outputBuffers)
+    {
+        Hasher hasher = newHasher()
+                .putUnencodedChars(outputBuffers.getType())
+                .putInt(outputBuffers.getState().ordinal())
+                .putBoolean(outputBuffers.isCanAddBuffers())
+                .putBoolean(outputBuffers.isCanAddPages())
+                .putLong(outputBuffers.getTotalBufferedBytes())
+                .putLong(outputBuffers.getTotalBufferedPages())
+                .putLong(outputBuffers.getTotalRowsSent())
+                .putLong(outputBuffers.getTotalPagesSent());
+        for (BufferInfo buffer : outputBuffers.getBuffers()) {
+            PageBufferInfo pageBufferInfo = buffer.getPageBufferInfo();
+            hasher.putInt(buffer.getBufferId().getId())
+                    .putBoolean(buffer.isFinished())
+                    .putInt(buffer.getBufferedPages())
+                    .putLong(buffer.getPagesSent())
+                    .putInt(pageBufferInfo.getPartition())
+                    .putLong(pageBufferInfo.getBufferedPages())
+                    .putLong(pageBufferInfo.getBufferedBytes())
+                    .putLong(pageBufferInfo.getRowsAdded())
+                    .putLong(pageBufferInfo.getPagesAdded());
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static long fingerprint(TaskStats stats)
+    {
+        Hasher hasher = newHasher();
+        putTime(hasher, stats.getCreateTime());
+        putTime(hasher, stats.getFirstStartTime());
+        putTime(hasher, stats.getLastStartTime());
+        putTime(hasher, stats.getLastEndTime());
+        putTime(hasher, stats.getEndTime());
+        hasher.putLong(stats.getElapsedTimeInNanos())
+                .putLong(stats.getQueuedTimeInNanos())
+                .putInt(stats.getTotalDrivers())
+                .putInt(stats.getQueuedDrivers())
+                .putInt(stats.getQueuedPartitionedDrivers())
+                .putInt(stats.getRunningDrivers())
+                .putInt(stats.getRunningPartitionedDrivers())
+                .putInt(stats.getBlockedDrivers())
+                .putInt(stats.getCompletedDrivers())
+                .putDouble(stats.getCumulativeUserMemory())
+                .putLong(stats.getUserMemoryReservationInBytes())
+                .putLong(stats.getRevocableMemoryReservationInBytes())
+                .putLong(stats.getSystemMemoryReservationInBytes())
+                .putLong(stats.getPeakUserMemoryInBytes())
+                .putLong(stats.getPeakTotalMemoryInBytes())
+                .putLong(stats.getPeakNodeTotalMemoryInBytes())
+                .putLong(stats.getTotalScheduledTimeInNanos())
+                .putLong(stats.getTotalCpuTimeInNanos())
+                .putLong(stats.getTotalBlockedTimeInNanos())
+                .putBoolean(stats.isFullyBlocked())
+                .putInt(stats.getBlockedReasons().hashCode())
+                .putLong(stats.getTotalAllocationInBytes())
+                .putLong(stats.getRawInputDataSizeInBytes())
+                .putLong(stats.getRawInputPositions())
+                .putLong(stats.getProcessedInputDataSizeInBytes())
+                .putLong(stats.getProcessedInputPositions())
+                .putLong(stats.getOutputDataSizeInBytes())
+                .putLong(stats.getOutputPositions())
+                .putLong(stats.getPhysicalWrittenDataSizeInBytes())
+                .putInt(stats.getFullGcCount())
+                .putLong(stats.getFullGcTimeInMillis());
+        return hasher.hash().asLong();
+    }
+
+    private static long fingerprint(PipelineStats pipeline)
+    {
+        Hasher hasher = newHasher()
+                .putInt(pipeline.getPipelineId());
+        putTime(hasher, pipeline.getFirstStartTime());
+        putTime(hasher, pipeline.getLastStartTime());
+        putTime(hasher, pipeline.getLastEndTime());
+        hasher.putBoolean(pipeline.isInputPipeline())
+                .putBoolean(pipeline.isOutputPipeline())
+                .putInt(pipeline.getTotalDrivers())
+                .putInt(pipeline.getQueuedDrivers())
+                .putInt(pipeline.getQueuedPartitionedDrivers())
+                .putInt(pipeline.getRunningDrivers())
+                .putInt(pipeline.getRunningPartitionedDrivers())
+                .putInt(pipeline.getBlockedDrivers())
+                .putInt(pipeline.getCompletedDrivers())
+                .putLong(pipeline.getUserMemoryReservationInBytes())
+                .putLong(pipeline.getRevocableMemoryReservationInBytes())
+                .putLong(pipeline.getSystemMemoryReservationInBytes())
+                .putDouble(pipeline.getQueuedTime().getCount())
+                .putDouble(pipeline.getQueuedTime().getTotal())
+                .putDouble(pipeline.getElapsedTime().getCount())
+                .putDouble(pipeline.getElapsedTime().getTotal())
+                .putLong(pipeline.getTotalScheduledTimeInNanos())
+                .putLong(pipeline.getTotalCpuTimeInNanos())
+                .putLong(pipeline.getTotalBlockedTimeInNanos())
+                .putBoolean(pipeline.isFullyBlocked())
+                .putInt(pipeline.getBlockedReasons().hashCode())
+                .putLong(pipeline.getTotalAllocationInBytes())
+                .putLong(pipeline.getRawInputDataSizeInBytes())
+                .putLong(pipeline.getRawInputPositions())
+                .putLong(pipeline.getProcessedInputDataSizeInBytes())
+                .putLong(pipeline.getProcessedInputPositions())
+                .putLong(pipeline.getOutputDataSizeInBytes())
+                .putLong(pipeline.getOutputPositions())
+                .putLong(pipeline.getPhysicalWrittenDataSizeInBytes())
+                .putInt(pipeline.getOperatorSummaries().size())
+                .putInt(pipeline.getDrivers().size());
+        return hasher.hash().asLong();
+    }
+
+    private static Hasher newHasher()
+    {
+        return murmur3_128().newHasher();
+    }
+
+    private static void putTime(Hasher hasher, DateTime time)
+    {
+        hasher.putLong(time == null ? Long.MIN_VALUE : time.getMillis());
+    }
+
+    /**
+     * Rebuilds the task info from this delta and the task info it was created against, if any.
+     */
+    public TaskInfo apply(Optional<TaskInfo> previousTaskInfo)
+    {
+        requireNonNull(previousTaskInfo, "previousTaskInfo is null");
+
+        TaskStatus taskStatus = this.taskStatus.orElseGet(() -> getPrevious(previousTaskInfo, "taskStatus").getTaskStatus());
+        OutputBufferInfo outputBuffers = this.outputBuffers.orElseGet(() -> getPrevious(previousTaskInfo, "outputBuffers").getOutputBuffers());
+        TaskStats stats = this.stats.orElseGet(() -> getPrevious(previousTaskInfo, "stats").getStats());
+
+        ImmutableList.Builder<PipelineStats> pipelines = ImmutableList.builder();
+        for (int pipeline = 0; pipeline < fingerprints.size() - FIRST_PIPELINE; pipeline++) {
+            PipelineStats pipelineStats = this.pipelines.get(pipeline);
+            if (pipelineStats == null) {
+                List<PipelineStats> previousPipelines = getPrevious(previousTaskInfo, "pipeline").getStats().getPipelines();
+                checkArgument(pipeline < previousPipelines.size(), "Previous task info is missing pipeline %s", pipeline);
+                pipelineStats = previousPipelines.get(pipeline);
+            }
+            pipelines.add(pipelineStats);
+        }
+
+        return new TaskInfo(
+                taskId,
+                taskStatus,
+                lastHeartbeat,
+                outputBuffers,
+                noMoreSplits,
+                stats.withPipelines(pipelines.build()),
+                needsPlan,
+                metadataUpdates,
+                dynamicFilterDomains);
+    }
+
+    private TaskInfo getPrevious(Optional<TaskInfo> previousTaskInfo, String part)
+    {
+        checkArgument(previousTaskInfo.isPresent(), "Delta for task %s omits %s, but there is no previous task info", taskId, part);
+        checkArgument(previousTaskInfo.get().getTaskId().equals(taskId), "Delta for task %s can not be applied to task %s", taskId, previousTaskInfo.get().getTaskId());
+        return previousTaskInfo.get();
+    }
+
+    public static String formatFingerprints(List<Long> fingerprints)
+    {
+        return Joiner.on(',').join(fingerprints);
+    }
+
+    public static List<Long> parseFingerprints(String fingerprints)
+    {
+        return Splitter.on(',').omitEmptyStrings().trimResults().splitToList(fingerprints).stream()
+                .map(Long::parseLong)
+                .collect(toImmutableList());
+    }
+
+    @JsonProperty
+    public TaskId getTaskId()
+    {
+        return taskId;
+    }
+
+    @JsonProperty
+    public Optional<TaskStatus> getTaskStatus()
+    {
+        return taskStatus;
+    }
+
+    @JsonProperty
+    public DateTime getLastHeartbeat()
+    {
+        return lastHeartbeat;
+    }
+
+    @JsonProperty
+    public Optional<OutputBufferInfo> getOutputBuffers()
+    {
+        return outputBuffers;
+    }
+
+    @JsonProperty
+    public Set<PlanNodeId> getNoMoreSplits()
+    {
+        return noMoreSplits;
+    }
+
+    @JsonProperty
+    public Optional<TaskStats> getStats()
+    {
+        return stats;
+    }
+
+    @JsonProperty
+    public Map<Integer, PipelineStats> getPipelines()
+    {
+        return pipelines;
+    }
+
+    @JsonProperty
+    public boolean isNeedsPlan()
+    {
+        return needsPlan;
+    }
+
+    @JsonProperty
+    public MetadataUpdates getMetadataUpdates()
+    {
+        return metadataUpdates;
+    }
+
+    @JsonProperty
+    public Map<String, Domain> getDynamicFilterDomains()
+    {
+        return dynamicFilterDomains;
+    }
+
+    /**
+     * Fingerprints of the parts of the task info, to be sent along with the next request.
+     */
+    @JsonProperty
+    public List<Long> getFingerprints()
+    {
+        return fingerprints;
+    }
+
+    /**
+     * Number of parts omitted from this delta.
+     */
+    @JsonProperty
+    public int getOmittedParts()
+    {
+        return omittedParts;
+    }
+
+    /**
+     * Serialized size of the parts omitted from this delta.
+     */
+    @JsonProperty
+    public long getOmittedBytes()
+    {
+        return omittedBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("taskId", taskId)
+                .add("changedPipelines", pipelines.keySet())
+                .add("omittedParts", omittedParts)
+                .add("omittedBytes", omittedBytes)
+                .toString();
+    }
+}
@@ -14,6 +14,7 @@
 package com.facebook.presto.execution;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.OutputBuffers;
@@ -26,6 +27,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface TaskManager
@@ -148,4 +150,9 @@ public interface TaskManager
      * Update the results of metadata requests sent
      */
     void updateMetadataResults(TaskId taskId, MetadataUpdates metadataUpdates);
+
+    /**
+     * Adds the dynamic filter domains collected by other stages for the probe sides of {@code taskId}.
+     */
+    void updateDynamicFilterDomains(TaskId taskId, Map<String, Domain> dynamicFilterDomains);
 }
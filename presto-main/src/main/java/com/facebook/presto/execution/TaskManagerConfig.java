@@ -66,6 +66,7 @@ public class TaskManagerConfig
 
     private Duration statusRefreshMaxWait = new Duration(1, TimeUnit.SECONDS);
     private Duration infoRefreshMaxWait = new Duration(0, TimeUnit.SECONDS);
+    private boolean infoDeltaEnabled;
 
     private Duration infoUpdateInterval = new Duration(3, TimeUnit.SECONDS);
 
@@ -80,6 +81,8 @@ public class TaskManagerConfig
     private int taskYieldThreads = 3;
 
     private BigDecimal levelTimeMultiplier = new BigDecimal(2.0);
+    private int splitQueueCount = 1;
+    private boolean splitQueuePinningEnabled;
 
     private boolean legacyLifespanCompletionCondition;
     private TaskPriorityTracking taskPriorityTracking = TaskPriorityTracking.TASK_FAIR;
@@ -130,6 +133,19 @@ public class TaskManagerConfig
         return this;
     }
 
+    public boolean isInfoDeltaEnabled()
+    {
+        return infoDeltaEnabled;
+    }
+
+    @Config("task.info-delta-enabled")
+    @ConfigDescription("Fetch only the parts of the task info that changed since the previous update. All workers must support the delta endpoint")
+    public TaskManagerConfig setInfoDeltaEnabled(boolean infoDeltaEnabled)
+    {
+        this.infoDeltaEnabled = infoDeltaEnabled;
+        return this;
+    }
+
     public boolean isPerOperatorCpuTimerEnabled()
     {
         return perOperatorCpuTimerEnabled;
@@ -257,6 +273,33 @@ public class TaskManagerConfig
         return this;
     }
 
+    @Min(1)
+    public int getSplitQueueCount()
+    {
+        return splitQueueCount;
+    }
+
+    @Config("task.split-queue-count")
+    @ConfigDescription("Number of run queues the worker threads are spread over, e.g. one per socket. Idle threads steal splits from the other run queues")
+    public TaskManagerConfig setSplitQueueCount(int splitQueueCount)
+    {
+        this.splitQueueCount = splitQueueCount;
+        return this;
+    }
+
+    public boolean isSplitQueuePinningEnabled()
+    {
+        return splitQueuePinningEnabled;
+    }
+
+    @Config("task.split-queue-pinning-enabled")
+    @ConfigDescription("Keep a split that has started in the run queue of the thread that first ran it")
+    public TaskManagerConfig setSplitQueuePinningEnabled(boolean splitQueuePinningEnabled)
+    {
+        this.splitQueuePinningEnabled = splitQueuePinningEnabled;
+        return this;
+    }
+
     @Min(1)
     public int getMaxWorkerThreads()
     {
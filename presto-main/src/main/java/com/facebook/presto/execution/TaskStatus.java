@@ -60,6 +60,8 @@ public class TaskStatus
 
     private final int queuedPartitionedDrivers;
     private final int runningPartitionedDrivers;
+    private final long queuedPartitionedSplitsWeight;
+    private final long runningPartitionedSplitsWeight;
 
     private final double outputBufferUtilization;
     private final boolean outputBufferOverutilized;
@@ -86,6 +88,8 @@ public class TaskStatus
             @JsonProperty("failures") List<ExecutionFailureInfo> failures,
             @JsonProperty("queuedPartitionedDrivers") int queuedPartitionedDrivers,
             @JsonProperty("runningPartitionedDrivers") int runningPartitionedDrivers,
+            @JsonProperty("queuedPartitionedSplitsWeight") long queuedPartitionedSplitsWeight,
+            @JsonProperty("runningPartitionedSplitsWeight") long runningPartitionedSplitsWeight,
             @JsonProperty("outputBufferUtilization") double outputBufferUtilization,
             @JsonProperty("outputBufferOverutilized") boolean outputBufferOverutilized,
             @JsonProperty("physicalWrittenDataSizeInBytes") long physicalWrittenDataSizeInBytes,
@@ -109,6 +113,12 @@ public class TaskStatus
         checkArgument(runningPartitionedDrivers >= 0, "runningPartitionedDrivers must be positive");
         this.runningPartitionedDrivers = runningPartitionedDrivers;
 
+        checkArgument(queuedPartitionedSplitsWeight >= 0, "queuedPartitionedSplitsWeight must be positive");
+        this.queuedPartitionedSplitsWeight = queuedPartitionedSplitsWeight;
+
+        checkArgument(runningPartitionedSplitsWeight >= 0, "runningPartitionedSplitsWeight must be positive");
+        this.runningPartitionedSplitsWeight = runningPartitionedSplitsWeight;
+
         this.outputBufferUtilization = outputBufferUtilization;
         this.outputBufferOverutilized = outputBufferOverutilized;
 
@@ -243,6 +253,26 @@ public class TaskStatus
         return peakNodeTotalMemoryReservationInBytes;
     }
 
+    /**
+     * The raw {@link com.facebook.presto.spi.SplitWeight} of the partitioned splits queued in the task.
+     */
+    @JsonProperty
+    @ThriftField(18)
+    public long getQueuedPartitionedSplitsWeight()
+    {
+        return queuedPartitionedSplitsWeight;
+    }
+
+    /**
+     * The raw {@link com.facebook.presto.spi.SplitWeight} of the partitioned splits running in the task.
+     */
+    @JsonProperty
+    @ThriftField(19)
+    public long getRunningPartitionedSplitsWeight()
+    {
+        return runningPartitionedSplitsWeight;
+    }
+
     @Override
     public String toString()
     {
@@ -263,6 +293,8 @@ public class TaskStatus
                 ImmutableList.of(),
                 0,
                 0,
+                0,
+                0,
                 0.0,
                 false,
                 0,
@@ -285,6 +317,8 @@ public class TaskStatus
                 exceptions,
                 taskStatus.getQueuedPartitionedDrivers(),
                 taskStatus.getRunningPartitionedDrivers(),
+                taskStatus.getQueuedPartitionedSplitsWeight(),
+                taskStatus.getRunningPartitionedSplitsWeight(),
                 taskStatus.getOutputBufferUtilization(),
                 taskStatus.isOutputBufferOverutilized(),
                 taskStatus.getPhysicalWrittenDataSizeInBytes(),
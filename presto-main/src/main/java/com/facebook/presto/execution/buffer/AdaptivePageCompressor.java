@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.spi.page.PageCompressor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stops compressing once several pages in a row did not shrink enough to be sent compressed, and from then on
+ * only compresses a sample of the pages until one of them shrinks again. A page that is not compressed is
+ * reported to have the same size as its input, so {@link com.facebook.presto.spi.page.PagesSerde} keeps it
+ * uncompressed.
+ */
+@NotThreadSafe
+class AdaptivePageCompressor
+        implements PageCompressor
+{
+    // PagesSerde only keeps pages compressed to at most this fraction of their size
+    private static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    private static final int MAX_INCOMPRESSIBLE_PAGES = 8;
+    private static final int SAMPLE_INTERVAL = 16;
+
+    private final PageCompressor delegate;
+
+    private int incompressiblePages;
+    private int skippedPages;
+
+    AdaptivePageCompressor(PageCompressor delegate)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedSize)
+    {
+        return delegate.maxCompressedLength(uncompressedSize);
+    }
+
+    @Override
+    public int compress(
+            byte[] input,
+            int inputOffset,
+            int inputLength,
+            byte[] output,
+            int outputOffset,
+            int maxOutputLength)
+    {
+        if (incompressiblePages >= MAX_INCOMPRESSIBLE_PAGES && skippedPages < SAMPLE_INTERVAL) {
+            skippedPages++;
+            return inputLength;
+        }
+        skippedPages = 0;
+
+        int compressedLength = delegate.compress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        if (compressedLength > inputLength * MINIMUM_COMPRESSION_RATIO) {
+            incompressiblePages++;
+        }
+        else {
+            incompressiblePages = 0;
+        }
+        return compressedLength;
+    }
+
+    @Override
+    public void compress(ByteBuffer input, ByteBuffer output)
+    {
+        // the caller always expects compressed output here
+        delegate.compress(input, output);
+    }
+}
@@ -31,6 +31,7 @@ import javax.annotation.concurrent.GuardedBy;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -54,6 +55,8 @@ public class LazyOutputBuffer
     private final DataSize maxBufferSize;
     private final Supplier<LocalMemoryContext> systemMemoryContextSupplier;
     private final Executor executor;
+    private final TaskId taskId;
+    private final Optional<SpoolingOutputBufferFactory> spoolingOutputBufferFactory;
 
     @GuardedBy("this")
     private OutputBuffer delegate;
@@ -71,13 +74,25 @@ public class LazyOutputBuffer
             DataSize maxBufferSize,
             Supplier<LocalMemoryContext> systemMemoryContextSupplier)
     {
-        requireNonNull(taskId, "taskId is null");
+        this(taskId, taskInstanceId, executor, maxBufferSize, systemMemoryContextSupplier, Optional.empty());
+    }
+
+    public LazyOutputBuffer(
+            TaskId taskId,
+            String taskInstanceId,
+            Executor executor,
+            DataSize maxBufferSize,
+            Supplier<LocalMemoryContext> systemMemoryContextSupplier,
+            Optional<SpoolingOutputBufferFactory> spoolingOutputBufferFactory)
+    {
+        this.taskId = requireNonNull(taskId, "taskId is null");
         this.taskInstanceId = requireNonNull(taskInstanceId, "taskInstanceId is null");
         this.executor = requireNonNull(executor, "executor is null");
         state = new StateMachine<>(taskId + "-buffer", executor, OPEN, TERMINAL_BUFFER_STATES);
         this.maxBufferSize = requireNonNull(maxBufferSize, "maxBufferSize is null");
         checkArgument(maxBufferSize.toBytes() > 0, "maxBufferSize must be at least 1");
         this.systemMemoryContextSupplier = requireNonNull(systemMemoryContextSupplier, "systemMemoryContextSupplier is null");
+        this.spoolingOutputBufferFactory = requireNonNull(spoolingOutputBufferFactory, "spoolingOutputBufferFactory is null");
     }
 
     @Override
@@ -172,6 +187,10 @@ public class LazyOutputBuffer
                     case DISCARDING:
                         delegate = new DiscardingOutputBuffer(newOutputBuffers, state);
                         break;
+                    case SPOOLING:
+                        checkState(spoolingOutputBufferFactory.isPresent(), "Spooling output buffer is not supported by this worker");
+                        delegate = spoolingOutputBufferFactory.get().create(taskId, taskInstanceId, state, maxBufferSize, systemMemoryContextSupplier, executor);
+                        break;
                 }
 
                 // process pending aborts and reads outside of synchronized lock
@@ -75,6 +75,7 @@ public final class OutputBuffers
         BROADCAST,
         ARBITRARY,
         DISCARDING,
+        SPOOLING,
     }
 
     private final BufferType type;
@@ -0,0 +1,889 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.common.io.DataOutput;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.execution.StateMachine;
+import com.facebook.presto.execution.StateMachine.StateChangeListener;
+import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.page.PageDataOutput;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempDataSink;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.spi.storage.TempStorageHandle;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.units.DataSize;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.facebook.presto.execution.buffer.BufferResult.emptyResults;
+import static com.facebook.presto.execution.buffer.BufferState.FAILED;
+import static com.facebook.presto.execution.buffer.BufferState.FINISHED;
+import static com.facebook.presto.execution.buffer.BufferState.FLUSHING;
+import static com.facebook.presto.execution.buffer.BufferState.NO_MORE_BUFFERS;
+import static com.facebook.presto.execution.buffer.BufferState.NO_MORE_PAGES;
+import static com.facebook.presto.execution.buffer.BufferState.OPEN;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
+import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.addCallback;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A buffer with a single reader that keeps a bounded amount of unacknowledged pages in memory. Once the pages
+ * held in memory exceed the spooling threshold, they are written to a {@link TempStorage} and read back when the
+ * reader asks for them, so a slow reader, such as a client fetching the result of a large query, neither blocks
+ * the producing task nor pins its memory.
+ */
+public class SpoolingOutputBuffer
+        implements OutputBuffer
+{
+    private static final Logger log = Logger.get(SpoolingOutputBuffer.class);
+
+    public static final OutputBufferId OUTPUT_BUFFER_ID = new OutputBufferId(0);
+
+    private final String taskInstanceId;
+    private final StateMachine<BufferState> state;
+    private final OutputBufferMemoryManager memoryManager;
+    private final TempStorage tempStorage;
+    private final TempDataOperationContext tempDataOperationContext;
+    private final long spoolingThresholdInBytes;
+    private final ListeningExecutorService executor;
+
+    @GuardedBy("this")
+    private OutputBuffers outputBuffers = createInitialEmptyOutputBuffers(SPOOLING);
+
+    // pages that are not acknowledged yet, in the order they were added
+    @GuardedBy("this")
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long nextSequenceId;
+    @GuardedBy("this")
+    private boolean noMorePages;
+    @GuardedBy("this")
+    private final List<PendingRead> pendingReads = new ArrayList<>();
+    // the sequence id of the last page of the lifespans whose pages are not all acknowledged yet
+    @GuardedBy("this")
+    private final Map<Lifespan, Long> lastSequenceIdPerLifespan = new HashMap<>();
+
+    private final AtomicLong acknowledgedSequenceId = new AtomicLong();
+    private final AtomicBoolean aborted = new AtomicBoolean();
+    private final AtomicLong totalPagesAdded = new AtomicLong();
+    private final AtomicLong totalRowsAdded = new AtomicLong();
+    private final AtomicLong totalSpooledBytes = new AtomicLong();
+
+    private final Set<Lifespan> noMorePagesForLifespan = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<Lifespan> lifespanCompletionCallback;
+
+    public SpoolingOutputBuffer(
+            String taskInstanceId,
+            StateMachine<BufferState> state,
+            DataSize maxBufferSize,
+            DataSize spoolingThreshold,
+            Supplier<LocalMemoryContext> systemMemoryContextSupplier,
+            Executor notificationExecutor,
+            TempStorage tempStorage,
+            TempDataOperationContext tempDataOperationContext,
+            ListeningExecutorService executor)
+    {
+        this.taskInstanceId = requireNonNull(taskInstanceId, "taskInstanceId is null");
+        this.state = requireNonNull(state, "state is null");
+        requireNonNull(maxBufferSize, "maxBufferSize is null");
+        checkArgument(maxBufferSize.toBytes() > 0, "maxBufferSize must be at least 1");
+        this.memoryManager = new OutputBufferMemoryManager(
+                maxBufferSize.toBytes(),
+                requireNonNull(systemMemoryContextSupplier, "systemMemoryContextSupplier is null"),
+                requireNonNull(notificationExecutor, "notificationExecutor is null"));
+        this.spoolingThresholdInBytes = requireNonNull(spoolingThreshold, "spoolingThreshold is null").toBytes();
+        checkArgument(spoolingThresholdInBytes > 0, "spoolingThreshold must be at least 1");
+        this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
+        this.tempDataOperationContext = requireNonNull(tempDataOperationContext, "tempDataOperationContext is null");
+        this.executor = requireNonNull(executor, "executor is null");
+    }
+
+    @Override
+    public void addStateChangeListener(StateChangeListener<BufferState> stateChangeListener)
+    {
+        state.addStateChangeListener(stateChangeListener);
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return state.get() == FINISHED;
+    }
+
+    @Override
+    public double getUtilization()
+    {
+        return memoryManager.getUtilization();
+    }
+
+    @Override
+    public boolean isOverutilized()
+    {
+        return (memoryManager.getUtilization() >= 0.5) || !state.get().canAddPages();
+    }
+
+    @Override
+    public OutputBufferInfo getInfo()
+    {
+        //
+        // NOTE: this code must be lock free so we do not hang for state machine updates
+        //
+
+        // always get the state first before any other stats
+        BufferState state = this.state.get();
+
+        boolean destroyed = aborted.get() || state == FINISHED;
+        long pagesAdded = totalPagesAdded.get();
+        long pagesSent = acknowledgedSequenceId.get();
+        int bufferedPages = destroyed ? 0 : toIntExact(max(pagesAdded - pagesSent, 0));
+        long bufferedBytes = memoryManager.getBufferedBytes();
+
+        PageBufferInfo pageBufferInfo = new PageBufferInfo(OUTPUT_BUFFER_ID.getId(), bufferedPages, bufferedBytes, totalRowsAdded.get(), pagesAdded);
+        return new OutputBufferInfo(
+                "SPOOLING",
+                state,
+                state.canAddBuffers(),
+                state.canAddPages(),
+                bufferedBytes,
+                bufferedPages,
+                totalRowsAdded.get(),
+                pagesAdded,
+                ImmutableList.of(new BufferInfo(OUTPUT_BUFFER_ID, destroyed, bufferedPages, pagesSent, pageBufferInfo)));
+    }
+
+    @Override
+    public void setOutputBuffers(OutputBuffers newOutputBuffers)
+    {
+        checkState(!Thread.holdsLock(this), "Can not set output buffers while holding a lock on this");
+        requireNonNull(newOutputBuffers, "newOutputBuffers is null");
+
+        synchronized (this) {
+            // ignore buffers added after query finishes, which can happen when a query is canceled
+            // also ignore old versions, which is normal
+            BufferState state = this.state.get();
+            if (state.isTerminal() || outputBuffers.getVersion() >= newOutputBuffers.getVersion()) {
+                return;
+            }
+
+            // verify this is valid state change
+            outputBuffers.checkValidTransition(newOutputBuffers);
+            checkArgument(
+                    newOutputBuffers.getBuffers().keySet().stream().allMatch(OUTPUT_BUFFER_ID::equals),
+                    "Spooling output buffer only supports buffer %s: %s",
+                    OUTPUT_BUFFER_ID,
+                    newOutputBuffers.getBuffers().keySet());
+            outputBuffers = newOutputBuffers;
+
+            // update state if no more buffers is set
+            if (outputBuffers.isNoMoreBufferIds()) {
+                this.state.compareAndSet(OPEN, NO_MORE_BUFFERS);
+                this.state.compareAndSet(NO_MORE_PAGES, FLUSHING);
+            }
+        }
+
+        checkFlushComplete();
+    }
+
+    @Override
+    public ListenableFuture<?> isFull()
+    {
+        return memoryManager.getBufferBlockedFuture();
+    }
+
+    @Override
+    public void registerLifespanCompletionCallback(Consumer<Lifespan> callback)
+    {
+        checkState(lifespanCompletionCallback == null, "lifespanCompletionCallback is already set");
+        this.lifespanCompletionCallback = requireNonNull(callback, "callback is null");
+    }
+
+    @Override
+    public void enqueue(Lifespan lifespan, List<SerializedPage> pages)
+    {
+        checkState(!Thread.holdsLock(this), "Can not enqueue pages while holding a lock on this");
+        requireNonNull(lifespan, "lifespan is null");
+        requireNonNull(pages, "pages is null");
+        checkState(lifespanCompletionCallback != null, "lifespanCompletionCallback must be set before enqueueing data");
+
+        // ignore pages after "no more pages" is set or after the reader is gone
+        // this can happen with a limit query
+        if (!state.get().canAddPages() || aborted.get() || noMorePagesForLifespan.contains(lifespan) || pages.isEmpty()) {
+            return;
+        }
+
+        long bytesAdded = 0;
+        long rowCount = 0;
+        for (SerializedPage page : pages) {
+            bytesAdded += page.getRetainedSizeInBytes();
+            rowCount += page.getPositionCount();
+        }
+
+        Chunk chunkToSpool = null;
+        List<SerializedPage> pagesToSpool = ImmutableList.of();
+        synchronized (this) {
+            Chunk chunk = chunks.peekLast();
+            if (chunk == null || chunk.isSealed()) {
+                chunk = new Chunk(nextSequenceId);
+                chunks.addLast(chunk);
+            }
+            chunk.addPages(pages, bytesAdded);
+            nextSequenceId += pages.size();
+            lastSequenceIdPerLifespan.put(lifespan, nextSequenceId - 1);
+            memoryManager.updateMemoryUsage(bytesAdded);
+
+            if (chunk.getRetainedSizeInBytes() >= spoolingThresholdInBytes) {
+                chunk.seal();
+                // pages the reader has already acknowledged need not be written
+                memoryManager.updateMemoryUsage(-chunk.trim(acknowledgedSequenceId.get()));
+                if (chunk.getPageCount() == 0) {
+                    chunks.remove(chunk);
+                }
+                else {
+                    chunk.setSpooling(true);
+                    chunkToSpool = chunk;
+                    pagesToSpool = chunk.getPages();
+                }
+            }
+        }
+
+        totalRowsAdded.addAndGet(rowCount);
+        totalPagesAdded.addAndGet(pages.size());
+
+        if (chunkToSpool != null) {
+            spool(chunkToSpool, pagesToSpool);
+        }
+        processPendingReads();
+    }
+
+    @Override
+    public void enqueue(Lifespan lifespan, int partition, List<SerializedPage> pages)
+    {
+        checkState(partition == 0, "Expected partition number to be zero");
+        enqueue(lifespan, pages);
+    }
+
+    @Override
+    public ListenableFuture<BufferResult> get(OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
+    {
+        checkState(!Thread.holdsLock(this), "Can not get pages while holding a lock on this");
+        checkBufferId(bufferId);
+        checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
+
+        // a read acknowledges all the pages before it
+        acknowledge(bufferId, startingSequenceId);
+
+        PendingRead pendingRead = new PendingRead(startingSequenceId, maxSize.toBytes());
+        synchronized (this) {
+            pendingReads.add(pendingRead);
+        }
+        processPendingReads();
+        return pendingRead.getFuture();
+    }
+
+    @Override
+    public void acknowledge(OutputBufferId bufferId, long sequenceId)
+    {
+        checkState(!Thread.holdsLock(this), "Can not acknowledge pages while holding a lock on this");
+        checkBufferId(bufferId);
+
+        List<TempStorageHandle> handlesToRemove = new ArrayList<>();
+        List<Lifespan> completedLifespans = new ArrayList<>();
+        synchronized (this) {
+            // ignore old acknowledgements
+            long acknowledged = min(sequenceId, nextSequenceId);
+            if (acknowledged <= acknowledgedSequenceId.get()) {
+                return;
+            }
+            acknowledgedSequenceId.set(acknowledged);
+
+            while (!chunks.isEmpty()) {
+                Chunk chunk = chunks.peekFirst();
+                if (chunk.getEndSequenceId() <= acknowledged) {
+                    chunks.removeFirst();
+                    memoryManager.updateMemoryUsage(-chunk.release());
+                    chunk.getHandle().ifPresent(handlesToRemove::add);
+                    continue;
+                }
+                if (!chunk.isSpooling() && !chunk.getHandle().isPresent()) {
+                    memoryManager.updateMemoryUsage(-chunk.trim(acknowledged));
+                }
+                break;
+            }
+
+            Iterator<Map.Entry<Lifespan, Long>> lifespans = lastSequenceIdPerLifespan.entrySet().iterator();
+            while (lifespans.hasNext()) {
+                Map.Entry<Lifespan, Long> entry = lifespans.next();
+                if (entry.getValue() < acknowledged) {
+                    lifespans.remove();
+                    if (noMorePagesForLifespan.contains(entry.getKey())) {
+                        completedLifespans.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        handlesToRemove.forEach(this::removeSpooledPages);
+        completedLifespans.forEach(lifespanCompletionCallback);
+    }
+
+    @Override
+    public void abort(OutputBufferId bufferId)
+    {
+        checkState(!Thread.holdsLock(this), "Can not abort while holding a lock on this");
+        checkBufferId(bufferId);
+
+        if (aborted.compareAndSet(false, true)) {
+            discardPages();
+            processPendingReads();
+        }
+
+        checkFlushComplete();
+    }
+
+    @Override
+    public void setNoMorePages()
+    {
+        checkState(!Thread.holdsLock(this), "Can not set no more pages while holding a lock on this");
+        state.compareAndSet(OPEN, NO_MORE_PAGES);
+        state.compareAndSet(NO_MORE_BUFFERS, FLUSHING);
+        memoryManager.setNoBlockOnFull();
+
+        synchronized (this) {
+            noMorePages = true;
+        }
+        processPendingReads();
+
+        checkFlushComplete();
+    }
+
+    @Override
+    public void destroy()
+    {
+        checkState(!Thread.holdsLock(this), "Can not destroy while holding a lock on this");
+
+        // ignore destroy if the buffer already in a terminal state.
+        if (state.setIf(FINISHED, oldState -> !oldState.isTerminal())) {
+            memoryManager.setNoBlockOnFull();
+            discardPages();
+            processPendingReads();
+            forceFreeMemory();
+        }
+    }
+
+    @Override
+    public void fail()
+    {
+        // ignore fail if the buffer already in a terminal state.
+        if (state.setIf(FAILED, oldState -> !oldState.isTerminal())) {
+            memoryManager.setNoBlockOnFull();
+            // the pages will never be read, but readers stay blocked. The coordinator manages the teardown of failed queries.
+            discardPages();
+            forceFreeMemory();
+        }
+    }
+
+    @Override
+    public void setNoMorePagesForLifespan(Lifespan lifespan)
+    {
+        requireNonNull(lifespan, "lifespan is null");
+        noMorePagesForLifespan.add(lifespan);
+    }
+
+    @Override
+    public boolean isFinishedForLifespan(Lifespan lifespan)
+    {
+        if (!noMorePagesForLifespan.contains(lifespan)) {
+            return false;
+        }
+        synchronized (this) {
+            return !lastSequenceIdPerLifespan.containsKey(lifespan);
+        }
+    }
+
+    @Override
+    public long getPeakMemoryUsage()
+    {
+        return memoryManager.getPeakMemoryUsage();
+    }
+
+    @VisibleForTesting
+    long getSpooledBytes()
+    {
+        return totalSpooledBytes.get();
+    }
+
+    @VisibleForTesting
+    void forceFreeMemory()
+    {
+        memoryManager.close();
+    }
+
+    private static void checkBufferId(OutputBufferId bufferId)
+    {
+        requireNonNull(bufferId, "bufferId is null");
+        checkArgument(bufferId.equals(OUTPUT_BUFFER_ID), "Spooling output buffer only supports buffer %s: %s", OUTPUT_BUFFER_ID, bufferId);
+    }
+
+    private void checkFlushComplete()
+    {
+        checkState(!Thread.holdsLock(this), "Can not check flush complete while holding a lock on this");
+
+        // the buffer is finished once the reader aborted it, which it does after receiving the final result
+        BufferState state = this.state.get();
+        if ((state == FLUSHING || state == NO_MORE_PAGES) && aborted.get()) {
+            destroy();
+        }
+    }
+
+    private void discardPages()
+    {
+        List<TempStorageHandle> handlesToRemove = new ArrayList<>();
+        synchronized (this) {
+            for (Chunk chunk : chunks) {
+                memoryManager.updateMemoryUsage(-chunk.release());
+                chunk.getHandle().ifPresent(handlesToRemove::add);
+            }
+            chunks.clear();
+        }
+        handlesToRemove.forEach(this::removeSpooledPages);
+    }
+
+    private void processPendingReads()
+    {
+        checkState(!Thread.holdsLock(this), "Can not process pending reads while holding a lock on this");
+
+        Map<PendingRead, BufferResult> completedReads = new HashMap<>();
+        List<Chunk> chunksToLoad = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingRead> iterator = pendingReads.iterator();
+            while (iterator.hasNext()) {
+                PendingRead pendingRead = iterator.next();
+                if (pendingRead.getFuture().isDone()) {
+                    iterator.remove();
+                    continue;
+                }
+                Optional<BufferResult> result = tryRead(pendingRead.getSequenceId(), pendingRead.getMaxSizeInBytes(), chunksToLoad);
+                if (result.isPresent()) {
+                    iterator.remove();
+                    completedReads.put(pendingRead, result.get());
+                }
+            }
+        }
+
+        // complete the reads outside of the lock, as the callbacks may call back into this buffer
+        completedReads.forEach((pendingRead, result) -> pendingRead.getFuture().set(result));
+        chunksToLoad.forEach(this::load);
+    }
+
+    @GuardedBy("this")
+    private Optional<BufferResult> tryRead(long sequenceId, long maxSizeInBytes, List<Chunk> chunksToLoad)
+    {
+        BufferState state = this.state.get();
+        if (state == FAILED) {
+            // readers stay blocked until the query is torn down
+            return Optional.empty();
+        }
+        if (state == FINISHED || aborted.get()) {
+            return Optional.of(emptyResults(taskInstanceId, sequenceId, true));
+        }
+        if (sequenceId < acknowledgedSequenceId.get()) {
+            // the pages were already acknowledged
+            return Optional.of(emptyResults(taskInstanceId, sequenceId, false));
+        }
+        if (sequenceId >= nextSequenceId) {
+            if (noMorePages) {
+                return Optional.of(emptyResults(taskInstanceId, sequenceId, true));
+            }
+            return Optional.empty();
+        }
+
+        for (Chunk chunk : chunks) {
+            if (sequenceId >= chunk.getEndSequenceId()) {
+                continue;
+            }
+            if (!chunk.isInMemory()) {
+                if (!chunk.isLoading()) {
+                    chunk.setLoading(true);
+                    chunksToLoad.add(chunk);
+                }
+                return Optional.empty();
+            }
+
+            List<SerializedPage> pages = chunk.getPages(sequenceId, maxSizeInBytes);
+            return Optional.of(new BufferResult(taskInstanceId, sequenceId, sequenceId + pages.size(), false, pages));
+        }
+        throw new IllegalStateException("No chunk contains page " + sequenceId);
+    }
+
+    private void spool(Chunk chunk, List<SerializedPage> pages)
+    {
+        ListenableFuture<TempStorageHandle> future = executor.submit(() -> writePages(pages));
+        addCallback(future, new FutureCallback<TempStorageHandle>()
+        {
+            @Override
+            public void onSuccess(TempStorageHandle handle)
+            {
+                boolean discarded;
+                synchronized (SpoolingOutputBuffer.this) {
+                    chunk.setSpooling(false);
+                    // the pages may have been acknowledged or discarded while they were written
+                    discarded = !chunks.contains(chunk);
+                    if (!discarded) {
+                        chunk.setHandle(handle);
+                        memoryManager.updateMemoryUsage(-chunk.release());
+                    }
+                }
+                if (discarded) {
+                    removeSpooledPages(handle);
+                }
+                else {
+                    totalSpooledBytes.addAndGet(pages.stream().mapToLong(SerializedPage::getSizeInBytes).sum());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable throwable)
+            {
+                // spooling only frees memory, so keep serving the pages from memory
+                log.warn(throwable, "Failed to spool output pages");
+                synchronized (SpoolingOutputBuffer.this) {
+                    chunk.setSpooling(false);
+                }
+            }
+        }, directExecutor());
+    }
+
+    private TempStorageHandle writePages(List<SerializedPage> pages)
+            throws IOException
+    {
+        TempDataSink dataSink = tempStorage.create(tempDataOperationContext);
+        try {
+            List<DataOutput> outputs = pages.stream()
+                    .map(PageDataOutput::new)
+                    .collect(toImmutableList());
+            dataSink.write(outputs);
+            return dataSink.commit();
+        }
+        catch (IOException | RuntimeException e) {
+            try {
+                dataSink.rollback();
+            }
+            catch (IOException | RuntimeException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            throw e;
+        }
+    }
+
+    private void load(Chunk chunk)
+    {
+        TempStorageHandle handle;
+        synchronized (this) {
+            handle = chunk.getHandle().orElseThrow(() -> new IllegalStateException("chunk is not spooled"));
+        }
+        ListenableFuture<List<SerializedPage>> future = executor.submit(() -> readPages(handle));
+        addCallback(future, new FutureCallback<List<SerializedPage>>()
+        {
+            @Override
+            public void onSuccess(List<SerializedPage> pages)
+            {
+                synchronized (SpoolingOutputBuffer.this) {
+                    chunk.setLoading(false);
+                    if (chunks.contains(chunk)) {
+                        memoryManager.updateMemoryUsage(chunk.load(pages));
+                    }
+                }
+                processPendingReads();
+            }
+
+            @Override
+            public void onFailure(Throwable throwable)
+            {
+                ImmutableList.Builder<PendingRead> failedReads = ImmutableList.builder();
+                synchronized (SpoolingOutputBuffer.this) {
+                    chunk.setLoading(false);
+                    // reads of the pages of other chunks are not affected
+                    Iterator<PendingRead> iterator = pendingReads.iterator();
+                    while (iterator.hasNext()) {
+                        PendingRead pendingRead = iterator.next();
+                        if (chunk.contains(pendingRead.getSequenceId())) {
+                            iterator.remove();
+                            failedReads.add(pendingRead);
+                        }
+                    }
+                }
+                // the reader retries the request, which loads the pages again
+                PrestoException exception = new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to read spooled output pages", throwable);
+                failedReads.build().forEach(pendingRead -> pendingRead.getFuture().setException(exception));
+            }
+        }, directExecutor());
+    }
+
+    private List<SerializedPage> readPages(TempStorageHandle handle)
+            throws IOException
+    {
+        try (InputStream input = tempStorage.open(tempDataOperationContext, handle)) {
+            return ImmutableList.copyOf(readSerializedPages(input));
+        }
+    }
+
+    private void removeSpooledPages(TempStorageHandle handle)
+    {
+        executor.execute(() -> {
+            try {
+                tempStorage.remove(tempDataOperationContext, handle);
+            }
+            catch (IOException | RuntimeException e) {
+                log.warn(e, "Failed to remove spooled output pages");
+            }
+        });
+    }
+
+    /**
+     * A run of consecutive pages. A chunk is filled in memory until it reaches the spooling threshold, at which
+     * point it is sealed and written to the temp storage. The pages of a spooled chunk are loaded back into memory
+     * when the reader gets to them.
+     */
+    private static class Chunk
+    {
+        private long startSequenceId;
+        @Nullable
+        private List<SerializedPage> pages = new ArrayList<>();
+        private int pageCount;
+        private long retainedSizeInBytes;
+        private boolean sealed;
+        private boolean spooling;
+        private boolean loading;
+        @Nullable
+        private TempStorageHandle handle;
+
+        public Chunk(long startSequenceId)
+        {
+            this.startSequenceId = startSequenceId;
+        }
+
+        public long getEndSequenceId()
+        {
+            return startSequenceId + pageCount;
+        }
+
+        public int getPageCount()
+        {
+            return pageCount;
+        }
+
+        public boolean contains(long sequenceId)
+        {
+            return sequenceId >= startSequenceId && sequenceId < getEndSequenceId();
+        }
+
+        public long getRetainedSizeInBytes()
+        {
+            return retainedSizeInBytes;
+        }
+
+        public boolean isSealed()
+        {
+            return sealed;
+        }
+
+        public void seal()
+        {
+            sealed = true;
+        }
+
+        public boolean isSpooling()
+        {
+            return spooling;
+        }
+
+        public void setSpooling(boolean spooling)
+        {
+            this.spooling = spooling;
+        }
+
+        public boolean isLoading()
+        {
+            return loading;
+        }
+
+        public void setLoading(boolean loading)
+        {
+            this.loading = loading;
+        }
+
+        public boolean isInMemory()
+        {
+            return pages != null;
+        }
+
+        public Optional<TempStorageHandle> getHandle()
+        {
+            return Optional.ofNullable(handle);
+        }
+
+        public void setHandle(TempStorageHandle handle)
+        {
+            this.handle = requireNonNull(handle, "handle is null");
+        }
+
+        public List<SerializedPage> getPages()
+        {
+            checkState(pages != null, "pages are not in memory");
+            return ImmutableList.copyOf(pages);
+        }
+
+        public void addPages(List<SerializedPage> newPages, long retainedSizeInBytes)
+        {
+            checkState(!sealed && pages != null, "chunk is sealed");
+            pages.addAll(newPages);
+            pageCount += newPages.size();
+            this.retainedSizeInBytes += retainedSizeInBytes;
+        }
+
+        /**
+         * Returns the pages starting at {@code sequenceId}, up to {@code maxSizeInBytes} but at least one page.
+         */
+        public List<SerializedPage> getPages(long sequenceId, long maxSizeInBytes)
+        {
+            checkState(pages != null, "pages are not in memory");
+            ImmutableList.Builder<SerializedPage> result = ImmutableList.builder();
+            long bytes = 0;
+            for (int index = toIntExact(sequenceId - startSequenceId); index < pages.size(); index++) {
+                SerializedPage page = pages.get(index);
+                bytes += page.getRetainedSizeInBytes();
+                // break (and don't add) if this page would exceed the limit
+                if (index > sequenceId - startSequenceId && bytes > maxSizeInBytes) {
+                    break;
+                }
+                result.add(page);
+            }
+            return result.build();
+        }
+
+        /**
+         * Drops the pages before {@code sequenceId} from a chunk that was never spooled, and returns the memory freed.
+         */
+        public long trim(long sequenceId)
+        {
+            checkState(pages != null && handle == null && !spooling, "only a chunk that was never spooled can be trimmed");
+            int count = toIntExact(min(max(sequenceId - startSequenceId, 0), pageCount));
+            long freed = 0;
+            List<SerializedPage> trimmed = pages.subList(0, count);
+            for (SerializedPage page : trimmed) {
+                freed += page.getRetainedSizeInBytes();
+            }
+            trimmed.clear();
+            startSequenceId += count;
+            pageCount -= count;
+            retainedSizeInBytes -= freed;
+            return freed;
+        }
+
+        /**
+         * Drops the pages held in memory and returns the memory freed.
+         */
+        public long release()
+        {
+            if (pages == null) {
+                return 0;
+            }
+            pages = null;
+            return retainedSizeInBytes;
+        }
+
+        /**
+         * Takes the pages read back from the temp storage and returns the memory they use.
+         */
+        public long load(List<SerializedPage> loadedPages)
+        {
+            checkState(loadedPages.size() == pageCount, "expected %s spooled pages, but read %s", pageCount, loadedPages.size());
+            this.pages = loadedPages;
+            long loadedSizeInBytes = 0;
+            for (SerializedPage page : loadedPages) {
+                loadedSizeInBytes += page.getRetainedSizeInBytes();
+            }
+            this.retainedSizeInBytes = loadedSizeInBytes;
+            return loadedSizeInBytes;
+        }
+    }
+
+    private static class PendingRead
+    {
+        private final long sequenceId;
+        private final long maxSizeInBytes;
+        private final SettableFuture<BufferResult> future = SettableFuture.create();
+
+        public PendingRead(long sequenceId, long maxSizeInBytes)
+        {
+            this.sequenceId = sequenceId;
+            this.maxSizeInBytes = maxSizeInBytes;
+        }
+
+        public long getSequenceId()
+        {
+            return sequenceId;
+        }
+
+        public long getMaxSizeInBytes()
+        {
+            return maxSizeInBytes;
+        }
+
+        public SettableFuture<BufferResult> getFuture()
+        {
+            return future;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.execution.StateMachine;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.facebook.presto.storage.TempStorageManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.units.DataSize;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+public class SpoolingOutputBufferFactory
+{
+    private final TempStorageManager tempStorageManager;
+    private final String tempStorageName;
+    private final DataSize spoolingThreshold;
+    private final ListeningExecutorService executor;
+
+    private volatile TempStorage tempStorage;
+
+    @Inject
+    public SpoolingOutputBufferFactory(FeaturesConfig featuresConfig, TempStorageManager tempStorageManager)
+    {
+        this(
+                tempStorageManager,
+                requireNonNull(featuresConfig, "featuresConfig is null").getSpoolingOutputBufferTempStorage(),
+                featuresConfig.getSpoolingOutputBufferThreshold(),
+                listeningDecorator(newFixedThreadPool(featuresConfig.getSpillerThreads(), daemonThreadsNamed("spooling-output-buffer-%s"))));
+    }
+
+    @VisibleForTesting
+    SpoolingOutputBufferFactory(
+            TempStorageManager tempStorageManager,
+            String tempStorageName,
+            DataSize spoolingThreshold,
+            ListeningExecutorService executor)
+    {
+        this.tempStorageManager = requireNonNull(tempStorageManager, "tempStorageManager is null");
+        this.tempStorageName = requireNonNull(tempStorageName, "tempStorageName is null");
+        this.spoolingThreshold = requireNonNull(spoolingThreshold, "spoolingThreshold is null");
+        this.executor = requireNonNull(executor, "executor is null");
+    }
+
+    @PreDestroy
+    public void destroy()
+    {
+        executor.shutdownNow();
+    }
+
+    public SpoolingOutputBuffer create(
+            TaskId taskId,
+            String taskInstanceId,
+            StateMachine<BufferState> state,
+            DataSize maxBufferSize,
+            Supplier<LocalMemoryContext> systemMemoryContextSupplier,
+            Executor notificationExecutor)
+    {
+        if (tempStorage == null) {
+            initialize();
+        }
+
+        return new SpoolingOutputBuffer(
+                taskInstanceId,
+                state,
+                maxBufferSize,
+                spoolingThreshold,
+                systemMemoryContextSupplier,
+                notificationExecutor,
+                tempStorage,
+                new TempDataOperationContext(Optional.empty(), Optional.empty(), taskId.getQueryId().toString(), Optional.empty()),
+                executor);
+    }
+
+    private synchronized void initialize()
+    {
+        if (this.tempStorage != null) {
+            return;
+        }
+
+        TempStorage tempStorage = tempStorageManager.getTempStorage(tempStorageName);
+        try {
+            tempStorage.initialize();
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to initialize temp storage", e);
+        }
+
+        this.tempStorage = tempStorage;
+    }
+}
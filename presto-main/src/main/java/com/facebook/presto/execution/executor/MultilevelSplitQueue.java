@@ -26,60 +26,89 @@ import javax.inject.Inject;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Waiting splits are kept in one or more run queues, each with its own lock. A runner thread takes splits from
+ * its own run queue and steals from the other run queues when its own is empty. A split that is put back after
+ * running is returned to the run queue of the thread that ran it, so it keeps running close to the memory it
+ * allocated. When splits are pinned, a split that has started is never stolen, and only splits that have not run
+ * yet move between run queues.
+ * <p>
+ * The scheduled time of the levels is shared between the run queues, so every run queue selects levels against
+ * the same targets.
+ */
 @ThreadSafe
 public class MultilevelSplitQueue
 {
     static final int[] LEVEL_THRESHOLD_SECONDS = {0, 1, 10, 60, 300};
     static final long LEVEL_CONTRIBUTION_CAP = SECONDS.toNanos(30);
 
-    @GuardedBy("lock")
-    private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits;
+    private final RunQueue[] runQueues;
+    private final boolean pinSplits;
+    private final AtomicInteger nextRunQueue = new AtomicInteger();
 
     private final AtomicLong[] levelScheduledTime = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
+    private final AtomicInteger[] levelWaitingSplitCount = new AtomicInteger[LEVEL_THRESHOLD_SECONDS.length];
 
     private final AtomicLong[] levelMinPriority;
     private final List<CounterStat> selectedLevelCounters;
-
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition notEmpty = lock.newCondition();
+    private final CounterStat stolenSplits = new CounterStat();
 
     private final double levelTimeMultiplier;
 
     @Inject
     public MultilevelSplitQueue(TaskManagerConfig taskManagerConfig)
     {
-        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue());
+        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue(), taskManagerConfig.getSplitQueueCount(), taskManagerConfig.isSplitQueuePinningEnabled());
     }
 
     public MultilevelSplitQueue(double levelTimeMultiplier)
     {
+        this(levelTimeMultiplier, 1, false);
+    }
+
+    public MultilevelSplitQueue(double levelTimeMultiplier, int runQueueCount, boolean pinSplits)
+    {
+        checkArgument(runQueueCount > 0, "runQueueCount must be at least 1");
         this.levelMinPriority = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
-        this.levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
         ImmutableList.Builder<CounterStat> counters = ImmutableList.builder();
 
         for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
             levelScheduledTime[i] = new AtomicLong();
+            levelWaitingSplitCount[i] = new AtomicInteger();
             levelMinPriority[i] = new AtomicLong(-1);
-            levelWaitingSplits.add(new PriorityQueue<>());
             counters.add(new CounterStat());
         }
 
         this.selectedLevelCounters = counters.build();
 
+        this.runQueues = new RunQueue[runQueueCount];
+        for (int i = 0; i < runQueueCount; i++) {
+            runQueues[i] = new RunQueue();
+        }
+        this.pinSplits = pinSplits;
+
         this.levelTimeMultiplier = levelTimeMultiplier;
     }
 
+    public int getRunQueueCount()
+    {
+        return runQueues.length;
+    }
+
     private void addLevelTime(int level, long nanos)
     {
         levelScheduledTime[level].addAndGet(nanos);
@@ -101,9 +130,16 @@ public class MultilevelSplitQueue
 
         split.setReady();
         int level = split.getPriority().getLevel();
-        lock.lock();
+        int queue = split.getRunQueue();
+        if (queue < 0) {
+            // splits that have not run yet are spread over the run queues
+            queue = Math.floorMod(nextRunQueue.getAndIncrement(), runQueues.length);
+        }
+
+        RunQueue runQueue = runQueues[queue];
+        runQueue.lock.lock();
         try {
-            if (levelWaitingSplits.get(level).isEmpty()) {
+            if (levelWaitingSplitCount[level].getAndIncrement() == 0) {
                 // Accesses to levelScheduledTime are not synchronized, so we have a data race
                 // here - our level time math will be off. However, the staleness is bounded by
                 // the fact that only running splits that complete during this computation
@@ -114,38 +150,145 @@ public class MultilevelSplitQueue
                 levelScheduledTime[level].addAndGet(delta);
             }
 
-            levelWaitingSplits.get(level).offer(split);
-            notEmpty.signal();
+            runQueue.levelWaitingSplits.get(level).offer(split);
+            runQueue.size.incrementAndGet();
+            runQueue.notEmpty.signal();
         }
         finally {
-            lock.unlock();
+            runQueue.lock.unlock();
+        }
+
+        if (runQueues.length > 1 && runQueue.idleRunners.get() == 0) {
+            // every runner of the run queue is busy, so wake up an idle runner of another run queue to steal the split
+            signalIdleRunner(queue);
         }
     }
 
     public PrioritizedSplitRunner take()
             throws InterruptedException
     {
+        return take(0);
+    }
+
+    /**
+     * Takes a split from the given run queue, or from another run queue if the given one is empty.
+     * Blocks until a split is available.
+     */
+    public PrioritizedSplitRunner take(int queue)
+            throws InterruptedException
+    {
+        checkArgument(queue >= 0 && queue < runQueues.length, "invalid run queue: %s", queue);
         while (true) {
-            lock.lockInterruptibly();
-            try {
-                PrioritizedSplitRunner result;
-                while ((result = pollSplit()) == null) {
-                    notEmpty.await();
+            PrioritizedSplitRunner result = awaitSplit(queue);
+            if (!pinSplits || result.getRunQueue() < 0) {
+                result.setRunQueue(queue);
+            }
+
+            if (result.updateLevelPriority()) {
+                offer(result);
+                continue;
+            }
+
+            int selectedLevel = result.getPriority().getLevel();
+            levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
+            selectedLevelCounters.get(selectedLevel).update(1);
+
+            return result;
+        }
+    }
+
+    private PrioritizedSplitRunner awaitSplit(int queue)
+            throws InterruptedException
+    {
+        RunQueue runQueue = runQueues[queue];
+        // whether this thread is counted as an idle runner of the run queue and has already looked for a split to steal
+        boolean idle = false;
+        try {
+            while (true) {
+                runQueue.lock.lockInterruptibly();
+                try {
+                    PrioritizedSplitRunner result = pollSplit(runQueue);
+                    if (result != null) {
+                        return result;
+                    }
+
+                    if (runQueues.length == 1) {
+                        runQueue.notEmpty.await();
+                        continue;
+                    }
+
+                    if (idle) {
+                        // a split offered to another run queue after this thread looked at it sets the flag
+                        if (!runQueue.stealSignaled) {
+                            runQueue.notEmpty.await();
+                        }
+                        runQueue.stealSignaled = false;
+                        runQueue.idleRunners.decrementAndGet();
+                        idle = false;
+                        continue;
+                    }
+
+                    // register as idle before looking at the other run queues, so that a split offered
+                    // to them from now on either is seen below or signals this run queue
+                    runQueue.idleRunners.incrementAndGet();
+                    idle = true;
+                }
+                finally {
+                    runQueue.lock.unlock();
                 }
 
-                if (result.updateLevelPriority()) {
-                    offer(result);
-                    continue;
+                PrioritizedSplitRunner result = steal(queue);
+                if (result != null) {
+                    return result;
                 }
+            }
+        }
+        finally {
+            if (idle) {
+                runQueue.idleRunners.decrementAndGet();
+            }
+        }
+    }
 
-                int selectedLevel = result.getPriority().getLevel();
-                levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
-                selectedLevelCounters.get(selectedLevel).update(1);
+    private PrioritizedSplitRunner steal(int queue)
+    {
+        for (int i = 1; i < runQueues.length; i++) {
+            RunQueue victim = runQueues[(queue + i) % runQueues.length];
+            if (victim.size.get() == 0) {
+                continue;
+            }
 
-                return result;
+            PrioritizedSplitRunner result;
+            victim.lock.lock();
+            try {
+                result = pinSplits ? pollUnpinnedSplit(victim) : pollSplit(victim);
             }
             finally {
-                lock.unlock();
+                victim.lock.unlock();
+            }
+
+            if (result != null) {
+                stolenSplits.update(1);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private void signalIdleRunner(int queue)
+    {
+        for (int i = 1; i < runQueues.length; i++) {
+            RunQueue runQueue = runQueues[(queue + i) % runQueues.length];
+            if (runQueue.idleRunners.get() > 0) {
+                runQueue.lock.lock();
+                try {
+                    runQueue.stealSignaled = true;
+                    runQueue.notEmpty.signal();
+                }
+                finally {
+                    runQueue.lock.unlock();
+                }
+                return;
             }
         }
     }
@@ -158,14 +301,56 @@ public class MultilevelSplitQueue
      * with the objective of minimizing deviation from the target scheduled time. From this level,
      * we pick the split with the lowest priority.
      */
-    @GuardedBy("lock")
-    private PrioritizedSplitRunner pollSplit()
+    private PrioritizedSplitRunner pollSplit(RunQueue runQueue)
+    {
+        checkState(runQueue.lock.isHeldByCurrentThread(), "run queue lock is not held");
+        int selectedLevel = selectLevel(level -> !runQueue.levelWaitingSplits.get(level).isEmpty());
+        if (selectedLevel == -1) {
+            return null;
+        }
+
+        PrioritizedSplitRunner result = runQueue.levelWaitingSplits.get(selectedLevel).poll();
+        checkState(result != null, "pollSplit cannot return null");
+        removed(runQueue, selectedLevel, 1);
+
+        return result;
+    }
+
+    /**
+     * Same as {@link #pollSplit} but only considers the splits that have not run yet. This scans the waiting
+     * splits, which is acceptable as it only happens when the runners of another run queue are idle.
+     */
+    private PrioritizedSplitRunner pollUnpinnedSplit(RunQueue runQueue)
+    {
+        checkState(runQueue.lock.isHeldByCurrentThread(), "run queue lock is not held");
+        PrioritizedSplitRunner[] candidates = new PrioritizedSplitRunner[LEVEL_THRESHOLD_SECONDS.length];
+        for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+            for (PrioritizedSplitRunner split : runQueue.levelWaitingSplits.get(level)) {
+                if (split.getRunQueue() < 0 && (candidates[level] == null || split.compareTo(candidates[level]) < 0)) {
+                    candidates[level] = split;
+                }
+            }
+        }
+
+        int selectedLevel = selectLevel(level -> candidates[level] != null);
+        if (selectedLevel == -1) {
+            return null;
+        }
+
+        PrioritizedSplitRunner result = candidates[selectedLevel];
+        checkState(runQueue.levelWaitingSplits.get(selectedLevel).remove(result), "split is not in the run queue");
+        removed(runQueue, selectedLevel, 1);
+
+        return result;
+    }
+
+    private int selectLevel(IntPredicate hasWaitingSplits)
     {
         long targetScheduledTime = getLevel0TargetTime();
         double worstRatio = 1;
         int selectedLevel = -1;
         for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
-            if (!levelWaitingSplits.get(level).isEmpty()) {
+            if (hasWaitingSplits.test(level)) {
                 long levelTime = levelScheduledTime[level].get();
                 double ratio = levelTime == 0 ? 0 : targetScheduledTime / (1.0 * levelTime);
                 if (selectedLevel == -1 || ratio > worstRatio) {
@@ -176,18 +361,9 @@ public class MultilevelSplitQueue
 
             targetScheduledTime /= levelTimeMultiplier;
         }
-
-        if (selectedLevel == -1) {
-            return null;
-        }
-
-        PrioritizedSplitRunner result = levelWaitingSplits.get(selectedLevel).poll();
-        checkState(result != null, "pollSplit cannot return null");
-
-        return result;
+        return selectedLevel;
     }
 
-    @GuardedBy("lock")
     private long getLevel0TargetTime()
     {
         long level0TargetTime = levelScheduledTime[0].get();
@@ -202,6 +378,12 @@ public class MultilevelSplitQueue
         return level0TargetTime;
     }
 
+    private void removed(RunQueue runQueue, int level, int count)
+    {
+        levelWaitingSplitCount[level].addAndGet(-count);
+        runQueue.size.addAndGet(-count);
+    }
+
     /**
      * Presto 'charges' the quanta run time to the task <i>and</i> the level it belongs to in
      * an effort to maintain the target thread utilization ratios between levels and to
@@ -247,27 +429,41 @@ public class MultilevelSplitQueue
     public void remove(PrioritizedSplitRunner split)
     {
         checkArgument(split != null, "split is null");
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.remove(split);
+        for (RunQueue runQueue : runQueues) {
+            runQueue.lock.lock();
+            try {
+                for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                    if (runQueue.levelWaitingSplits.get(level).remove(split)) {
+                        removed(runQueue, level, 1);
+                    }
+                }
+            }
+            finally {
+                runQueue.lock.unlock();
             }
-        }
-        finally {
-            lock.unlock();
         }
     }
 
     public void removeAll(Collection<PrioritizedSplitRunner> splits)
     {
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.removeAll(splits);
+        for (RunQueue runQueue : runQueues) {
+            runQueue.lock.lock();
+            try {
+                for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                    PriorityQueue<PrioritizedSplitRunner> waitingSplits = runQueue.levelWaitingSplits.get(level);
+                    int removedCount = 0;
+                    for (Iterator<PrioritizedSplitRunner> iterator = waitingSplits.iterator(); iterator.hasNext(); ) {
+                        if (splits.contains(iterator.next())) {
+                            iterator.remove();
+                            removedCount++;
+                        }
+                    }
+                    removed(runQueue, level, removedCount);
+                }
+            }
+            finally {
+                runQueue.lock.unlock();
             }
-        }
-        finally {
-            lock.unlock();
         }
     }
 
@@ -279,17 +475,11 @@ public class MultilevelSplitQueue
 
     public int size()
     {
-        lock.lock();
-        try {
-            int total = 0;
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                total += level.size();
-            }
-            return total;
-        }
-        finally {
-            lock.unlock();
+        int total = 0;
+        for (AtomicInteger count : levelWaitingSplitCount) {
+            total += count.get();
         }
+        return total;
     }
 
     public static int computeLevel(long threadUsageNanos)
@@ -310,6 +500,12 @@ public class MultilevelSplitQueue
         return levelScheduledTime[level].longValue();
     }
 
+    @VisibleForTesting
+    int getRunQueueSize(int queue)
+    {
+        return runQueues[queue].size.get();
+    }
+
     @Managed
     public long getLevel0Time()
     {
@@ -374,4 +570,33 @@ public class MultilevelSplitQueue
     {
         return selectedLevelCounters.get(4);
     }
+
+    @Managed
+    @Nested
+    public CounterStat getStolenSplits()
+    {
+        return stolenSplits;
+    }
+
+    private static class RunQueue
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+
+        @GuardedBy("lock")
+        private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
+        // updated with the lock held, but read without it
+        private final AtomicInteger size = new AtomicInteger();
+
+        private final AtomicInteger idleRunners = new AtomicInteger();
+        @GuardedBy("lock")
+        private boolean stealSignaled;
+
+        private RunQueue()
+        {
+            for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                levelWaitingSplits.add(new PriorityQueue<>());
+            }
+        }
+    }
 }
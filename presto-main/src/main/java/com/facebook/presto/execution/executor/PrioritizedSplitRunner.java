@@ -65,6 +65,9 @@ public class PrioritizedSplitRunner
     private final AtomicLong cpuTimeNanos = new AtomicLong();
     private final AtomicLong processCalls = new AtomicLong();
 
+    // run queue of the thread that last ran the split, or -1 if the split has not run yet
+    private volatile int runQueue = -1;
+
     private final CounterStat globalCpuTimeMicros;
     private final CounterStat globalScheduledTimeMicros;
 
@@ -194,6 +197,16 @@ public class PrioritizedSplitRunner
         lastReady.set(ticker.read());
     }
 
+    int getRunQueue()
+    {
+        return runQueue;
+    }
+
+    void setRunQueue(int runQueue)
+    {
+        this.runQueue = runQueue;
+    }
+
     /**
      * Updates the (potentially stale) priority value cached in this object.
      * This should be called when this object is outside the queue.
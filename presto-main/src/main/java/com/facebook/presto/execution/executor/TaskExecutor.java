@@ -234,6 +234,7 @@ public class TaskExecutor
         checkArgument(guaranteedNumberOfDriversPerTask > 0, "guaranteedNumberOfDriversPerTask must be at least 1");
         checkArgument(maximumNumberOfDriversPerTask > 0, "maximumNumberOfDriversPerTask must be at least 1");
         checkArgument(guaranteedNumberOfDriversPerTask <= maximumNumberOfDriversPerTask, "guaranteedNumberOfDriversPerTask cannot be greater than maximumNumberOfDriversPerTask");
+        checkArgument(requireNonNull(splitQueue, "splitQueue is null").getRunQueueCount() <= runnerThreads, "splitQueue cannot have more run queues than there are runnerThreads");
 
         // we manage thread pool size directly, so create an unlimited pool
         this.executor = newCachedThreadPool(threadsNamed("task-processor-%s"));
@@ -270,7 +271,7 @@ public class TaskExecutor
     {
         checkState(!closed, "TaskExecutor is closed");
         for (int i = 0; i < runnerThreads; i++) {
-            addRunnerThread();
+            addRunnerThread(i % waitingSplits.getRunQueueCount());
         }
     }
 
@@ -295,10 +296,10 @@ public class TaskExecutor
                 .toString();
     }
 
-    private synchronized void addRunnerThread()
+    private synchronized void addRunnerThread(int runQueue)
     {
         try {
-            executor.execute(embedVersion.embedVersion(new TaskRunner()));
+            executor.execute(embedVersion.embedVersion(new TaskRunner(runQueue)));
         }
         catch (RejectedExecutionException ignored) {
         }
@@ -518,6 +519,12 @@ public class TaskExecutor
             implements Runnable
     {
         private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
+        private final int runQueue;
+
+        private TaskRunner(int runQueue)
+        {
+            this.runQueue = runQueue;
+        }
 
         @Override
         public void run()
@@ -527,7 +534,7 @@ public class TaskExecutor
                     // select next worker
                     final PrioritizedSplitRunner split;
                     try {
-                        split = waitingSplits.take();
+                        split = waitingSplits.take(runQueue);
                     }
                     catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
@@ -585,8 +592,9 @@ public class TaskExecutor
             }
             finally {
                 // unless we have been closed, we need to replace this thread
+                // on the same run queue, as splits pinned to the queue are only run by its threads
                 if (!closed) {
-                    addRunnerThread();
+                    addRunnerThread(runQueue);
                 }
             }
         }
@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.execution.RemoteTask;
+import com.facebook.presto.execution.SqlStageExecution;
+import com.facebook.presto.execution.StageExecutionState;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher;
+import com.facebook.presto.sql.planner.plan.AbstractJoinNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.facebook.presto.execution.StageExecutionState.FINISHED;
+import static com.facebook.presto.execution.StageExecutionState.PLANNED;
+import static com.facebook.presto.execution.StageExecutionState.SCHEDULING;
+import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Merges the dynamic filters of the joins of a stage whose probe sides are scanned by other stages.
+ * Each task of the stage only sees its own part of the build side, so the domain of a filter is the
+ * union of the domains collected by all the tasks, and it is only sent to the probe sides once every
+ * task has collected it.
+ */
+@ThreadSafe
+public class DistributedDynamicFilters
+{
+    private final Set<String> filterIds;
+    private final int maxDiscreteValues;
+    private final Consumer<Map<String, Domain>> domainsConsumer;
+
+    @GuardedBy("this")
+    private final Map<TaskId, Map<String, Domain>> taskDomains = new HashMap<>();
+    @GuardedBy("this")
+    private Optional<Set<TaskId>> allTasks = Optional.empty();
+    @GuardedBy("this")
+    private final Set<String> mergedFilterIds = new HashSet<>();
+
+    public DistributedDynamicFilters(Set<String> filterIds, int maxDiscreteValues, Consumer<Map<String, Domain>> domainsConsumer)
+    {
+        this.filterIds = ImmutableSet.copyOf(requireNonNull(filterIds, "filterIds is null"));
+        checkArgument(maxDiscreteValues >= 0, "maxDiscreteValues is negative");
+        this.maxDiscreteValues = maxDiscreteValues;
+        this.domainsConsumer = requireNonNull(domainsConsumer, "domainsConsumer is null");
+    }
+
+    /**
+     * Links the stages of a streaming section that build the lookup sources of joins to the stages that scan the
+     * probe sides of the joins, when they are different.
+     */
+    public static void linkStages(List<SqlStageExecution> stages, int maxDiscreteValues)
+    {
+        Map<SqlStageExecution, Set<String>> consumedFilterIds = new HashMap<>();
+        for (SqlStageExecution stage : stages) {
+            consumedFilterIds.put(stage, getConsumedFilterIds(stage.getFragment().getRoot()));
+        }
+
+        for (SqlStageExecution producer : stages) {
+            // the filters consumed by the stage itself are handled by the local dynamic filters of its tasks
+            Set<String> producedFilterIds = ImmutableSet.copyOf(Sets.difference(getProducedFilterIds(producer.getFragment().getRoot()), consumedFilterIds.get(producer)));
+            List<SqlStageExecution> consumers = stages.stream()
+                    .filter(stage -> stage != producer)
+                    .filter(stage -> !Sets.intersection(consumedFilterIds.get(stage), producedFilterIds).isEmpty())
+                    .collect(toImmutableList());
+            if (consumers.isEmpty()) {
+                continue;
+            }
+
+            DistributedDynamicFilters filters = new DistributedDynamicFilters(producedFilterIds, maxDiscreteValues, domains -> {
+                for (SqlStageExecution consumer : consumers) {
+                    Set<String> consumerFilterIds = consumedFilterIds.get(consumer);
+                    Map<String, Domain> consumerDomains = ImmutableMap.copyOf(Maps.filterKeys(domains, consumerFilterIds::contains));
+                    if (!consumerDomains.isEmpty()) {
+                        consumer.addDynamicFilterDomains(consumerDomains);
+                    }
+                }
+            });
+            producer.addDynamicFilterDomainsListener(filters::addTaskDomains);
+            producer.addStateChangeListener(state -> {
+                if (isTaskSchedulingFinished(state)) {
+                    filters.noMoreTasks(producer.getAllTasks().stream()
+                            .map(RemoteTask::getTaskId)
+                            .collect(toImmutableSet()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Records the domains collected so far by a task of the stage.
+     */
+    public void addTaskDomains(TaskId taskId, Map<String, Domain> domains)
+    {
+        requireNonNull(taskId, "taskId is null");
+        requireNonNull(domains, "domains is null");
+
+        Map<String, Domain> mergedDomains;
+        synchronized (this) {
+            taskDomains.put(taskId, ImmutableMap.copyOf(domains));
+            mergedDomains = mergeCompletedFilters();
+        }
+        if (!mergedDomains.isEmpty()) {
+            domainsConsumer.accept(mergedDomains);
+        }
+    }
+
+    /**
+     * Records the tasks of the stage, once no more tasks are scheduled.
+     */
+    public void noMoreTasks(Set<TaskId> tasks)
+    {
+        requireNonNull(tasks, "tasks is null");
+
+        Map<String, Domain> mergedDomains;
+        synchronized (this) {
+            if (allTasks.isPresent()) {
+                return;
+            }
+            allTasks = Optional.of(ImmutableSet.copyOf(tasks));
+            mergedDomains = mergeCompletedFilters();
+        }
+        if (!mergedDomains.isEmpty()) {
+            domainsConsumer.accept(mergedDomains);
+        }
+    }
+
+    @GuardedBy("this")
+    private Map<String, Domain> mergeCompletedFilters()
+    {
+        if (!allTasks.isPresent() || allTasks.get().isEmpty()) {
+            return ImmutableMap.of();
+        }
+
+        ImmutableMap.Builder<String, Domain> mergedDomains = ImmutableMap.builder();
+        for (String filterId : filterIds) {
+            if (mergedFilterIds.contains(filterId)) {
+                continue;
+            }
+
+            ImmutableList.Builder<Domain> domains = ImmutableList.builder();
+            boolean complete = true;
+            for (TaskId taskId : allTasks.get()) {
+                Domain domain = taskDomains.getOrDefault(taskId, ImmutableMap.of()).get(filterId);
+                if (domain == null) {
+                    complete = false;
+                    break;
+                }
+                domains.add(domain);
+            }
+            if (complete) {
+                mergedFilterIds.add(filterId);
+                mergedDomains.put(filterId, simplify(Domain.union(domains.build()), maxDiscreteValues));
+            }
+        }
+        return mergedDomains.build();
+    }
+
+    /**
+     * Bounds the size of a merged domain, which is sent to every task of the probe sides. The domain collected
+     * by each task is bounded already, but the union over all of them is not.
+     */
+    private static Domain simplify(Domain domain, int maxDiscreteValues)
+    {
+        ValueSet values = domain.getValues();
+        ValueSet simplifiedValues = values.getValuesProcessor().transform(
+                ranges -> ranges.getRangeCount() <= maxDiscreteValues ? values : ValueSet.ofRanges(ranges.getSpan()),
+                discreteValues -> discreteValues.getValues().size() <= maxDiscreteValues ? values : ValueSet.all(values.getType()),
+                allOrNone -> values);
+        return Domain.create(simplifiedValues, domain.isNullAllowed());
+    }
+
+    private static boolean isTaskSchedulingFinished(StageExecutionState state)
+    {
+        if (state.isDone()) {
+            return state == FINISHED;
+        }
+        return state != PLANNED && state != SCHEDULING;
+    }
+
+    private static Set<String> getProducedFilterIds(PlanNode root)
+    {
+        return PlanNodeSearcher.searchFrom(root)
+                .where(AbstractJoinNode.class::isInstance)
+                .<AbstractJoinNode>findAll()
+                .stream()
+                .flatMap(join -> join.getDynamicFilters().keySet().stream())
+                .collect(toImmutableSet());
+    }
+
+    private static Set<String> getConsumedFilterIds(PlanNode root)
+    {
+        return PlanNodeSearcher.searchFrom(root)
+                .where(node -> node instanceof FilterNode && ((FilterNode) node).getSource() instanceof TableScanNode)
+                .<FilterNode>findAll()
+                .stream()
+                .flatMap(filter -> extractDynamicFilters(filter.getPredicate()).getDynamicConjuncts().stream())
+                .map(DynamicFilterPlaceholder::getId)
+                .collect(toImmutableSet());
+    }
+}
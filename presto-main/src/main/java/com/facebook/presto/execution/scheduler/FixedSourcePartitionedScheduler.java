@@ -41,11 +41,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
@@ -55,8 +57,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
 
 public class FixedSourcePartitionedScheduler
         implements StageScheduler
@@ -74,6 +78,11 @@ public class FixedSourcePartitionedScheduler
 
     private final Queue<Integer> tasksToRecover = new ConcurrentLinkedQueue<>();
 
+    // present when the driver groups of slow tasks are executed speculatively on other tasks
+    private final Optional<DynamicLifespanScheduler> speculativeLifespanScheduler;
+    private final OptionalDouble speculativeExecutionSlowTaskThreshold;
+    private final Consumer<TaskId> speculatedTaskCanceler;
+
     @GuardedBy("this")
     private boolean closed;
 
@@ -87,13 +96,17 @@ public class FixedSourcePartitionedScheduler
             int splitBatchSize,
             OptionalInt concurrentLifespansPerTask,
             NodeSelector nodeSelector,
-            List<ConnectorPartitionHandle> partitionHandles)
+            List<ConnectorPartitionHandle> partitionHandles,
+            OptionalDouble speculativeExecutionSlowTaskThreshold,
+            Consumer<TaskId> speculatedTaskCanceler)
     {
         requireNonNull(stage, "stage is null");
         requireNonNull(splitSources, "splitSources is null");
         requireNonNull(bucketNodeMap, "bucketNodeMap is null");
         checkArgument(!requireNonNull(nodes, "nodes is null").isEmpty(), "nodes is empty");
         requireNonNull(partitionHandles, "partitionHandles is null");
+        this.speculativeExecutionSlowTaskThreshold = requireNonNull(speculativeExecutionSlowTaskThreshold, "speculativeExecutionSlowTaskThreshold is null");
+        this.speculatedTaskCanceler = requireNonNull(speculatedTaskCanceler, "speculatedTaskCanceler is null");
 
         this.stage = stage;
         this.nodes = ImmutableList.copyOf(nodes);
@@ -118,6 +131,7 @@ public class FixedSourcePartitionedScheduler
 
         boolean firstPlanNode = true;
         Optional<LifespanScheduler> groupedLifespanScheduler = Optional.empty();
+        Optional<DynamicLifespanScheduler> speculativeLifespanScheduler = Optional.empty();
         for (PlanNodeId planNodeId : schedulingOrder) {
             SplitSource splitSource = splitSources.get(planNodeId);
             boolean groupedExecutionForScanNode = stageExecutionDescriptor.isScanGroupedExecution(planNodeId);
@@ -147,7 +161,11 @@ public class FixedSourcePartitionedScheduler
                         //
                         // When the stage has no remote source, any scan is grouped execution guarantees
                         // all scan is grouped execution.
-                        lifespanScheduler = new DynamicLifespanScheduler(bucketNodeMap, nodes, partitionHandles, concurrentLifespansPerTask);
+                        DynamicLifespanScheduler dynamicLifespanScheduler = new DynamicLifespanScheduler(bucketNodeMap, nodes, partitionHandles, concurrentLifespansPerTask);
+                        if (speculativeExecutionSlowTaskThreshold.isPresent()) {
+                            speculativeLifespanScheduler = Optional.of(dynamicLifespanScheduler);
+                        }
+                        lifespanScheduler = dynamicLifespanScheduler;
                     }
                     else {
                         lifespanScheduler = new FixedLifespanScheduler(bucketNodeMap, partitionHandles, concurrentLifespansPerTask);
@@ -156,12 +174,21 @@ public class FixedSourcePartitionedScheduler
                     // Schedule the first few lifespans
                     lifespanScheduler.scheduleInitial(sourceScheduler);
                     // Schedule new lifespans for finished ones
-                    stage.addCompletedDriverGroupsChangedListener(lifespanScheduler::onLifespanExecutionFinished);
+                    if (speculativeLifespanScheduler.isPresent()) {
+                        // the driver groups of a task must be told apart from their speculative copies
+                        DynamicLifespanScheduler dynamicLifespanScheduler = speculativeLifespanScheduler.get();
+                        stage.addTaskCompletedDriverGroupsChangedListener((taskId, lifespans) ->
+                                stage.recordSpeculativeWins(dynamicLifespanScheduler.onLifespanExecutionFinished(taskId.getId(), lifespans)));
+                    }
+                    else {
+                        stage.addCompletedDriverGroupsChangedListener(lifespanScheduler::onLifespanExecutionFinished);
+                    }
                     groupedLifespanScheduler = Optional.of(lifespanScheduler);
                 }
             }
         }
         this.groupedLifespanScheduler = groupedLifespanScheduler;
+        this.speculativeLifespanScheduler = speculativeLifespanScheduler;
 
         // use a CopyOnWriteArrayList to prevent ConcurrentModificationExceptions
         // if close() is called while the main thread is in the scheduling loop
@@ -206,7 +233,24 @@ public class FixedSourcePartitionedScheduler
                 groupedLifespanScheduler.get().onTaskFailed(tasksToRecover.poll(), sourceSchedulers);
             }
 
-            if (groupedLifespanScheduler.get().allLifespanExecutionFinished()) {
+            boolean allLifespanExecutionFinished = groupedLifespanScheduler.get().allLifespanExecutionFinished();
+            if (speculativeLifespanScheduler.isPresent()) {
+                DynamicLifespanScheduler lifespanScheduler = speculativeLifespanScheduler.get();
+                if (!allLifespanExecutionFinished) {
+                    stage.recordSpeculativeAttempts(lifespanScheduler.speculateSlowTasks(sourceSchedulers, speculativeExecutionSlowTaskThreshold.getAsDouble()));
+                }
+                // The last lifespans of a slow task can finish on their speculative copies, so the slow task
+                // is canceled even after all lifespans have finished.
+                cancelObsoleteSpeculatedTasks(lifespanScheduler);
+                if (allLifespanExecutionFinished && lifespanScheduler.hasSpeculatedTasks()) {
+                    // The scheduling loop polls blocked stages periodically, which retries the cancellation of the
+                    // slow tasks whose output has not been consumed yet. The other attempt of a lifespan finishing
+                    // wakes it up as well.
+                    blocked.add(lifespanScheduler.whenDriverGroupFinished());
+                }
+            }
+
+            if (allLifespanExecutionFinished) {
                 for (SourceScheduler sourceScheduler : sourceSchedulers) {
                     sourceScheduler.notifyAllLifespansFinishedExecution();
                 }
@@ -252,6 +296,10 @@ public class FixedSourcePartitionedScheduler
                 }
 
                 driverGroupsToStart = sourceScheduler.drainCompletelyScheduledLifespans();
+                if (!schedulerIterator.hasNext() && speculativeLifespanScheduler.isPresent()) {
+                    // the driver groups have been completely scheduled on all sources
+                    speculativeLifespanScheduler.get().onLifespansCompletelyScheduled(driverGroupsToStart);
+                }
 
                 if (schedule.isFinished()) {
                     stage.schedulingComplete(sourceScheduler.getPlanNodeId());
@@ -262,11 +310,13 @@ public class FixedSourcePartitionedScheduler
             }
         }
 
-        if (allBlocked) {
-            return ScheduleResult.blocked(sourceSchedulers.isEmpty(), newTasks, whenAnyComplete(blocked), blockedReason, splitsScheduled);
+        // scheduling is not finished until the slow tasks are canceled, so that they are not waited for
+        boolean finished = sourceSchedulers.isEmpty() && !(speculativeLifespanScheduler.isPresent() && speculativeLifespanScheduler.get().hasSpeculatedTasks());
+        if (allBlocked && !finished) {
+            return ScheduleResult.blocked(finished, newTasks, whenAnyComplete(blocked), blockedReason, splitsScheduled);
         }
         else {
-            return ScheduleResult.nonBlocked(sourceSchedulers.isEmpty(), newTasks, splitsScheduled);
+            return ScheduleResult.nonBlocked(finished, newTasks, splitsScheduled);
         }
     }
 
@@ -275,6 +325,21 @@ public class FixedSourcePartitionedScheduler
         tasksToRecover.add(taskId.getId());
     }
 
+    private void cancelObsoleteSpeculatedTasks(DynamicLifespanScheduler lifespanScheduler)
+    {
+        // Cancel the slow tasks once all their driver groups finished somewhere, and their output has been consumed.
+        // The output of the driver groups they finished before being considered slow must not be lost.
+        Map<Integer, RemoteTask> tasks = stage.getAllTasks().stream()
+                .collect(toImmutableMap(task -> task.getTaskId().getId(), identity()));
+        for (int taskId : lifespanScheduler.getObsoleteSpeculatedTasks()) {
+            RemoteTask task = tasks.get(taskId);
+            if (task != null && task.getTaskStatus().getOutputBufferUtilization() == 0) {
+                lifespanScheduler.onSpeculatedTaskCanceled(taskId);
+                speculatedTaskCanceler.accept(task.getTaskId());
+            }
+        }
+    }
+
     @Override
     public synchronized void close()
     {
@@ -73,6 +73,7 @@ import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
 import static com.facebook.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static com.facebook.presto.SystemSessionProperties.getMaxConcurrentMaterializations;
 import static com.facebook.presto.SystemSessionProperties.isRuntimeOptimizerEnabled;
+import static com.facebook.presto.SystemSessionProperties.isSpoolingOutputBufferEnabled;
 import static com.facebook.presto.execution.BasicStageExecutionStats.aggregateBasicStageStats;
 import static com.facebook.presto.execution.StageExecutionState.ABORTED;
 import static com.facebook.presto.execution.StageExecutionState.CANCELED;
@@ -82,6 +83,7 @@ import static com.facebook.presto.execution.StageExecutionState.PLANNED;
 import static com.facebook.presto.execution.StageExecutionState.RUNNING;
 import static com.facebook.presto.execution.StageExecutionState.SCHEDULED;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BROADCAST_PARTITION_ID;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createDiscardingOutputBuffers;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
 import static com.facebook.presto.execution.scheduler.StreamingPlanSection.extractStreamingSections;
@@ -618,7 +620,7 @@ public class LegacySqlQueryScheduler
         ExchangeLocationsConsumer locationsConsumer;
         if (isRootFragment(sectionRootFragment)) {
             bucketToPartition = Optional.of(new int[1]);
-            outputBuffers = createInitialEmptyOutputBuffers(sectionRootFragment.getPartitioningScheme().getPartitioning().getHandle())
+            outputBuffers = (isSpoolingOutputBufferEnabled(session) ? createInitialEmptyOutputBuffers(SPOOLING) : createInitialEmptyOutputBuffers(sectionRootFragment.getPartitioningScheme().getPartitioning().getHandle()))
                     .withBuffer(new OutputBufferId(0), BROADCAST_PARTITION_ID)
                     .withNoMoreBufferIds();
             OutputBufferId rootBufferId = getOnlyElement(outputBuffers.getBuffers().keySet());
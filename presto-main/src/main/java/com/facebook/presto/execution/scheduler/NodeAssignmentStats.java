@@ -16,6 +16,7 @@ package com.facebook.presto.execution.scheduler;
 import com.facebook.presto.execution.NodeTaskMap;
 import com.facebook.presto.execution.RemoteTask;
 import com.facebook.presto.metadata.InternalNode;
+import com.facebook.presto.spi.SplitWeight;
 
 import java.util.HashMap;
 import java.util.List;
@@ -27,36 +28,36 @@ import static java.util.Objects.requireNonNull;
 public final class NodeAssignmentStats
 {
     private final NodeTaskMap nodeTaskMap;
-    private final Map<InternalNode, Integer> assignmentCount = new HashMap<>();
-    private final Map<InternalNode, Integer> splitCountByNode = new HashMap<>();
-    private final Map<String, Integer> queuedSplitCountByNode = new HashMap<>();
+    private final Map<InternalNode, Long> assignmentWeight = new HashMap<>();
+    private final Map<InternalNode, Long> splitsWeightByNode = new HashMap<>();
+    private final Map<String, Long> queuedSplitsWeightByNode = new HashMap<>();
 
     public NodeAssignmentStats(NodeTaskMap nodeTaskMap, NodeMap nodeMap, List<RemoteTask> existingTasks)
     {
         this.nodeTaskMap = requireNonNull(nodeTaskMap, "nodeTaskMap is null");
 
-        // pre-populate the assignment counts with zeros. This makes getOrDefault() faster
+        // pre-populate the assignment weights with zeros. This makes getOrDefault() faster
         for (InternalNode node : nodeMap.getNodesByHostAndPort().values()) {
-            assignmentCount.put(node, 0);
+            assignmentWeight.put(node, 0L);
         }
 
         for (RemoteTask task : existingTasks) {
-            checkArgument(queuedSplitCountByNode.put(task.getNodeId(), task.getQueuedPartitionedSplitCount()) == null, "A single stage may not have multiple tasks running on the same node");
+            checkArgument(queuedSplitsWeightByNode.put(task.getNodeId(), task.getQueuedPartitionedSplitsWeight()) == null, "A single stage may not have multiple tasks running on the same node");
         }
     }
 
-    public int getTotalSplitCount(InternalNode node)
+    public long getTotalSplitsWeight(InternalNode node)
     {
-        return assignmentCount.getOrDefault(node, 0) + splitCountByNode.computeIfAbsent(node, nodeTaskMap::getPartitionedSplitsOnNode);
+        return assignmentWeight.getOrDefault(node, 0L) + splitsWeightByNode.computeIfAbsent(node, nodeTaskMap::getPartitionedSplitsWeightOnNode);
     }
 
-    public int getQueuedSplitCountForStage(InternalNode node)
+    public long getQueuedSplitsWeightForStage(InternalNode node)
     {
-        return queuedSplitCountByNode.getOrDefault(node.getNodeIdentifier(), 0) + assignmentCount.getOrDefault(node, 0);
+        return queuedSplitsWeightByNode.getOrDefault(node.getNodeIdentifier(), 0L) + assignmentWeight.getOrDefault(node, 0L);
     }
 
-    public void addAssignedSplit(InternalNode node)
+    public void addAssignedSplit(InternalNode node, SplitWeight splitWeight)
     {
-        assignmentCount.merge(node, 1, (x, y) -> x + y);
+        assignmentWeight.merge(node, splitWeight.getRawValue(), Long::sum);
     }
 }
@@ -0,0 +1,291 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.cost.StatsAndCosts;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.spi.ConnectorTableHandle;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.Partitioning;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static com.facebook.presto.operator.StageExecutionDescriptor.ungroupedExecution;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
+import static com.facebook.presto.sql.planner.SchedulingOrderVisitor.scheduleOrder;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_BROADCAST_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.VariablesExtractor.extractOutputVariables;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.facebook.presto.sql.planner.plan.ChildReplacer.replaceChildren;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.REPLICATE;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.planPrinter.PlanPrinter.jsonFragmentPlan;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Turns a partitioned join into a broadcast join once the actual size of its inputs is known. This applies to a
+ * fragment that reads both sides of the join from materialized exchanges: when the exchange the build side reads
+ * turns out to be small, the build side is moved to a new fragment that is broadcast to every task of the join,
+ * and the probe side is scanned with source distribution instead of by bucket.
+ * <p>
+ * The opposite direction is not handled, as the build side of a broadcast join is never materialized, so its
+ * size is unknown until the join is running.
+ */
+public class RuntimeJoinDistributionRewriter
+{
+    private final Session session;
+    private final FunctionAndTypeManager functionAndTypeManager;
+    private final PlanNodeIdAllocator idAllocator;
+    private final DataSize maxBuildSize;
+
+    public RuntimeJoinDistributionRewriter(Session session, FunctionAndTypeManager functionAndTypeManager, PlanNodeIdAllocator idAllocator, DataSize maxBuildSize)
+    {
+        this.session = requireNonNull(session, "session is null");
+        this.functionAndTypeManager = requireNonNull(functionAndTypeManager, "functionAndTypeManager is null");
+        this.idAllocator = requireNonNull(idAllocator, "idAllocator is null");
+        this.maxBuildSize = requireNonNull(maxBuildSize, "maxBuildSize is null");
+    }
+
+    /**
+     * @param exchangeSizes the size of the materialized exchanges written so far, by the handle of their temporary table
+     * @param fragmentIdAllocator provides the id of the build fragment, only called when the join is rewritten
+     */
+    public Optional<Result> rewrite(PlanFragment fragment, Map<ConnectorTableHandle, ExchangeSize> exchangeSizes, Supplier<PlanFragmentId> fragmentIdAllocator)
+    {
+        // the tasks of a fragment that reads a remote exchange can't switch to source distribution
+        if (!fragment.getRemoteSourceNodes().isEmpty() || !fragment.getPartitioning().getConnectorId().isPresent()) {
+            return Optional.empty();
+        }
+
+        List<JoinNode> joins = searchFrom(fragment.getRoot())
+                .where(JoinNode.class::isInstance)
+                .findAll();
+        if (joins.size() != 1) {
+            return Optional.empty();
+        }
+        JoinNode join = joins.get(0);
+        if (!join.getDistributionType().equals(Optional.of(PARTITIONED))
+                || (join.getType() != INNER && join.getType() != LEFT)
+                || join.getCriteria().isEmpty()) {
+            return Optional.empty();
+        }
+
+        // every node above the join must produce the same result no matter how the rows are spread over the tasks
+        boolean partitioningIndependent = !searchFrom(fragment.getRoot())
+                .where(node -> node != join && !isPartitioningIndependent(node))
+                .recurseOnlyWhen(node -> node != join)
+                .matches();
+        if (!partitioningIndependent) {
+            return Optional.empty();
+        }
+
+        Optional<TableScanNode> probeScan = getOnlyScan(join.getLeft());
+        Optional<TableScanNode> buildScan = getOnlyScan(join.getRight());
+        if (!probeScan.isPresent() || !buildScan.isPresent()) {
+            return Optional.empty();
+        }
+        ExchangeSize probeSize = exchangeSizes.get(probeScan.get().getTable().getConnectorHandle());
+        ExchangeSize buildSize = exchangeSizes.get(buildScan.get().getTable().getConnectorHandle());
+        if (probeSize == null || buildSize == null) {
+            return Optional.empty();
+        }
+        if (buildSize.getDataSize().compareTo(maxBuildSize) > 0 || buildSize.getDataSize().compareTo(probeSize.getDataSize()) > 0) {
+            return Optional.empty();
+        }
+
+        // keep the local exchange of the build side in the join fragment, so the build keeps its parallelism
+        PlanNode buildRoot = join.getRight();
+        if (buildRoot instanceof ExchangeNode && buildRoot.getSources().size() == 1) {
+            buildRoot = buildRoot.getSources().get(0);
+        }
+        PlanFragmentId buildFragmentId = fragmentIdAllocator.get();
+        PlanFragment buildFragment = createFragment(
+                buildFragmentId,
+                buildRoot,
+                new PartitioningScheme(Partitioning.create(FIXED_BROADCAST_DISTRIBUTION, ImmutableList.of()), buildRoot.getOutputVariables()),
+                false,
+                fragment.getStatsAndCosts());
+
+        RemoteSourceNode remoteSource = new RemoteSourceNode(idAllocator.getNextId(), buildFragmentId, buildRoot.getOutputVariables(), false, Optional.empty(), REPLICATE);
+        PlanNode build = buildRoot == join.getRight() ? remoteSource : replaceChildren(join.getRight(), ImmutableList.of(remoteSource));
+        JoinNode broadcastJoin = new JoinNode(
+                join.getId(),
+                join.getType(),
+                join.getLeft(),
+                build,
+                join.getCriteria(),
+                join.getOutputVariables(),
+                join.getFilter(),
+                join.getLeftHashVariable(),
+                join.getRightHashVariable(),
+                Optional.of(REPLICATED),
+                join.getDynamicFilters());
+        PlanNode probeRoot = searchFrom(fragment.getRoot())
+                .where(node -> node == join)
+                .replaceAll(broadcastJoin);
+        PlanFragment probeFragment = createFragment(fragment.getId(), probeRoot, fragment.getPartitioningScheme(), fragment.isOutputTableWriterFragment(), fragment.getStatsAndCosts());
+
+        return Optional.of(new Result(probeFragment, buildFragment, join.getId(), probeSize, buildSize));
+    }
+
+    private PlanFragment createFragment(PlanFragmentId id, PlanNode root, PartitioningScheme partitioningScheme, boolean outputTableWriterFragment, StatsAndCosts statsAndCosts)
+    {
+        Set<VariableReferenceExpression> variables = extractOutputVariables(root);
+        return new PlanFragment(
+                id,
+                root,
+                variables,
+                SOURCE_DISTRIBUTION,
+                scheduleOrder(root),
+                partitioningScheme,
+                ungroupedExecution(),
+                outputTableWriterFragment,
+                statsAndCosts.getForSubplan(root),
+                Optional.of(jsonFragmentPlan(root, variables, functionAndTypeManager, session)));
+    }
+
+    private static Optional<TableScanNode> getOnlyScan(PlanNode joinSide)
+    {
+        boolean supported = !searchFrom(joinSide)
+                .where(node -> !(node instanceof TableScanNode) && !(node instanceof ProjectNode) && !(node instanceof FilterNode) && !isLocalExchange(node))
+                .matches();
+        if (!supported) {
+            return Optional.empty();
+        }
+        List<TableScanNode> scans = searchFrom(joinSide)
+                .where(TableScanNode.class::isInstance)
+                .findAll();
+        if (scans.size() != 1) {
+            return Optional.empty();
+        }
+        return Optional.of(scans.get(0));
+    }
+
+    private static boolean isPartitioningIndependent(PlanNode node)
+    {
+        return node instanceof ProjectNode
+                || node instanceof FilterNode
+                || isLocalExchange(node)
+                || (node instanceof AggregationNode && ((AggregationNode) node).getStep() == PARTIAL);
+    }
+
+    private static boolean isLocalExchange(PlanNode node)
+    {
+        return node instanceof ExchangeNode && ((ExchangeNode) node).getScope() == LOCAL;
+    }
+
+    public static class ExchangeSize
+    {
+        private final long rows;
+        private final DataSize dataSize;
+
+        public ExchangeSize(long rows, DataSize dataSize)
+        {
+            checkArgument(rows >= 0, "rows is negative");
+            this.rows = rows;
+            this.dataSize = requireNonNull(dataSize, "dataSize is null");
+        }
+
+        public long getRows()
+        {
+            return rows;
+        }
+
+        public DataSize getDataSize()
+        {
+            return dataSize;
+        }
+
+        @Override
+        public String toString()
+        {
+            return rows + " rows (" + dataSize.convertToMostSuccinctDataSize() + ")";
+        }
+    }
+
+    public static class Result
+    {
+        private final PlanFragment probeFragment;
+        private final PlanFragment buildFragment;
+        private final PlanNodeId joinId;
+        private final ExchangeSize probeSize;
+        private final ExchangeSize buildSize;
+
+        private Result(PlanFragment probeFragment, PlanFragment buildFragment, PlanNodeId joinId, ExchangeSize probeSize, ExchangeSize buildSize)
+        {
+            this.probeFragment = requireNonNull(probeFragment, "probeFragment is null");
+            this.buildFragment = requireNonNull(buildFragment, "buildFragment is null");
+            this.joinId = requireNonNull(joinId, "joinId is null");
+            this.probeSize = requireNonNull(probeSize, "probeSize is null");
+            this.buildSize = requireNonNull(buildSize, "buildSize is null");
+        }
+
+        /**
+         * The rewritten join fragment, which keeps the id of the original fragment.
+         */
+        public PlanFragment getProbeFragment()
+        {
+            return probeFragment;
+        }
+
+        /**
+         * The new fragment that broadcasts the build side, a child of the probe fragment.
+         */
+        public PlanFragment getBuildFragment()
+        {
+            return buildFragment;
+        }
+
+        public PlanNodeId getJoinId()
+        {
+            return joinId;
+        }
+
+        public ExchangeSize getProbeSize()
+        {
+            return probeSize;
+        }
+
+        public ExchangeSize getBuildSize()
+        {
+            return buildSize;
+        }
+    }
+}
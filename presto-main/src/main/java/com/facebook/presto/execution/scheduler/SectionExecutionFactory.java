@@ -56,6 +56,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -64,10 +65,15 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static com.facebook.presto.SystemSessionProperties.getConcurrentLifespansPerNode;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getMaxTasksPerStage;
+import static com.facebook.presto.SystemSessionProperties.getSpeculativeExecutionSlowTaskThreshold;
 import static com.facebook.presto.SystemSessionProperties.getWriterMinSize;
+import static com.facebook.presto.SystemSessionProperties.isEnableDistributedDynamicFiltering;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedScaleWriterProducerBuffer;
+import static com.facebook.presto.SystemSessionProperties.isSpeculativeExecutionEnabled;
 import static com.facebook.presto.execution.SqlStageExecution.createSqlStageExecution;
+import static com.facebook.presto.execution.scheduler.DistributedDynamicFilters.linkStages;
 import static com.facebook.presto.execution.scheduler.SourcePartitionedScheduler.newSourcePartitionedSchedulerAsStageScheduler;
 import static com.facebook.presto.execution.scheduler.TableWriteInfo.createTableWriteInfo;
 import static com.facebook.presto.spi.ConnectorId.isInternalSystemConnector;
@@ -175,6 +181,12 @@ public class SectionExecutionFactory
                 remoteTaskFactory,
                 splitSourceFactory,
                 attemptId);
+        if (isEnableDistributedDynamicFiltering(session)) {
+            List<SqlStageExecution> stageExecutions = sectionStages.stream()
+                    .map(StageExecutionAndScheduler::getStageExecution)
+                    .collect(toImmutableList());
+            linkStages(stageExecutions, getDynamicFilteringMaxPerDriverRowCount(session));
+        }
         StageExecutionAndScheduler rootStage = getLast(sectionStages);
         rootStage.getStageExecution().setOutputBuffers(outputBuffers);
         return new SectionExecution(rootStage, sectionStages);
@@ -359,6 +371,10 @@ public class SectionExecutionFactory
                     bucketNodeMap = nodePartitionMap.asBucketNodeMap();
                 }
 
+                OptionalDouble speculativeExecutionSlowTaskThreshold = OptionalDouble.empty();
+                if (plan.getFragment().getStageExecutionDescriptor().isRecoverableGroupedExecution() && isSpeculativeExecutionEnabled(session)) {
+                    speculativeExecutionSlowTaskThreshold = OptionalDouble.of(getSpeculativeExecutionSlowTaskThreshold(session));
+                }
                 FixedSourcePartitionedScheduler fixedSourcePartitionedScheduler = new FixedSourcePartitionedScheduler(
                         stageExecution,
                         splitSources,
@@ -369,7 +385,14 @@ public class SectionExecutionFactory
                         splitBatchSize,
                         getConcurrentLifespansPerNode(session),
                         nodeScheduler.createNodeSelector(connectorId),
-                        connectorPartitionHandles);
+                        connectorPartitionHandles,
+                        speculativeExecutionSlowTaskThreshold,
+                        taskId -> {
+                            checkArgument(parentStageExecution.isPresent(), "Parent stage execution must exist");
+                            // the output of the task is no longer needed, the parent must not wait for it
+                            parentStageExecution.get().removeRemoteSourceIfSingleTaskStage(taskId);
+                            stageExecution.cancelSpeculatedTask(taskId);
+                        });
                 if (plan.getFragment().getStageExecutionDescriptor().isRecoverableGroupedExecution()) {
                     stageExecution.registerStageTaskRecoveryCallback(taskId -> {
                         checkArgument(taskId.getStageExecutionId().getStageId().equals(stageId), "The task did not execute this stage");
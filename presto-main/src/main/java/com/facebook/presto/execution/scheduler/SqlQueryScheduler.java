@@ -32,10 +32,15 @@ import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.scheduler.RuntimeJoinDistributionRewriter.ExchangeSize;
 import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.InternalNodeManager;
 import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.operator.OperatorStats;
+import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.PrestoWarning;
+import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.spi.WarningCollector;
 import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
@@ -46,6 +51,8 @@ import com.facebook.presto.sql.planner.SplitSourceFactory;
 import com.facebook.presto.sql.planner.SubPlan;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.TableWriterNode;
+import com.facebook.presto.sql.planner.plan.TableWriterNode.InsertReference;
 import com.facebook.presto.sql.planner.sanity.PlanChecker;
 import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
@@ -81,7 +88,10 @@ import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
 import static com.facebook.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static com.facebook.presto.SystemSessionProperties.getMaxConcurrentMaterializations;
 import static com.facebook.presto.SystemSessionProperties.getMaxStageRetries;
+import static com.facebook.presto.SystemSessionProperties.getRuntimeBroadcastJoinMaxBuildSize;
+import static com.facebook.presto.SystemSessionProperties.isRuntimeJoinDistributionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isRuntimeOptimizerEnabled;
+import static com.facebook.presto.SystemSessionProperties.isSpoolingOutputBufferEnabled;
 import static com.facebook.presto.execution.BasicStageExecutionStats.aggregateBasicStageStats;
 import static com.facebook.presto.execution.SqlStageExecution.RECOVERABLE_ERROR_CODES;
 import static com.facebook.presto.execution.StageExecutionInfo.unscheduledExecutionInfo;
@@ -91,12 +101,15 @@ import static com.facebook.presto.execution.StageExecutionState.FINISHED;
 import static com.facebook.presto.execution.StageExecutionState.RUNNING;
 import static com.facebook.presto.execution.StageExecutionState.SCHEDULED;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BROADCAST_PARTITION_ID;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createDiscardingOutputBuffers;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
 import static com.facebook.presto.execution.scheduler.StreamingPlanSection.extractStreamingSections;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.facebook.presto.spi.StandardWarningCode.PERFORMANCE_WARNING;
 import static com.facebook.presto.sql.planner.PlanFragmenter.ROOT_FRAGMENT_ID;
 import static com.facebook.presto.sql.planner.SchedulingOrderVisitor.scheduleOrder;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
 import static com.facebook.presto.sql.planner.planPrinter.PlanPrinter.jsonFragmentPlan;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
@@ -136,6 +149,9 @@ public class SqlQueryScheduler
     private final PlanNodeIdAllocator idAllocator;
     private final PlanVariableAllocator variableAllocator;
     private final Set<StageId> runtimeOptimizedStages = Collections.synchronizedSet(new HashSet<>());
+    // fragments created at runtime keep their id when the section is retried
+    private final Map<PlanFragmentId, PlanFragmentId> broadcastBuildFragmentIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextFragmentId;
     private final PlanChecker planChecker;
     private final Metadata metadata;
     private final SqlParser sqlParser;
@@ -239,6 +255,10 @@ public class SqlQueryScheduler
         this.sqlParser = requireNonNull(sqlParser, "sqlParser is null");
         this.plan.compareAndSet(null, requireNonNull(plan, "plan is null"));
         this.sectionedPlan = extractStreamingSections(plan);
+        this.nextFragmentId = new AtomicInteger(stream(forTree(SubPlan::getChildren).depthFirstPreOrder(plan))
+                .mapToInt(subPlan -> subPlan.getFragment().getId().getId())
+                .max()
+                .getAsInt() + 1);
         this.summarizeTaskInfo = summarizeTaskInfo;
         this.maxConcurrentMaterializations = getMaxConcurrentMaterializations(session);
         this.maxStageRetries = getMaxStageRetries(session);
@@ -436,20 +456,28 @@ public class SqlQueryScheduler
     private StreamingPlanSection tryCostBasedOptimize(StreamingPlanSection section)
     {
         // no need to do runtime optimization if no materialized exchange data is utilized by the section.
-        if (!isRuntimeOptimizerEnabled(session) || section.getChildren().isEmpty()) {
+        if ((!isRuntimeOptimizerEnabled(session) && !isRuntimeJoinDistributionEnabled(session)) || section.getChildren().isEmpty()) {
             return section;
         }
 
         // Apply runtime optimization on each StreamingSubPlan's fragment
         Map<PlanFragment, PlanFragment> oldToNewFragment = new HashMap<>();
-        stream(forTree(StreamingSubPlan::getChildren).depthFirstPreOrder(section.getPlan()))
-                .forEach(currentSubPlan -> {
-                    Optional<PlanFragment> newPlanFragment = performRuntimeOptimizations(currentSubPlan);
-                    if (newPlanFragment.isPresent()) {
-                        planChecker.validatePlanFragment(newPlanFragment.get().getRoot(), session, metadata, sqlParser, variableAllocator.getTypes(), warningCollector);
-                        oldToNewFragment.put(currentSubPlan.getFragment(), newPlanFragment.get());
-                    }
-                });
+        if (isRuntimeOptimizerEnabled(session)) {
+            stream(forTree(StreamingSubPlan::getChildren).depthFirstPreOrder(section.getPlan()))
+                    .forEach(currentSubPlan -> {
+                        Optional<PlanFragment> newPlanFragment = performRuntimeOptimizations(currentSubPlan);
+                        if (newPlanFragment.isPresent()) {
+                            planChecker.validatePlanFragment(newPlanFragment.get().getRoot(), session, metadata, sqlParser, variableAllocator.getTypes(), warningCollector);
+                            oldToNewFragment.put(currentSubPlan.getFragment(), newPlanFragment.get());
+                        }
+                    });
+        }
+
+        // New child fragments, by the fragment they are added to
+        Map<PlanFragment, PlanFragment> addedFragments = new HashMap<>();
+        if (isRuntimeJoinDistributionEnabled(session)) {
+            switchJoinsToBroadcast(section, oldToNewFragment, addedFragments);
+        }
 
         // Early exit when no stage's fragment is changed
         if (oldToNewFragment.isEmpty()) {
@@ -459,13 +487,85 @@ public class SqlQueryScheduler
         oldToNewFragment.forEach((oldFragment, newFragment) -> runtimeOptimizedStages.add(getStageId(oldFragment.getId())));
 
         // Update SubPlan so that getStageInfo will reflect the latest optimized plan when query is finished.
-        updatePlan(oldToNewFragment);
+        updatePlan(oldToNewFragment, addedFragments);
 
         log.debug("Invoked CBO during runtime, optimized stage IDs: " + oldToNewFragment.keySet().stream()
                 .map(PlanFragment::getId)
                 .map(PlanFragmentId::toString)
                 .collect(Collectors.joining(", ")));
-        return new StreamingPlanSection(rewriteStreamingSubPlan(section.getPlan(), oldToNewFragment), section.getChildren());
+        return new StreamingPlanSection(rewriteStreamingSubPlan(section.getPlan(), oldToNewFragment, addedFragments), section.getChildren());
+    }
+
+    private void switchJoinsToBroadcast(StreamingPlanSection section, Map<PlanFragment, PlanFragment> oldToNewFragment, Map<PlanFragment, PlanFragment> addedFragments)
+    {
+        Map<ConnectorTableHandle, ExchangeSize> exchangeSizes = getMaterializedExchangeSizes(section);
+        RuntimeJoinDistributionRewriter rewriter = new RuntimeJoinDistributionRewriter(session, functionAndTypeManager, idAllocator, getRuntimeBroadcastJoinMaxBuildSize(session));
+        stream(forTree(StreamingSubPlan::getChildren).depthFirstPreOrder(section.getPlan()))
+                .forEach(currentSubPlan -> {
+                    PlanFragment fragment = oldToNewFragment.getOrDefault(currentSubPlan.getFragment(), currentSubPlan.getFragment());
+                    Optional<RuntimeJoinDistributionRewriter.Result> result = rewriter.rewrite(
+                            fragment,
+                            exchangeSizes,
+                            () -> broadcastBuildFragmentIds.computeIfAbsent(fragment.getId(), id -> new PlanFragmentId(nextFragmentId.getAndIncrement())));
+                    if (!result.isPresent()) {
+                        return;
+                    }
+                    PlanFragment probeFragment = result.get().getProbeFragment();
+                    PlanFragment buildFragment = result.get().getBuildFragment();
+                    planChecker.validatePlanFragment(probeFragment.getRoot(), session, metadata, sqlParser, variableAllocator.getTypes(), warningCollector);
+                    planChecker.validatePlanFragment(buildFragment.getRoot(), session, metadata, sqlParser, variableAllocator.getTypes(), warningCollector);
+                    oldToNewFragment.put(currentSubPlan.getFragment(), probeFragment);
+                    addedFragments.put(currentSubPlan.getFragment(), buildFragment);
+
+                    // a retried section makes the same decision again
+                    if (runtimeOptimizedStages.add(getStageId(buildFragment.getId()))) {
+                        String message = format(
+                                "Join %s in stage %s was changed from a partitioned join to a broadcast join at runtime, as its build side has %s and its probe side has %s",
+                                result.get().getJoinId(),
+                                probeFragment.getId(),
+                                result.get().getBuildSize(),
+                                result.get().getProbeSize());
+                        warningCollector.add(new PrestoWarning(PERFORMANCE_WARNING, message));
+                        log.debug(message);
+                    }
+                });
+    }
+
+    /**
+     * Returns the actual size of the materialized exchanges the section reads, by the handle of their temporary table.
+     */
+    private Map<ConnectorTableHandle, ExchangeSize> getMaterializedExchangeSizes(StreamingPlanSection section)
+    {
+        ListMultimap<StageId, SqlStageExecution> stageExecutions = getStageExecutions();
+        Map<ConnectorTableHandle, ExchangeSize> exchangeSizes = new HashMap<>();
+        for (StreamingPlanSection child : section.getChildren()) {
+            for (StreamingSubPlan subPlan : forTree(StreamingSubPlan::getChildren).depthFirstPreOrder(child.getPlan())) {
+                List<SqlStageExecution> attempts = stageExecutions.get(getStageId(subPlan.getFragment().getId()));
+                if (attempts.isEmpty()) {
+                    continue;
+                }
+                List<OperatorStats> operatorSummaries = getLast(attempts).getStageExecutionInfo().getStats().getOperatorSummaries();
+                List<TableWriterNode> writers = searchFrom(subPlan.getFragment().getRoot())
+                        .where(TableWriterNode.class::isInstance)
+                        .findAll();
+                for (TableWriterNode writer : writers) {
+                    if (!writer.getTarget().isPresent() || !(writer.getTarget().get() instanceof InsertReference)) {
+                        continue;
+                    }
+                    long rows = 0;
+                    long bytes = 0;
+                    for (OperatorStats operatorStats : operatorSummaries) {
+                        if (operatorStats.getPlanNodeId().equals(writer.getId())) {
+                            rows += operatorStats.getInputPositions();
+                            bytes += operatorStats.getInputDataSize().toBytes();
+                        }
+                    }
+                    TableHandle table = ((InsertReference) writer.getTarget().get()).getHandle();
+                    exchangeSizes.put(table.getConnectorHandle(), new ExchangeSize(rows, DataSize.succinctBytes(bytes)));
+                }
+            }
+        }
+        return exchangeSizes;
     }
 
     private Optional<PlanFragment> performRuntimeOptimizations(StreamingSubPlan subPlan)
@@ -494,16 +594,19 @@ public class SqlQueryScheduler
         return Optional.empty();
     }
 
-    private void updatePlan(Map<PlanFragment, PlanFragment> oldToNewFragments)
+    private void updatePlan(Map<PlanFragment, PlanFragment> oldToNewFragments, Map<PlanFragment, PlanFragment> addedFragments)
     {
-        plan.getAndUpdate(value -> rewritePlan(value, oldToNewFragments));
+        plan.getAndUpdate(value -> rewritePlan(value, oldToNewFragments, addedFragments));
     }
 
-    private SubPlan rewritePlan(SubPlan root, Map<PlanFragment, PlanFragment> oldToNewFragments)
+    private SubPlan rewritePlan(SubPlan root, Map<PlanFragment, PlanFragment> oldToNewFragments, Map<PlanFragment, PlanFragment> addedFragments)
     {
         ImmutableList.Builder<SubPlan> children = ImmutableList.builder();
         for (SubPlan child : root.getChildren()) {
-            children.add(rewritePlan(child, oldToNewFragments));
+            children.add(rewritePlan(child, oldToNewFragments, addedFragments));
+        }
+        if (addedFragments.containsKey(root.getFragment())) {
+            children.add(new SubPlan(addedFragments.get(root.getFragment()), ImmutableList.of()));
         }
         if (oldToNewFragments.containsKey(root.getFragment())) {
             return new SubPlan(oldToNewFragments.get(root.getFragment()), children.build());
@@ -513,11 +616,14 @@ public class SqlQueryScheduler
         }
     }
 
-    private StreamingSubPlan rewriteStreamingSubPlan(StreamingSubPlan root, Map<PlanFragment, PlanFragment> oldToNewFragment)
+    private StreamingSubPlan rewriteStreamingSubPlan(StreamingSubPlan root, Map<PlanFragment, PlanFragment> oldToNewFragment, Map<PlanFragment, PlanFragment> addedFragments)
     {
         ImmutableList.Builder<StreamingSubPlan> childrenPlans = ImmutableList.builder();
         for (StreamingSubPlan child : root.getChildren()) {
-            childrenPlans.add(rewriteStreamingSubPlan(child, oldToNewFragment));
+            childrenPlans.add(rewriteStreamingSubPlan(child, oldToNewFragment, addedFragments));
+        }
+        if (addedFragments.containsKey(root.getFragment())) {
+            childrenPlans.add(new StreamingSubPlan(addedFragments.get(root.getFragment()), ImmutableList.of()));
         }
         if (oldToNewFragment.containsKey(root.getFragment())) {
             return new StreamingSubPlan(oldToNewFragment.get(root.getFragment()), childrenPlans.build());
@@ -591,7 +697,7 @@ public class SqlQueryScheduler
             ExchangeLocationsConsumer locationsConsumer;
             if (isRootFragment(sectionRootFragment)) {
                 bucketToPartition = Optional.of(new int[1]);
-                outputBuffers = createInitialEmptyOutputBuffers(sectionRootFragment.getPartitioningScheme().getPartitioning().getHandle())
+                outputBuffers = (isSpoolingOutputBufferEnabled(session) ? createInitialEmptyOutputBuffers(SPOOLING) : createInitialEmptyOutputBuffers(sectionRootFragment.getPartitioningScheme().getPartitioning().getHandle()))
                         .withBuffer(new OutputBufferId(0), BROADCAST_PARTITION_ID)
                         .withNoMoreBufferIds();
                 OutputBufferId rootBufferId = getOnlyElement(outputBuffers.getBuffers().keySet());
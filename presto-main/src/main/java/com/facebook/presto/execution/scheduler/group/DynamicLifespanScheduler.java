@@ -18,15 +18,21 @@ import com.facebook.presto.execution.scheduler.BucketNodeMap;
 import com.facebook.presto.execution.scheduler.SourceScheduler;
 import com.facebook.presto.metadata.InternalNode;
 import com.facebook.presto.spi.connector.ConnectorPartitionHandle;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.SettableFuture;
 import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 import javax.annotation.concurrent.GuardedBy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +47,9 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * See {@link LifespanScheduler} about thread safety
+ * <p>
+ * Driver groups of a slow task can be executed speculatively on other tasks,
+ * see {@link #speculateSlowTasks(List, double)}.
  */
 public class DynamicLifespanScheduler
         implements LifespanScheduler
@@ -58,6 +67,18 @@ public class DynamicLifespanScheduler
     private final Map<InternalNode, IntArrayFIFOQueue> nodeToPreferredDriverGroups;
     private final IntSet failedTasks;
 
+    private final Ticker ticker;
+    private final long[] driverGroupStartNanos;
+    private final boolean[] driverGroupCompletelyScheduled;
+    // the task running the speculative copy of a driver group, next to the task in taskByDriverGroup
+    private final int[] speculativeTaskByDriverGroup;
+    // driver groups waiting in noPreferenceDriverGroups for a task to run their speculative copy
+    private final IntSet pendingSpeculativeDriverGroups;
+    // slow tasks, whose driver groups are executed speculatively on other tasks
+    private final IntSet speculatedTasks;
+    private final IntSet finishedDriverGroups;
+    private final LongArrayList driverGroupExecutionNanos;
+
     // initialScheduled does not need to be guarded because this object
     // is safely published after its mutation.
     private boolean initialScheduled;
@@ -76,6 +97,17 @@ public class DynamicLifespanScheduler
             List<InternalNode> nodeByTaskId,
             List<ConnectorPartitionHandle> partitionHandles,
             OptionalInt concurrentLifespansPerTask)
+    {
+        this(bucketNodeMap, nodeByTaskId, partitionHandles, concurrentLifespansPerTask, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DynamicLifespanScheduler(
+            BucketNodeMap bucketNodeMap,
+            List<InternalNode> nodeByTaskId,
+            List<ConnectorPartitionHandle> partitionHandles,
+            OptionalInt concurrentLifespansPerTask,
+            Ticker ticker)
     {
         this.bucketNodeMap = requireNonNull(bucketNodeMap, "bucketNodeMap is null");
         this.nodeByTaskId = requireNonNull(nodeByTaskId, "nodeByTaskId is null");
@@ -107,6 +139,16 @@ public class DynamicLifespanScheduler
             }
         }
         this.failedTasks = new IntOpenHashSet();
+
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.driverGroupStartNanos = new long[bucketCount];
+        this.driverGroupCompletelyScheduled = new boolean[bucketCount];
+        this.speculativeTaskByDriverGroup = new int[bucketCount];
+        Arrays.fill(speculativeTaskByDriverGroup, NOT_ASSIGNED);
+        this.pendingSpeculativeDriverGroups = new IntOpenHashSet();
+        this.speculatedTasks = new IntOpenHashSet();
+        this.finishedDriverGroups = new IntOpenHashSet();
+        this.driverGroupExecutionNanos = new LongArrayList();
     }
 
     @Override
@@ -123,9 +165,7 @@ public class DynamicLifespanScheduler
                     if (!driverGroupId.isPresent()) {
                         continue;
                     }
-                    scheduler.startLifespan(Lifespan.driverGroup(driverGroupId.getAsInt()), partitionHandles.get(driverGroupId.getAsInt()));
-                    taskByDriverGroup[driverGroupId.getAsInt()] = taskId;
-                    runningDriverGroupIdsByTask[taskId].add(driverGroupId.getAsInt());
+                    startDriverGroup(scheduler, driverGroupId.getAsInt(), taskId);
                 }
 
                 driverGroupsScheduledPerTask++;
@@ -147,13 +187,48 @@ public class DynamicLifespanScheduler
             for (Lifespan newlyCompletelyExecutedDriverGroup : newlyCompletelyExecutedDriverGroups) {
                 checkArgument(!newlyCompletelyExecutedDriverGroup.isTaskWide());
                 int driverGroupId = newlyCompletelyExecutedDriverGroup.getId();
-                availableTasks.enqueue(taskByDriverGroup[driverGroupId]);
-                totalLifespanExecutionFinished++;
-                runningDriverGroupIdsByTask[taskByDriverGroup[driverGroupId]].remove(driverGroupId);
+                driverGroupFinished(taskByDriverGroup[driverGroupId], driverGroupId);
+            }
+            newDriverGroupReady = this.newDriverGroupReady;
+        }
+        newDriverGroupReady.set(null);
+    }
+
+    /**
+     * Same as {@link #onLifespanExecutionFinished(Iterable)}, for driver groups that were executed by the given task.
+     * This tells apart the attempts of driver groups that are executed speculatively.
+     *
+     * @return the number of driver groups whose speculative copy finished before the original attempt
+     */
+    public int onLifespanExecutionFinished(int taskId, Iterable<Lifespan> newlyCompletelyExecutedDriverGroups)
+    {
+        checkState(initialScheduled, "onLifespanExecutionFinished should only be called after initial scheduling finished");
+
+        int speculativeWins = 0;
+        SettableFuture<?> newDriverGroupReady;
+        synchronized (this) {
+            for (Lifespan newlyCompletelyExecutedDriverGroup : newlyCompletelyExecutedDriverGroups) {
+                checkArgument(!newlyCompletelyExecutedDriverGroup.isTaskWide());
+                if (driverGroupFinished(taskId, newlyCompletelyExecutedDriverGroup.getId())) {
+                    speculativeWins++;
+                }
             }
             newDriverGroupReady = this.newDriverGroupReady;
         }
         newDriverGroupReady.set(null);
+        return speculativeWins;
+    }
+
+    /**
+     * Records that all splits of the driver groups have been scheduled. Only driver groups that have been completely
+     * scheduled can be executed speculatively, since the original attempt must be able to finish on its own.
+     */
+    public synchronized void onLifespansCompletelyScheduled(Iterable<Lifespan> completelyScheduledDriverGroups)
+    {
+        for (Lifespan driverGroup : completelyScheduledDriverGroups) {
+            checkArgument(!driverGroup.isTaskWide());
+            driverGroupCompletelyScheduled[driverGroup.getId()] = true;
+        }
     }
 
     @Override
@@ -163,7 +238,30 @@ public class DynamicLifespanScheduler
 
         synchronized (this) {
             this.failedTasks.add(taskId);
+            this.speculatedTasks.remove(taskId);
             for (int driverGroupId : runningDriverGroupIdsByTask[taskId]) {
+                if (finishedDriverGroups.contains(driverGroupId)) {
+                    // another attempt of the driver group already finished
+                    continue;
+                }
+                if (taskByDriverGroup[driverGroupId] != taskId) {
+                    // the task was running a speculative copy, the original attempt keeps running on its own
+                    speculativeTaskByDriverGroup[driverGroupId] = NOT_ASSIGNED;
+                    for (SourceScheduler sourceScheduler : sourceSchedulers) {
+                        sourceScheduler.rewindLifespan(Lifespan.driverGroup(driverGroupId), partitionHandles.get(driverGroupId));
+                    }
+                    continue;
+                }
+                if (pendingSpeculativeDriverGroups.remove(driverGroupId)) {
+                    // the speculative copy has not been started yet, and is now the only attempt
+                    continue;
+                }
+                if (speculativeTaskByDriverGroup[driverGroupId] != NOT_ASSIGNED) {
+                    // the speculative copy is now the only attempt
+                    taskByDriverGroup[driverGroupId] = speculativeTaskByDriverGroup[driverGroupId];
+                    speculativeTaskByDriverGroup[driverGroupId] = NOT_ASSIGNED;
+                    continue;
+                }
                 for (SourceScheduler sourceScheduler : sourceSchedulers) {
                     sourceScheduler.rewindLifespan(Lifespan.driverGroup(driverGroupId), partitionHandles.get(driverGroupId));
                 }
@@ -203,7 +301,7 @@ public class DynamicLifespanScheduler
             newDriverGroupReady = SettableFuture.create();
             while (!availableTasks.isEmpty() && (!noPreferenceDriverGroups.isEmpty() || !nodeToPreferredDriverGroups.isEmpty())) {
                 int taskId = availableTasks.dequeueInt();
-                if (failedTasks.contains(taskId)) {
+                if (failedTasks.contains(taskId) || speculatedTasks.contains(taskId)) {
                     continue;
                 }
 
@@ -211,20 +309,186 @@ public class DynamicLifespanScheduler
                 if (!nextDriverGroupId.isPresent()) {
                     continue;
                 }
-                scheduler.startLifespan(Lifespan.driverGroup(nextDriverGroupId.getAsInt()), partitionHandles.get(nextDriverGroupId.getAsInt()));
-                taskByDriverGroup[nextDriverGroupId.getAsInt()] = taskId;
-                runningDriverGroupIdsByTask[taskId].add(nextDriverGroupId.getAsInt());
+                startDriverGroup(scheduler, nextDriverGroupId.getAsInt(), taskId);
+            }
+        }
+        return newDriverGroupReady;
+    }
+
+    /**
+     * Starts speculative copies of the driver groups running on slow tasks. A task is slow when one of its driver groups
+     * has been running for longer than {@code slowTaskThreshold} times the median execution time of the finished driver groups.
+     * The slow task is given no new driver groups, and each of its running driver groups is started again on the next
+     * available task. The attempt that finishes first wins, the output of the other attempt is discarded by the consumer.
+     * <p>
+     * Speculation only starts once all driver groups have been scheduled, so the copies run on tasks that would be idle otherwise,
+     * and once half of the driver groups have finished, so the median is representative for the stage.
+     *
+     * @return the number of driver groups that are executed speculatively
+     */
+    public int speculateSlowTasks(List<SourceScheduler> sourceSchedulers, double slowTaskThreshold)
+    {
+        checkState(initialScheduled, "speculateSlowTasks should only be called after initial scheduling finished");
+        checkArgument(slowTaskThreshold >= 1, "slowTaskThreshold must be at least 1");
+
+        synchronized (this) {
+            if (!noPreferenceDriverGroups.isEmpty() || !nodeToPreferredDriverGroups.isEmpty()) {
+                return 0;
+            }
+            if (driverGroupExecutionNanos.isEmpty() || driverGroupExecutionNanos.size() * 2 < partitionHandles.size()) {
+                return 0;
+            }
+            long[] executionNanos = driverGroupExecutionNanos.toLongArray();
+            Arrays.sort(executionNanos);
+            long slowTaskNanos = (long) (executionNanos[executionNanos.length / 2] * slowTaskThreshold);
+
+            long now = ticker.read();
+            int speculativeDriverGroups = 0;
+            for (int taskId = 0; taskId < nodeByTaskId.size(); taskId++) {
+                // the copies need at least one other task to run on
+                if (nodeByTaskId.size() - failedTasks.size() - speculatedTasks.size() < 2) {
+                    break;
+                }
+                if (failedTasks.contains(taskId) || speculatedTasks.contains(taskId) || !isSlow(taskId, now, slowTaskNanos)) {
+                    continue;
+                }
+
+                speculatedTasks.add(taskId);
+                for (int driverGroupId : runningDriverGroupIdsByTask[taskId]) {
+                    for (SourceScheduler sourceScheduler : sourceSchedulers) {
+                        sourceScheduler.rewindLifespan(Lifespan.driverGroup(driverGroupId), partitionHandles.get(driverGroupId));
+                    }
+                    noPreferenceDriverGroups.enqueue(driverGroupId);
+                    pendingSpeculativeDriverGroups.add(driverGroupId);
+                    speculativeDriverGroups++;
+                }
+            }
+            return speculativeDriverGroups;
+        }
+    }
+
+    /**
+     * Returns the slow tasks for which every driver group they were running has finished, either on the slow task itself
+     * or as a speculative copy on another task. The work left on these tasks is no longer needed.
+     */
+    public synchronized IntList getObsoleteSpeculatedTasks()
+    {
+        IntList obsoleteTasks = new IntArrayList();
+        for (int taskId : speculatedTasks) {
+            boolean obsolete = true;
+            for (int driverGroupId : runningDriverGroupIdsByTask[taskId]) {
+                obsolete &= finishedDriverGroups.contains(driverGroupId);
+            }
+            if (obsolete) {
+                obsoleteTasks.add(taskId);
             }
         }
+        return obsoleteTasks;
+    }
+
+    public synchronized boolean hasSpeculatedTasks()
+    {
+        return !speculatedTasks.isEmpty();
+    }
+
+    /**
+     * Returns a future that completes when an attempt of a driver group finishes. Once all driver groups have been
+     * scheduled, this is the only event {@link #schedule(SourceScheduler)} would wait for.
+     */
+    public synchronized SettableFuture<?> whenDriverGroupFinished()
+    {
+        newDriverGroupReady = SettableFuture.create();
         return newDriverGroupReady;
     }
 
+    /**
+     * Records that a slow task returned by {@link #getObsoleteSpeculatedTasks()} has been canceled.
+     */
+    public synchronized void onSpeculatedTaskCanceled(int taskId)
+    {
+        checkArgument(speculatedTasks.remove(taskId), "Task %s is not speculated", taskId);
+        failedTasks.add(taskId);
+        runningDriverGroupIdsByTask[taskId].clear();
+    }
+
     @Override
     public synchronized boolean allLifespanExecutionFinished()
     {
         return totalLifespanExecutionFinished == partitionHandles.size();
     }
 
+    @GuardedBy("this")
+    private void startDriverGroup(SourceScheduler scheduler, int driverGroupId, int taskId)
+    {
+        scheduler.startLifespan(Lifespan.driverGroup(driverGroupId), partitionHandles.get(driverGroupId));
+        if (pendingSpeculativeDriverGroups.remove(driverGroupId)) {
+            speculativeTaskByDriverGroup[driverGroupId] = taskId;
+        }
+        else {
+            taskByDriverGroup[driverGroupId] = taskId;
+            driverGroupCompletelyScheduled[driverGroupId] = false;
+            driverGroupStartNanos[driverGroupId] = ticker.read();
+        }
+        runningDriverGroupIdsByTask[taskId].add(driverGroupId);
+    }
+
+    /**
+     * @return whether the speculative copy of the driver group finished first
+     */
+    @GuardedBy("this")
+    private boolean driverGroupFinished(int taskId, int driverGroupId)
+    {
+        availableTasks.enqueue(taskId);
+        runningDriverGroupIdsByTask[taskId].remove(driverGroupId);
+        if (!finishedDriverGroups.add(driverGroupId)) {
+            // the other attempt of the driver group finished first
+            return false;
+        }
+        totalLifespanExecutionFinished++;
+
+        if (pendingSpeculativeDriverGroups.remove(driverGroupId)) {
+            // the speculative copy has not been started yet, so it is dropped
+            removeNoPreferenceDriverGroup(driverGroupId);
+        }
+        if (speculativeTaskByDriverGroup[driverGroupId] == NOT_ASSIGNED) {
+            driverGroupExecutionNanos.add(ticker.read() - driverGroupStartNanos[driverGroupId]);
+            return false;
+        }
+        return speculativeTaskByDriverGroup[driverGroupId] == taskId;
+    }
+
+    @GuardedBy("this")
+    private boolean isSlow(int taskId, long now, long slowTaskNanos)
+    {
+        IntSet runningDriverGroupIds = runningDriverGroupIdsByTask[taskId];
+        if (runningDriverGroupIds.isEmpty()) {
+            return false;
+        }
+        boolean slow = false;
+        for (int driverGroupId : runningDriverGroupIds) {
+            if (taskByDriverGroup[driverGroupId] != taskId
+                    || speculativeTaskByDriverGroup[driverGroupId] != NOT_ASSIGNED
+                    || !driverGroupCompletelyScheduled[driverGroupId]) {
+                // only original attempts whose splits have all been sent to the task can be executed speculatively
+                return false;
+            }
+            slow |= now - driverGroupStartNanos[driverGroupId] > slowTaskNanos;
+        }
+        return slow;
+    }
+
+    @GuardedBy("this")
+    private void removeNoPreferenceDriverGroup(int driverGroupId)
+    {
+        int size = noPreferenceDriverGroups.size();
+        for (int i = 0; i < size; i++) {
+            int queuedDriverGroupId = noPreferenceDriverGroups.dequeueInt();
+            if (queuedDriverGroupId != driverGroupId) {
+                noPreferenceDriverGroups.enqueue(queuedDriverGroupId);
+            }
+        }
+    }
+
     private OptionalInt getNextDriverGroup(InternalNode node)
     {
         OptionalInt driverGroupId = OptionalInt.empty();
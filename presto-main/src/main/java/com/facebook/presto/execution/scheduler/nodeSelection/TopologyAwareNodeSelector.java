@@ -67,8 +67,8 @@ public class TopologyAwareNodeSelector
     private final boolean includeCoordinator;
     private final AtomicReference<Supplier<NodeMap>> nodeMap;
     private final int minCandidates;
-    private final int maxSplitsPerNode;
-    private final int maxPendingSplitsPerTask;
+    private final long maxSplitsWeightPerNode;
+    private final long maxPendingSplitsWeightPerTask;
     private final List<CounterStat> topologicalSplitCounters;
     private final List<String> networkLocationSegmentNames;
     private final NetworkLocationCache networkLocationCache;
@@ -80,8 +80,8 @@ public class TopologyAwareNodeSelector
             boolean includeCoordinator,
             Supplier<NodeMap> nodeMap,
             int minCandidates,
-            int maxSplitsPerNode,
-            int maxPendingSplitsPerTask,
+            long maxSplitsWeightPerNode,
+            long maxPendingSplitsWeightPerTask,
             List<CounterStat> topologicalSplitCounters,
             List<String> networkLocationSegmentNames,
             NetworkLocationCache networkLocationCache)
@@ -92,8 +92,8 @@ public class TopologyAwareNodeSelector
         this.includeCoordinator = includeCoordinator;
         this.nodeMap = new AtomicReference<>(nodeMap);
         this.minCandidates = minCandidates;
-        this.maxSplitsPerNode = maxSplitsPerNode;
-        this.maxPendingSplitsPerTask = maxPendingSplitsPerTask;
+        this.maxSplitsWeightPerNode = maxSplitsWeightPerNode;
+        this.maxPendingSplitsWeightPerTask = maxPendingSplitsWeightPerTask;
         this.topologicalSplitCounters = requireNonNull(topologicalSplitCounters, "topologicalSplitCounters is null");
         this.networkLocationSegmentNames = requireNonNull(networkLocationSegmentNames, "networkLocationSegmentNames is null");
         this.networkLocationCache = requireNonNull(networkLocationCache, "networkLocationCache is null");
@@ -145,10 +145,10 @@ public class TopologyAwareNodeSelector
                     log.debug("No nodes available to schedule %s. Available nodes %s", split, nodeMap.getNodesByHost().keys());
                     throw new PrestoException(NO_NODES_AVAILABLE, "No nodes available to run query");
                 }
-                InternalNode chosenNode = bestNodeSplitCount(candidateNodes.iterator(), minCandidates, maxPendingSplitsPerTask, assignmentStats);
+                InternalNode chosenNode = bestNodeSplitsWeight(candidateNodes.iterator(), minCandidates, maxPendingSplitsWeightPerTask, assignmentStats);
                 if (chosenNode != null) {
                     assignment.put(chosenNode, split);
-                    assignmentStats.addAssignedSplit(chosenNode);
+                    assignmentStats.addAssignedSplit(chosenNode, split.getSplitWeight());
                 }
                 // Exact node set won't matter, if a split is waiting for any node
                 else if (!splitWaitingForAnyNode) {
@@ -182,7 +182,7 @@ public class TopologyAwareNodeSelector
                         continue;
                     }
                     Set<InternalNode> nodes = nodeMap.getWorkersByNetworkPath().get(location);
-                    chosenNode = bestNodeSplitCount(new ResettableRandomizedIterator<>(nodes), minCandidates, calculateMaxPendingSplits(i, depth), assignmentStats);
+                    chosenNode = bestNodeSplitsWeight(new ResettableRandomizedIterator<>(nodes), minCandidates, calculateMaxPendingSplitsWeight(i, depth), assignmentStats);
                     if (chosenNode != null) {
                         chosenDepth = i;
                         break;
@@ -192,7 +192,7 @@ public class TopologyAwareNodeSelector
             }
             if (chosenNode != null) {
                 assignment.put(chosenNode, split);
-                assignmentStats.addAssignedSplit(chosenNode);
+                assignmentStats.addAssignedSplit(chosenNode, split.getSplitWeight());
                 topologicCounters[chosenDepth]++;
             }
             else {
@@ -206,7 +206,7 @@ public class TopologyAwareNodeSelector
         }
 
         ListenableFuture<?> blocked;
-        int maxPendingForWildcardNetworkAffinity = calculateMaxPendingSplits(0, networkLocationSegmentNames.size());
+        long maxPendingForWildcardNetworkAffinity = calculateMaxPendingSplitsWeight(0, networkLocationSegmentNames.size());
         if (splitWaitingForAnyNode) {
             blocked = toWhenHasSplitQueueSpaceFuture(existingTasks, calculateLowWatermark(maxPendingForWildcardNetworkAffinity));
         }
@@ -221,39 +221,39 @@ public class TopologyAwareNodeSelector
      * splitAffinity. A split with zero affinity can only fill half the queue, whereas one that matches
      * exactly can fill the entire queue.
      */
-    private int calculateMaxPendingSplits(int splitAffinity, int totalDepth)
+    private long calculateMaxPendingSplitsWeight(int splitAffinity, int totalDepth)
     {
         if (totalDepth == 0) {
-            return maxPendingSplitsPerTask;
+            return maxPendingSplitsWeightPerTask;
         }
         // Use half the queue for any split
         // Reserve the other half for splits that have some amount of network affinity
         double queueFraction = 0.5 * (1.0 + splitAffinity / (double) totalDepth);
-        return (int) Math.ceil(maxPendingSplitsPerTask * queueFraction);
+        return (long) Math.ceil(maxPendingSplitsWeightPerTask * queueFraction);
     }
 
     @Override
     public SplitPlacementResult computeAssignments(Set<Split> splits, List<RemoteTask> existingTasks, BucketNodeMap bucketNodeMap)
     {
-        return selectDistributionNodes(nodeMap.get().get(), nodeTaskMap, maxSplitsPerNode, maxPendingSplitsPerTask, splits, existingTasks, bucketNodeMap, nodeSelectionStats);
+        return selectDistributionNodes(nodeMap.get().get(), nodeTaskMap, maxSplitsWeightPerNode, maxPendingSplitsWeightPerTask, splits, existingTasks, bucketNodeMap, nodeSelectionStats);
     }
 
     @Nullable
-    private InternalNode bestNodeSplitCount(Iterator<InternalNode> candidates, int minCandidatesWhenFull, int maxPendingSplitsPerTask, NodeAssignmentStats assignmentStats)
+    private InternalNode bestNodeSplitsWeight(Iterator<InternalNode> candidates, int minCandidatesWhenFull, long maxPendingSplitsWeightPerTask, NodeAssignmentStats assignmentStats)
     {
         InternalNode bestQueueNotFull = null;
-        int min = Integer.MAX_VALUE;
+        long min = Long.MAX_VALUE;
         int fullCandidatesConsidered = 0;
 
         while (candidates.hasNext() && (fullCandidatesConsidered < minCandidatesWhenFull || bestQueueNotFull == null)) {
             InternalNode node = candidates.next();
-            if (assignmentStats.getTotalSplitCount(node) < maxSplitsPerNode) {
+            if (assignmentStats.getTotalSplitsWeight(node) < maxSplitsWeightPerNode) {
                 return node;
             }
             fullCandidatesConsidered++;
-            int totalSplitCount = assignmentStats.getQueuedSplitCountForStage(node);
-            if (totalSplitCount < min && totalSplitCount < maxPendingSplitsPerTask) {
-                min = totalSplitCount;
+            long queuedSplitsWeight = assignmentStats.getQueuedSplitsWeightForStage(node);
+            if (queuedSplitsWeight < min && queuedSplitsWeight < maxPendingSplitsWeightPerTask) {
+                min = queuedSplitsWeight;
                 bestQueueNotFull = node;
             }
         }
@@ -20,6 +20,7 @@ import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.memory.context.MemoryReservationHandler;
 import com.facebook.presto.memory.context.MemoryTrackingContext;
+import com.facebook.presto.operator.SharedLookupSourceCache;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spiller.SpillSpaceTracker;
@@ -92,6 +93,7 @@ public class QueryContext
     private long maxBroadcastUsedMemory;
 
     private final MemoryTrackingContext queryMemoryContext;
+    private final SharedLookupSourceCache sharedLookupSourceCache;
 
     @GuardedBy("this")
     private MemoryPool memoryPool;
@@ -127,6 +129,7 @@ public class QueryContext
                 newRootAggregatedMemoryContext(new QueryMemoryReservationHandler(this::updateUserMemory, this::tryUpdateUserMemory, this::updateBroadcastMemory, this::tryUpdateBroadcastMemory), GUARANTEED_MEMORY),
                 newRootAggregatedMemoryContext(new QueryMemoryReservationHandler(this::updateRevocableMemory, this::tryReserveMemoryNotSupported, this::updateBroadcastMemory, this::tryUpdateBroadcastMemory), 0L),
                 newRootAggregatedMemoryContext(new QueryMemoryReservationHandler(this::updateSystemMemory, this::tryReserveMemoryNotSupported, this::updateBroadcastMemory, this::tryUpdateBroadcastMemory), 0L));
+        this.sharedLookupSourceCache = new SharedLookupSourceCache(queryMemoryContext.aggregateUserMemoryContext());
     }
 
     // TODO: This method should be removed, and the correct limit set in the constructor. However, due to the way QueryContext is constructed the memory limit is not known in advance
@@ -352,6 +355,11 @@ public class QueryContext
         return queryId;
     }
 
+    public SharedLookupSourceCache getSharedLookupSourceCache()
+    {
+        return sharedLookupSourceCache;
+    }
+
     public synchronized void setMemoryLimits(DataSize queryMaxTaskMemory, DataSize queryMaxTotalTaskMemory, DataSize queryMaxBroadcastMemory)
     {
         // Don't allow session properties to increase memory beyond configured limits
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.operator.PagesHash.getHashPosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Specialized {@link PagesHash} for a single BIGINT join channel. The key values are stored
+ * in a flat array next to the address indexes, so lookups compare primitive longs instead of
+ * going through the {@link PagesHashStrategy}.
+ */
+// This implementation assumes arrays used in the hash are always a power of 2
+public final class BigintPagesHash
+        implements PagesHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BigintPagesHash.class).instanceSize();
+    private final LongArrayList addresses;
+    private final PagesHashStrategy pagesHashStrategy;
+
+    private final int mask;
+    // address index of the first row with the key in each slot, or -1 for empty slots
+    private final int[] keys;
+    // key value of each slot
+    private final long[] values;
+    private final long size;
+
+    private final long hashCollisions;
+    private final double expectedHashCollisions;
+
+    public BigintPagesHash(
+            LongArrayList addresses,
+            PagesHashStrategy pagesHashStrategy,
+            PositionLinks.FactoryBuilder positionLinks,
+            List<Block> joinChannelBlocks)
+    {
+        this.addresses = requireNonNull(addresses, "addresses is null");
+        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        checkArgument(pagesHashStrategy.getChannelCount() > 0, "pagesHashStrategy has no channels");
+        requireNonNull(joinChannelBlocks, "joinChannelBlocks is null");
+        List<Block> blocks = ImmutableList.copyOf(joinChannelBlocks);
+
+        // reserve memory for the arrays
+        int hashSize = HashCommon.arraySize(addresses.size(), 0.75f);
+
+        mask = hashSize - 1;
+        keys = new int[hashSize];
+        Arrays.fill(keys, -1);
+        values = new long[hashSize];
+
+        long hashCollisionsLocal = 0;
+        for (int position = 0; position < addresses.size(); position++) {
+            long pageAddress = addresses.getLong(position);
+            Block block = blocks.get(decodeSliceIndex(pageAddress));
+            int blockPosition = decodePosition(pageAddress);
+            if (block.isNull(blockPosition)) {
+                continue;
+            }
+
+            long value = block.getLong(blockPosition);
+            int pos = getHashPosition(AbstractLongType.hash(value), mask);
+
+            // look for an empty slot or a slot containing this key
+            int realPosition = position;
+            while (keys[pos] != -1) {
+                if (values[pos] == value) {
+                    // found a slot for this key
+                    // link the new key position to the current key position
+                    realPosition = positionLinks.link(realPosition, keys[pos]);
+
+                    // keys[pos] updated outside of this loop
+                    break;
+                }
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                hashCollisionsLocal++;
+            }
+
+            keys[pos] = realPosition;
+            values[pos] = value;
+        }
+
+        size = sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() +
+                sizeOf(keys) + sizeOf(values);
+        hashCollisions = hashCollisionsLocal;
+        expectedHashCollisions = estimateNumberOfHashCollisions(addresses.size(), hashSize);
+    }
+
+    @Override
+    public int getChannelCount()
+    {
+        return pagesHashStrategy.getChannelCount();
+    }
+
+    @Override
+    public int getPositionCount()
+    {
+        return addresses.size();
+    }
+
+    @Override
+    public long getInMemorySizeInBytes()
+    {
+        return INSTANCE_SIZE + size;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions;
+    }
+
+    @Override
+    public int getAddressIndex(int position, Page hashChannelsPage)
+    {
+        Block block = hashChannelsPage.getBlock(0);
+        if (block.isNull(position)) {
+            return -1;
+        }
+        return getAddressIndex(block.getLong(position));
+    }
+
+    @Override
+    public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
+    {
+        // the raw hash is not needed as the key is compared directly
+        return getAddressIndex(rightPosition, hashChannelsPage);
+    }
+
+    @Override
+    public int[] getAddressIndex(int[] positions, Page hashChannelsPage)
+    {
+        Block block = hashChannelsPage.getBlock(0);
+        int positionCount = positions.length;
+
+        // gather the probe keys
+        long[] probeValues = new long[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            probeValues[i] = block.getLong(positions[i]);
+        }
+
+        // hash all the keys before touching the table
+        int[] hashPositions = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            hashPositions[i] = getHashPosition(AbstractLongType.hash(probeValues[i]), mask);
+        }
+
+        // probe the table
+        int[] addressIndexes = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = findAddressIndex(hashPositions[i], probeValues[i]);
+        }
+        return addressIndexes;
+    }
+
+    @Override
+    public int[] getAddressIndex(int[] positions, Page hashChannelsPage, long[] rawHashes)
+    {
+        return getAddressIndex(positions, hashChannelsPage);
+    }
+
+    @Override
+    public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long pageAddress = addresses.getLong(toIntExact(position));
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        pagesHashStrategy.appendTo(blockIndex, blockPosition, pageBuilder, outputChannelOffset);
+    }
+
+    private int getAddressIndex(long value)
+    {
+        return findAddressIndex(getHashPosition(AbstractLongType.hash(value), mask), value);
+    }
+
+    private int findAddressIndex(int pos, long value)
+    {
+        while (keys[pos] != -1) {
+            if (values[pos] == value) {
+                return keys[pos];
+            }
+            // increment position and mask to handler wrap around
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.presto.type.TypeUtils.hashPosition;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.toIntExact;
+
+/**
+ * Bloom filter over the hashes of values, split into blocks of 256 bits. All the bits of an entry are set in a single
+ * block, one bit in each of its eight words, so a lookup touches a single cache line. Values are hashed with
+ * {@link Type#hash}, so a filter can be checked against the values of any block of the same type.
+ * <p>
+ * The filter is not thread safe while it is populated, but once populated it can be read by any number of threads.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Integer.SIZE;
+    // gives a false positive rate of about one percent
+    private static final int BITS_PER_ENTRY = 10;
+
+    // odd constants that spread the key over the bit positions of the words of a block
+    private static final int[] SALTS = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+    private final int[] words;
+    private final long blockCount;
+
+    public BlockedBloomFilter(int expectedEntries)
+    {
+        checkArgument(expectedEntries >= 0, "expectedEntries is negative");
+        int blockCount = toIntExact(Math.max(1, ((long) expectedEntries * BITS_PER_ENTRY + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK));
+        this.words = new int[toIntExact((long) blockCount * WORDS_PER_BLOCK)];
+        this.blockCount = blockCount;
+    }
+
+    public void put(Type type, Block block, int position)
+    {
+        put(hashPosition(type, block, position));
+    }
+
+    public void put(long hash)
+    {
+        int offset = blockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[offset + i] |= bit(key, i);
+        }
+    }
+
+    public boolean mightContain(long hash)
+    {
+        int offset = blockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[offset + i] & bit(key, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets {@code mightContain[position]} for each of the first {@code positionCount} positions of {@code block}.
+     * Positions holding a null are never contained.
+     */
+    public void mightContain(Type type, Block block, int positionCount, boolean[] mightContain)
+    {
+        checkArgument(mightContain.length >= positionCount, "mightContain is smaller than positionCount");
+        for (int position = 0; position < positionCount; position++) {
+            mightContain[position] = !block.isNull(position) && mightContain(type.hash(block, position));
+        }
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(words);
+    }
+
+    private int blockOffset(long hash)
+    {
+        // maps the high bits to [0, blockCount) without a division
+        return (int) (((hash >>> 32) * blockCount) >>> 32) * WORDS_PER_BLOCK;
+    }
+
+    private static int bit(int key, int word)
+    {
+        return 1 << ((key * SALTS[word]) >>> 27);
+    }
+}
@@ -14,6 +14,8 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.sql.gen.JoinCompiler;
@@ -24,6 +26,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isSemiJoinBloomFilterEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.facebook.presto.type.UnknownType.UNKNOWN;
 import static java.util.Objects.requireNonNull;
@@ -33,12 +36,19 @@ public class ChannelSet
     private final GroupByHash hash;
     private final boolean containsNull;
     private final int[] hashChannels;
+    private final Optional<BlockedBloomFilter> bloomFilter;
 
     public ChannelSet(GroupByHash hash, boolean containsNull, int[] hashChannels)
+    {
+        this(hash, containsNull, hashChannels, Optional.empty());
+    }
+
+    public ChannelSet(GroupByHash hash, boolean containsNull, int[] hashChannels, Optional<BlockedBloomFilter> bloomFilter)
     {
         this.hash = hash;
         this.containsNull = containsNull;
         this.hashChannels = hashChannels;
+        this.bloomFilter = requireNonNull(bloomFilter, "bloomFilter is null");
     }
 
     public Type getType()
@@ -48,7 +58,7 @@ public class ChannelSet
 
     public long getEstimatedSizeInBytes()
     {
-        return hash.getEstimatedSize();
+        return hash.getEstimatedSize() + bloomFilter.map(BlockedBloomFilter::getRetainedSizeInBytes).orElse(0L);
     }
 
     public int size()
@@ -71,12 +81,22 @@ public class ChannelSet
         return hash.contains(position, page, hashChannels);
     }
 
+    /**
+     * Bloom filter of the non null values of the set, which can be used to discard most values that are
+     * not in the set without looking them up.
+     */
+    public Optional<BlockedBloomFilter> getBloomFilter()
+    {
+        return bloomFilter;
+    }
+
     public static class ChannelSetBuilder
     {
         private static final int[] HASH_CHANNELS = {0};
 
         private final GroupByHash hash;
         private final Page nullBlockPage;
+        private final boolean bloomFilterEnabled;
         private final OperatorContext operatorContext;
         private final LocalMemoryContext localMemoryContext;
 
@@ -92,13 +112,41 @@ public class ChannelSet
                     joinCompiler,
                     this::updateMemoryReservation);
             this.nullBlockPage = new Page(type.createBlockBuilder(null, 1, UNKNOWN.getFixedSize()).appendNull().build());
+            this.bloomFilterEnabled = isSemiJoinBloomFilterEnabled(operatorContext.getSession());
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
             this.localMemoryContext = operatorContext.localUserMemoryContext();
         }
 
         public ChannelSet build()
         {
-            return new ChannelSet(hash, hash.contains(0, nullBlockPage, HASH_CHANNELS), HASH_CHANNELS);
+            Optional<BlockedBloomFilter> bloomFilter = Optional.empty();
+            if (bloomFilterEnabled) {
+                bloomFilter = Optional.of(buildBloomFilter());
+                localMemoryContext.setBytes(hash.getEstimatedSize() + bloomFilter.get().getRetainedSizeInBytes());
+            }
+            return new ChannelSet(hash, hash.contains(0, nullBlockPage, HASH_CHANNELS), HASH_CHANNELS, bloomFilter);
+        }
+
+        private BlockedBloomFilter buildBloomFilter()
+        {
+            // the filter is sized for the final number of values, so it is populated from the values of the hash once it is complete
+            Type type = hash.getTypes().get(0);
+            BlockedBloomFilter bloomFilter = new BlockedBloomFilter(hash.getGroupCount());
+            PageBuilder pageBuilder = new PageBuilder(hash.getTypes());
+            for (int groupId = 0; groupId < hash.getGroupCount(); groupId++) {
+                pageBuilder.declarePosition();
+                hash.appendValuesTo(groupId, pageBuilder, 0);
+                if (pageBuilder.isFull() || groupId == hash.getGroupCount() - 1) {
+                    Block block = pageBuilder.build().getBlock(0);
+                    for (int position = 0; position < block.getPositionCount(); position++) {
+                        if (!block.isNull(position)) {
+                            bloomFilter.put(type, block, position);
+                        }
+                    }
+                    pageBuilder.reset();
+                }
+            }
+            return bloomFilter;
         }
 
         public long getEstimatedSize()
@@ -81,19 +81,23 @@ public class DriverContext
 
     private final List<OperatorContext> operatorContexts = new CopyOnWriteArrayList<>();
     private final Lifespan lifespan;
+    private final long splitWeight;
 
     public DriverContext(
             PipelineContext pipelineContext,
             Executor notificationExecutor,
             ScheduledExecutorService yieldExecutor,
             MemoryTrackingContext driverMemoryContext,
-            Lifespan lifespan)
+            Lifespan lifespan,
+            long splitWeight)
     {
         this.pipelineContext = requireNonNull(pipelineContext, "pipelineContext is null");
         this.notificationExecutor = requireNonNull(notificationExecutor, "notificationExecutor is null");
         this.yieldExecutor = requireNonNull(yieldExecutor, "scheduler is null");
         this.driverMemoryContext = requireNonNull(driverMemoryContext, "driverMemoryContext is null");
         this.lifespan = requireNonNull(lifespan, "lifespan is null");
+        checkArgument(splitWeight >= 0, "splitWeight is negative");
+        this.splitWeight = splitWeight;
         this.yieldSignal = new DriverYieldSignal();
     }
 
@@ -423,6 +427,14 @@ public class DriverContext
         return lifespan;
     }
 
+    /**
+     * The raw {@link com.facebook.presto.spi.SplitWeight} of the partitioned split of the driver, or 0 if it has none.
+     */
+    public long getSplitWeight()
+    {
+        return splitWeight;
+    }
+
     public ScheduledExecutorService getYieldExecutor()
     {
         return yieldExecutor;
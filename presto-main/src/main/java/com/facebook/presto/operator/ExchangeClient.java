@@ -24,6 +24,7 @@ import com.facebook.presto.server.thrift.ThriftTaskClient;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.page.PageCodecMarker;
 import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -39,6 +40,7 @@ import java.io.Closeable;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -63,6 +65,9 @@ import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * {@link ExchangeClient} is the client on receiver side, used in operators requiring data exchange from other tasks,
@@ -83,6 +88,10 @@ public class ExchangeClient
 {
     private static final SerializedPage NO_MORE_PAGES = new SerializedPage(EMPTY_SLICE, PageCodecMarker.none(), 0, 0);
 
+    // the drain rate is sampled over periods in which pages were available to the consumer for at least this long
+    private static final long DRAIN_RATE_SAMPLE_NANOS = MILLISECONDS.toNanos(100);
+    private static final double DRAIN_RATE_DECAYING_ALPHA = 0.2;
+
     private final long bufferCapacity;
     private final DataSize maxResponseSize;
     private final int concurrentRequestMultiplier;
@@ -90,8 +99,12 @@ public class ExchangeClient
     private final boolean acknowledgePages;
     private final HttpClient httpClient;
     private final DriftClient<ThriftTaskClient> driftClient;
+    private final Optional<LocalRpcShuffleClientFactory> localShuffleClientFactory;
     private final ScheduledExecutorService scheduler;
     private boolean asyncPageTransportEnabled;
+    private final boolean adaptiveFlowControlEnabled;
+    private final long targetBufferedNanos;
+    private final Ticker ticker;
 
     @GuardedBy("this")
     private boolean noMoreLocations;
@@ -118,6 +131,24 @@ public class ExchangeClient
     private long successfulRequests;
     @GuardedBy("this")
     private final ExponentialMovingAverage responseSizeExponentialMovingAverage;
+    @GuardedBy("this")
+    private long emptyResponses;
+
+    // Clients whose last response had no pages, i.e. the upstream task has not produced more output yet
+    @GuardedBy("this")
+    private final Set<PageBufferClient> idleClients = new HashSet<>();
+
+    // The drain rate is the rate at which the consumer takes pages out of the buffer. It is only measured
+    // while the buffer is not empty, so that a consumer starved by the upstream tasks is not mistaken for a slow one.
+    @GuardedBy("this")
+    private long drainedBytes;
+    @GuardedBy("this")
+    private long drainedNanos;
+    @GuardedBy("this")
+    private long bufferNotEmptySinceNanos;
+    // negative until the first sample is taken
+    @GuardedBy("this")
+    private double drainedBytesPerSecond = -1;
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -140,6 +171,48 @@ public class ExchangeClient
             ScheduledExecutorService scheduler,
             LocalMemoryContext systemMemoryContext,
             Executor pageBufferClientCallbackExecutor)
+    {
+        this(
+                bufferCapacity,
+                maxResponseSize,
+                concurrentRequestMultiplier,
+                maxErrorDuration,
+                acknowledgePages,
+                asyncPageTransportEnabled,
+                responseSizeExponentialMovingAverageDecayingAlpha,
+                false,
+                new Duration(0, MILLISECONDS),
+                httpClient,
+                driftClient,
+                Optional.empty(),
+                scheduler,
+                systemMemoryContext,
+                pageBufferClientCallbackExecutor,
+                Ticker.systemTicker());
+    }
+
+    /**
+     * With {@code adaptiveFlowControlEnabled}, the client buffers only as many bytes as the consumer is expected to
+     * drain within {@code targetBufferedDuration}, instead of filling the whole {@code bufferCapacity}.
+     * Locations accepted by {@code localShuffleClientFactory} are read directly from the task manager of this node.
+     */
+    public ExchangeClient(
+            DataSize bufferCapacity,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            boolean asyncPageTransportEnabled,
+            double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveFlowControlEnabled,
+            Duration targetBufferedDuration,
+            HttpClient httpClient,
+            DriftClient<ThriftTaskClient> driftClient,
+            Optional<LocalRpcShuffleClientFactory> localShuffleClientFactory,
+            ScheduledExecutorService scheduler,
+            LocalMemoryContext systemMemoryContext,
+            Executor pageBufferClientCallbackExecutor,
+            Ticker ticker)
     {
         checkArgument(responseSizeExponentialMovingAverageDecayingAlpha >= 0.0 && responseSizeExponentialMovingAverageDecayingAlpha <= 1.0, "responseSizeExponentialMovingAverageDecayingAlpha must be between 0 and 1: %s", responseSizeExponentialMovingAverageDecayingAlpha);
         this.bufferCapacity = bufferCapacity.toBytes();
@@ -150,11 +223,15 @@ public class ExchangeClient
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
         this.httpClient = httpClient;
         this.driftClient = driftClient;
+        this.localShuffleClientFactory = requireNonNull(localShuffleClientFactory, "localShuffleClientFactory is null");
         this.scheduler = scheduler;
         this.systemMemoryContext = systemMemoryContext;
         this.maxBufferRetainedSizeInBytes = Long.MIN_VALUE;
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
         this.responseSizeExponentialMovingAverage = new ExponentialMovingAverage(responseSizeExponentialMovingAverageDecayingAlpha, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        this.adaptiveFlowControlEnabled = adaptiveFlowControlEnabled;
+        this.targetBufferedNanos = requireNonNull(targetBufferedDuration, "targetBufferedDuration is null").roundTo(NANOSECONDS);
+        this.ticker = requireNonNull(ticker, "ticker is null");
     }
 
     public ExchangeClientStatus getStatus()
@@ -172,7 +249,17 @@ public class ExchangeClient
             if (bufferedPages > 0 && pageBuffer.peekLast() == NO_MORE_PAGES) {
                 bufferedPages--;
             }
-            return new ExchangeClientStatus(bufferRetainedSizeInBytes, maxBufferRetainedSizeInBytes, responseSizeExponentialMovingAverage.get(), successfulRequests, bufferedPages, noMoreLocations, pageBufferClientStatus);
+            return new ExchangeClientStatus(
+                    bufferRetainedSizeInBytes,
+                    maxBufferRetainedSizeInBytes,
+                    responseSizeExponentialMovingAverage.get(),
+                    successfulRequests,
+                    bufferedPages,
+                    noMoreLocations,
+                    (long) max(drainedBytesPerSecond, 0),
+                    getTargetBufferedBytes(),
+                    emptyResponses,
+                    pageBufferClientStatus);
         }
     }
 
@@ -199,17 +286,24 @@ public class ExchangeClient
         checkState(!noMoreLocations, "No more locations already set");
 
         RpcShuffleClient resultClient;
-        Optional<URI> asyncPageTransportLocation = getAsyncPageTransportLocation(location, asyncPageTransportEnabled);
-        switch (location.getScheme().toLowerCase(Locale.ENGLISH)) {
-            case "http":
-            case "https":
-                resultClient = new HttpRpcShuffleClient(httpClient, location, asyncPageTransportLocation);
-                break;
-            case "thrift":
-                resultClient = new ThriftRpcShuffleClient(driftClient, location);
-                break;
-            default:
-                throw new PrestoException(GENERIC_INTERNAL_ERROR, "unsupported task result client scheme " + location.getScheme());
+        Optional<URI> asyncPageTransportLocation = Optional.empty();
+        Optional<RpcShuffleClient> localClient = localShuffleClientFactory.flatMap(factory -> factory.create(location, pageBufferClientCallbackExecutor));
+        if (localClient.isPresent()) {
+            resultClient = localClient.get();
+        }
+        else {
+            asyncPageTransportLocation = getAsyncPageTransportLocation(location, asyncPageTransportEnabled);
+            switch (location.getScheme().toLowerCase(Locale.ENGLISH)) {
+                case "http":
+                case "https":
+                    resultClient = new HttpRpcShuffleClient(httpClient, location, asyncPageTransportLocation);
+                    break;
+                case "thrift":
+                    resultClient = new ThriftRpcShuffleClient(driftClient, location);
+                    break;
+                default:
+                    throw new PrestoException(GENERIC_INTERNAL_ERROR, "unsupported task result client scheme " + location.getScheme());
+            }
         }
 
         PageBufferClient client = new PageBufferClient(
@@ -316,7 +410,13 @@ public class ExchangeClient
 
         synchronized (this) {
             if (!closed.get()) {
+                long now = ticker.read();
+                drainedBytes += page.getRetainedSizeInBytes();
                 bufferRetainedSizeInBytes -= page.getRetainedSizeInBytes();
+                if (bufferRetainedSizeInBytes <= 0) {
+                    drainedNanos += now - bufferNotEmptySinceNanos;
+                }
+                updateDrainRate(now);
                 systemMemoryContext.setBytes(bufferRetainedSizeInBytes);
                 if (pageBuffer.peek() == NO_MORE_PAGES) {
                     close();
@@ -376,7 +476,8 @@ public class ExchangeClient
             return;
         }
 
-        long neededBytes = bufferCapacity - bufferRetainedSizeInBytes;
+        updateDrainRate(ticker.read());
+        long neededBytes = getTargetBufferedBytes() - bufferRetainedSizeInBytes;
         if (neededBytes <= 0) {
             return;
         }
@@ -385,8 +486,19 @@ public class ExchangeClient
         clientCount = max(clientCount, 1);
 
         int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
+        if (adaptiveFlowControlEnabled) {
+            // a pending request to an upstream task that had no output the last time is unlikely to bring data soon,
+            // so it should not hold back requests to the tasks that do have output
+            pendingClients -= getIdlePendingClientCount();
+        }
         clientCount -= pendingClients;
 
+        long maxRequestSize = min(averageResponseSize * 2, maxResponseSize.toBytes());
+        if (adaptiveFlowControlEnabled) {
+            // do not ask a single upstream task for more than the buffer can take
+            maxRequestSize = min(maxRequestSize, max(neededBytes, DEFAULT_MAX_PAGE_SIZE_IN_BYTES));
+        }
+
         for (int i = 0; i < clientCount; ) {
             PageBufferClient client = queuedClients.poll();
             if (client == null) {
@@ -398,8 +510,7 @@ public class ExchangeClient
                 continue;
             }
 
-            DataSize max = new DataSize(min(averageResponseSize * 2, maxResponseSize.toBytes()), BYTE);
-            client.scheduleRequest(max);
+            client.scheduleRequest(new DataSize(maxRequestSize, BYTE));
             i++;
         }
     }
@@ -414,12 +525,23 @@ public class ExchangeClient
         return future;
     }
 
-    private synchronized boolean addPages(List<SerializedPage> pages)
+    private synchronized boolean addPages(PageBufferClient client, List<SerializedPage> pages)
     {
         if (isClosed() || isFailed()) {
             return false;
         }
 
+        if (pages.isEmpty()) {
+            idleClients.add(client);
+            emptyResponses++;
+        }
+        else {
+            idleClients.remove(client);
+            if (bufferRetainedSizeInBytes <= 0) {
+                bufferNotEmptySinceNanos = ticker.read();
+            }
+        }
+
         pageBuffer.addAll(pages);
 
         if (!pages.isEmpty()) {
@@ -457,11 +579,64 @@ public class ExchangeClient
     private synchronized void requestComplete(PageBufferClient client)
     {
         if (!queuedClients.contains(client)) {
-            queuedClients.add(client);
+            if (adaptiveFlowControlEnabled && !idleClients.contains(client)) {
+                // request from the upstream tasks that have output first
+                queuedClients.addFirst(client);
+            }
+            else {
+                queuedClients.add(client);
+            }
         }
         scheduleRequestIfNecessary();
     }
 
+    @GuardedBy("this")
+    private long getTargetBufferedBytes()
+    {
+        if (!adaptiveFlowControlEnabled || drainedBytesPerSecond < 0) {
+            return bufferCapacity;
+        }
+        long targetBufferedBytes = (long) (drainedBytesPerSecond * targetBufferedNanos / SECONDS.toNanos(1));
+        // always leave room for at least a response of the average size
+        long minBufferedBytes = max(responseSizeExponentialMovingAverage.get(), DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        return min(bufferCapacity, max(targetBufferedBytes, minBufferedBytes));
+    }
+
+    @GuardedBy("this")
+    private void updateDrainRate(long now)
+    {
+        long elapsedNanos = drainedNanos;
+        if (bufferRetainedSizeInBytes > 0) {
+            elapsedNanos += now - bufferNotEmptySinceNanos;
+        }
+        if (elapsedNanos < DRAIN_RATE_SAMPLE_NANOS) {
+            return;
+        }
+
+        double sample = drainedBytes * 1.0 * SECONDS.toNanos(1) / elapsedNanos;
+        if (drainedBytesPerSecond < 0) {
+            drainedBytesPerSecond = sample;
+        }
+        else {
+            drainedBytesPerSecond += DRAIN_RATE_DECAYING_ALPHA * (sample - drainedBytesPerSecond);
+        }
+        drainedBytes = 0;
+        drainedNanos = 0;
+        bufferNotEmptySinceNanos = now;
+    }
+
+    @GuardedBy("this")
+    private int getIdlePendingClientCount()
+    {
+        int count = 0;
+        for (PageBufferClient client : idleClients) {
+            if (!queuedClients.contains(client) && !completedClients.contains(client)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private synchronized void clientFinished(PageBufferClient client)
     {
         requireNonNull(client, "client is null");
@@ -506,7 +681,7 @@ public class ExchangeClient
         {
             requireNonNull(client, "client is null");
             requireNonNull(pages, "pages is null");
-            return ExchangeClient.this.addPages(pages);
+            return ExchangeClient.this.addPages(client, pages);
         }
 
         @Override
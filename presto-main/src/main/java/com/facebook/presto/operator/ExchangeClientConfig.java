@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.http.client.HttpClientConfig;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -39,6 +40,9 @@ public class ExchangeClientConfig
     private boolean acknowledgePages = true;
     private double responseSizeExponentialMovingAverageDecayingAlpha = 0.1;
     private boolean asyncPageTransportEnabled = true;
+    private boolean adaptiveFlowControlEnabled;
+    private Duration targetBufferedDuration = new Duration(1, TimeUnit.SECONDS);
+    private boolean localTransportEnabled;
 
     @NotNull
     public DataSize getMaxBufferSize()
@@ -182,4 +186,45 @@ public class ExchangeClientConfig
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
         return this;
     }
+
+    public boolean isAdaptiveFlowControlEnabled()
+    {
+        return adaptiveFlowControlEnabled;
+    }
+
+    @Config("exchange.adaptive-flow-control-enabled")
+    @ConfigDescription("Size the exchange buffer by the rate at which the consumer drains it instead of always filling it up to exchange.max-buffer-size")
+    public ExchangeClientConfig setAdaptiveFlowControlEnabled(boolean adaptiveFlowControlEnabled)
+    {
+        this.adaptiveFlowControlEnabled = adaptiveFlowControlEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getTargetBufferedDuration()
+    {
+        return targetBufferedDuration;
+    }
+
+    @Config("exchange.target-buffered-duration")
+    @ConfigDescription("With adaptive flow control, buffer as much data as the consumer drains in this time")
+    public ExchangeClientConfig setTargetBufferedDuration(Duration targetBufferedDuration)
+    {
+        this.targetBufferedDuration = targetBufferedDuration;
+        return this;
+    }
+
+    public boolean isLocalTransportEnabled()
+    {
+        return localTransportEnabled;
+    }
+
+    @Config("exchange.local-transport-enabled")
+    @ConfigDescription("Read the output of tasks running on the same node directly from the task manager instead of over HTTP")
+    public ExchangeClientConfig setLocalTransportEnabled(boolean localTransportEnabled)
+    {
+        this.localTransportEnabled = localTransportEnabled;
+        return this;
+    }
 }
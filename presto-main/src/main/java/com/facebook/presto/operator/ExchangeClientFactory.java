@@ -18,6 +18,7 @@ import com.facebook.airlift.http.client.HttpClient;
 import com.facebook.drift.client.DriftClient;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.server.thrift.ThriftTaskClient;
+import com.google.common.base.Ticker;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
@@ -26,6 +27,7 @@ import org.weakref.jmx.Nested;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -44,19 +46,46 @@ public class ExchangeClientFactory
     private final Duration maxErrorDuration;
     private final HttpClient httpClient;
     private final DriftClient<ThriftTaskClient> driftClient;
+    private final Optional<LocalRpcShuffleClientFactory> localShuffleClientFactory;
     private final DataSize maxResponseSize;
     private final boolean acknowledgePages;
     private final boolean asyncPageTransportEnabled;
     private final double responseSizeExponentialMovingAverageDecayingAlpha;
+    private final boolean adaptiveFlowControlEnabled;
+    private final Duration targetBufferedDuration;
     private final ScheduledExecutorService scheduler;
     private final ThreadPoolExecutorMBean executorMBean;
     private final ExecutorService pageBufferClientCallbackExecutor;
 
+    public ExchangeClientFactory(
+            ExchangeClientConfig config,
+            HttpClient httpClient,
+            DriftClient<ThriftTaskClient> driftClient,
+            ScheduledExecutorService scheduler)
+    {
+        this(
+                config.getMaxBufferSize(),
+                config.getMaxResponseSize(),
+                config.getConcurrentRequestMultiplier(),
+                config.getMaxErrorDuration(),
+                config.isAcknowledgePages(),
+                config.isAsyncPageTransportEnabled(),
+                config.getPageBufferClientMaxCallbackThreads(),
+                config.getResponseSizeExponentialMovingAverageDecayingAlpha(),
+                config.isAdaptiveFlowControlEnabled(),
+                config.getTargetBufferedDuration(),
+                httpClient,
+                driftClient,
+                Optional.empty(),
+                scheduler);
+    }
+
     @Inject
     public ExchangeClientFactory(
             ExchangeClientConfig config,
             @ForExchange HttpClient httpClient,
             @ForExchange DriftClient<ThriftTaskClient> driftClient,
+            LocalRpcShuffleClientFactory localShuffleClientFactory,
             @ForExchange ScheduledExecutorService scheduler)
     {
         this(
@@ -68,8 +97,11 @@ public class ExchangeClientFactory
                 config.isAsyncPageTransportEnabled(),
                 config.getPageBufferClientMaxCallbackThreads(),
                 config.getResponseSizeExponentialMovingAverageDecayingAlpha(),
+                config.isAdaptiveFlowControlEnabled(),
+                config.getTargetBufferedDuration(),
                 httpClient,
                 driftClient,
+                config.isLocalTransportEnabled() ? Optional.of(localShuffleClientFactory) : Optional.empty(),
                 scheduler);
     }
 
@@ -82,8 +114,11 @@ public class ExchangeClientFactory
             boolean asyncPageTransportEnabled,
             int pageBufferClientMaxCallbackThreads,
             double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveFlowControlEnabled,
+            Duration targetBufferedDuration,
             HttpClient httpClient,
             DriftClient<ThriftTaskClient> driftClient,
+            Optional<LocalRpcShuffleClientFactory> localShuffleClientFactory,
             ScheduledExecutorService scheduler)
     {
         this.maxBufferedBytes = requireNonNull(maxBufferedBytes, "maxBufferedBytes is null");
@@ -93,6 +128,7 @@ public class ExchangeClientFactory
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.driftClient = requireNonNull(driftClient, "driftClient is null");
+        this.localShuffleClientFactory = requireNonNull(localShuffleClientFactory, "localShuffleClientFactory is null");
 
         // Use only 0.75 of the maxResponseSize to leave room for additional bytes from the encoding
         // TODO figure out a better way to compute the size of data that will be transferred over the network
@@ -106,6 +142,8 @@ public class ExchangeClientFactory
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) pageBufferClientCallbackExecutor);
 
         this.responseSizeExponentialMovingAverageDecayingAlpha = responseSizeExponentialMovingAverageDecayingAlpha;
+        this.adaptiveFlowControlEnabled = adaptiveFlowControlEnabled;
+        this.targetBufferedDuration = requireNonNull(targetBufferedDuration, "targetBufferedDuration is null");
 
         checkArgument(maxBufferedBytes.toBytes() > 0, "maxBufferSize must be at least 1 byte: %s", maxBufferedBytes);
         checkArgument(maxResponseSize.toBytes() > 0, "maxResponseSize must be at least 1 byte: %s", maxResponseSize);
@@ -137,10 +175,14 @@ public class ExchangeClientFactory
                 acknowledgePages,
                 asyncPageTransportEnabled,
                 responseSizeExponentialMovingAverageDecayingAlpha,
+                adaptiveFlowControlEnabled,
+                targetBufferedDuration,
                 httpClient,
                 driftClient,
+                localShuffleClientFactory,
                 scheduler,
                 systemMemoryContext,
-                pageBufferClientCallbackExecutor);
+                pageBufferClientCallbackExecutor,
+                Ticker.systemTicker());
     }
 }
@@ -32,6 +32,9 @@ public class ExchangeClientStatus
     private final long successfulRequestsCount;
     private final int bufferedPages;
     private final boolean noMoreLocations;
+    private final long drainedBytesPerSecond;
+    private final long targetBufferedBytes;
+    private final long emptyResponsesCount;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
 
     @JsonCreator
@@ -42,6 +45,9 @@ public class ExchangeClientStatus
             @JsonProperty("successfulRequestsCount") long successFullRequestsCount,
             @JsonProperty("bufferedPages") int bufferedPages,
             @JsonProperty("noMoreLocations") boolean noMoreLocations,
+            @JsonProperty("drainedBytesPerSecond") long drainedBytesPerSecond,
+            @JsonProperty("targetBufferedBytes") long targetBufferedBytes,
+            @JsonProperty("emptyResponsesCount") long emptyResponsesCount,
             @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
     {
         this.bufferedBytes = bufferedBytes;
@@ -50,6 +56,9 @@ public class ExchangeClientStatus
         this.successfulRequestsCount = successFullRequestsCount;
         this.bufferedPages = bufferedPages;
         this.noMoreLocations = noMoreLocations;
+        this.drainedBytesPerSecond = drainedBytesPerSecond;
+        this.targetBufferedBytes = targetBufferedBytes;
+        this.emptyResponsesCount = emptyResponsesCount;
         this.pageBufferClientStatuses = ImmutableList.copyOf(requireNonNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
     }
 
@@ -89,6 +98,33 @@ public class ExchangeClientStatus
         return noMoreLocations;
     }
 
+    /**
+     * Rate at which the consumer takes pages out of the buffer, measured while the buffer is not empty.
+     */
+    @JsonProperty
+    public long getDrainedBytesPerSecond()
+    {
+        return drainedBytesPerSecond;
+    }
+
+    /**
+     * Number of bytes the client tries to keep buffered. This is the buffer capacity unless adaptive flow control is enabled.
+     */
+    @JsonProperty
+    public long getTargetBufferedBytes()
+    {
+        return targetBufferedBytes;
+    }
+
+    /**
+     * Number of responses without pages, i.e. requests made before the upstream task had more output.
+     */
+    @JsonProperty
+    public long getEmptyResponsesCount()
+    {
+        return emptyResponsesCount;
+    }
+
     @JsonProperty
     public List<PageBufferClientStatus> getPageBufferClientStatuses()
     {
@@ -111,6 +147,9 @@ public class ExchangeClientStatus
                 .add("successfulRequestsCount", successfulRequestsCount)
                 .add("bufferedPages", bufferedPages)
                 .add("noMoreLocations", noMoreLocations)
+                .add("drainedBytesPerSecond", drainedBytesPerSecond)
+                .add("targetBufferedBytes", targetBufferedBytes)
+                .add("emptyResponsesCount", emptyResponsesCount)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
                 .toString();
     }
@@ -125,6 +164,9 @@ public class ExchangeClientStatus
                 successfulRequestsCount + other.successfulRequestsCount,
                 bufferedPages + other.bufferedPages,
                 noMoreLocations && other.noMoreLocations, // if at least one has some locations, mergee has some too
+                drainedBytesPerSecond + other.drainedBytesPerSecond,
+                Math.max(targetBufferedBytes, other.targetBufferedBytes),
+                emptyResponsesCount + other.emptyResponsesCount,
                 ImmutableList.of()); // pageBufferClientStatuses may be long, so we don't want to combine the lists
     }
 
@@ -0,0 +1,497 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.array.LongBigArray;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.scalar.CombineHashFunction;
+import com.facebook.presto.spi.PrestoException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Group by hash for composite keys whose columns are all backed by a long. The key of every
+ * group is packed into a contiguous slot of longs (one per column followed by a null mask),
+ * so lookups hash and compare primitives instead of going through a {@link PagesHashStrategy}.
+ */
+// This implementation assumes arrays used in the hash are always a power of 2
+public class FixedWidthGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(FixedWidthGroupByHash.class).instanceSize();
+    private static final float FILL_RATIO = 0.75f;
+
+    // types whose equality and hash are fully determined by the value returned from getLong
+    private static final Set<Type> SUPPORTED_TYPES = ImmutableSet.of(BIGINT, INTEGER, SMALLINT, TINYINT, DATE, TIMESTAMP);
+    // the null mask uses one bit per channel
+    private static final int MAX_CHANNEL_COUNT = Long.SIZE - 1;
+
+    private final List<Type> types;
+    private final Type[] hashTypes;
+    private final int[] channels;
+    private final boolean outputRawHash;
+    private final HashGenerator hashGenerator;
+
+    // number of longs used by the key of a group: one per channel and the null mask
+    private final int slotWidth;
+    // scratch space for the key of the row being looked up
+    private final long[] currentKey;
+
+    private int hashCapacity;
+    private int maxFill;
+    private int mask;
+
+    // the hash table from hash positions to groupIds
+    private int[] groupIdsByHash;
+
+    // reverse index from the groupId back to the packed key and the raw hash of the group
+    private final LongBigArray keysByGroupId;
+    private final LongBigArray rawHashByGroupId;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+
+    public static boolean isSupported(List<? extends Type> hashTypes)
+    {
+        return hashTypes.size() <= MAX_CHANNEL_COUNT && SUPPORTED_TYPES.containsAll(hashTypes);
+    }
+
+    public FixedWidthGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            UpdateMemory updateMemory)
+    {
+        requireNonNull(hashTypes, "hashTypes is null");
+        requireNonNull(hashChannels, "hashChannels is null");
+        requireNonNull(inputHashChannel, "inputHashChannel is null");
+        checkArgument(hashTypes.size() == hashChannels.length, "hashTypes and hashChannels have different sizes");
+        checkArgument(isSupported(hashTypes), "unsupported hash types: %s", hashTypes);
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.hashTypes = hashTypes.toArray(new Type[0]);
+        this.channels = hashChannels.clone();
+        this.outputRawHash = inputHashChannel.isPresent();
+        this.types = outputRawHash ? ImmutableList.copyOf(Iterables.concat(hashTypes, ImmutableList.of(BIGINT))) : ImmutableList.copyOf(hashTypes);
+        this.hashGenerator = inputHashChannel.isPresent() ? new PrecomputedHashGenerator(inputHashChannel.get()) : new InterpretedHashGenerator(ImmutableList.copyOf(hashTypes), hashChannels);
+
+        this.slotWidth = hashChannels.length + 1;
+        this.currentKey = new long[slotWidth];
+
+        hashCapacity = arraySize(expectedSize, FILL_RATIO);
+
+        maxFill = calculateMaxFill(hashCapacity);
+        mask = hashCapacity - 1;
+        groupIdsByHash = new int[hashCapacity];
+        Arrays.fill(groupIdsByHash, -1);
+
+        keysByGroupId = new LongBigArray();
+        keysByGroupId.ensureCapacity((long) maxFill * slotWidth);
+        rawHashByGroupId = new LongBigArray();
+        rawHashByGroupId.ensureCapacity(maxFill);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                sizeOf(groupIdsByHash) +
+                keysByGroupId.sizeOf() +
+                rawHashByGroupId.sizeOf() +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0, "groupId is negative");
+        long keyOffset = (long) groupId * slotWidth;
+        long nullMask = keysByGroupId.get(keyOffset + hashTypes.length);
+        for (int i = 0; i < hashTypes.length; i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + i);
+            if ((nullMask & (1L << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else {
+                hashTypes[i].writeLong(blockBuilder, keysByGroupId.get(keyOffset + i));
+            }
+        }
+
+        if (outputRawHash) {
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset + hashTypes.length), rawHashByGroupId.get(groupId));
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new AddPageWork(page);
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new GetGroupIdsWork(page);
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        long keyHash = loadCurrentKey(position, page, hashChannels);
+        return findGroupId(getHashPosition(keyHash, mask)) >= 0;
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        return rawHashByGroupId.get(groupId);
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    private int putIfAbsent(int position, Page page)
+    {
+        long keyHash = loadCurrentKey(position, page, channels);
+        int hashPosition = getHashPosition(keyHash, mask);
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            int groupId = groupIdsByHash[hashPosition];
+            if (groupId == -1) {
+                break;
+            }
+
+            if (currentKeyEquals(groupId)) {
+                return groupId;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+            hashCollisions++;
+        }
+
+        return addNewGroup(hashPosition, position, page);
+    }
+
+    private int addNewGroup(int hashPosition, int position, Page page)
+    {
+        // record group id in hash
+        int groupId = nextGroupId++;
+
+        long keyOffset = (long) groupId * slotWidth;
+        for (int i = 0; i < slotWidth; i++) {
+            keysByGroupId.set(keyOffset + i, currentKey[i]);
+        }
+        rawHashByGroupId.set(groupId, hashGenerator.hashPosition(position, page));
+        groupIdsByHash[hashPosition] = groupId;
+
+        // increase capacity, if necessary
+        if (needRehash()) {
+            tryRehash();
+        }
+        return groupId;
+    }
+
+    /**
+     * Reads the key of the row into {@link #currentKey} and returns its hash.
+     */
+    private long loadCurrentKey(int position, Page page, int[] hashChannels)
+    {
+        long nullMask = 0;
+        long keyHash = 0;
+        for (int i = 0; i < hashTypes.length; i++) {
+            Block block = page.getBlock(hashChannels[i]);
+            long value = 0;
+            if (block.isNull(position)) {
+                nullMask |= 1L << i;
+            }
+            else {
+                value = hashTypes[i].getLong(block, position);
+            }
+            currentKey[i] = value;
+            keyHash = combineKeyHash(keyHash, value);
+        }
+        currentKey[hashTypes.length] = nullMask;
+        return combineKeyHash(keyHash, nullMask);
+    }
+
+    private int findGroupId(int hashPosition)
+    {
+        while (true) {
+            int groupId = groupIdsByHash[hashPosition];
+            if (groupId == -1 || currentKeyEquals(groupId)) {
+                return groupId;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+        }
+    }
+
+    private boolean currentKeyEquals(int groupId)
+    {
+        long keyOffset = (long) groupId * slotWidth;
+        for (int i = 0; i < slotWidth; i++) {
+            if (keysByGroupId.get(keyOffset + i) != currentKey[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getKeyHash(int groupId)
+    {
+        long keyOffset = (long) groupId * slotWidth;
+        long keyHash = 0;
+        for (int i = 0; i < slotWidth; i++) {
+            keyHash = combineKeyHash(keyHash, keysByGroupId.get(keyOffset + i));
+        }
+        return keyHash;
+    }
+
+    /**
+     * Must be applied to the key columns followed by the null mask, the same way for {@link #loadCurrentKey} and {@link #getKeyHash}.
+     */
+    private static long combineKeyHash(long keyHash, long value)
+    {
+        return CombineHashFunction.getHash(keyHash, AbstractLongType.hash(value));
+    }
+
+    private boolean tryRehash()
+    {
+        long newCapacityLong = hashCapacity * 2L;
+        if (newCapacityLong > Integer.MAX_VALUE) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 1 billion entries");
+        }
+        int newCapacity = toIntExact(newCapacityLong);
+
+        // An estimate of how much extra memory is needed before we can go ahead and expand the hash table.
+        // This includes the new capacity for groupIdsByHash, keysByGroupId, and rawHashByGroupId as well as the size of the current page
+        preallocatedMemoryInBytes = (newCapacity - hashCapacity) * (long) Integer.BYTES +
+                (calculateMaxFill(newCapacity) - maxFill) * (long) (slotWidth + 1) * Long.BYTES +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+        preallocatedMemoryInBytes = 0;
+
+        expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+
+        int newMask = newCapacity - 1;
+        int[] newGroupIdsByHash = new int[newCapacity];
+        Arrays.fill(newGroupIdsByHash, -1);
+
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            // find an empty slot for the group
+            int hashPosition = getHashPosition(getKeyHash(groupId), newMask);
+            while (newGroupIdsByHash[hashPosition] != -1) {
+                hashPosition = (hashPosition + 1) & newMask;
+                hashCollisions++;
+            }
+            newGroupIdsByHash[hashPosition] = groupId;
+        }
+
+        mask = newMask;
+        hashCapacity = newCapacity;
+        maxFill = calculateMaxFill(hashCapacity);
+        groupIdsByHash = newGroupIdsByHash;
+
+        keysByGroupId.ensureCapacity((long) maxFill * slotWidth);
+        rawHashByGroupId.ensureCapacity(maxFill);
+        return true;
+    }
+
+    private boolean needRehash()
+    {
+        return nextGroupId >= maxFill;
+    }
+
+    private static int getHashPosition(long keyHash, int mask)
+    {
+        return (int) (murmurHash3(keyHash) & mask);
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private int lastPosition;
+
+        public AddPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition < positionCount, "position count out of bound");
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // get the group for the current row
+                putIfAbsent(lastPosition, page);
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Page page;
+
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(page.getPositionCount());
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition < positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page));
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == page.getPositionCount(), "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+}
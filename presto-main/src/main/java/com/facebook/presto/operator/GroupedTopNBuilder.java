@@ -22,7 +22,9 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
@@ -103,7 +105,26 @@ public class GroupedTopNBuilder
 
     public Iterator<Page> buildResult()
     {
-        return new ResultIterator();
+        return new ResultIterator(IntIterators.fromTo(0, groupByHash.getGroupCount()), produceRowNumber);
+    }
+
+    /**
+     * Produces the rows of every group ordered by the hash {@param hashGenerator} computes for the group,
+     * so that results of several builders can be merged with {@link MergeHashSort}. Row numbers are not
+     * produced, as the rows of a group are not final until all the results are merged.
+     */
+    public Iterator<Page> buildHashSortedResult(HashGenerator hashGenerator)
+    {
+        int groupCount = groupByHash.getGroupCount();
+        int[] groupIds = new int[groupCount];
+        long[] rawHashes = new long[groupCount];
+        for (int groupId = 0; groupId < groupCount; groupId++) {
+            Row row = groupedRows.get(groupId).first();
+            groupIds[groupId] = groupId;
+            rawHashes[groupId] = hashGenerator.hashPosition(row.getPosition(), pageReferences.get(row.getPageId()).getPage());
+        }
+        IntArrays.quickSort(groupIds, (leftGroupId, rightGroupId) -> Long.compare(rawHashes[leftGroupId], rawHashes[rightGroupId]));
+        return new ResultIterator(IntIterators.wrap(groupIds), false);
     }
 
     public long getEstimatedSizeInBytes()
@@ -372,9 +393,9 @@ public class GroupedTopNBuilder
     {
         private final PageBuilder pageBuilder;
         // we may have 0 groups if there is no input page processed
-        private final int groupCount = groupByHash.getGroupCount();
+        private final IntIterator groupIds;
+        private final boolean outputRowNumber;
 
-        private int currentGroupNumber;
         private long currentGroupSizeInBytes;
 
         // the row number of the current position in the group
@@ -382,16 +403,19 @@ public class GroupedTopNBuilder
         // number of rows in the group
         private int currentGroupSize;
 
-        private ObjectBigArray<Row> currentRows = nextGroupedRows();
+        private ObjectBigArray<Row> currentRows;
 
-        ResultIterator()
+        ResultIterator(IntIterator groupIds, boolean outputRowNumber)
         {
-            if (produceRowNumber) {
+            this.groupIds = requireNonNull(groupIds, "groupIds is null");
+            this.outputRowNumber = outputRowNumber;
+            if (outputRowNumber) {
                 pageBuilder = new PageBuilder(new ImmutableList.Builder<Type>().addAll(sourceTypes).add(BIGINT).build());
             }
             else {
                 pageBuilder = new PageBuilder(sourceTypes);
             }
+            currentRows = nextGroupedRows();
         }
 
         @Override
@@ -416,7 +440,7 @@ public class GroupedTopNBuilder
                     sourceTypes.get(i).appendTo(pageReferences.get(row.getPageId()).getPage().getBlock(i), row.getPosition(), pageBuilder.getBlockBuilder(i));
                 }
 
-                if (produceRowNumber) {
+                if (outputRowNumber) {
                     BIGINT.writeLong(pageBuilder.getBlockBuilder(sourceTypes.size()), currentGroupPosition + 1);
                 }
                 pageBuilder.declarePosition();
@@ -439,12 +463,12 @@ public class GroupedTopNBuilder
 
         private ObjectBigArray<Row> nextGroupedRows()
         {
-            if (currentGroupNumber < groupCount) {
-                RowHeap rows = groupedRows.get(currentGroupNumber);
+            if (groupIds.hasNext()) {
+                int groupId = groupIds.nextInt();
+                RowHeap rows = groupedRows.get(groupId);
                 verify(rows != null && !rows.isEmpty(), "impossible to have inserted a group without a witness row");
-                groupedRows.set(currentGroupNumber, null);
+                groupedRows.set(groupId, null);
                 currentGroupSizeInBytes = rows.getEstimatedSizeInBytes();
-                currentGroupNumber++;
                 currentGroupSize = rows.size();
 
                 // sort output rows in a big array in case there are too many rows
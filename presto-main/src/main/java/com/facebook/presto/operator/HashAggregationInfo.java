@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.util.Mergeable;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import static java.util.Objects.requireNonNull;
+
+public class HashAggregationInfo
+        implements Mergeable<HashAggregationInfo>, OperatorInfo
+{
+    private final HashCollisionsInfo hashCollisionsInfo;
+    private final long partialAggregationBypassedPositions;
+
+    @JsonCreator
+    public HashAggregationInfo(
+            @JsonProperty("hashCollisionsInfo") HashCollisionsInfo hashCollisionsInfo,
+            @JsonProperty("partialAggregationBypassedPositions") long partialAggregationBypassedPositions)
+    {
+        this.hashCollisionsInfo = requireNonNull(hashCollisionsInfo, "hashCollisionsInfo is null");
+        this.partialAggregationBypassedPositions = partialAggregationBypassedPositions;
+    }
+
+    @JsonProperty
+    public HashCollisionsInfo getHashCollisionsInfo()
+    {
+        return hashCollisionsInfo;
+    }
+
+    /**
+     * Number of input rows that were passed through without partial aggregation
+     * because partial aggregation was not reducing the number of rows.
+     */
+    @JsonProperty
+    public long getPartialAggregationBypassedPositions()
+    {
+        return partialAggregationBypassedPositions;
+    }
+
+    @Override
+    public HashAggregationInfo mergeWith(HashAggregationInfo other)
+    {
+        return new HashAggregationInfo(
+                hashCollisionsInfo.mergeWith(other.getHashCollisionsInfo()),
+                partialAggregationBypassedPositions + other.getPartialAggregationBypassedPositions());
+    }
+}
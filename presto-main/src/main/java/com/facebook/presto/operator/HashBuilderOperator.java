@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.SharedLookupSourceCache.SharedLookupSource;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spiller.SingleStreamSpiller;
 import com.facebook.presto.spiller.SingleStreamSpillerFactory;
@@ -40,6 +41,8 @@ import java.util.Queue;
 
 import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
 import static com.facebook.airlift.concurrent.MoreFutures.getDone;
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
@@ -73,6 +76,7 @@ public class HashBuilderOperator
 
         private boolean closed;
         private boolean enforceBroadcastMemoryLimit;
+        private final boolean shareLookupSource;
 
         public HashBuilderOperatorFactory(
                 int operatorId,
@@ -89,6 +93,45 @@ public class HashBuilderOperator
                 boolean spillEnabled,
                 SingleStreamSpillerFactory singleStreamSpillerFactory,
                 boolean enforceBroadcastMemoryLimit)
+        {
+            this(
+                    operatorId,
+                    planNodeId,
+                    lookupSourceFactoryManager,
+                    outputChannels,
+                    hashChannels,
+                    preComputedHashChannel,
+                    filterFunctionFactory,
+                    sortChannel,
+                    searchFunctionFactories,
+                    expectedPositions,
+                    pagesIndexFactory,
+                    spillEnabled,
+                    singleStreamSpillerFactory,
+                    enforceBroadcastMemoryLimit,
+                    false);
+        }
+
+        /**
+         * @param shareLookupSource whether the lookup source is shared with the other tasks of the query on this worker,
+         * which must receive the same build input, through the {@link SharedLookupSourceCache} of the query
+         */
+        public HashBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager,
+                List<Integer> outputChannels,
+                List<Integer> hashChannels,
+                OptionalInt preComputedHashChannel,
+                Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+                Optional<Integer> sortChannel,
+                List<JoinFilterFunctionFactory> searchFunctionFactories,
+                int expectedPositions,
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                SingleStreamSpillerFactory singleStreamSpillerFactory,
+                boolean enforceBroadcastMemoryLimit,
+                boolean shareLookupSource)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -109,6 +152,8 @@ public class HashBuilderOperator
 
             this.expectedPositions = expectedPositions;
             this.enforceBroadcastMemoryLimit = enforceBroadcastMemoryLimit;
+            checkArgument(!shareLookupSource || !spillEnabled, "shared lookup source can not be spilled");
+            this.shareLookupSource = shareLookupSource;
         }
 
         @Override
@@ -120,6 +165,14 @@ public class HashBuilderOperator
             PartitionedLookupSourceFactory lookupSourceFactory = this.lookupSourceFactoryManager.getJoinBridge(driverContext.getLifespan());
             int partitionIndex = getAndIncrementPartitionIndex(driverContext.getLifespan());
             verify(partitionIndex < lookupSourceFactory.partitions());
+            Optional<SharedLookupSource> sharedLookupSource = Optional.empty();
+            if (shareLookupSource) {
+                sharedLookupSource = Optional.of(driverContext.getPipelineContext().getTaskContext().getQueryContext().getSharedLookupSourceCache().acquire(
+                        driverContext.getTaskId().getStageExecutionId(),
+                        planNodeId,
+                        partitionIndex,
+                        lookupSourceFactory.partitions()));
+            }
             return new HashBuilderOperator(
                     operatorContext,
                     lookupSourceFactory,
@@ -134,7 +187,8 @@ public class HashBuilderOperator
                     pagesIndexFactory,
                     spillEnabled,
                     singleStreamSpillerFactory,
-                    enforceBroadcastMemoryLimit);
+                    enforceBroadcastMemoryLimit,
+                    sharedLookupSource);
         }
 
         @Override
@@ -231,6 +285,14 @@ public class HashBuilderOperator
 
     private final boolean enforceBroadcastMemoryLimit;
 
+    private final Optional<SharedLookupSource> sharedLookupSource;
+    // set once the input is finished, when the lookup source is built by another task
+    private boolean waitingForSharedLookupSource;
+    // done once the lookup source built by another task is published, or once it is no longer needed by this task
+    private ListenableFuture<?> sharedLookupSourceBuiltOrNotNeeded = NOT_BLOCKED;
+    // set once the lookup source built by this operator is published to the other tasks, which takes over its memory
+    private boolean lookupSourceShared;
+
     public HashBuilderOperator(
             OperatorContext operatorContext,
             PartitionedLookupSourceFactory lookupSourceFactory,
@@ -245,7 +307,8 @@ public class HashBuilderOperator
             PagesIndex.Factory pagesIndexFactory,
             boolean spillEnabled,
             SingleStreamSpillerFactory singleStreamSpillerFactory,
-            boolean enforceBroadcastMemoryLimit)
+            boolean enforceBroadcastMemoryLimit,
+            Optional<SharedLookupSource> sharedLookupSource)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
@@ -271,6 +334,7 @@ public class HashBuilderOperator
         this.spillEnabled = spillEnabled;
         this.singleStreamSpillerFactory = requireNonNull(singleStreamSpillerFactory, "singleStreamSpillerFactory is null");
         this.enforceBroadcastMemoryLimit = enforceBroadcastMemoryLimit;
+        this.sharedLookupSource = requireNonNull(sharedLookupSource, "sharedLookupSource is null");
     }
 
     @Override
@@ -290,6 +354,9 @@ public class HashBuilderOperator
     {
         switch (state) {
             case CONSUMING_INPUT:
+                if (waitingForSharedLookupSource) {
+                    return sharedLookupSourceBuiltOrNotNeeded;
+                }
                 return NOT_BLOCKED;
 
             case SPILLING_INPUT:
@@ -316,10 +383,10 @@ public class HashBuilderOperator
     @Override
     public boolean needsInput()
     {
-        boolean stateNeedsInput = (state == State.CONSUMING_INPUT)
+        boolean stateNeedsInput = (state == State.CONSUMING_INPUT && !waitingForSharedLookupSource)
                 || (state == State.SPILLING_INPUT && spillInProgress.isDone());
 
-        return stateNeedsInput && !lookupSourceFactoryDestroyed.isDone();
+        return stateNeedsInput && !isLookupSourceNotNeeded();
     }
 
     @Override
@@ -327,7 +394,7 @@ public class HashBuilderOperator
     {
         requireNonNull(page, "page is null");
 
-        if (lookupSourceFactoryDestroyed.isDone()) {
+        if (isLookupSourceNotNeeded()) {
             close();
             return;
         }
@@ -338,6 +405,11 @@ public class HashBuilderOperator
         }
 
         checkState(state == State.CONSUMING_INPUT);
+        if (isSharedLookupSourceBuiltElsewhere()) {
+            // another task indexes the same pages
+            operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
+            return;
+        }
         updateIndex(page);
     }
 
@@ -436,7 +508,7 @@ public class HashBuilderOperator
     @Override
     public void finish()
     {
-        if (lookupSourceFactoryDestroyed.isDone()) {
+        if (isLookupSourceNotNeeded()) {
             close();
             return;
         }
@@ -486,17 +558,40 @@ public class HashBuilderOperator
     private void finishInput()
     {
         checkState(state == State.CONSUMING_INPUT);
-        if (lookupSourceFactoryDestroyed.isDone()) {
+        if (isLookupSourceNotNeeded()) {
             close();
             return;
         }
 
-        LookupSourceSupplier partition = buildLookupSource();
-        if (spillEnabled) {
-            localRevocableMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
+        LookupSourceSupplier partition;
+        if (isSharedLookupSourceBuiltElsewhere()) {
+            ListenableFuture<LookupSourceSupplier> sharedLookupSourceSupplier = sharedLookupSource.get().getLookupSourceSupplier();
+            if (!sharedLookupSourceSupplier.isDone()) {
+                if (!waitingForSharedLookupSource) {
+                    // an empty probe side releases this task from waiting, so that the builder can abandon the lookup source
+                    waitingForSharedLookupSource = true;
+                    sharedLookupSourceBuiltOrNotNeeded = whenAnyComplete(ImmutableList.of(sharedLookupSourceSupplier, lookupSourceFactoryDestroyed));
+                }
+                return;
+            }
+            waitingForSharedLookupSource = false;
+            partition = getFutureValue(sharedLookupSourceSupplier);
+        }
+        else if (sharedLookupSource.isPresent()) {
+            partition = buildLookupSource();
+            // the memory of the lookup source is accounted once for all the tasks sharing it
+            localUserMemoryContext.setBytes(0, enforceBroadcastMemoryLimit);
+            sharedLookupSource.get().setLookupSourceSupplier(partition, partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
+            lookupSourceShared = true;
         }
         else {
-            localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
+            partition = buildLookupSource();
+            if (spillEnabled) {
+                localRevocableMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
+            }
+            else {
+                localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
+            }
         }
         lookupSourceNotNeeded = Optional.of(lookupSourceFactory.lendPartitionLookupSource(partitionIndex, partition));
 
@@ -511,9 +606,10 @@ public class HashBuilderOperator
             return;
         }
 
-        index.clear();
+        clearIndex();
         localRevocableMemoryContext.setBytes(0);
-        localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
+        // a shared lookup source is accounted by the cache it is shared through
+        localUserMemoryContext.setBytes(lookupSourceShared ? 0 : index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
         lookupSourceSupplier = null;
         close();
     }
@@ -604,7 +700,7 @@ public class HashBuilderOperator
     @Override
     public boolean isFinished()
     {
-        if (lookupSourceFactoryDestroyed.isDone()) {
+        if (isLookupSourceNotNeeded()) {
             // Finish early when the probe side is empty
             close();
             return true;
@@ -613,6 +709,33 @@ public class HashBuilderOperator
         return state == State.CLOSED;
     }
 
+    private boolean isLookupSourceNotNeeded()
+    {
+        if (!lookupSourceFactoryDestroyed.isDone()) {
+            return false;
+        }
+        // keep building a shared lookup source while other tasks are waiting for it
+        return state != State.CONSUMING_INPUT || !isSharedLookupSourceBuiltHere() || sharedLookupSource.get().tryAbandon();
+    }
+
+    private boolean isSharedLookupSourceBuiltHere()
+    {
+        return sharedLookupSource.isPresent() && sharedLookupSource.get().isBuilder();
+    }
+
+    private boolean isSharedLookupSourceBuiltElsewhere()
+    {
+        return sharedLookupSource.isPresent() && !sharedLookupSource.get().isBuilder();
+    }
+
+    private void clearIndex()
+    {
+        // the pages of a shared lookup source are still used by other tasks
+        if (!lookupSourceShared) {
+            index.clear();
+        }
+    }
+
     private SingleStreamSpiller getSpiller()
     {
         return spiller.orElseThrow(() -> new IllegalStateException("Spiller not created"));
@@ -631,7 +754,8 @@ public class HashBuilderOperator
         finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
 
         try (Closer closer = Closer.create()) {
-            closer.register(index::clear);
+            closer.register(this::clearIndex);
+            sharedLookupSource.ifPresent(lookupSource -> closer.register(lookupSource::release));
             spiller.ifPresent(closer::register);
             closer.register(() -> localUserMemoryContext.setBytes(0, enforceBroadcastMemoryLimit));
             closer.register(() -> localRevocableMemoryContext.setBytes(0));
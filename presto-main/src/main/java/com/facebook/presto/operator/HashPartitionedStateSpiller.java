@@ -0,0 +1,250 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills the per group state of a streaming operator that is keyed by a {@link GroupByHash}, along with all the input
+ * the operator receives after its state was spilled. Both are partitioned by the hash of the group keys, so once the
+ * input is finished every partition can be restored and processed on its own.
+ * <p>
+ * The spilled state of a group consists of the values of the group keys, followed by the precomputed hash
+ * (if present) and the values the operator keeps for the group.
+ */
+@NotThreadSafe
+public class HashPartitionedStateSpiller
+        implements Closeable
+{
+    private static final int PARTITION_COUNT = 16;
+
+    private final List<Type> stateTypes;
+    private final int[] stateGroupByChannels;
+    private final Optional<Integer> stateHashChannel;
+    private final int[] inputGroupByChannels;
+
+    private final PartitioningSpiller stateSpiller;
+    private final PartitioningSpiller inputSpiller;
+    private final Closer closer = Closer.create();
+
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+
+    public HashPartitionedStateSpiller(
+            List<Type> inputTypes,
+            List<Integer> groupByChannels,
+            Optional<Integer> hashChannel,
+            List<Type> valueTypes,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext)
+    {
+        requireNonNull(inputTypes, "inputTypes is null");
+        requireNonNull(groupByChannels, "groupByChannels is null");
+        requireNonNull(hashChannel, "hashChannel is null");
+        requireNonNull(valueTypes, "valueTypes is null");
+        requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        requireNonNull(operatorContext, "operatorContext is null");
+
+        List<Type> groupByTypes = groupByChannels.stream()
+                .map(inputTypes::get)
+                .collect(toImmutableList());
+
+        ImmutableList.Builder<Type> stateTypes = ImmutableList.<Type>builder().addAll(groupByTypes);
+        ImmutableList.Builder<Integer> inputGroupByChannels = ImmutableList.<Integer>builder().addAll(groupByChannels);
+        if (hashChannel.isPresent()) {
+            stateTypes.add(BIGINT);
+            inputGroupByChannels.add(hashChannel.get());
+        }
+        this.stateTypes = stateTypes.addAll(valueTypes).build();
+        this.stateGroupByChannels = IntStream.range(0, groupByChannels.size()).toArray();
+        this.stateHashChannel = hashChannel.map(channel -> groupByChannels.size());
+        this.inputGroupByChannels = Ints.toArray(inputGroupByChannels.build());
+
+        // both partition functions hash the same values, so the state and the input of a group end up in the same partition
+        this.stateSpiller = closer.register(partitioningSpillerFactory.create(
+                this.stateTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(groupByTypes, stateGroupByChannels), PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext()));
+        this.inputSpiller = closer.register(partitioningSpillerFactory.create(
+                ImmutableList.copyOf(inputTypes),
+                new LocalPartitionGenerator(new InterpretedHashGenerator(groupByTypes, Ints.toArray(groupByChannels)), PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext()));
+    }
+
+    public int getPartitionCount()
+    {
+        return PARTITION_COUNT;
+    }
+
+    /**
+     * Channels of the group keys in the spilled state.
+     */
+    public int[] getStateGroupByChannels()
+    {
+        return stateGroupByChannels;
+    }
+
+    public Optional<Integer> getStateHashChannel()
+    {
+        return stateHashChannel;
+    }
+
+    /**
+     * Extracts the group keys, followed by the precomputed hash (if present), from an input page, so that the
+     * result has the same layout as the leading channels of the spilled state.
+     */
+    public Page extractGroupByChannels(Page inputPage)
+    {
+        return inputPage.extractChannels(inputGroupByChannels);
+    }
+
+    public ListenableFuture<?> getSpillInProgress()
+    {
+        return spillInProgress;
+    }
+
+    /**
+     * Spills the state of the groups of {@code groupByHash}. The caller must not modify {@code groupByHash}
+     * and the state of its groups after this call, as they are read by the spilling thread.
+     */
+    public ListenableFuture<?> spillState(GroupByHash groupByHash, GroupValuesWriter groupValuesWriter)
+    {
+        checkSpillSucceeded();
+        spillInProgress = spillStatePages(new StatePageIterator(groupByHash, groupValuesWriter));
+        return spillInProgress;
+    }
+
+    public ListenableFuture<?> spillInput(Page page)
+    {
+        checkSpillSucceeded();
+        spillInProgress = inputSpiller.partitionAndSpill(page, partition -> true).getSpillingFuture();
+        return spillInProgress;
+    }
+
+    public Iterator<Page> getSpilledState(int partition)
+    {
+        checkSpillSucceeded();
+        return stateSpiller.getSpilledPages(partition);
+    }
+
+    public Iterator<Page> getSpilledInput(int partition)
+    {
+        checkSpillSucceeded();
+        return inputSpiller.getSpilledPages(partition);
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            closer.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkSpillSucceeded()
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        checkSuccess(spillInProgress, "spilling failed");
+    }
+
+    private ListenableFuture<Void> spillStatePages(Iterator<Page> pages)
+    {
+        // a partitioning spiller accepts a page only after the previous one has been spilled
+        while (pages.hasNext()) {
+            ListenableFuture<?> future = stateSpiller.partitionAndSpill(pages.next(), partition -> true).getSpillingFuture();
+            if (!future.isDone()) {
+                return transformAsync(future, ignored -> spillStatePages(pages), directExecutor());
+            }
+            getFutureValue(future);
+        }
+        return immediateFuture(null);
+    }
+
+    public interface GroupValuesWriter
+    {
+        /**
+         * Appends the values kept for {@code groupId} to the channels of {@code pageBuilder} starting at {@code outputChannelOffset}.
+         */
+        void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset);
+    }
+
+    private class StatePageIterator
+            extends AbstractIterator<Page>
+    {
+        private final GroupByHash groupByHash;
+        private final GroupValuesWriter groupValuesWriter;
+        private final PageBuilder pageBuilder = new PageBuilder(stateTypes);
+        private final int valuesChannelOffset;
+
+        private int groupId;
+
+        private StatePageIterator(GroupByHash groupByHash, GroupValuesWriter groupValuesWriter)
+        {
+            this.groupByHash = requireNonNull(groupByHash, "groupByHash is null");
+            this.groupValuesWriter = requireNonNull(groupValuesWriter, "groupValuesWriter is null");
+            this.valuesChannelOffset = groupByHash.getTypes().size();
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            pageBuilder.reset();
+            while (!pageBuilder.isFull() && groupId < groupByHash.getGroupCount()) {
+                pageBuilder.declarePosition();
+                groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+                groupValuesWriter.appendValuesTo(groupId, pageBuilder, valuesChannelOffset);
+                groupId++;
+            }
+
+            if (pageBuilder.isEmpty()) {
+                return endOfData();
+            }
+            return pageBuilder.build();
+        }
+    }
+}
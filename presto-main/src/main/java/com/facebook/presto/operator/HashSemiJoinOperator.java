@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
@@ -22,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
+import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
@@ -79,6 +81,7 @@ public class HashSemiJoinOperator
     private final ListenableFuture<ChannelSet> channelSetFuture;
 
     private ChannelSet channelSet;
+    private boolean[] mightContain = new boolean[0];
     private Page outputPage;
     private boolean finishing;
 
@@ -144,10 +147,20 @@ public class HashSemiJoinOperator
         BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(page.getPositionCount());
 
         Page probeJoinPage = page.extractChannel(probeJoinChannel);
+        Block probeJoinBlock = probeJoinPage.getBlock(0);
+
+        // discard most of the values that are not in the set in a single pass, before any of them is looked up
+        Optional<BlockedBloomFilter> bloomFilter = channelSet.getBloomFilter();
+        if (bloomFilter.isPresent()) {
+            if (mightContain.length < page.getPositionCount()) {
+                mightContain = new boolean[page.getPositionCount()];
+            }
+            bloomFilter.get().mightContain(channelSet.getType(), probeJoinBlock, page.getPositionCount(), mightContain);
+        }
 
         // update hashing strategy to use probe cursor
         for (int position = 0; position < page.getPositionCount(); position++) {
-            if (probeJoinPage.getBlock(0).isNull(position)) {
+            if (probeJoinBlock.isNull(position)) {
                 if (channelSet.isEmpty()) {
                     BOOLEAN.writeBoolean(blockBuilder, false);
                 }
@@ -156,7 +169,7 @@ public class HashSemiJoinOperator
                 }
             }
             else {
-                boolean contains = channelSet.contains(position, probeJoinPage);
+                boolean contains = (!bloomFilter.isPresent() || mightContain[position]) && channelSet.contains(position, probeJoinPage);
                 if (!contains && channelSet.containsNull()) {
                     blockBuilder.appendNull();
                 }
@@ -92,6 +92,27 @@ public final class JoinHash
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage)
+    {
+        return startJoinPositions(pagesHash.getAddressIndex(positions, hashChannelsPage), positions, allChannelsPage);
+    }
+
+    @Override
+    public long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes)
+    {
+        return startJoinPositions(pagesHash.getAddressIndex(positions, hashChannelsPage, rawHashes), positions, allChannelsPage);
+    }
+
+    private long[] startJoinPositions(int[] addressIndexes, int[] positions, Page allProbeChannelsPage)
+    {
+        long[] joinPositions = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            joinPositions[i] = startJoinPosition(addressIndexes[i], positions[i], allProbeChannelsPage);
+        }
+        return joinPositions;
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
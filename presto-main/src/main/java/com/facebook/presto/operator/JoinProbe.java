@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -52,6 +53,10 @@ public class JoinProbe
 
     private int position = -1;
 
+    // first join position of every probe position, looked up for the whole page at once
+    private long[] joinPositions;
+    private LookupSource joinPositionsLookupSource;
+
     private JoinProbe(int[] probeOutputChannels, Page page, List<Integer> probeJoinChannels, OptionalInt probeHashChannel)
     {
         this.probeOutputChannels = probeOutputChannels;
@@ -79,14 +84,11 @@ public class JoinProbe
 
     public long getCurrentJoinPosition(LookupSource lookupSource)
     {
-        if (currentRowContainsNull()) {
-            return -1;
-        }
-        if (probeHashBlock.isPresent()) {
-            long rawHash = BIGINT.getLong(probeHashBlock.get(), position);
-            return lookupSource.getJoinPosition(position, probePage, page, rawHash);
+        if (lookupSource != joinPositionsLookupSource) {
+            joinPositions = getJoinPositions(lookupSource);
+            joinPositionsLookupSource = lookupSource;
         }
-        return lookupSource.getJoinPosition(position, probePage, page);
+        return joinPositions[position];
     }
 
     public int getPosition()
@@ -99,7 +101,51 @@ public class JoinProbe
         return page;
     }
 
-    private boolean currentRowContainsNull()
+    private long[] getJoinPositions(LookupSource lookupSource)
+    {
+        long[] joinPositions = new long[positionCount];
+        Arrays.fill(joinPositions, -1);
+
+        int[] nonNullPositions = getNonNullPositions();
+        if (nonNullPositions.length == 0) {
+            return joinPositions;
+        }
+
+        long[] matches;
+        if (probeHashBlock.isPresent()) {
+            long[] rawHashes = new long[nonNullPositions.length];
+            for (int i = 0; i < nonNullPositions.length; i++) {
+                rawHashes[i] = BIGINT.getLong(probeHashBlock.get(), nonNullPositions[i]);
+            }
+            matches = lookupSource.getJoinPositions(nonNullPositions, probePage, page, rawHashes);
+        }
+        else {
+            matches = lookupSource.getJoinPositions(nonNullPositions, probePage, page);
+        }
+
+        for (int i = 0; i < nonNullPositions.length; i++) {
+            joinPositions[nonNullPositions[i]] = matches[i];
+        }
+        return joinPositions;
+    }
+
+    private int[] getNonNullPositions()
+    {
+        int[] positions = new int[positionCount];
+        int nonNullCount = 0;
+        for (int position = 0; position < positionCount; position++) {
+            if (!rowContainsNull(position)) {
+                positions[nonNullCount] = position;
+                nonNullCount++;
+            }
+        }
+        if (nonNullCount < positionCount) {
+            return Arrays.copyOf(positions, nonNullCount);
+        }
+        return positions;
+    }
+
+    private boolean rowContainsNull(int position)
     {
         for (Block probeBlock : probeBlocks) {
             if (probeBlock.isNull(position)) {
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskManager;
+import com.facebook.presto.execution.buffer.BufferResult;
+import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.operator.PageBufferClient.PagesResponse;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.facebook.airlift.concurrent.MoreFutures.addTimeout;
+import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createPagesResponse;
+import static com.facebook.presto.util.TaskUtils.DEFAULT_MAX_WAIT_TIME;
+import static com.facebook.presto.util.TaskUtils.randomizeWaitTime;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the output buffer of a task running in the same JVM directly from the {@link TaskManager}, so the
+ * serialized pages are handed over by reference instead of being sent through the network stack. Tokens,
+ * acknowledgements and aborts go through the same output buffer calls as the remote endpoints, so the output
+ * buffer memory is released exactly as it is for a remote consumer.
+ */
+@ThreadSafe
+public final class LocalRpcShuffleClient
+        implements RpcShuffleClient
+{
+    private static final Logger log = Logger.get(LocalRpcShuffleClient.class);
+
+    // the path of the results endpoint: /v1/task/{taskId}/results/{bufferId}
+    private static final Pattern RESULTS_PATH = Pattern.compile("/v1/task/([^/]+)/results/([^/]+)/?");
+
+    private final TaskManager taskManager;
+    private final Executor executor;
+    private final ScheduledExecutorService timeoutExecutor;
+    private final URI location;
+    private final TaskId taskId;
+    private final OutputBufferId outputBufferId;
+
+    public LocalRpcShuffleClient(TaskManager taskManager, Executor executor, ScheduledExecutorService timeoutExecutor, URI location)
+    {
+        this.taskManager = requireNonNull(taskManager, "taskManager is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
+        this.location = requireNonNull(location, "location is null");
+
+        Matcher matcher = RESULTS_PATH.matcher(location.getPath());
+        checkArgument(matcher.matches(), "Location is not a task results location: %s", location);
+        this.taskId = TaskId.valueOf(matcher.group(1));
+        this.outputBufferId = OutputBufferId.fromString(matcher.group(2));
+    }
+
+    @Override
+    public ListenableFuture<PagesResponse> getResults(long token, DataSize maxResponseSize)
+    {
+        ListenableFuture<BufferResult> bufferResultFuture = taskManager.getTaskResults(taskId, outputBufferId, token, maxResponseSize);
+        // same as the remote endpoints, answer with an empty result when no data is produced within the wait time
+        Duration waitTime = randomizeWaitTime(DEFAULT_MAX_WAIT_TIME);
+        bufferResultFuture = addTimeout(
+                bufferResultFuture,
+                () -> BufferResult.emptyResults(taskManager.getTaskInstanceId(taskId), token, false),
+                waitTime,
+                timeoutExecutor);
+
+        return Futures.transform(
+                bufferResultFuture,
+                result -> createPagesResponse(
+                        result.getTaskInstanceId(),
+                        result.getToken(),
+                        result.getNextToken(),
+                        result.getSerializedPages(),
+                        result.isBufferComplete()),
+                directExecutor());
+    }
+
+    @Override
+    public void acknowledgeResultsAsync(long nextToken)
+    {
+        // like the remote acknowledge request, this does not hold up the caller and a failure is only logged
+        executor.execute(() -> {
+            try {
+                taskManager.acknowledgeTaskResults(taskId, outputBufferId, nextToken);
+            }
+            catch (RuntimeException e) {
+                log.debug(e, "Acknowledge failed: %s", location);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<?> abortResults()
+    {
+        try {
+            taskManager.abortTaskResults(taskId, outputBufferId);
+            return immediateFuture(null);
+        }
+        catch (RuntimeException e) {
+            return immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public Throwable rewriteException(Throwable throwable)
+    {
+        return throwable;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.TaskManager;
+import com.facebook.presto.metadata.InternalNodeManager;
+import com.facebook.presto.server.ForAsyncRpc;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates a {@link LocalRpcShuffleClient} for the exchange locations that point at the current node.
+ */
+public class LocalRpcShuffleClientFactory
+{
+    private final InternalNodeManager nodeManager;
+    // the task manager depends on the exchange client factory through the local execution planner
+    private final Provider<TaskManager> taskManagerProvider;
+    private final ScheduledExecutorService timeoutExecutor;
+
+    @Inject
+    public LocalRpcShuffleClientFactory(
+            InternalNodeManager nodeManager,
+            Provider<TaskManager> taskManagerProvider,
+            @ForAsyncRpc ScheduledExecutorService timeoutExecutor)
+    {
+        this.nodeManager = requireNonNull(nodeManager, "nodeManager is null");
+        this.taskManagerProvider = requireNonNull(taskManagerProvider, "taskManagerProvider is null");
+        this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
+    }
+
+    /**
+     * Returns a client for the location if it points at the current node. The client acknowledges results on
+     * {@code executor}.
+     */
+    public Optional<RpcShuffleClient> create(URI location, Executor executor)
+    {
+        if (!isSameServer(location, nodeManager.getCurrentNode().getInternalUri())) {
+            return Optional.empty();
+        }
+        return Optional.of(new LocalRpcShuffleClient(taskManagerProvider.get(), executor, timeoutExecutor, location));
+    }
+
+    private static boolean isSameServer(URI location, URI localUri)
+    {
+        // thrift locations use the thrift port, which is not part of the internal URI
+        String scheme = location.getScheme().toLowerCase(Locale.ENGLISH);
+        return (scheme.equals("http") || scheme.equals("https")) &&
+                scheme.equals(localUri.getScheme().toLowerCase(Locale.ENGLISH)) &&
+                location.getHost().equalsIgnoreCase(localUri.getHost()) &&
+                location.getPort() == localUri.getPort();
+    }
+}
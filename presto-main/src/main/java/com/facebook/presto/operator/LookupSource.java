@@ -36,6 +36,31 @@ public interface LookupSource
 
     long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage);
 
+    /**
+     * Finds the first join position of each of the given probe positions, which must not have null join keys.
+     * The returned array is parallel to {@code positions}.
+     */
+    default long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage)
+    {
+        long[] joinPositions = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            joinPositions[i] = getJoinPosition(positions[i], hashChannelsPage, allChannelsPage);
+        }
+        return joinPositions;
+    }
+
+    /**
+     * Same as {@link #getJoinPositions(int[], Page, Page)} with precomputed hashes parallel to {@code positions}.
+     */
+    default long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes)
+    {
+        long[] joinPositions = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            joinPositions[i] = getJoinPosition(positions[i], hashChannelsPage, allChannelsPage, rawHashes[i]);
+        }
+        return joinPositions;
+    }
+
     long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
     void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
@@ -48,6 +48,11 @@ public class MarkDistinctHash
         return groupByHash.getEstimatedSize();
     }
 
+    public GroupByHash getGroupByHash()
+    {
+        return groupByHash;
+    }
+
     public Work<Block> markDistinctRows(Page page)
     {
         return new TransformWork<>(
@@ -18,18 +18,23 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class MarkDistinctOperator
@@ -44,6 +49,8 @@ public class MarkDistinctOperator
         private final List<Integer> markDistinctChannels;
         private final List<Type> types;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
         private boolean closed;
 
         public MarkDistinctOperatorFactory(
@@ -53,6 +60,19 @@ public class MarkDistinctOperator
                 Collection<Integer> markDistinctChannels,
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, markDistinctChannels, hashChannel, joinCompiler, false, Optional.empty());
+        }
+
+        public MarkDistinctOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                Collection<Integer> markDistinctChannels,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -64,6 +84,9 @@ public class MarkDistinctOperator
                     .addAll(sourceTypes)
                     .add(BOOLEAN)
                     .build();
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -71,7 +94,7 @@ public class MarkDistinctOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MarkDistinctOperator.class.getSimpleName());
-            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -83,33 +106,70 @@ public class MarkDistinctOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
-    private final MarkDistinctHash markDistinctHash;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+
+    private final List<Type> sourceTypes;
+    private final List<Type> distinctTypes;
+    private final List<Integer> markDistinctChannels;
+    private final Optional<Integer> hashChannel;
+    private final JoinCompiler joinCompiler;
+
+    private final boolean spillEnabled;
+    private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
+
+    private MarkDistinctHash markDistinctHash;
 
     private Page inputPage;
     private boolean finishing;
 
     // for yield when memory is not available
     private Work<Block> unfinishedWork;
+    private Page outputPage;
+
+    // once the distinct values are spilled, all the input is spilled too and processed one partition at a time when finishing
+    private Optional<HashPartitionedStateSpiller> spiller = Optional.empty();
+    private int unspillingPartition = -1;
+    private Iterator<Page> unspilledInput;
 
     public MarkDistinctOperator(OperatorContext operatorContext, List<Type> types, List<Integer> markDistinctChannels, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    {
+        this(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, false, Optional.empty());
+    }
+
+    public MarkDistinctOperator(
+            OperatorContext operatorContext,
+            List<Type> types,
+            List<Integer> markDistinctChannels,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
-        requireNonNull(hashChannel, "hashChannel is null");
-        requireNonNull(markDistinctChannels, "markDistinctChannels is null");
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.markDistinctChannels = ImmutableList.copyOf(requireNonNull(markDistinctChannels, "markDistinctChannels is null"));
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
 
         ImmutableList.Builder<Type> distinctTypes = ImmutableList.builder();
         for (int channel : markDistinctChannels) {
             distinctTypes.add(types.get(channel));
         }
-        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), distinctTypes.build(), Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
+        this.distinctTypes = distinctTypes.build();
+        this.sourceTypes = ImmutableList.copyOf(types.subList(0, types.size() - 1));
+        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), this.distinctTypes, Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
     }
 
     @Override
@@ -122,18 +182,29 @@ public class MarkDistinctOperator
     public void finish()
     {
         finishing = true;
+        // the distinct values that were not spilled are kept as user memory from now on
+        updateMemoryReservation();
     }
 
     @Override
     public boolean isFinished()
     {
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && !hasSpilledInput();
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (spiller.isPresent() && !spiller.get().getSpillInProgress().isDone()) {
+            return spiller.get().getSpillInProgress();
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && isBlocked().isDone();
     }
 
     @Override
@@ -142,6 +213,11 @@ public class MarkDistinctOperator
         requireNonNull(page, "page is null");
         checkState(needsInput());
 
+        if (spiller.isPresent()) {
+            spiller.get().spillInput(page);
+            return;
+        }
+
         inputPage = page;
 
         unfinishedWork = markDistinctHash.markDistinctRows(page);
@@ -151,6 +227,16 @@ public class MarkDistinctOperator
     @Override
     public Page getOutput()
     {
+        if (outputPage != null) {
+            Page result = outputPage;
+            outputPage = null;
+            return result;
+        }
+
+        if (unfinishedWork == null && finishing && hasSpilledInput()) {
+            unspillNextPage();
+        }
+
         if (unfinishedWork == null) {
             return null;
         }
@@ -169,9 +255,88 @@ public class MarkDistinctOperator
         return outputPage;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (finishing || spiller.isPresent() || localRevocableMemoryContext.getBytes() == 0) {
+            return immediateFuture(null);
+        }
+
+        if (unfinishedWork != null) {
+            // the hash does not yield while its memory is revocable; mark the current page before its values are spilled
+            verify(unfinishedWork.process());
+            outputPage = inputPage.appendColumn(unfinishedWork.getResult());
+            unfinishedWork = null;
+            inputPage = null;
+        }
+
+        spiller = Optional.of(new HashPartitionedStateSpiller(
+                sourceTypes,
+                markDistinctChannels,
+                hashChannel,
+                ImmutableList.of(),
+                partitioningSpillerFactory.get(),
+                operatorContext));
+        return spiller.get().spillState(markDistinctHash.getGroupByHash(), (groupId, pageBuilder, outputChannelOffset) -> {});
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        if (spiller.isPresent() && unspillingPartition < 0) {
+            // the distinct values have been spilled; the hash is rebuilt for each partition when finishing
+            markDistinctHash = null;
+        }
+        updateMemoryReservation();
+    }
+
+    @Override
+    public void close()
+    {
+        spiller.ifPresent(HashPartitionedStateSpiller::close);
+    }
+
     private boolean hasUnfinishedInput()
     {
-        return inputPage != null || unfinishedWork != null;
+        return inputPage != null || unfinishedWork != null || outputPage != null;
+    }
+
+    private boolean hasSpilledInput()
+    {
+        return spiller.isPresent() && (unspillingPartition < spiller.get().getPartitionCount() - 1 || unspilledInput.hasNext());
+    }
+
+    private void unspillNextPage()
+    {
+        HashPartitionedStateSpiller spiller = this.spiller.get();
+        if (!spiller.getSpillInProgress().isDone()) {
+            return;
+        }
+
+        while (unspilledInput == null || !unspilledInput.hasNext()) {
+            if (unspillingPartition == spiller.getPartitionCount() - 1) {
+                return;
+            }
+            unspillingPartition++;
+
+            // restore the distinct values of the partition; the rows of the partition are marked against them
+            markDistinctHash = new MarkDistinctHash(
+                    operatorContext.getSession(),
+                    distinctTypes,
+                    spiller.getStateGroupByChannels(),
+                    spiller.getStateHashChannel(),
+                    joinCompiler,
+                    UpdateMemory.NOOP);
+            Iterator<Page> distinctValues = spiller.getSpilledState(unspillingPartition);
+            while (distinctValues.hasNext()) {
+                verify(markDistinctHash.markDistinctRows(distinctValues.next()).process());
+            }
+            unspilledInput = spiller.getSpilledInput(unspillingPartition);
+            updateMemoryReservation();
+        }
+
+        inputPage = unspilledInput.next();
+        unfinishedWork = markDistinctHash.markDistinctRows(spiller.extractGroupByChannels(inputPage));
     }
 
     /**
@@ -184,9 +349,18 @@ public class MarkDistinctOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
+        long memorySizeInBytes = markDistinctHash == null ? 0 : markDistinctHash.getEstimatedSize();
+        if (spillEnabled && !spiller.isPresent() && !finishing) {
+            // the memory is revocable, so there is no need to yield for memory
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(memorySizeInBytes);
+            return true;
+        }
+
+        localRevocableMemoryContext.setBytes(0);
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+        localUserMemoryContext.setBytes(memorySizeInBytes);
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
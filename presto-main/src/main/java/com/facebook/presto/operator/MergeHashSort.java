@@ -49,7 +49,16 @@ public class MergeHashSort
      */
     public WorkProcessor<Page> merge(List<Type> keyTypes, List<Type> allTypes, List<WorkProcessor<Page>> channels, DriverYieldSignal driverYieldSignal)
     {
-        InterpretedHashGenerator hashGenerator = createHashGenerator(keyTypes);
+        return merge(keyTypes, IntStream.range(0, keyTypes.size()).toArray(), allTypes, channels, driverYieldSignal);
+    }
+
+    /**
+     * Same as {@link #merge(List, List, List, DriverYieldSignal)}, but the keys are read from {@code keyChannels}
+     * instead of the leading channels of the pages.
+     */
+    public WorkProcessor<Page> merge(List<Type> keyTypes, int[] keyChannels, List<Type> allTypes, List<WorkProcessor<Page>> channels, DriverYieldSignal driverYieldSignal)
+    {
+        InterpretedHashGenerator hashGenerator = new InterpretedHashGenerator(keyTypes, keyChannels);
         return mergeSortedPages(
                 channels,
                 createHashPageWithPositionComparator(hashGenerator),
@@ -86,13 +95,4 @@ public class MergeHashSort
             return Long.compare(leftHash, rightHash);
         };
     }
-
-    private static InterpretedHashGenerator createHashGenerator(List<Type> keyTypes)
-    {
-        int[] hashChannels = new int[keyTypes.size()];
-        for (int i = 0; i < keyTypes.size(); i++) {
-            hashChannels[i] = i;
-        }
-        return new InterpretedHashGenerator(keyTypes, hashChannels);
-    }
 }
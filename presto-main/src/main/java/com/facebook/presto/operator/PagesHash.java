@@ -15,213 +15,41 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
-import io.airlift.units.DataSize;
-import it.unimi.dsi.fastutil.HashCommon;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import org.openjdk.jol.info.ClassLayout;
 
-import java.util.Arrays;
-
-import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
-import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
-import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
-import static io.airlift.slice.SizeOf.sizeOf;
-import static io.airlift.units.DataSize.Unit.KILOBYTE;
-import static java.lang.Math.toIntExact;
-import static java.util.Objects.requireNonNull;
-
-// This implementation assumes arrays used in the hash are always a power of 2
-public final class PagesHash
+/**
+ * Hash table from join keys to the addresses of the build side rows.
+ * Address indexes returned by lookups are -1 when there is no matching row.
+ */
+public interface PagesHash
 {
-    private static final int INSTANCE_SIZE = ClassLayout.parseClass(PagesHash.class).instanceSize();
-    private static final DataSize CACHE_SIZE = new DataSize(128, KILOBYTE);
-    private final LongArrayList addresses;
-    private final PagesHashStrategy pagesHashStrategy;
-
-    private final int channelCount;
-    private final int mask;
-    private final int[] key;
-    private final long size;
-
-    // Native array of hashes for faster collisions resolution compared
-    // to accessing values in blocks. We use bytes to reduce memory foot print
-    // and there is no performance gain from storing full hashes
-    private final byte[] positionToHashes;
-    private final long hashCollisions;
-    private final double expectedHashCollisions;
-
-    public PagesHash(
-            LongArrayList addresses,
-            PagesHashStrategy pagesHashStrategy,
-            PositionLinks.FactoryBuilder positionLinks)
-    {
-        this.addresses = requireNonNull(addresses, "addresses is null");
-        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
-        this.channelCount = pagesHashStrategy.getChannelCount();
-
-        // reserve memory for the arrays
-        int hashSize = HashCommon.arraySize(addresses.size(), 0.75f);
-
-        mask = hashSize - 1;
-        key = new int[hashSize];
-        Arrays.fill(key, -1);
-
-        positionToHashes = new byte[addresses.size()];
-
-        // We will process addresses in batches, to save memory on array of hashes.
-        int positionsInStep = Math.min(addresses.size() + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
-        long[] positionToFullHashes = new long[positionsInStep];
-        long hashCollisionsLocal = 0;
-
-        for (int step = 0; step * positionsInStep <= addresses.size(); step++) {
-            int stepBeginPosition = step * positionsInStep;
-            int stepEndPosition = Math.min((step + 1) * positionsInStep, addresses.size());
-            int stepSize = stepEndPosition - stepBeginPosition;
-
-            // First extract all hashes from blocks to native array.
-            // Somehow having this as a separate loop is much faster compared
-            // to extracting hashes on the fly in the loop below.
-            for (int position = 0; position < stepSize; position++) {
-                int realPosition = position + stepBeginPosition;
-                long hash = readHashPosition(realPosition);
-                positionToFullHashes[position] = hash;
-                positionToHashes[realPosition] = (byte) hash;
-            }
-
-            // index pages
-            for (int position = 0; position < stepSize; position++) {
-                int realPosition = position + stepBeginPosition;
-                if (isPositionNull(realPosition)) {
-                    continue;
-                }
+    int getChannelCount();
 
-                long hash = positionToFullHashes[position];
-                int pos = getHashPosition(hash, mask);
+    int getPositionCount();
 
-                // look for an empty slot or a slot containing this key
-                while (key[pos] != -1) {
-                    int currentKey = key[pos];
-                    if (((byte) hash) == positionToHashes[currentKey] && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
-                        // found a slot for this key
-                        // link the new key position to the current key position
-                        realPosition = positionLinks.link(realPosition, currentKey);
+    long getInMemorySizeInBytes();
 
-                        // key[pos] updated outside of this loop
-                        break;
-                    }
-                    // increment position and mask to handler wrap around
-                    pos = (pos + 1) & mask;
-                    hashCollisionsLocal++;
-                }
+    long getHashCollisions();
 
-                key[pos] = realPosition;
-            }
-        }
+    double getExpectedHashCollisions();
 
-        size = sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() +
-                sizeOf(key) + sizeOf(positionToHashes);
-        hashCollisions = hashCollisionsLocal;
-        expectedHashCollisions = estimateNumberOfHashCollisions(addresses.size(), hashSize);
-    }
-
-    public final int getChannelCount()
-    {
-        return channelCount;
-    }
-
-    public int getPositionCount()
-    {
-        return addresses.size();
-    }
+    int getAddressIndex(int position, Page hashChannelsPage);
 
-    public long getInMemorySizeInBytes()
-    {
-        return INSTANCE_SIZE + size;
-    }
+    int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash);
 
-    public long getHashCollisions()
-    {
-        return hashCollisions;
-    }
+    /**
+     * Looks up a batch of probe positions. The join keys of the given positions must not be null.
+     */
+    int[] getAddressIndex(int[] positions, Page hashChannelsPage);
 
-    public double getExpectedHashCollisions()
-    {
-        return expectedHashCollisions;
-    }
+    /**
+     * Looks up a batch of probe positions with precomputed hashes, where {@code rawHashes[i]}
+     * is the hash of {@code positions[i]}. The join keys of the given positions must not be null.
+     */
+    int[] getAddressIndex(int[] positions, Page hashChannelsPage, long[] rawHashes);
 
-    public int getAddressIndex(int position, Page hashChannelsPage)
-    {
-        return getAddressIndex(position, hashChannelsPage, pagesHashStrategy.hashRow(position, hashChannelsPage));
-    }
-
-    public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
-    {
-        int pos = getHashPosition(rawHash, mask);
-
-        while (key[pos] != -1) {
-            if (positionEqualsCurrentRowIgnoreNulls(key[pos], (byte) rawHash, rightPosition, hashChannelsPage)) {
-                return key[pos];
-            }
-            // increment position and mask to handler wrap around
-            pos = (pos + 1) & mask;
-        }
-        return -1;
-    }
-
-    public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
-    {
-        long pageAddress = addresses.getLong(toIntExact(position));
-        int blockIndex = decodeSliceIndex(pageAddress);
-        int blockPosition = decodePosition(pageAddress);
-
-        pagesHashStrategy.appendTo(blockIndex, blockPosition, pageBuilder, outputChannelOffset);
-    }
-
-    private boolean isPositionNull(int position)
-    {
-        long pageAddress = addresses.getLong(position);
-        int blockIndex = decodeSliceIndex(pageAddress);
-        int blockPosition = decodePosition(pageAddress);
-
-        return pagesHashStrategy.isPositionNull(blockIndex, blockPosition);
-    }
-
-    private long readHashPosition(int position)
-    {
-        long pageAddress = addresses.getLong(position);
-        int blockIndex = decodeSliceIndex(pageAddress);
-        int blockPosition = decodePosition(pageAddress);
-
-        return pagesHashStrategy.hashPosition(blockIndex, blockPosition);
-    }
-
-    private boolean positionEqualsCurrentRowIgnoreNulls(int leftPosition, byte rawHash, int rightPosition, Page rightPage)
-    {
-        if (positionToHashes[leftPosition] != rawHash) {
-            return false;
-        }
-
-        long pageAddress = addresses.getLong(leftPosition);
-        int blockIndex = decodeSliceIndex(pageAddress);
-        int blockPosition = decodePosition(pageAddress);
-
-        return pagesHashStrategy.positionEqualsRowIgnoreNulls(blockIndex, blockPosition, rightPosition, rightPage);
-    }
-
-    private boolean positionEqualsPositionIgnoreNulls(int leftPosition, int rightPosition)
-    {
-        long leftPageAddress = addresses.getLong(leftPosition);
-        int leftBlockIndex = decodeSliceIndex(leftPageAddress);
-        int leftBlockPosition = decodePosition(leftPageAddress);
-
-        long rightPageAddress = addresses.getLong(rightPosition);
-        int rightBlockIndex = decodeSliceIndex(rightPageAddress);
-        int rightBlockPosition = decodePosition(rightPageAddress);
-
-        return pagesHashStrategy.positionEqualsPositionIgnoreNulls(leftBlockIndex, leftBlockPosition, rightBlockIndex, rightBlockPosition);
-    }
+    void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
 
-    private static int getHashPosition(long rawHash, long mask)
+    static int getHashPosition(long rawHash, long mask)
     {
         // Avalanches the bits of a long integer by applying the finalisation step of MurmurHash3.
         //
@@ -147,6 +147,61 @@ public class PartitionedLookupSource
         return encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
     }
 
+    @Override
+    public long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage)
+    {
+        long[] rawHashes = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            rawHashes[i] = partitionGenerator.getRawHash(hashChannelsPage, positions[i]);
+        }
+        return getJoinPositions(positions, hashChannelsPage, allChannelsPage, rawHashes);
+    }
+
+    @Override
+    public long[] getJoinPositions(int[] positions, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes)
+    {
+        // group the positions by partition, so each partition is probed with a single batch
+        int[] partitions = new int[positions.length];
+        int[] partitionOffsets = new int[lookupSources.length + 1];
+        for (int i = 0; i < positions.length; i++) {
+            partitions[i] = partitionGenerator.getPartition(rawHashes[i]);
+            partitionOffsets[partitions[i] + 1]++;
+        }
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            partitionOffsets[partition + 1] += partitionOffsets[partition];
+        }
+
+        int[] nextIndex = Arrays.copyOf(partitionOffsets, lookupSources.length);
+        int[] sortedIndexes = new int[positions.length];
+        int[] sortedPositions = new int[positions.length];
+        long[] sortedRawHashes = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int index = nextIndex[partitions[i]]++;
+            sortedIndexes[index] = i;
+            sortedPositions[index] = positions[i];
+            sortedRawHashes[index] = rawHashes[i];
+        }
+
+        long[] joinPositions = new long[positions.length];
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            int start = partitionOffsets[partition];
+            int end = partitionOffsets[partition + 1];
+            if (start == end) {
+                continue;
+            }
+            long[] partitionJoinPositions = lookupSources[partition].getJoinPositions(
+                    Arrays.copyOfRange(sortedPositions, start, end),
+                    hashChannelsPage,
+                    allChannelsPage,
+                    Arrays.copyOfRange(sortedRawHashes, start, end));
+            for (int i = 0; i < partitionJoinPositions.length; i++) {
+                long joinPosition = partitionJoinPositions[i];
+                joinPositions[sortedIndexes[start + i]] = joinPosition < 0 ? joinPosition : encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
+            }
+        }
+        return joinPositions;
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
@@ -49,6 +49,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.transform;
+import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
@@ -69,6 +70,8 @@ public class PipelineContext
 
     private final AtomicInteger totalSplits = new AtomicInteger();
     private final AtomicInteger completedDrivers = new AtomicInteger();
+    private final AtomicLong totalSplitsWeight = new AtomicLong();
+    private final AtomicLong completedSplitsWeight = new AtomicLong();
 
     private final AtomicReference<DateTime> executionStartTime = new AtomicReference<>();
     private final AtomicReference<DateTime> lastExecutionStartTime = new AtomicReference<>();
@@ -143,13 +146,19 @@ public class PipelineContext
     }
 
     public DriverContext addDriverContext(Lifespan lifespan)
+    {
+        return addDriverContext(lifespan, 0);
+    }
+
+    public DriverContext addDriverContext(Lifespan lifespan, long splitWeight)
     {
         DriverContext driverContext = new DriverContext(
                 this,
                 notificationExecutor,
                 yieldExecutor,
                 pipelineMemoryContext.newMemoryTrackingContext(),
-                lifespan);
+                lifespan,
+                splitWeight);
         drivers.add(driverContext);
         return driverContext;
     }
@@ -159,10 +168,12 @@ public class PipelineContext
         return taskContext.getSession();
     }
 
-    public void splitsAdded(int count)
+    public void splitsAdded(int count, long weightSum)
     {
         checkArgument(count >= 0);
+        checkArgument(weightSum >= 0);
         totalSplits.addAndGet(count);
+        totalSplitsWeight.addAndGet(weightSum);
     }
 
     public void driverFinished(DriverContext driverContext)
@@ -179,6 +190,7 @@ public class PipelineContext
         DriverStats driverStats = driverContext.getDriverStats();
 
         completedDrivers.getAndIncrement();
+        completedSplitsWeight.addAndGet(driverContext.getSplitWeight());
 
         queuedTime.add(driverStats.getQueuedTime().roundTo(NANOSECONDS));
         elapsedTime.add(driverStats.getElapsedTime().roundTo(NANOSECONDS));
@@ -318,7 +330,7 @@ public class PipelineContext
 
     public PipelineStatus getPipelineStatus()
     {
-        return getPipelineStatus(drivers.iterator(), totalSplits.get(), completedDrivers.get(), partitioned);
+        return getPipelineStatus(drivers.iterator(), totalSplits.get(), completedDrivers.get(), totalSplitsWeight.get(), completedSplitsWeight.get(), partitioned);
     }
 
     public PipelineStats getPipelineStats()
@@ -334,7 +346,7 @@ public class PipelineContext
         int completedDrivers = this.completedDrivers.get();
         List<DriverContext> driverContexts = ImmutableList.copyOf(this.drivers);
         int totalSplits = this.totalSplits.get();
-        PipelineStatus pipelineStatus = getPipelineStatus(driverContexts.iterator(), totalSplits, completedDrivers, partitioned);
+        PipelineStatus pipelineStatus = getPipelineStatus(driverContexts.iterator(), totalSplits, completedDrivers, totalSplitsWeight.get(), completedSplitsWeight.get(), partitioned);
 
         int totalDrivers = completedDrivers + driverContexts.size();
 
@@ -479,10 +491,18 @@ public class PipelineContext
         return pipelineMemoryContext;
     }
 
-    private static PipelineStatus getPipelineStatus(Iterator<DriverContext> driverContextsIterator, int totalSplits, int completedDrivers, boolean partitioned)
+    private static PipelineStatus getPipelineStatus(
+            Iterator<DriverContext> driverContextsIterator,
+            int totalSplits,
+            int completedDrivers,
+            long totalSplitsWeight,
+            long completedSplitsWeight,
+            boolean partitioned)
     {
         int runningDrivers = 0;
         int blockedDrivers = 0;
+        long runningSplitsWeight = 0;
+        long blockedSplitsWeight = 0;
         // When a split for a partitioned pipeline is delivered to a worker,
         // conceptually, the worker would have an additional driver.
         // The queuedDrivers field in PipelineStatus is supposed to represent this.
@@ -498,24 +518,36 @@ public class PipelineContext
             }
             else if (driverContext.isFullyBlocked()) {
                 blockedDrivers++;
+                blockedSplitsWeight += driverContext.getSplitWeight();
             }
             else {
                 runningDrivers++;
+                runningSplitsWeight += driverContext.getSplitWeight();
             }
         }
 
         int queuedDrivers;
+        long queuedSplitsWeight = 0;
         if (partitioned) {
             queuedDrivers = totalSplits - runningDrivers - blockedDrivers - completedDrivers;
             if (queuedDrivers < 0) {
                 // It is possible to observe negative here because inputs to the above expression was not taken in a snapshot.
                 queuedDrivers = 0;
             }
+            // the weight of the queued splits is derived the same way, and can be observed negative for the same reason
+            queuedSplitsWeight = max(totalSplitsWeight - runningSplitsWeight - blockedSplitsWeight - completedSplitsWeight, 0);
         }
         else {
             queuedDrivers = physicallyQueuedDrivers;
         }
 
-        return new PipelineStatus(queuedDrivers, runningDrivers, blockedDrivers, partitioned ? queuedDrivers : 0, partitioned ? runningDrivers : 0);
+        return new PipelineStatus(
+                queuedDrivers,
+                runningDrivers,
+                blockedDrivers,
+                partitioned ? queuedDrivers : 0,
+                partitioned ? runningDrivers : 0,
+                queuedSplitsWeight,
+                partitioned ? runningSplitsWeight : 0);
     }
 }
@@ -23,14 +23,25 @@ public final class PipelineStatus
     private final int blockedDrivers;
     private final int queuedPartitionedDrivers;
     private final int runningPartitionedDrivers;
+    private final long queuedPartitionedSplitsWeight;
+    private final long runningPartitionedSplitsWeight;
 
-    public PipelineStatus(int queuedDrivers, int runningDrivers, int blockedDrivers, int queuedPartitionedDrivers, int runningPartitionedDrivers)
+    public PipelineStatus(
+            int queuedDrivers,
+            int runningDrivers,
+            int blockedDrivers,
+            int queuedPartitionedDrivers,
+            int runningPartitionedDrivers,
+            long queuedPartitionedSplitsWeight,
+            long runningPartitionedSplitsWeight)
     {
         this.queuedDrivers = queuedDrivers;
         this.runningDrivers = runningDrivers;
         this.blockedDrivers = blockedDrivers;
         this.queuedPartitionedDrivers = queuedPartitionedDrivers;
         this.runningPartitionedDrivers = runningPartitionedDrivers;
+        this.queuedPartitionedSplitsWeight = queuedPartitionedSplitsWeight;
+        this.runningPartitionedSplitsWeight = runningPartitionedSplitsWeight;
     }
 
     public int getQueuedDrivers()
@@ -57,4 +68,14 @@ public final class PipelineStatus
     {
         return runningPartitionedDrivers;
     }
+
+    public long getQueuedPartitionedSplitsWeight()
+    {
+        return queuedPartitionedSplitsWeight;
+    }
+
+    public long getRunningPartitionedSplitsWeight()
+    {
+        return runningPartitionedSplitsWeight;
+    }
 }
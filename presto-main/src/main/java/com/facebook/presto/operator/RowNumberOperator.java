@@ -21,11 +21,14 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +38,7 @@ import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class RowNumberOperator
@@ -54,6 +58,8 @@ public class RowNumberOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
 
         public RowNumberOperatorFactory(
                 int operatorId,
@@ -66,6 +72,23 @@ public class RowNumberOperator
                 Optional<Integer> hashChannel,
                 int expectedPositions,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, false, Optional.empty());
+        }
+
+        public RowNumberOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                List<Integer> partitionChannels,
+                List<? extends Type> partitionTypes,
+                Optional<Integer> maxRowsPerPartition,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -79,6 +102,9 @@ public class RowNumberOperator
             checkArgument(expectedPositions > 0, "expectedPositions < 0");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -96,7 +122,9 @@ public class RowNumberOperator
                     maxRowsPerPartition,
                     hashChannel,
                     expectedPositions,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    partitioningSpillerFactory);
         }
 
         @Override
@@ -108,22 +136,29 @@ public class RowNumberOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new RowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler);
+            return new RowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
     private boolean finishing;
 
+    private final List<Type> sourceTypes;
     private final int[] outputChannels;
     private final List<Type> types;
+    private final List<Integer> partitionChannels;
+    private final List<Type> partitionTypes;
+    private final Optional<Integer> hashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
 
     private GroupByIdBlock partitionIds;
-    private final Optional<GroupByHash> groupByHash;
+    private Optional<GroupByHash> groupByHash;
 
     private Page inputPage;
-    private final LongBigArray partitionRowCount;
+    private LongBigArray partitionRowCount;
 
     private final Optional<Integer> maxRowsPerPartition;
     // Only present if maxRowsPerPartition is present
@@ -131,6 +166,15 @@ public class RowNumberOperator
 
     // for yield when memory is not available
     private Work<GroupByIdBlock> unfinishedWork;
+    private Page outputPage;
+
+    private final boolean spillEnabled;
+    private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
+
+    // once the row counts are spilled, all the input is spilled too and processed one partition at a time when finishing
+    private Optional<HashPartitionedStateSpiller> spiller = Optional.empty();
+    private int unspillingPartition = -1;
+    private Iterator<Page> unspilledInput;
 
     public RowNumberOperator(
             OperatorContext operatorContext,
@@ -142,11 +186,39 @@ public class RowNumberOperator
             Optional<Integer> hashChannel,
             int expectedPositions,
             JoinCompiler joinCompiler)
+    {
+        this(operatorContext, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, false, Optional.empty());
+    }
+
+    public RowNumberOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> outputChannels,
+            List<Integer> partitionChannels,
+            List<Type> partitionTypes,
+            Optional<Integer> maxRowsPerPartition,
+            Optional<Integer> hashChannel,
+            int expectedPositions,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
         this.outputChannels = Ints.toArray(outputChannels);
         this.types = toTypes(sourceTypes, outputChannels);
+        this.partitionChannels = ImmutableList.copyOf(requireNonNull(partitionChannels, "partitionChannels is null"));
+        this.partitionTypes = ImmutableList.copyOf(requireNonNull(partitionTypes, "partitionTypes is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+
+        // a single partition keeps a single row count, so there is nothing worth spilling
+        this.spillEnabled = spillEnabled && !partitionChannels.isEmpty();
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
 
         this.maxRowsPerPartition = maxRowsPerPartition;
         if (maxRowsPerPartition.isPresent()) {
@@ -176,6 +248,8 @@ public class RowNumberOperator
     public void finish()
     {
         finishing = true;
+        // the row counts that were not spilled are kept as user memory from now on
+        updateMemoryReservation();
     }
 
     @Override
@@ -188,7 +262,16 @@ public class RowNumberOperator
             return partitionRowCount.get(0) == maxRowsPerPartition.get();
         }
 
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && !hasSpilledInput();
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (spiller.isPresent() && !spiller.get().getSpillInProgress().isDone()) {
+            return spiller.get().getSpillInProgress();
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
@@ -198,7 +281,7 @@ public class RowNumberOperator
             // Check if single partition is done
             return partitionRowCount.get(0) < maxRowsPerPartition.get() && !finishing && !hasUnfinishedInput();
         }
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && isBlocked().isDone();
     }
 
     @Override
@@ -207,6 +290,12 @@ public class RowNumberOperator
         checkState(!finishing, "Operator is already finishing");
         requireNonNull(page, "page is null");
         checkState(!hasUnfinishedInput());
+
+        if (spiller.isPresent()) {
+            spiller.get().spillInput(page);
+            return;
+        }
+
         inputPage = page;
         if (groupByHash.isPresent()) {
             unfinishedWork = groupByHash.get().getGroupIds(inputPage);
@@ -218,6 +307,16 @@ public class RowNumberOperator
     @Override
     public Page getOutput()
     {
+        if (outputPage != null) {
+            Page result = outputPage;
+            outputPage = null;
+            return result;
+        }
+
+        if (inputPage == null && finishing && hasSpilledInput()) {
+            unspillNextPage();
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             return null;
         }
@@ -226,6 +325,65 @@ public class RowNumberOperator
             return null;
         }
 
+        Page outputPage = processInputPage();
+        updateMemoryReservation();
+        return outputPage;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (finishing || spiller.isPresent() || localRevocableMemoryContext.getBytes() == 0) {
+            return immediateFuture(null);
+        }
+
+        if (inputPage != null) {
+            // the hash does not yield while its memory is revocable; number the current page before the row counts are spilled
+            verify(unfinishedWork == null || processUnfinishedWork());
+            outputPage = processInputPage();
+        }
+
+        spiller = Optional.of(new HashPartitionedStateSpiller(
+                sourceTypes,
+                partitionChannels,
+                hashChannel,
+                ImmutableList.of(BIGINT),
+                partitioningSpillerFactory.get(),
+                operatorContext));
+        LongBigArray rowCounts = partitionRowCount;
+        return spiller.get().spillState(groupByHash.get(), (groupId, pageBuilder, outputChannelOffset) ->
+                BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset), rowCounts.get(groupId)));
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        if (spiller.isPresent() && unspillingPartition < 0) {
+            // the row counts have been spilled; they are restored for each partition when finishing
+            groupByHash = Optional.empty();
+            partitionRowCount = new LongBigArray(0);
+        }
+        updateMemoryReservation();
+    }
+
+    @Override
+    public void close()
+    {
+        spiller.ifPresent(HashPartitionedStateSpiller::close);
+    }
+
+    private boolean hasUnfinishedInput()
+    {
+        return inputPage != null || unfinishedWork != null || outputPage != null;
+    }
+
+    private boolean hasSpilledInput()
+    {
+        return spiller.isPresent() && (unspillingPartition < spiller.get().getPartitionCount() - 1 || unspilledInput.hasNext());
+    }
+
+    private Page processInputPage()
+    {
         Page outputPage;
         if (maxRowsPerPartition.isPresent()) {
             outputPage = getSelectedRows();
@@ -233,15 +391,53 @@ public class RowNumberOperator
         else {
             outputPage = getRowsWithRowNumber();
         }
-
         inputPage = null;
-        updateMemoryReservation();
         return outputPage;
     }
 
-    private boolean hasUnfinishedInput()
+    private void unspillNextPage()
     {
-        return inputPage != null || unfinishedWork != null;
+        HashPartitionedStateSpiller spiller = this.spiller.get();
+        if (!spiller.getSpillInProgress().isDone()) {
+            return;
+        }
+
+        while (unspilledInput == null || !unspilledInput.hasNext()) {
+            if (unspillingPartition == spiller.getPartitionCount() - 1) {
+                return;
+            }
+            unspillingPartition++;
+
+            // restore the row counts of the partition; the rows of the partition continue numbering from them
+            GroupByHash partitionHash = createGroupByHash(
+                    partitionTypes,
+                    spiller.getStateGroupByChannels(),
+                    spiller.getStateHashChannel(),
+                    expectedPositions,
+                    isDictionaryAggregationEnabled(operatorContext.getSession()),
+                    joinCompiler,
+                    UpdateMemory.NOOP);
+            partitionRowCount = new LongBigArray(0);
+            int rowCountChannel = partitionTypes.size() + (hashChannel.isPresent() ? 1 : 0);
+            Iterator<Page> rowCounts = spiller.getSpilledState(unspillingPartition);
+            while (rowCounts.hasNext()) {
+                Page page = rowCounts.next();
+                Work<GroupByIdBlock> work = partitionHash.getGroupIds(page);
+                verify(work.process());
+                GroupByIdBlock groupIds = work.getResult();
+                partitionRowCount.ensureCapacity(groupIds.getGroupCount());
+                Block rowCount = page.getBlock(rowCountChannel);
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    partitionRowCount.set(groupIds.getGroupId(position), BIGINT.getLong(rowCount, position));
+                }
+            }
+            groupByHash = Optional.of(partitionHash);
+            unspilledInput = spiller.getSpilledInput(unspillingPartition);
+            updateMemoryReservation();
+        }
+
+        inputPage = unspilledInput.next();
+        unfinishedWork = groupByHash.get().getGroupIds(spiller.extractGroupByChannels(inputPage));
     }
 
     /**
@@ -254,9 +450,17 @@ public class RowNumberOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
+        long memorySizeInBytes = groupByHash.map(GroupByHash::getEstimatedSize).orElse(0L) + partitionRowCount.sizeOf();
+        if (spillEnabled && !spiller.isPresent() && !finishing) {
+            // the memory is revocable, so there is no need to yield for memory
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(memorySizeInBytes);
+            return true;
+        }
+
+        localRevocableMemoryContext.setBytes(0);
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        long memorySizeInBytes = groupByHash.map(GroupByHash::getEstimatedSize).orElse(0L) + partitionRowCount.sizeOf();
         localUserMemoryContext.setBytes(memorySizeInBytes);
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
@@ -276,7 +480,7 @@ public class RowNumberOperator
 
     private boolean isSinglePartition()
     {
-        return !groupByHash.isPresent();
+        return partitionChannels.isEmpty();
     }
 
     private Page getRowsWithRowNumber()
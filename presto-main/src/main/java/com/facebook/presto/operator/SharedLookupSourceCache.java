@@ -0,0 +1,249 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.StageExecutionId;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lookup sources of broadcast joins, shared by the tasks of a query on a worker. Every task of a stage receives
+ * the whole build side of a broadcast join, so all of them build the same lookup source for a partition.
+ * The first task to acquire a partition builds it, while the other tasks consume their build input without
+ * indexing it and use the lookup source of the first one. The memory of a shared lookup source is accounted
+ * to the query once, until the last task using it releases it.
+ */
+@ThreadSafe
+public class SharedLookupSourceCache
+{
+    private static final String ALLOCATION_TAG = SharedLookupSourceCache.class.getSimpleName();
+
+    private final AggregatedMemoryContext memoryContext;
+
+    @GuardedBy("this")
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    public SharedLookupSourceCache(AggregatedMemoryContext memoryContext)
+    {
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+    }
+
+    /**
+     * Acquires the lookup source of a partition of the join {@code planNodeId}. The caller must
+     * {@link SharedLookupSource#release release} it once the lookup source is no longer used.
+     */
+    public synchronized SharedLookupSource acquire(StageExecutionId stageExecutionId, PlanNodeId planNodeId, int partition, int partitionCount)
+    {
+        Key key = new Key(stageExecutionId, planNodeId, partition, partitionCount);
+        Entry entry = entries.get(key);
+        boolean builder = false;
+        if (entry == null) {
+            entry = new Entry(key, memoryContext.newLocalMemoryContext(ALLOCATION_TAG));
+            entries.put(key, entry);
+            builder = true;
+        }
+        entry.holders++;
+        return new SharedLookupSource(entry, builder);
+    }
+
+    @VisibleForTesting
+    synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    private synchronized void remove(Entry entry)
+    {
+        entries.remove(entry.key, entry);
+    }
+
+    public class SharedLookupSource
+    {
+        private final Entry entry;
+        private final boolean builder;
+
+        @GuardedBy("SharedLookupSourceCache.this")
+        private boolean released;
+
+        private SharedLookupSource(Entry entry, boolean builder)
+        {
+            this.entry = requireNonNull(entry, "entry is null");
+            this.builder = builder;
+        }
+
+        /**
+         * Whether the caller builds the lookup source for the other tasks.
+         */
+        public boolean isBuilder()
+        {
+            return builder;
+        }
+
+        public ListenableFuture<LookupSourceSupplier> getLookupSourceSupplier()
+        {
+            return entry.lookupSourceSupplier;
+        }
+
+        /**
+         * Publishes the lookup source built by the caller. From now on the memory of the lookup source is accounted
+         * by this cache, so the caller must neither account nor clear it.
+         */
+        public void setLookupSourceSupplier(LookupSourceSupplier lookupSourceSupplier, long sizeInBytes, boolean enforceBroadcastMemoryLimit)
+        {
+            requireNonNull(lookupSourceSupplier, "lookupSourceSupplier is null");
+            checkState(builder, "only the builder can set the lookup source");
+            synchronized (SharedLookupSourceCache.this) {
+                checkState(!released, "lookup source is already released");
+                entry.enforceBroadcastMemoryLimit = enforceBroadcastMemoryLimit;
+                entry.memoryContext.setBytes(sizeInBytes, enforceBroadcastMemoryLimit);
+            }
+            entry.lookupSourceSupplier.set(lookupSourceSupplier);
+        }
+
+        /**
+         * Gives up building the lookup source, unless another task is waiting for it.
+         *
+         * @return whether the lookup source is no longer needed
+         */
+        public boolean tryAbandon()
+        {
+            checkState(builder, "only the builder can abandon the lookup source");
+            synchronized (SharedLookupSourceCache.this) {
+                if (entry.holders > 1) {
+                    return false;
+                }
+                releaseHolder();
+            }
+            return true;
+        }
+
+        public void release()
+        {
+            boolean abandoned;
+            synchronized (SharedLookupSourceCache.this) {
+                abandoned = releaseHolder();
+            }
+            if (abandoned) {
+                entry.lookupSourceSupplier.setException(new PrestoException(GENERIC_INTERNAL_ERROR, "Task building the shared lookup source for " + entry.key + " did not finish"));
+            }
+        }
+
+        /**
+         * @return whether the lookup source was abandoned before it was built
+         */
+        @GuardedBy("SharedLookupSourceCache.this")
+        private boolean releaseHolder()
+        {
+            if (released) {
+                return false;
+            }
+            released = true;
+            entry.holders--;
+            boolean abandoned = builder && !entry.lookupSourceSupplier.isDone();
+            if (abandoned || entry.holders == 0) {
+                // tasks acquiring the partition from now on build it on their own
+                remove(entry);
+            }
+            if (entry.holders == 0) {
+                entry.memoryContext.setBytes(0, entry.enforceBroadcastMemoryLimit);
+                entry.memoryContext.close();
+            }
+            return abandoned;
+        }
+    }
+
+    private static class Entry
+    {
+        private final Key key;
+        private final LocalMemoryContext memoryContext;
+        private final SettableFuture<LookupSourceSupplier> lookupSourceSupplier = SettableFuture.create();
+
+        @GuardedBy("SharedLookupSourceCache.this")
+        private int holders;
+        @GuardedBy("SharedLookupSourceCache.this")
+        private boolean enforceBroadcastMemoryLimit;
+
+        private Entry(Key key, LocalMemoryContext memoryContext)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        }
+    }
+
+    private static class Key
+    {
+        private final StageExecutionId stageExecutionId;
+        private final PlanNodeId planNodeId;
+        private final int partition;
+        private final int partitionCount;
+
+        private Key(StageExecutionId stageExecutionId, PlanNodeId planNodeId, int partition, int partitionCount)
+        {
+            this.stageExecutionId = requireNonNull(stageExecutionId, "stageExecutionId is null");
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.partition = partition;
+            this.partitionCount = partitionCount;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return partition == that.partition &&
+                    partitionCount == that.partitionCount &&
+                    Objects.equals(stageExecutionId, that.stageExecutionId) &&
+                    Objects.equals(planNodeId, that.planNodeId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(stageExecutionId, planNodeId, partition, partitionCount);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("stageExecutionId", stageExecutionId)
+                    .add("planNodeId", planNodeId)
+                    .add("partition", partition)
+                    .add("partitionCount", partitionCount)
+                    .toString();
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.airlift.stats.GcMonitor;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.FragmentResultCacheContext;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.TaskId;
@@ -29,6 +30,7 @@ import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.memory.context.MemoryTrackingContext;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.AtomicDouble;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -40,8 +42,10 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -113,6 +117,11 @@ public class TaskContext
 
     private final TaskMetadataContext taskMetadataContext;
 
+    // dynamic filter domains collected by the joins of this task, to be reported to the coordinator
+    private final Map<String, Domain> collectedDynamicFilterDomains = new ConcurrentHashMap<>();
+    // dynamic filter domains merged by the coordinator from the joins of other stages
+    private final Map<String, Domain> remoteDynamicFilterDomains = new ConcurrentHashMap<>();
+
     public static TaskContext createTaskContext(
             QueryContext queryContext,
             TaskStateMachine taskStateMachine,
@@ -268,6 +277,29 @@ public class TaskContext
         return taskMetadataContext;
     }
 
+    public void addCollectedDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains)
+    {
+        collectedDynamicFilterDomains.putAll(dynamicFilterDomains);
+    }
+
+    public Map<String, Domain> getCollectedDynamicFilterDomains()
+    {
+        return ImmutableMap.copyOf(collectedDynamicFilterDomains);
+    }
+
+    public void addRemoteDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains)
+    {
+        remoteDynamicFilterDomains.putAll(dynamicFilterDomains);
+    }
+
+    /**
+     * Returns a live view of the domains, as they keep arriving while the task runs.
+     */
+    public Map<String, Domain> getRemoteDynamicFilterDomains()
+    {
+        return remoteDynamicFilterDomains;
+    }
+
     public DataSize getMemoryReservation()
     {
         return new DataSize(taskMemoryContext.getUserMemory(), BYTE);
@@ -465,47 +465,17 @@ public class TaskStats
 
     public TaskStats summarize()
     {
-        return new TaskStats(
-                createTime,
-                firstStartTime,
-                lastStartTime,
-                lastEndTime,
-                endTime,
-                elapsedTimeInNanos,
-                queuedTimeInNanos,
-                totalDrivers,
-                queuedDrivers,
-                queuedPartitionedDrivers,
-                runningDrivers,
-                runningPartitionedDrivers,
-                blockedDrivers,
-                completedDrivers,
-                cumulativeUserMemory,
-                userMemoryReservationInBytes,
-                revocableMemoryReservationInBytes,
-                systemMemoryReservationInBytes,
-                peakTotalMemoryInBytes,
-                peakUserMemoryInBytes,
-                peakNodeTotalMemoryInBytes,
-                totalScheduledTimeInNanos,
-                totalCpuTimeInNanos,
-                totalBlockedTimeInNanos,
-                fullyBlocked,
-                blockedReasons,
-                totalAllocationInBytes,
-                rawInputDataSizeInBytes,
-                rawInputPositions,
-                processedInputDataSizeInBytes,
-                processedInputPositions,
-                outputDataSizeInBytes,
-                outputPositions,
-                physicalWrittenDataSizeInBytes,
-                fullGcCount,
-                fullGcTimeInMillis,
-                ImmutableList.of());
+        return withPipelines(ImmutableList.of());
     }
 
     public TaskStats summarizeFinal()
+    {
+        return withPipelines(pipelines.stream()
+                .map(PipelineStats::summarize)
+                .collect(Collectors.toList()));
+    }
+
+    public TaskStats withPipelines(List<PipelineStats> pipelines)
     {
         return new TaskStats(
                 createTime,
@@ -544,8 +514,6 @@ public class TaskStats
                 physicalWrittenDataSizeInBytes,
                 fullGcCount,
                 fullGcTimeInMillis,
-                pipelines.stream()
-                        .map(PipelineStats::summarize)
-                        .collect(Collectors.toList()));
+                pipelines);
     }
 }
@@ -17,21 +17,30 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.WorkProcessor.TransformationState;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class TopNRowNumberOperator
@@ -58,6 +67,8 @@ public class TopNRowNumberOperator
         private final boolean generateRowNumber;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<SpillerFactory> spillerFactory;
 
         public TopNRowNumberOperatorFactory(
                 int operatorId,
@@ -73,6 +84,41 @@ public class TopNRowNumberOperator
                 Optional<Integer> hashChannel,
                 int expectedPositions,
                 JoinCompiler joinCompiler)
+        {
+            this(
+                    operatorId,
+                    planNodeId,
+                    sourceTypes,
+                    outputChannels,
+                    partitionChannels,
+                    partitionTypes,
+                    sortChannels,
+                    sortOrder,
+                    maxRowCountPerPartition,
+                    partial,
+                    hashChannel,
+                    expectedPositions,
+                    joinCompiler,
+                    false,
+                    Optional.empty());
+        }
+
+        public TopNRowNumberOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                List<Integer> partitionChannels,
+                List<? extends Type> partitionTypes,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrder,
+                int maxRowCountPerPartition,
+                boolean partial,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<SpillerFactory> spillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -90,6 +136,9 @@ public class TopNRowNumberOperator
             this.generateRowNumber = !partial;
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+            checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -109,7 +158,9 @@ public class TopNRowNumberOperator
                     generateRowNumber,
                     hashChannel,
                     expectedPositions,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    spillerFactory);
         }
 
         @Override
@@ -121,21 +172,43 @@ public class TopNRowNumberOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler);
+            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, spillEnabled, spillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private final int[] outputChannels;
 
-    private final GroupByHash groupByHash;
-    private final GroupedTopNBuilder groupedTopNBuilder;
+    private final List<Type> sourceTypes;
+    private final int[] partitionChannels;
+    private final List<Type> partitionTypes;
+    private final Optional<Integer> hashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final PageWithPositionComparator comparator;
+    private final int maxRowCountPerPartition;
+    private final boolean generateRowNumber;
+
+    private final boolean spillEnabled;
+    private final Optional<SpillerFactory> spillerFactory;
+    private final HashGenerator spillHashGenerator;
+
+    private GroupByHash groupByHash;
+    private GroupedTopNBuilder groupedTopNBuilder;
+
+    private Optional<Spiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<MergeHashSort> mergeHashSort = Optional.empty();
+    // holds the rows that were not spilled while they are merged with the spilled rows
+    private Optional<GroupedTopNBuilder> inMemoryTopNBuilder = Optional.empty();
 
     private boolean finishing;
+    private boolean producingOutput;
     private Work<?> unfinishedWork;
-    private Iterator<Page> outputIterator;
+    private Iterator<Optional<Page>> outputIterator;
 
     public TopNRowNumberOperator(
             OperatorContext operatorContext,
@@ -149,10 +222,13 @@ public class TopNRowNumberOperator
             boolean generateRowNumber,
             Optional<Integer> hashChannel,
             int expectedPositions,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<SpillerFactory> spillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
         ImmutableList.Builder<Integer> outputChannelsBuilder = ImmutableList.builder();
         for (int channel : requireNonNull(outputChannels, "outputChannels is null")) {
@@ -164,29 +240,29 @@ public class TopNRowNumberOperator
         this.outputChannels = Ints.toArray(outputChannelsBuilder.build());
 
         checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
-
         if (!partitionChannels.isEmpty()) {
             checkArgument(expectedPositions > 0, "expectedPositions must be > 0");
-            groupByHash = createGroupByHash(
-                    partitionTypes,
-                    Ints.toArray(partitionChannels),
-                    hashChannel,
-                    expectedPositions,
-                    isDictionaryAggregationEnabled(operatorContext.getSession()),
-                    joinCompiler,
-                    this::updateMemoryReservation);
-        }
-        else {
-            groupByHash = new NoChannelGroupByHash();
         }
 
+        this.sourceTypes = ImmutableList.copyOf(sourceTypes);
+        this.partitionChannels = Ints.toArray(partitionChannels);
+        this.partitionTypes = ImmutableList.copyOf(requireNonNull(partitionTypes, "partitionTypes is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.maxRowCountPerPartition = maxRowCountPerPartition;
+        this.generateRowNumber = generateRowNumber;
+
         List<Type> types = toTypes(sourceTypes, outputChannels, generateRowNumber);
-        this.groupedTopNBuilder = new GroupedTopNBuilder(
-                ImmutableList.copyOf(sourceTypes),
-                new SimplePageWithPositionComparator(types, sortChannels, sortOrders),
-                maxRowCountPerPartition,
-                generateRowNumber,
-                groupByHash);
+        this.comparator = new SimplePageWithPositionComparator(types, sortChannels, sortOrders);
+
+        // without partitions the operator never holds more than maxRowCountPerPartition rows, so there is nothing to spill
+        this.spillEnabled = spillEnabled && !partitionChannels.isEmpty();
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+        checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
+        this.spillHashGenerator = new InterpretedHashGenerator(this.partitionTypes, this.partitionChannels);
+
+        rebuildGroupedTopNBuilder(this::updateMemoryReservation);
     }
 
     @Override
@@ -201,6 +277,13 @@ public class TopNRowNumberOperator
         finishing = true;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        // a spill started while flushing is not awaited by the driver as a memory revocation
+        return spillInProgress;
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -222,6 +305,7 @@ public class TopNRowNumberOperator
         checkState(unfinishedWork == null, "Cannot add input with the operator when unfinished work is not empty");
         checkState(outputIterator == null, "Cannot add input with the operator when flushing");
         requireNonNull(page, "page is null");
+        checkSuccess(spillInProgress, "spilling failed");
         unfinishedWork = groupedTopNBuilder.processPage(page);
         if (unfinishedWork.process()) {
             unfinishedWork = null;
@@ -246,18 +330,59 @@ public class TopNRowNumberOperator
         }
 
         if (outputIterator == null) {
+            if (!spillInProgress.isDone()) {
+                return null;
+            }
+            checkSuccess(spillInProgress, "spilling failed");
+
+            if (!producingOutput) {
+                producingOutput = true;
+                if (!convertRevocableMemoryToUserMemory()) {
+                    // spill since revocable memory could not be converted to user memory immediately,
+                    // the output is built once the spill has finished
+                    spillToDisk();
+                    updateMemoryReservation();
+                    return null;
+                }
+            }
+
             // start flushing
-            outputIterator = groupedTopNBuilder.buildResult();
+            outputIterator = buildResult();
         }
 
         Page output = null;
         if (outputIterator.hasNext()) {
-            output = outputIterator.next().extractChannels(outputChannels);
+            output = outputIterator.next()
+                    .map(page -> page.extractChannels(outputChannels))
+                    .orElse(null);
         }
         updateMemoryReservation();
         return output;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (producingOutput || localRevocableMemoryContext.getBytes() == 0) {
+            // all revocable memory has been converted to user memory once the output is being produced
+            return immediateFuture(null);
+        }
+        return spillToDisk();
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        updateMemoryReservation();
+    }
+
+    @Override
+    public void close()
+    {
+        spiller.ifPresent(Spiller::close);
+        mergeHashSort.ifPresent(MergeHashSort::close);
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -265,10 +390,150 @@ public class TopNRowNumberOperator
         return groupByHash.getCapacity();
     }
 
+    /**
+     * Converts revocable memory to user memory as the result holds on to memory so we no longer can revoke.
+     *
+     * @return false if the user memory could not be reserved, in which case the memory stays revocable
+     */
+    private boolean convertRevocableMemoryToUserMemory()
+    {
+        long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+        if (currentRevocableBytes == 0) {
+            return true;
+        }
+        localRevocableMemoryContext.setBytes(0);
+        if (localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+            return true;
+        }
+        localRevocableMemoryContext.setBytes(currentRevocableBytes);
+        return false;
+    }
+
+    private Iterator<Optional<Page>> buildResult()
+    {
+        if (!spiller.isPresent()) {
+            return transform(groupedTopNBuilder.buildResult(), Optional::of);
+        }
+
+        if (groupByHash.getGroupCount() > 0) {
+            return mergeFromDiskAndMemory().yieldingIterator();
+        }
+        return mergeFromDisk().yieldingIterator();
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.get().create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.newAggregateSystemMemoryContext()));
+        }
+
+        // start spilling the current rows sorted by partition hash...
+        spillInProgress = spiller.get().spill(groupedTopNBuilder.buildHashSortedResult(spillHashGenerator));
+        // ... and immediately create a new builder so the memory ownership of the current one
+        // is transferred from this thread to a spilling thread
+        rebuildGroupedTopNBuilder(this::updateMemoryReservation);
+
+        return spillInProgress;
+    }
+
+    private WorkProcessor<Page> mergeFromDiskAndMemory()
+    {
+        checkState(spiller.isPresent());
+
+        inMemoryTopNBuilder = Optional.of(groupedTopNBuilder);
+        WorkProcessor<Page> inMemoryPages = WorkProcessor.fromIterator(groupedTopNBuilder.buildHashSortedResult(spillHashGenerator))
+                .transform(page -> {
+                    if (!page.isPresent()) {
+                        // all rows left in memory have been merged
+                        inMemoryTopNBuilder = Optional.empty();
+                        updateMemoryReservation();
+                        return TransformationState.finished();
+                    }
+                    return TransformationState.ofResult(page.get());
+                });
+        rebuildGroupedTopNBuilder(UpdateMemory.NOOP);
+
+        return mergeSortedPages(ImmutableList.<WorkProcessor<Page>>builder()
+                .addAll(spiller.get().getSpills().stream()
+                        .map(WorkProcessor::fromIterator)
+                        .collect(toImmutableList()))
+                .add(inMemoryPages)
+                .build());
+    }
+
+    private WorkProcessor<Page> mergeFromDisk()
+    {
+        checkState(spiller.isPresent());
+
+        return mergeSortedPages(spiller.get().getSpills().stream()
+                .map(WorkProcessor::fromIterator)
+                .collect(toImmutableList()));
+    }
+
+    private WorkProcessor<Page> mergeSortedPages(List<WorkProcessor<Page>> hashSortedPages)
+    {
+        mergeHashSort = Optional.of(new MergeHashSort(operatorContext.newAggregateSystemMemoryContext()));
+
+        WorkProcessor<Page> mergedPages = mergeHashSort.get().merge(
+                partitionTypes,
+                partitionChannels,
+                sourceTypes,
+                hashSortedPages,
+                operatorContext.getDriverContext().getYieldSignal());
+
+        // every spill, as well as the rows left in memory, holds at most maxRowCountPerPartition rows of a partition, so
+        // the top rows of a partition are the top rows of the union of them; MergeHashSort never splits the rows with the same partition
+        // hash across pages, so every merged page can be ranked on its own
+        return mergedPages.flatMap(page -> {
+            rebuildGroupedTopNBuilder(UpdateMemory.NOOP);
+            verify(groupedTopNBuilder.processPage(page).process());
+            updateMemoryReservation();
+            return WorkProcessor.fromIterator(groupedTopNBuilder.buildResult());
+        });
+    }
+
+    private void rebuildGroupedTopNBuilder(UpdateMemory updateMemory)
+    {
+        if (partitionChannels.length > 0) {
+            groupByHash = createGroupByHash(
+                    partitionTypes,
+                    partitionChannels,
+                    hashChannel,
+                    expectedPositions,
+                    isDictionaryAggregationEnabled(operatorContext.getSession()),
+                    joinCompiler,
+                    updateMemory);
+        }
+        else {
+            groupByHash = new NoChannelGroupByHash();
+        }
+
+        groupedTopNBuilder = new GroupedTopNBuilder(
+                sourceTypes,
+                comparator,
+                maxRowCountPerPartition,
+                generateRowNumber,
+                groupByHash);
+    }
+
     private boolean updateMemoryReservation()
     {
-        // TODO: may need to use trySetMemoryReservation with a compaction to free memory (but that may cause GC pressure)
-        localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+        if (spillEnabled && !producingOutput) {
+            // the memory is revocable, so there is no need to yield for memory
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+            return true;
+        }
+
+        long estimatedSizeInBytes = groupedTopNBuilder.getEstimatedSizeInBytes() +
+                inMemoryTopNBuilder.map(GroupedTopNBuilder::getEstimatedSizeInBytes).orElse(0L);
+        localRevocableMemoryContext.setBytes(0);
+        localUserMemoryContext.setBytes(estimatedSizeInBytes);
         return operatorContext.isWaitingForMemory().isDone();
     }
 
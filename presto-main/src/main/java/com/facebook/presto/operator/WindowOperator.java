@@ -518,10 +518,12 @@ public class WindowOperator
             implements Transformation<WindowPartition, Page>
     {
         final PageBuilder pageBuilder;
+        final LocalMemoryContext memoryContext;
 
         WindowPartitionsToOutputPages()
         {
             pageBuilder = new PageBuilder(outputTypes);
+            memoryContext = operatorContext.aggregateUserMemoryContext().newLocalMemoryContext(WindowPartitionsToOutputPages.class.getSimpleName());
         }
 
         @Override
@@ -529,6 +531,7 @@ public class WindowOperator
         {
             boolean finishing = !partitionOptional.isPresent();
             if (finishing) {
+                memoryContext.close();
                 if (pageBuilder.isEmpty()) {
                     return TransformationState.finished();
                 }
@@ -541,7 +544,9 @@ public class WindowOperator
 
             WindowPartition partition = partitionOptional.get();
             while (!pageBuilder.isFull() && partition.hasNext()) {
-                partition.processNextRow(pageBuilder);
+                partition.processNextRows(pageBuilder);
+                // e.g. the segment trees of aggregations over moving frames, built once per partition
+                memoryContext.setBytes(partition.getRetainedSizeInBytes());
             }
             if (!pageBuilder.isFull()) {
                 return needsMoreData();
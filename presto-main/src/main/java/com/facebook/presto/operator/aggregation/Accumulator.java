@@ -33,6 +33,24 @@ public interface Accumulator
 
     void addInput(WindowIndex index, List<Integer> channels, int startPosition, int endPosition);
 
+    /**
+     * Whether this accumulator can retract rows it previously added through
+     * {@link #removeInput(WindowIndex, List, int, int)}.
+     */
+    default boolean supportsRemoveInput()
+    {
+        return false;
+    }
+
+    /**
+     * Retracts rows previously added with {@link #addInput(WindowIndex, List, int, int)}.
+     * Only supported when {@link #supportsRemoveInput()} returns true.
+     */
+    default void removeInput(WindowIndex index, List<Integer> channels, int startPosition, int endPosition)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support removeInput");
+    }
+
     void addIntermediate(Block block);
 
     void evaluateIntermediate(BlockBuilder blockBuilder);
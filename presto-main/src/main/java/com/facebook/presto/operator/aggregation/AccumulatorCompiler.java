@@ -169,6 +169,16 @@ public class AccumulatorCompiler
                 lambdaProviderFields,
                 metadata.getInputFunction(),
                 callSiteBinder);
+        if (!grouped && metadata.getRemoveInputFunction().isPresent()) {
+            generateRemoveInputWindowIndex(
+                    definition,
+                    stateFileds,
+                    metadata.getValueInputMetadata(),
+                    metadata.getLambdaInterfaces(),
+                    lambdaProviderFields,
+                    metadata.getRemoveInputFunction().get(),
+                    callSiteBinder);
+        }
         generateGetEstimatedSize(definition, stateFileds);
 
         generateGetIntermediateType(
@@ -335,13 +345,42 @@ public class AccumulatorCompiler
             CallSiteBinder callSiteBinder)
     {
         // TODO: implement masking based on maskChannel field once Window Functions support DISTINCT arguments to the functions.
+        generateWindowIndexInputLoop(definition, "addInput", stateField, parameterMetadatas, lambdaInterfaces, lambdaProviderFields, inputFunction, callSiteBinder);
+    }
 
+    private static void generateRemoveInputWindowIndex(
+            ClassDefinition definition,
+            List<FieldDefinition> stateField,
+            List<ParameterMetadata> parameterMetadatas,
+            List<Class> lambdaInterfaces,
+            List<FieldDefinition> lambdaProviderFields,
+            MethodHandle removeInputFunction,
+            CallSiteBinder callSiteBinder)
+    {
+        generateWindowIndexInputLoop(definition, "removeInput", stateField, parameterMetadatas, lambdaInterfaces, lambdaProviderFields, removeInputFunction, callSiteBinder);
+
+        MethodDefinition method = definition.declareMethod(a(PUBLIC), "supportsRemoveInput", type(boolean.class));
+        method.getBody()
+                .push(true)
+                .retBoolean();
+    }
+
+    private static void generateWindowIndexInputLoop(
+            ClassDefinition definition,
+            String methodName,
+            List<FieldDefinition> stateField,
+            List<ParameterMetadata> parameterMetadatas,
+            List<Class> lambdaInterfaces,
+            List<FieldDefinition> lambdaProviderFields,
+            MethodHandle inputFunction,
+            CallSiteBinder callSiteBinder)
+    {
         Parameter index = arg("index", WindowIndex.class);
         Parameter channels = arg("channels", type(List.class, Integer.class));
         Parameter startPosition = arg("startPosition", int.class);
         Parameter endPosition = arg("endPosition", int.class);
 
-        MethodDefinition method = definition.declareMethod(a(PUBLIC), "addInput", type(void.class), ImmutableList.of(index, channels, startPosition, endPosition));
+        MethodDefinition method = definition.declareMethod(a(PUBLIC), methodName, type(void.class), ImmutableList.of(index, channels, startPosition, endPosition));
         Scope scope = method.getScope();
 
         Variable position = scope.declareVariable(int.class, "position");
@@ -350,7 +389,7 @@ public class AccumulatorCompiler
         BytecodeExpression invokeInputFunction = invokeDynamic(
                 BOOTSTRAP_METHOD,
                 ImmutableList.of(binding.getBindingId()),
-                "input",
+                methodName,
                 binding.getType(),
                 getInvokeFunctionOnWindowIndexParameters(
                         scope,
@@ -29,10 +29,12 @@ import com.facebook.presto.spi.function.BlockPosition;
 import com.facebook.presto.spi.function.FunctionKind;
 import com.facebook.presto.spi.function.LongVariableConstraint;
 import com.facebook.presto.spi.function.OutputFunction;
+import com.facebook.presto.spi.function.RemoveInputFunction;
 import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.SqlType;
 import com.facebook.presto.spi.function.TypeParameter;
 import com.facebook.presto.spi.function.TypeVariableConstraint;
+import com.facebook.presto.util.Reflection;
 import com.google.common.collect.ImmutableList;
 
 import java.lang.annotation.Annotation;
@@ -62,6 +64,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static java.util.Objects.requireNonNull;
 
 public class AggregationImplementation
@@ -94,6 +97,7 @@ public class AggregationImplementation
     private final Class<?> definitionClass;
     private final Class<?> stateClass;
     private final MethodHandle inputFunction;
+    private final Optional<MethodHandle> removeInputFunction;
     private final MethodHandle outputFunction;
     private final MethodHandle combineFunction;
     private final Optional<MethodHandle> stateSerializerFactory;
@@ -109,6 +113,7 @@ public class AggregationImplementation
             Class<?> definitionClass,
             Class<?> stateClass,
             MethodHandle inputFunction,
+            Optional<MethodHandle> removeInputFunction,
             MethodHandle outputFunction,
             MethodHandle combineFunction,
             Optional<MethodHandle> stateSerializerFactory,
@@ -123,6 +128,7 @@ public class AggregationImplementation
         this.definitionClass = requireNonNull(definitionClass, "definition class cannot be null");
         this.stateClass = requireNonNull(stateClass, "stateClass cannot be null");
         this.inputFunction = requireNonNull(inputFunction, "inputFunction cannot be null");
+        this.removeInputFunction = requireNonNull(removeInputFunction, "removeInputFunction cannot be null");
         this.outputFunction = requireNonNull(outputFunction, "outputFunction cannot be null");
         this.combineFunction = requireNonNull(combineFunction, "combineFunction cannot be null");
         this.stateSerializerFactory = requireNonNull(stateSerializerFactory, "stateSerializerFactory cannot be null");
@@ -161,6 +167,15 @@ public class AggregationImplementation
         return inputFunction;
     }
 
+    /**
+     * The remove input function takes the same parameters as the input function,
+     * so it is bound with the input dependencies.
+     */
+    public Optional<MethodHandle> getRemoveInputFunction()
+    {
+        return removeInputFunction;
+    }
+
     public MethodHandle getOutputFunction()
     {
         return outputFunction;
@@ -228,6 +243,7 @@ public class AggregationImplementation
         private final Class<?> aggregationDefinition;
         private final Class<?> stateClass;
         private final MethodHandle inputHandle;
+        private final Optional<MethodHandle> removeInputHandle;
         private final MethodHandle outputHandle;
         private final MethodHandle combineHandle;
         private final Optional<MethodHandle> stateSerializerFactoryHandle;
@@ -299,6 +315,7 @@ public class AggregationImplementation
             }
 
             inputHandle = methodHandle(inputFunction);
+            removeInputHandle = findRemoveInputFunction(aggregationDefinition, inputFunction).map(Reflection::methodHandle);
             combineHandle = methodHandle(combineFunction);
             outputHandle = methodHandle(outputFunction);
         }
@@ -318,6 +335,7 @@ public class AggregationImplementation
                     aggregationDefinition,
                     stateClass,
                     inputHandle,
+                    removeInputHandle,
                     outputHandle,
                     combineHandle,
                     stateSerializerFactoryHandle,
@@ -341,6 +359,21 @@ public class AggregationImplementation
             return new Parser(aggregationDefinition, header, stateClass, inputFunction, outputFunction, combineFunction, stateSerializerFactoryFunction).get();
         }
 
+        private static Optional<Method> findRemoveInputFunction(Class<?> aggregationDefinition, Method inputFunction)
+        {
+            // A remove input function reverses the input function with exactly the same parameters
+            List<Method> removeInputFunctions = FunctionsParserHelper.findPublicStaticMethods(aggregationDefinition, RemoveInputFunction.class).stream()
+                    .filter(method -> Arrays.equals(method.getParameterTypes(), inputFunction.getParameterTypes()))
+                    .filter(method -> Arrays.deepEquals(method.getParameterAnnotations(), inputFunction.getParameterAnnotations()))
+                    .collect(toImmutableList());
+
+            if (removeInputFunctions.isEmpty()) {
+                return Optional.empty();
+            }
+            checkArgument(removeInputFunctions.size() == 1, "Expect at most 1 @RemoveInputFunction matching %s, found %s", inputFunction, removeInputFunctions.size());
+            return Optional.of(getOnlyElement(removeInputFunctions));
+        }
+
         private static List<ParameterType> parseParameterMetadataTypes(Method method)
         {
             ImmutableList.Builder<ParameterType> builder = ImmutableList.builder();
@@ -19,6 +19,7 @@ import com.facebook.presto.spi.function.AggregationFunction;
 import com.facebook.presto.spi.function.CombineFunction;
 import com.facebook.presto.spi.function.InputFunction;
 import com.facebook.presto.spi.function.OutputFunction;
+import com.facebook.presto.spi.function.RemoveInputFunction;
 import com.facebook.presto.spi.function.SqlType;
 import com.facebook.presto.type.BigintOperators;
 
@@ -37,6 +38,12 @@ public final class IntervalYearToMonthSumAggregation
         state.setLong(BigintOperators.add(state.getLong(), value));
     }
 
+    @RemoveInputFunction
+    public static void removeInput(NullableLongState state, @SqlType(INTERVAL_YEAR_TO_MONTH) long value)
+    {
+        state.setLong(BigintOperators.subtract(state.getLong(), value));
+    }
+
     @CombineFunction
     public static void combine(NullableLongState state, NullableLongState otherState)
     {
@@ -22,7 +22,13 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
+/**
+ * Tracks the memory buffered by a local exchange. Memory is updated by every page that enters or leaves
+ * the exchange, so updates never take a lock. Writers only take the lock to install a new future when
+ * they have to block.
+ */
 @ThreadSafe
 public class LocalExchangeMemoryManager
 {
@@ -36,8 +42,9 @@ public class LocalExchangeMemoryManager
     private final long maxBufferedBytes;
     private final AtomicLong bufferedBytes = new AtomicLong();
 
+    // replaced under the lock, but read by memory updates without it
     @GuardedBy("this")
-    private SettableFuture<?> notFullFuture = NOT_FULL;
+    private volatile SettableFuture<?> notFullFuture = NOT_FULL;
 
     public LocalExchangeMemoryManager(long maxBufferedBytes)
     {
@@ -47,31 +54,42 @@ public class LocalExchangeMemoryManager
 
     public void updateMemoryUsage(long bytesAdded)
     {
-        SettableFuture<?> future;
-        synchronized (this) {
-            bufferedBytes.addAndGet(bytesAdded);
-
-            // if we are full, then breakout
-            if (bufferedBytes.get() > maxBufferedBytes || notFullFuture.isDone()) {
-                return;
-            }
-
-            // otherwise, we are not full, so complete the future
-            future = notFullFuture;
-            notFullFuture = NOT_FULL;
+        // if we are full, then breakout
+        if (bufferedBytes.addAndGet(bytesAdded) > maxBufferedBytes) {
+            return;
         }
 
-        // complete future outside of lock since this can invoke callbacks
-        future.set(null);
+        // otherwise, we are not full, so complete the future
+        // writers only replace a completed future, so completing the current one is enough to wake them up
+        SettableFuture<?> future = notFullFuture;
+        if (!future.isDone()) {
+            future.set(null);
+        }
     }
 
-    public synchronized ListenableFuture<?> getNotFullFuture()
+    public ListenableFuture<?> getNotFullFuture()
     {
-        // if we are full and the current not full future is already complete, create a new one
-        if (bufferedBytes.get() > maxBufferedBytes && notFullFuture.isDone()) {
-            notFullFuture = SettableFuture.create();
+        checkState(!Thread.holdsLock(this), "Can not execute this method while holding the lock");
+
+        if (bufferedBytes.get() <= maxBufferedBytes) {
+            return NOT_FULL;
+        }
+
+        synchronized (this) {
+            // if we are full and the current not full future is already complete, create a new one
+            if (notFullFuture.isDone()) {
+                SettableFuture<?> future = SettableFuture.create();
+                notFullFuture = future;
+
+                // memory updates do not take the lock, so check again after the future is published: an update
+                // either sees the new future, or released its memory before the check below
+                if (bufferedBytes.get() <= maxBufferedBytes) {
+                    // nobody is listening to the new future yet, so it is safe to complete it here
+                    future.set(null);
+                }
+            }
+            return notFullFuture;
         }
-        return notFullFuture;
     }
 
     public long getBufferedBytes()
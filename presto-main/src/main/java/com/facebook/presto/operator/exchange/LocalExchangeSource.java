@@ -24,14 +24,19 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Buffer of a single reader of a local exchange. Pages are added by the drivers of all the sinks of the exchange,
+ * so adding a page never takes a lock. Readers only take the lock to install a new future when they have to block.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
@@ -44,16 +49,18 @@ public class LocalExchangeSource
 
     private final Consumer<LocalExchangeSource> onFinish;
 
-    private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
+    private final Queue<PageReference> buffer = new ConcurrentLinkedQueue<>();
     private final AtomicLong bufferedBytes = new AtomicLong();
+    // the size of a concurrent queue is not a constant time operation
+    private final AtomicInteger bufferedPages = new AtomicInteger();
 
     private final Object lock = new Object();
 
+    // replaced under the lock, but read by writers without it
     @GuardedBy("lock")
-    private SettableFuture<?> notEmptyFuture = NOT_EMPTY;
+    private volatile SettableFuture<?> notEmptyFuture = NOT_EMPTY;
 
-    @GuardedBy("lock")
-    private boolean finishing;
+    private volatile boolean finishing;
 
     public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish)
     {
@@ -64,37 +71,35 @@ public class LocalExchangeSource
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), bufferedPages.get());
     }
 
     void addPage(PageReference pageReference)
     {
         checkNotHoldsLock();
 
-        boolean added = false;
-        SettableFuture<?> notEmptyFuture;
-        synchronized (lock) {
-            // ignore pages after finish
-            if (!finishing) {
-                // buffered bytes must be updated before adding to the buffer to assure
-                // the count does not go negative
-                bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
-                buffer.add(pageReference);
-                added = true;
-            }
-
-            // we just added a page (or we are finishing) so we are not empty
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
+        // ignore pages after finish
+        if (finishing) {
+            pageReference.removePage();
+            return;
         }
 
-        if (!added) {
-            // dereference the page outside of lock
+        // buffered bytes must be updated before adding to the buffer to assure
+        // the count does not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        bufferedPages.incrementAndGet();
+        buffer.add(pageReference);
+
+        // the source may have been finished while the page was added, in which case the
+        // page must not be left behind, unless the reader has already taken it
+        if (finishing && buffer.remove(pageReference)) {
+            bufferedPages.decrementAndGet();
+            bufferedBytes.addAndGet(-pageReference.getRetainedSizeInBytes());
             pageReference.removePage();
+            checkFinished();
         }
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        notifyReaders();
     }
 
     public WorkProcessor<Page> pages()
@@ -129,6 +134,7 @@ public class LocalExchangeSource
         if (pageReference == null) {
             return null;
         }
+        bufferedPages.decrementAndGet();
 
         // dereference the page outside of lock, since may trigger a callback
         Page page = pageReference.removePage();
@@ -143,10 +149,22 @@ public class LocalExchangeSource
     {
         checkNotHoldsLock();
 
+        if (finishing || !buffer.isEmpty()) {
+            return NOT_EMPTY;
+        }
+
         synchronized (lock) {
             // if we need to block readers, and the current future is complete, create a new one
-            if (!finishing && buffer.isEmpty() && notEmptyFuture.isDone()) {
-                notEmptyFuture = SettableFuture.create();
+            if (notEmptyFuture.isDone()) {
+                SettableFuture<?> future = SettableFuture.create();
+                notEmptyFuture = future;
+
+                // writers do not take the lock, so check again after the future is published: a writer
+                // either sees the new future, or added its page before the check below
+                if (finishing || !buffer.isEmpty()) {
+                    // nobody is listening to the new future yet, so it is safe to complete it here
+                    future.set(null);
+                }
             }
             return notEmptyFuture;
         }
@@ -154,28 +172,21 @@ public class LocalExchangeSource
 
     public boolean isFinished()
     {
-        synchronized (lock) {
-            return finishing && buffer.isEmpty();
-        }
+        return finishing && buffer.isEmpty();
     }
 
     public void finish()
     {
         checkNotHoldsLock();
 
-        SettableFuture<?> notEmptyFuture;
         synchronized (lock) {
             if (finishing) {
                 return;
             }
             finishing = true;
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
         }
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        notifyReaders();
 
         checkFinished();
     }
@@ -184,29 +195,35 @@ public class LocalExchangeSource
     {
         checkNotHoldsLock();
 
-        List<PageReference> remainingPages = new ArrayList<>();
-        SettableFuture<?> notEmptyFuture;
-        synchronized (lock) {
-            finishing = true;
-
-            buffer.drainTo(remainingPages);
-            bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
+        finishing = true;
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
+        // writers that raced with finishing remove their own pages, see addPage
+        List<PageReference> remainingPages = new ArrayList<>();
+        for (PageReference pageReference = buffer.poll(); pageReference != null; pageReference = buffer.poll()) {
+            remainingPages.add(pageReference);
         }
+        bufferedPages.addAndGet(-remainingPages.size());
+        bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
 
         // free all the remaining pages
         remainingPages.forEach(PageReference::removePage);
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        notifyReaders();
 
-        // this will always fire the finished event
-        checkState(isFinished(), "Expected buffer to be finished");
+        // a writer racing with close may still hold a page in the buffer, in which case
+        // it fires the finished event itself once the page is removed
         checkFinished();
     }
 
+    private void notifyReaders()
+    {
+        // a reader only replaces a completed future, so completing the current one is enough to wake it up
+        SettableFuture<?> notEmptyFuture = this.notEmptyFuture;
+        if (!notEmptyFuture.isDone()) {
+            notEmptyFuture.set(null);
+        }
+    }
+
     private void checkFinished()
     {
         checkNotHoldsLock();
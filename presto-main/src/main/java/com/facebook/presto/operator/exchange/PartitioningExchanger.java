@@ -36,6 +36,7 @@ class PartitioningExchanger
     private final int[] partitioningChannels;
     private final Optional<Integer> hashChannel;
     private final IntArrayList[] partitionAssignments;
+    private final Page[] partitionPages;
 
     public PartitioningExchanger(
             List<Consumer<PageReference>> partitions,
@@ -54,6 +55,7 @@ class PartitioningExchanger
         for (int i = 0; i < partitionAssignments.length; i++) {
             partitionAssignments[i] = new IntArrayList();
         }
+        partitionPages = new Page[partitions.size()];
     }
 
     @Override
@@ -72,11 +74,36 @@ class PartitioningExchanger
         }
 
         // build a page for each partition
+        // The positions are copied rather than wrapped in dictionary blocks over the input page. Such a view would retain
+        // the whole input page in every partition until all of them are consumed, and operators buffering their input
+        // (e.g. in a PagesIndex) would account the full input page once per partition.
         for (int partition = 0; partition < buffers.size(); partition++) {
             IntArrayList positions = partitionAssignments[partition];
-            if (!positions.isEmpty()) {
-                Page pageSplit = page.copyPositions(positions.elements(), 0, positions.size());
-                memoryManager.updateMemoryUsage(pageSplit.getRetainedSizeInBytes());
+            if (positions.isEmpty()) {
+                partitionPages[partition] = null;
+            }
+            else if (positions.size() == page.getPositionCount()) {
+                // all the rows belong to this partition, e.g. when the input is already partitioned
+                partitionPages[partition] = page;
+            }
+            else {
+                partitionPages[partition] = page.copyPositions(positions.elements(), 0, positions.size());
+            }
+        }
+
+        // account for all the pages at once, as the memory manager is shared by all the drivers of the exchange
+        long retainedSizeInBytes = 0;
+        for (Page partitionPage : partitionPages) {
+            if (partitionPage != null) {
+                retainedSizeInBytes += partitionPage.getRetainedSizeInBytes();
+            }
+        }
+        memoryManager.updateMemoryUsage(retainedSizeInBytes);
+
+        for (int partition = 0; partition < buffers.size(); partition++) {
+            Page pageSplit = partitionPages[partition];
+            if (pageSplit != null) {
+                partitionPages[partition] = null;
                 buffers.get(partition).accept(new PageReference(pageSplit, 1, () -> memoryManager.updateMemoryUsage(-pageSplit.getRetainedSizeInBytes())));
             }
         }
@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import io.airlift.slice.SliceOutput;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import static com.facebook.presto.array.Arrays.ExpansionFactor.LARGE;
+import static com.facebook.presto.array.Arrays.ExpansionOption.PRESERVE;
+import static com.facebook.presto.array.Arrays.ensureCapacity;
+import static com.facebook.presto.operator.UncheckedByteArrays.setIntUnchecked;
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.createBlockEncodingBuffers;
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.writeLengthPrefixedString;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Verify.verify;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+import static sun.misc.Unsafe.ARRAY_INT_INDEX_SCALE;
+
+/**
+ * Buffers a top level DictionaryBlock column without decoding it. The whole dictionary is copied once for every
+ * serialized page, and only the ids of the rows are copied per row. The caller guarantees that all the blocks
+ * buffered for one serialized page share the same dictionary.
+ */
+public class DictionaryBlockEncodingBuffer
+        implements BlockEncodingBuffer
+{
+    private static final String NAME = "DICTIONARY";
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DictionaryBlockEncodingBuffer.class).instanceSize();
+
+    private final ArrayAllocator bufferAllocator;
+
+    // The buffer for the dictionary, which is always copied as a whole
+    private final BlockEncodingBuffer dictionaryBuffer;
+
+    // The positions 0 to dictionarySize - 1, used to copy the whole dictionary
+    private int[] dictionaryPositions = new int[0];
+
+    // Whether the dictionary has been copied to dictionaryBuffer since the last flush
+    private boolean dictionaryBuffered;
+
+    @Nullable
+    private DictionaryBlock dictionaryBlock;
+    @Nullable
+    private DecodedBlockNode dictionaryNode;
+    @Nullable
+    private DictionaryId dictionaryId;
+
+    private int partitionBufferCapacity;
+    private long estimatedSerializedPageSize;
+
+    private int[] positions;
+    private int positionCount;
+    private int positionsOffset;
+    private int batchSize;
+    private int bufferedPositionCount;
+    private boolean flushed;
+
+    private byte[] idsBuffer;
+    private int idsBufferIndex;
+
+    public DictionaryBlockEncodingBuffer(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        verify(decodedBlockNode.getDecodedBlock() instanceof DictionaryBlock, "decodedBlockNode is not a DictionaryBlock");
+
+        this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
+        this.dictionaryBuffer = createBlockEncodingBuffers(decodedBlockNode.getChildren().get(0), bufferAllocator, false);
+    }
+
+    @Override
+    public void setupDecodedBlocksAndPositions(DecodedBlockNode decodedBlockNode, int[] positions, int positionCount, int partitionBufferCapacity, long estimatedSerializedPageSize)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        requireNonNull(positions, "positions is null");
+
+        DictionaryBlock dictionaryBlock = (DictionaryBlock) decodedBlockNode.getDecodedBlock();
+        verify(dictionaryId == null || !dictionaryBuffered || dictionaryId.equals(dictionaryBlock.getDictionarySourceId()), "Buffered rows use a different dictionary");
+
+        this.dictionaryBlock = dictionaryBlock;
+        this.dictionaryNode = decodedBlockNode.getChildren().get(0);
+        this.dictionaryId = dictionaryBlock.getDictionarySourceId();
+        this.positions = positions;
+        this.positionCount = positionCount;
+        this.positionsOffset = 0;
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.estimatedSerializedPageSize = estimatedSerializedPageSize;
+
+        // Buffer the dictionary right away so that it is accounted for when the batch sizes are calculated
+        bufferDictionary();
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            serializedRowSizes[i] += SIZE_OF_INT;
+        }
+    }
+
+    @Override
+    public void setNextBatch(int positionsOffset, int batchSize)
+    {
+        this.positionsOffset = positionsOffset;
+        this.batchSize = batchSize;
+        this.flushed = false;
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        // The dictionary has to be buffered again if the previous batch of this page was flushed
+        bufferDictionary();
+
+        idsBuffer = ensureCapacity(idsBuffer, idsBufferIndex + batchSize * ARRAY_INT_INDEX_SCALE, partitionBufferCapacity, LARGE, PRESERVE, bufferAllocator);
+        for (int i = positionsOffset; i < positionsOffset + batchSize; i++) {
+            idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, dictionaryBlock.getId(positions[i]));
+        }
+
+        bufferedPositionCount += batchSize;
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        writeLengthPrefixedString(output, NAME);
+
+        output.writeInt(bufferedPositionCount);
+
+        dictionaryBuffer.serializeTo(output);
+
+        if (idsBufferIndex > 0) {
+            output.appendBytes(idsBuffer, 0, idsBufferIndex);
+        }
+
+        output.writeLong(dictionaryId.getMostSignificantBits());
+        output.writeLong(dictionaryId.getLeastSignificantBits());
+        output.writeLong(dictionaryId.getSequenceId());
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        idsBufferIndex = 0;
+        dictionaryBuffered = false;
+        flushed = true;
+
+        dictionaryBuffer.resetBuffers();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        dictionaryBuffer.noMoreBatches();
+
+        if (flushed && idsBuffer != null) {
+            bufferAllocator.returnArray(idsBuffer);
+            idsBuffer = null;
+        }
+
+        // The blocks of the current page must not be used after the page is done
+        dictionaryBlock = null;
+        dictionaryNode = null;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(dictionaryPositions) + dictionaryBuffer.getRetainedSizeInBytes();
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        return NAME.length() + SIZE_OF_INT +               // length prefixed encoding name
+                SIZE_OF_INT +                              // positionCount
+                dictionaryBuffer.getSerializedSizeInBytes() +  // dictionary
+                idsBufferIndex +                           // ids
+                SIZE_OF_LONG * 3;                          // dictionary id
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("dictionaryId", dictionaryId)
+                .add("dictionaryBuffered", dictionaryBuffered)
+                .add("positionCount", positionCount)
+                .add("batchSize", batchSize)
+                .add("positionsOffset", positionsOffset)
+                .add("bufferedPositionCount", bufferedPositionCount)
+                .add("flushed", flushed)
+                .add("idsBufferCapacity", idsBuffer == null ? 0 : idsBuffer.length)
+                .add("idsBufferIndex", idsBufferIndex)
+                .add("dictionaryBuffer", dictionaryBuffer)
+                .toString();
+    }
+
+    private void bufferDictionary()
+    {
+        if (dictionaryBuffered) {
+            return;
+        }
+
+        int dictionarySize = dictionaryBlock.getDictionary().getPositionCount();
+        if (dictionaryPositions.length < dictionarySize) {
+            dictionaryPositions = new int[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionaryPositions[i] = i;
+            }
+        }
+
+        dictionaryBuffer.setupDecodedBlocksAndPositions(dictionaryNode, dictionaryPositions, dictionarySize, partitionBufferCapacity, estimatedSerializedPageSize);
+        dictionaryBuffer.setNextBatch(0, dictionarySize);
+        dictionaryBuffer.appendDataInBatch();
+        dictionaryBuffered = true;
+    }
+}
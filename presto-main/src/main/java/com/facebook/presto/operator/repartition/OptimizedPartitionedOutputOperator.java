@@ -23,6 +23,7 @@ import com.facebook.presto.common.block.ColumnarArray;
 import com.facebook.presto.common.block.ColumnarMap;
 import com.facebook.presto.common.block.ColumnarRow;
 import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
 import com.facebook.presto.common.block.MapBlock;
 import com.facebook.presto.common.block.RowBlock;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
@@ -50,6 +51,7 @@ import com.google.common.io.Closer;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
 import io.airlift.slice.SliceOutput;
 import io.airlift.units.DataSize;
 import org.openjdk.jol.info.ClassLayout;
@@ -77,6 +79,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
 import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Double.doubleToRawLongBits;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
@@ -101,6 +104,8 @@ public class OptimizedPartitionedOutputOperator
             List<Optional<ConstantExpression>> partitionConstants,
             boolean replicatesAnyRow,
             OptionalInt nullChannel,
+            boolean splitSkewedPartitions,
+            OptionalInt consumersPerPartition,
             OutputBuffer outputBuffer,
             PagesSerdeFactory serdeFactory,
             DataSize maxMemory)
@@ -113,6 +118,8 @@ public class OptimizedPartitionedOutputOperator
                 partitionConstants,
                 replicatesAnyRow,
                 nullChannel,
+                splitSkewedPartitions,
+                consumersPerPartition,
                 outputBuffer,
                 serdeFactory,
                 sourceTypes,
@@ -284,6 +291,8 @@ public class OptimizedPartitionedOutputOperator
                     outputPartitioning.get().getPartitionConstants(),
                     outputPartitioning.get().isReplicateNullsAndAny(),
                     outputPartitioning.get().getNullChannel(),
+                    outputPartitioning.get().isSplitSkewedPartitions(),
+                    outputPartitioning.get().getConsumersPerPartition(),
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -302,6 +311,8 @@ public class OptimizedPartitionedOutputOperator
         private final List<Optional<ConstantExpression>> partitionConstants;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel;
+        private final boolean splitSkewedPartitions;
+        private final OptionalInt consumersPerPartition;
         private final OutputBuffer outputBuffer;
         private final PagesSerdeFactory serdeFactory;
         private final DataSize maxMemory;
@@ -316,6 +327,8 @@ public class OptimizedPartitionedOutputOperator
                 List<Optional<ConstantExpression>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                boolean splitSkewedPartitions,
+                OptionalInt consumersPerPartition,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 DataSize maxMemory)
@@ -329,6 +342,8 @@ public class OptimizedPartitionedOutputOperator
             this.partitionConstants = requireNonNull(partitionConstants, "partitionConstants is null");
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+            this.splitSkewedPartitions = splitSkewedPartitions;
+            this.consumersPerPartition = requireNonNull(consumersPerPartition, "consumersPerPartition is null");
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
@@ -347,6 +362,8 @@ public class OptimizedPartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    splitSkewedPartitions,
+                    consumersPerPartition,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -370,6 +387,8 @@ public class OptimizedPartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    splitSkewedPartitions,
+                    consumersPerPartition,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -378,6 +397,9 @@ public class OptimizedPartitionedOutputOperator
 
     private static class PagePartitioner
     {
+        // A dictionary is only sent as is if it takes at most this fraction of a partition buffer, as every partition gets a copy of it
+        private static final double MAX_DICTIONARY_SIZE_FRACTION = 0.25;
+
         private final OutputBuffer outputBuffer;
         private final PartitionFunction partitionFunction;
         private final int[] partitionChannels;
@@ -386,8 +408,14 @@ public class OptimizedPartitionedOutputOperator
         private final PagesSerde serde;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel; // when present, send the position to every partition if this channel is null.
+        @Nullable
+        private final SkewedPartitionRebalancer skewedPartitionRebalancer; // when null, every row goes to the partition it hashes to
+        private final int replicatedConsumerCount; // every row is also sent to the following partitions, up to this many in total
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final AtomicLong uncompressedBytesAdded = new AtomicLong();
+        private final AtomicLong serializedBytesAdded = new AtomicLong();
+        private final AtomicLong skewedPartitionSplits = new AtomicLong();
 
         // The ArrayAllocator used by BlockFlattener for decoding blocks.
         // There could be queries that shuffles data with up to 1000 columns so we need to set the maxOutstandingArrays a high number.
@@ -404,6 +432,14 @@ public class OptimizedPartitionedOutputOperator
         private final int fixedWidthRowSize;
         private final DecodedBlockNode[] decodedBlocks;
 
+        // Top level dictionary and RLE blocks are sent without being decoded for as long as consecutive pages share the
+        // same dictionary or value. The encoding of a channel is decided by its first page. Once a page does not fit
+        // it, the channel is decoded from then on.
+        private final ChannelEncoding[] channelEncodings;
+        private final DictionaryId[] dictionaryIds;
+        private final Block[] runLengthValues;
+        private final int maxDictionarySizeInBytes;
+
         private boolean hasAnyRowBeenReplicated;
 
         public PagePartitioner(
@@ -412,6 +448,8 @@ public class OptimizedPartitionedOutputOperator
                 List<Optional<ConstantExpression>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                boolean splitSkewedPartitions,
+                OptionalInt consumersPerPartition,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 List<Type> sourceTypes,
@@ -443,17 +481,25 @@ public class OptimizedPartitionedOutputOperator
             this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
 
             int partitionCount = partitionFunction.getPartitionCount();
+            int consumerCount = min(partitionCount, consumersPerPartition.orElse(partitionCount));
+            this.skewedPartitionRebalancer = splitSkewedPartitions ? new SkewedPartitionRebalancer(partitionCount, consumerCount) : null;
+            this.replicatedConsumerCount = splitSkewedPartitions || !consumersPerPartition.isPresent() ? 1 : consumerCount;
 
             int partitionBufferCapacity = max(1, min(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, toIntExact(maxMemory.toBytes()) / partitionCount));
 
             partitionBuffers = new PartitionBuffer[partitionCount];
             for (int i = 0; i < partitionCount; i++) {
-                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, serde, lifespan, bufferAllocator);
+                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, uncompressedBytesAdded, serializedBytesAdded, serde, lifespan, bufferAllocator);
             }
 
             this.sourceTypes = sourceTypes;
             decodedBlocks = new DecodedBlockNode[sourceTypes.size()];
 
+            channelEncodings = new ChannelEncoding[sourceTypes.size()];
+            dictionaryIds = new DictionaryId[sourceTypes.size()];
+            runLengthValues = new Block[sourceTypes.size()];
+            maxDictionarySizeInBytes = (int) (partitionBufferCapacity * MAX_DICTIONARY_SIZE_FRACTION);
+
             ImmutableList.Builder<Integer> variableWidthChannels = ImmutableList.builder();
             int fixedWidthRowSize = 0;
             for (int i = 0; i < sourceTypes.size(); i++) {
@@ -475,7 +521,13 @@ public class OptimizedPartitionedOutputOperator
 
         public PartitionedOutputInfo getInfo()
         {
-            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage());
+            return new PartitionedOutputInfo(
+                    rowsAdded.get(),
+                    pagesAdded.get(),
+                    outputBuffer.getPeakMemoryUsage(),
+                    uncompressedBytesAdded.get(),
+                    serializedBytesAdded.get(),
+                    skewedPartitionSplits.get());
         }
 
         public void partitionPage(Page page)
@@ -492,6 +544,7 @@ public class OptimizedPartitionedOutputOperator
 
             Block nullBlock = nullChannel.isPresent() ? page.getBlock(nullChannel.getAsInt()) : null;
             Page partitionFunctionArgs = getPartitionFunctionArguments(page);
+            long rowSizeInBytes = max(1, page.getSizeInBytes() / positionCount);
 
             for (int position = 0; position < positionCount; position++) {
                 boolean shouldReplicate = (replicatesAnyRow && !hasAnyRowBeenReplicated) ||
@@ -505,9 +558,18 @@ public class OptimizedPartitionedOutputOperator
                 }
                 else {
                     int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
+                    if (skewedPartitionRebalancer != null) {
+                        partition = skewedPartitionRebalancer.getConsumer(partition, rowSizeInBytes);
+                    }
                     partitionBuffers[partition].addPosition(position);
+                    for (int i = 1; i < replicatedConsumerCount; i++) {
+                        partitionBuffers[(partition + i) % partitionBuffers.length].addPosition(position);
+                    }
                 }
             }
+            if (skewedPartitionRebalancer != null && skewedPartitionRebalancer.rebalance()) {
+                skewedPartitionSplits.incrementAndGet();
+            }
 
             // Decode the page just once. The decoded blocks will be fed to each PartitionBuffer object to set up AbstractBlockEncodingBuffer.
             long estimatedSerializedPageSize = 0;
@@ -516,9 +578,18 @@ public class OptimizedPartitionedOutputOperator
                 estimatedSerializedPageSize += decodedBlocks[i].getEstimatedSerializedSizeInBytes();
             }
 
+            // The rows buffered so far have to be sent before a channel changes its encoding.
+            boolean encodingChanged = false;
+            for (int i = 0; i < decodedBlocks.length; i++) {
+                encodingChanged |= updateChannelEncoding(i, decodedBlocks[i]);
+            }
+            if (encodingChanged) {
+                flush();
+            }
+
             // Copy the data to their destination partitions and flush when the buffer is full.
             for (int i = 0; i < partitionBuffers.length; i++) {
-                partitionBuffers[i].appendData(decodedBlocks, estimatedSerializedPageSize, fixedWidthRowSize, variableWidthChannels, outputBuffer);
+                partitionBuffers[i].appendData(decodedBlocks, channelEncodings, estimatedSerializedPageSize, fixedWidthRowSize, variableWidthChannels, outputBuffer);
             }
 
             // Return all borrowed arrays
@@ -558,6 +629,82 @@ public class OptimizedPartitionedOutputOperator
             return size;
         }
 
+        /**
+         * Updates the encoding of the channel for the next page, and returns whether the encoding changed
+         * from a dictionary or RLE encoding to the decoded one.
+         */
+        private boolean updateChannelEncoding(int channel, DecodedBlockNode decodedBlockNode)
+        {
+            Object decodedBlock = decodedBlockNode.getDecodedBlock();
+
+            if (channelEncodings[channel] == null) {
+                if (decodedBlock instanceof DictionaryBlock && decodedBlockNode.getChildren().get(0).getEstimatedSerializedSizeInBytes() <= maxDictionarySizeInBytes) {
+                    channelEncodings[channel] = ChannelEncoding.DICTIONARY;
+                    dictionaryIds[channel] = ((DictionaryBlock) decodedBlock).getDictionarySourceId();
+                }
+                else if (decodedBlock instanceof RunLengthEncodedBlock) {
+                    channelEncodings[channel] = ChannelEncoding.RUN_LENGTH;
+                    runLengthValues[channel] = ((RunLengthEncodedBlock) decodedBlock).getValue();
+                }
+                else {
+                    channelEncodings[channel] = ChannelEncoding.DECODED;
+                }
+                return false;
+            }
+
+            switch (channelEncodings[channel]) {
+                case DECODED:
+                    return false;
+                case DICTIONARY:
+                    if (decodedBlock instanceof DictionaryBlock && ((DictionaryBlock) decodedBlock).getDictionarySourceId().equals(dictionaryIds[channel])) {
+                        return false;
+                    }
+                    break;
+                case RUN_LENGTH:
+                    if (decodedBlock instanceof RunLengthEncodedBlock && isSameValue(sourceTypes.get(channel), runLengthValues[channel], ((RunLengthEncodedBlock) decodedBlock).getValue())) {
+                        return false;
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unsupported channel encoding: " + channelEncodings[channel]);
+            }
+
+            channelEncodings[channel] = ChannelEncoding.DECODED;
+            dictionaryIds[channel] = null;
+            runLengthValues[channel] = null;
+            return true;
+        }
+
+        /**
+         * Whether two single value blocks hold exactly the same value. Values that are only equal according to
+         * their type, like 0.0 and -0.0, are not the same, and values of structural types are only the same
+         * if they are in the same block.
+         */
+        private static boolean isSameValue(Type type, Block left, Block right)
+        {
+            if (left == right) {
+                return true;
+            }
+            if (left.isNull(0) || right.isNull(0)) {
+                return left.isNull(0) && right.isNull(0);
+            }
+
+            Class<?> javaType = type.getJavaType();
+            if (javaType == long.class) {
+                return type.getLong(left, 0) == type.getLong(right, 0);
+            }
+            if (javaType == double.class) {
+                return doubleToRawLongBits(type.getDouble(left, 0)) == doubleToRawLongBits(type.getDouble(right, 0));
+            }
+            if (javaType == boolean.class) {
+                return type.getBoolean(left, 0) == type.getBoolean(right, 0);
+            }
+            if (javaType == Slice.class) {
+                return type.getSlice(left, 0).equals(type.getSlice(right, 0));
+            }
+            return false;
+        }
+
         private Page getPartitionFunctionArguments(Page page)
         {
             // Fast path for no constants
@@ -589,6 +736,13 @@ public class OptimizedPartitionedOutputOperator
         }
     }
 
+    private enum ChannelEncoding
+    {
+        DECODED,
+        DICTIONARY,
+        RUN_LENGTH,
+    }
+
     private static class PartitionBuffer
     {
         private static final int INSTANCE_SIZE = ClassLayout.parseClass(PartitionBuffer.class).instanceSize();
@@ -596,6 +750,8 @@ public class OptimizedPartitionedOutputOperator
         private final int partition;
         private final AtomicLong rowsAdded;
         private final AtomicLong pagesAdded;
+        private final AtomicLong uncompressedBytesAdded;
+        private final AtomicLong serializedBytesAdded;
         private final PagesSerde serde;
         private final Lifespan lifespan;
         private final int capacity;
@@ -605,17 +761,30 @@ public class OptimizedPartitionedOutputOperator
         private int[] positions;   // the default positions array for top level BlockEncodingBuffer
         private int positionCount;  // number of positions to be copied for this partition
         private BlockEncodingBuffer[] blockEncodingBuffers;
+        private ChannelEncoding[] bufferEncodings;
 
         private int bufferedRowCount;
         private boolean bufferFull;
 
-        PartitionBuffer(int partition, int channelCount, int capacity, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, Lifespan lifespan, ArrayAllocator bufferAllocator)
+        PartitionBuffer(
+                int partition,
+                int channelCount,
+                int capacity,
+                AtomicLong pagesAdded,
+                AtomicLong rowsAdded,
+                AtomicLong uncompressedBytesAdded,
+                AtomicLong serializedBytesAdded,
+                PagesSerde serde,
+                Lifespan lifespan,
+                ArrayAllocator bufferAllocator)
         {
             this.partition = partition;
             this.channelCount = channelCount;
             this.capacity = capacity;
             this.pagesAdded = requireNonNull(pagesAdded, "pagesAdded is null");
             this.rowsAdded = requireNonNull(rowsAdded, "rowsAdded is null");
+            this.uncompressedBytesAdded = requireNonNull(uncompressedBytesAdded, "uncompressedBytesAdded is null");
+            this.serializedBytesAdded = requireNonNull(serializedBytesAdded, "serializedBytesAdded is null");
             this.serde = requireNonNull(serde, "serde is null");
             this.lifespan = requireNonNull(lifespan, "lifespan is null");
             this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
@@ -633,7 +802,13 @@ public class OptimizedPartitionedOutputOperator
             positions[positionCount++] = position;
         }
 
-        private void appendData(DecodedBlockNode[] decodedBlocks, long estimatedSerializedPageSize, int fixedWidthRowSize, List<Integer> variableWidthChannels, OutputBuffer outputBuffer)
+        private void appendData(
+                DecodedBlockNode[] decodedBlocks,
+                ChannelEncoding[] channelEncodings,
+                long estimatedSerializedPageSize,
+                int fixedWidthRowSize,
+                List<Integer> variableWidthChannels,
+                OutputBuffer outputBuffer)
         {
             if (decodedBlocks.length != channelCount) {
                 throw new IllegalArgumentException(format("Unexpected number of decoded blocks %d. It should be %d.", decodedBlocks.length, channelCount));
@@ -648,7 +823,7 @@ public class OptimizedPartitionedOutputOperator
                 return;
             }
 
-            initializeBlockEncodingBuffers(decodedBlocks);
+            initializeBlockEncodingBuffers(decodedBlocks, channelEncodings);
 
             for (int i = 0; i < channelCount; i++) {
                 blockEncodingBuffers[i].setupDecodedBlocksAndPositions(decodedBlocks[i], positions, positionCount, capacity, estimatedSerializedPageSize);
@@ -687,15 +862,41 @@ public class OptimizedPartitionedOutputOperator
             }
         }
 
-        private void initializeBlockEncodingBuffers(DecodedBlockNode[] decodedBlocks)
+        private void initializeBlockEncodingBuffers(DecodedBlockNode[] decodedBlocks, ChannelEncoding[] channelEncodings)
         {
             // Create buffers has to be done after seeing the first page.
             if (blockEncodingBuffers == null) {
                 BlockEncodingBuffer[] buffers = new BlockEncodingBuffer[channelCount];
                 for (int i = 0; i < channelCount; i++) {
-                    buffers[i] = createBlockEncodingBuffers(decodedBlocks[i], bufferAllocator, false);
+                    buffers[i] = createBlockEncodingBuffer(decodedBlocks[i], channelEncodings[i]);
                 }
                 blockEncodingBuffers = buffers;
+                bufferEncodings = channelEncodings.clone();
+                return;
+            }
+
+            // The encoding of a channel only changes after all the partitions were flushed, so the buffers to replace are empty.
+            for (int i = 0; i < channelCount; i++) {
+                if (bufferEncodings[i] != channelEncodings[i]) {
+                    verify(bufferedRowCount == 0, "Buffered rows for a channel that changed its encoding");
+                    blockEncodingBuffers[i].noMoreBatches();
+                    blockEncodingBuffers[i] = createBlockEncodingBuffer(decodedBlocks[i], channelEncodings[i]);
+                    bufferEncodings[i] = channelEncodings[i];
+                }
+            }
+        }
+
+        private BlockEncodingBuffer createBlockEncodingBuffer(DecodedBlockNode decodedBlock, ChannelEncoding channelEncoding)
+        {
+            switch (channelEncoding) {
+                case DECODED:
+                    return createBlockEncodingBuffers(decodedBlock, bufferAllocator, false);
+                case DICTIONARY:
+                    return new DictionaryBlockEncodingBuffer(decodedBlock, bufferAllocator);
+                case RUN_LENGTH:
+                    return new RunLengthBlockEncodingBuffer(decodedBlock, bufferAllocator);
+                default:
+                    throw new UnsupportedOperationException("Unsupported channel encoding: " + channelEncoding);
             }
         }
 
@@ -761,6 +962,8 @@ public class OptimizedPartitionedOutputOperator
             outputBuffer.enqueue(lifespan, partition, ImmutableList.of(serializedPage));
             pagesAdded.incrementAndGet();
             rowsAdded.addAndGet(bufferedRowCount);
+            uncompressedBytesAdded.addAndGet(serializedPage.getUncompressedSizeInBytes());
+            serializedBytesAdded.addAndGet(serializedPage.getSizeInBytes());
 
             bufferedRowCount = 0;
         }
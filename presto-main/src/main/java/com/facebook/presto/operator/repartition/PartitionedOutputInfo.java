@@ -26,16 +26,30 @@ public class PartitionedOutputInfo
     private final long rowsAdded;
     private final long pagesAdded;
     private final long outputBufferPeakMemoryUsage;
+    private final long uncompressedBytesAdded;
+    private final long serializedBytesAdded;
+    private final long skewedPartitionSplits;
+
+    public PartitionedOutputInfo(long rowsAdded, long pagesAdded, long outputBufferPeakMemoryUsage)
+    {
+        this(rowsAdded, pagesAdded, outputBufferPeakMemoryUsage, 0, 0, 0);
+    }
 
     @JsonCreator
     public PartitionedOutputInfo(
             @JsonProperty("rowsAdded") long rowsAdded,
             @JsonProperty("pagesAdded") long pagesAdded,
-            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage)
+            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage,
+            @JsonProperty("uncompressedBytesAdded") long uncompressedBytesAdded,
+            @JsonProperty("serializedBytesAdded") long serializedBytesAdded,
+            @JsonProperty("skewedPartitionSplits") long skewedPartitionSplits)
     {
         this.rowsAdded = rowsAdded;
         this.pagesAdded = pagesAdded;
         this.outputBufferPeakMemoryUsage = outputBufferPeakMemoryUsage;
+        this.uncompressedBytesAdded = uncompressedBytesAdded;
+        this.serializedBytesAdded = serializedBytesAdded;
+        this.skewedPartitionSplits = skewedPartitionSplits;
     }
 
     @JsonProperty
@@ -56,13 +70,43 @@ public class PartitionedOutputInfo
         return outputBufferPeakMemoryUsage;
     }
 
+    /**
+     * Size of the serialized pages added to the output buffer before they were compressed.
+     */
+    @JsonProperty
+    public long getUncompressedBytesAdded()
+    {
+        return uncompressedBytesAdded;
+    }
+
+    /**
+     * Size of the serialized pages added to the output buffer, after compression for the pages that were compressed.
+     */
+    @JsonProperty
+    public long getSerializedBytesAdded()
+    {
+        return serializedBytesAdded;
+    }
+
+    /**
+     * Number of times the rows of a skewed partition were spread over one more consumer.
+     */
+    @JsonProperty
+    public long getSkewedPartitionSplits()
+    {
+        return skewedPartitionSplits;
+    }
+
     @Override
     public PartitionedOutputInfo mergeWith(PartitionedOutputInfo other)
     {
         return new PartitionedOutputInfo(
                 rowsAdded + other.rowsAdded,
                 pagesAdded + other.pagesAdded,
-                Math.max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage));
+                Math.max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage),
+                uncompressedBytesAdded + other.uncompressedBytesAdded,
+                serializedBytesAdded + other.serializedBytesAdded,
+                skewedPartitionSplits + other.skewedPartitionSplits);
     }
 
     @Override
@@ -78,6 +122,9 @@ public class PartitionedOutputInfo
                 .add("rowsAdded", rowsAdded)
                 .add("pagesAdded", pagesAdded)
                 .add("outputBufferPeakMemoryUsage", outputBufferPeakMemoryUsage)
+                .add("uncompressedBytesAdded", uncompressedBytesAdded)
+                .add("serializedBytesAdded", serializedBytesAdded)
+                .add("skewedPartitionSplits", skewedPartitionSplits)
                 .toString();
     }
 }
@@ -89,6 +89,8 @@ public class PartitionedOutputOperator
                     outputPartitioning.get().getPartitionConstants(),
                     outputPartitioning.get().isReplicateNullsAndAny(),
                     outputPartitioning.get().getNullChannel(),
+                    outputPartitioning.get().isSplitSkewedPartitions(),
+                    outputPartitioning.get().getConsumersPerPartition(),
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -107,6 +109,8 @@ public class PartitionedOutputOperator
         private final List<Optional<ConstantExpression>> partitionConstants;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel;
+        private final boolean splitSkewedPartitions;
+        private final OptionalInt consumersPerPartition;
         private final OutputBuffer outputBuffer;
         private final PagesSerdeFactory serdeFactory;
         private final DataSize maxMemory;
@@ -121,6 +125,8 @@ public class PartitionedOutputOperator
                 List<Optional<ConstantExpression>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                boolean splitSkewedPartitions,
+                OptionalInt consumersPerPartition,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 DataSize maxMemory)
@@ -134,6 +140,8 @@ public class PartitionedOutputOperator
             this.partitionConstants = requireNonNull(partitionConstants, "partitionConstants is null");
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+            this.splitSkewedPartitions = splitSkewedPartitions;
+            this.consumersPerPartition = requireNonNull(consumersPerPartition, "consumersPerPartition is null");
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
@@ -152,6 +160,8 @@ public class PartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    splitSkewedPartitions,
+                    consumersPerPartition,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -175,6 +185,8 @@ public class PartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    splitSkewedPartitions,
+                    consumersPerPartition,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -195,6 +207,8 @@ public class PartitionedOutputOperator
             List<Optional<ConstantExpression>> partitionConstants,
             boolean replicatesAnyRow,
             OptionalInt nullChannel,
+            boolean splitSkewedPartitions,
+            OptionalInt consumersPerPartition,
             OutputBuffer outputBuffer,
             PagesSerdeFactory serdeFactory,
             DataSize maxMemory)
@@ -207,6 +221,8 @@ public class PartitionedOutputOperator
                 partitionConstants,
                 replicatesAnyRow,
                 nullChannel,
+                splitSkewedPartitions,
+                consumersPerPartition,
                 outputBuffer,
                 serdeFactory,
                 sourceTypes,
@@ -284,8 +300,14 @@ public class PartitionedOutputOperator
         private final PageBuilder[] pageBuilders;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel; // when present, send the position to every partition if this channel is null.
+        @Nullable
+        private final SkewedPartitionRebalancer skewedPartitionRebalancer; // when null, every row goes to the partition it hashes to
+        private final int replicatedConsumerCount; // every row is also sent to the following partitions, up to this many in total
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final AtomicLong uncompressedBytesAdded = new AtomicLong();
+        private final AtomicLong serializedBytesAdded = new AtomicLong();
+        private final AtomicLong skewedPartitionSplits = new AtomicLong();
         private boolean hasAnyRowBeenReplicated;
         private final OperatorContext operatorContext;
         private final LocalMemoryContext systemMemoryContext;
@@ -296,6 +318,8 @@ public class PartitionedOutputOperator
                 List<Optional<ConstantExpression>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                boolean splitSkewedPartitions,
+                OptionalInt consumersPerPartition,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 List<Type> sourceTypes,
@@ -331,6 +355,10 @@ public class PartitionedOutputOperator
             }
 
             int partitionCount = partitionFunction.getPartitionCount();
+            int consumerCount = min(partitionCount, consumersPerPartition.orElse(partitionCount));
+            this.skewedPartitionRebalancer = splitSkewedPartitions ? new SkewedPartitionRebalancer(partitionCount, consumerCount) : null;
+            this.replicatedConsumerCount = splitSkewedPartitions || !consumersPerPartition.isPresent() ? 1 : consumerCount;
+
             int pageSize = min(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, ((int) maxMemory.toBytes()) / partitionCount);
             pageSize = max(1, pageSize);
 
@@ -374,7 +402,13 @@ public class PartitionedOutputOperator
 
         public PartitionedOutputInfo getInfo()
         {
-            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage());
+            return new PartitionedOutputInfo(
+                    rowsAdded.get(),
+                    pagesAdded.get(),
+                    outputBuffer.getPeakMemoryUsage(),
+                    uncompressedBytesAdded.get(),
+                    serializedBytesAdded.get(),
+                    skewedPartitionSplits.get());
         }
 
         public void partitionPage(Page page)
@@ -382,6 +416,7 @@ public class PartitionedOutputOperator
             requireNonNull(page, "page is null");
 
             Page partitionFunctionArgs = getPartitionFunctionArguments(page);
+            long rowSizeInBytes = max(1, page.getSizeInBytes() / page.getPositionCount());
             for (int position = 0; position < page.getPositionCount(); position++) {
                 boolean shouldReplicate = (replicatesAnyRow && !hasAnyRowBeenReplicated) ||
                         nullChannel.isPresent() && page.getBlock(nullChannel.getAsInt()).isNull(position);
@@ -393,9 +428,18 @@ public class PartitionedOutputOperator
                 }
                 else {
                     int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
+                    if (skewedPartitionRebalancer != null) {
+                        partition = skewedPartitionRebalancer.getConsumer(partition, rowSizeInBytes);
+                    }
                     appendRow(pageBuilders[partition], page, position);
+                    for (int i = 1; i < replicatedConsumerCount; i++) {
+                        appendRow(pageBuilders[(partition + i) % pageBuilders.length], page, position);
+                    }
                 }
             }
+            if (skewedPartitionRebalancer != null && skewedPartitionRebalancer.rebalance()) {
+                skewedPartitionSplits.incrementAndGet();
+            }
 
             // We track the memory before it's flushed to avoid under counting when the page size is large.
             systemMemoryContext.setBytes(getRetainedSizeInBytes());
@@ -456,7 +500,10 @@ public class PartitionedOutputOperator
             List<Page> pagesFromSplitting = splitPage(pagePartition, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
             ImmutableList.Builder<SerializedPage> builder = ImmutableList.builderWithExpectedSize(pagesFromSplitting.size());
             for (Page p : pagesFromSplitting) {
-                builder.add(serde.serialize(p));
+                SerializedPage serializedPage = serde.serialize(p);
+                uncompressedBytesAdded.addAndGet(serializedPage.getUncompressedSizeInBytes());
+                serializedBytesAdded.addAndGet(serializedPage.getSizeInBytes());
+                builder.add(serializedPage);
             }
             return builder.build();
         }
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import io.airlift.slice.SliceOutput;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.createBlockEncodingBuffers;
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.writeLengthPrefixedString;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Verify.verify;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Buffers a top level RunLengthEncodedBlock column without decoding it. The value is copied once for every
+ * serialized page, and only the number of rows is kept otherwise. The caller guarantees that all the blocks
+ * buffered for one serialized page have the same value.
+ */
+public class RunLengthBlockEncodingBuffer
+        implements BlockEncodingBuffer
+{
+    private static final String NAME = "RLE";
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(RunLengthBlockEncodingBuffer.class).instanceSize();
+    private static final int[] VALUE_POSITIONS = {0};
+
+    // The buffer for the single value of the block
+    private final BlockEncodingBuffer valueBuffer;
+
+    // Whether the value has been copied to valueBuffer since the last flush
+    private boolean valueBuffered;
+
+    @Nullable
+    private DecodedBlockNode valueNode;
+
+    private int partitionBufferCapacity;
+    private long estimatedSerializedPageSize;
+
+    private int positionCount;
+    private int batchSize;
+    private int bufferedPositionCount;
+
+    public RunLengthBlockEncodingBuffer(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        requireNonNull(bufferAllocator, "bufferAllocator is null");
+        verify(decodedBlockNode.getDecodedBlock() instanceof RunLengthEncodedBlock, "decodedBlockNode is not a RunLengthEncodedBlock");
+
+        this.valueBuffer = createBlockEncodingBuffers(decodedBlockNode.getChildren().get(0), bufferAllocator, false);
+    }
+
+    @Override
+    public void setupDecodedBlocksAndPositions(DecodedBlockNode decodedBlockNode, int[] positions, int positionCount, int partitionBufferCapacity, long estimatedSerializedPageSize)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        verify(decodedBlockNode.getDecodedBlock() instanceof RunLengthEncodedBlock, "decodedBlockNode is not a RunLengthEncodedBlock");
+
+        this.valueNode = decodedBlockNode.getChildren().get(0);
+        this.positionCount = positionCount;
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.estimatedSerializedPageSize = estimatedSerializedPageSize;
+
+        // Buffer the value right away so that it is accounted for when the batch sizes are calculated
+        bufferValue();
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        // The rows take no space, but are still accounted for so that a page with only run length encoded
+        // columns does not buffer an unbounded number of rows.
+        for (int i = 0; i < positionCount; i++) {
+            serializedRowSizes[i] += SIZE_OF_BYTE;
+        }
+    }
+
+    @Override
+    public void setNextBatch(int positionsOffset, int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        // The value has to be buffered again if the previous batch of this page was flushed
+        bufferValue();
+
+        bufferedPositionCount += batchSize;
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        writeLengthPrefixedString(output, NAME);
+
+        output.writeInt(bufferedPositionCount);
+
+        valueBuffer.serializeTo(output);
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        valueBuffered = false;
+
+        valueBuffer.resetBuffers();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        valueBuffer.noMoreBatches();
+
+        // The blocks of the current page must not be used after the page is done
+        valueNode = null;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + valueBuffer.getRetainedSizeInBytes();
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        return NAME.length() + SIZE_OF_INT +           // length prefixed encoding name
+                SIZE_OF_INT +                          // positionCount
+                valueBuffer.getSerializedSizeInBytes();  // value
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("valueBuffered", valueBuffered)
+                .add("positionCount", positionCount)
+                .add("batchSize", batchSize)
+                .add("bufferedPositionCount", bufferedPositionCount)
+                .add("valueBuffer", valueBuffer)
+                .toString();
+    }
+
+    private void bufferValue()
+    {
+        if (valueBuffered) {
+            return;
+        }
+
+        valueBuffer.setupDecodedBlocksAndPositions(valueNode, VALUE_POSITIONS, 1, partitionBufferCapacity, estimatedSerializedPageSize);
+        valueBuffer.setNextBatch(0, 1);
+        valueBuffer.appendDataInBatch();
+        valueBuffered = true;
+    }
+}
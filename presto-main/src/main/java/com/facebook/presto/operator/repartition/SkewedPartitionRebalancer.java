@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Spreads the rows of partitions that receive a disproportionate share of the data over several consumers. A single
+ * hot key would otherwise pin all of its rows to one downstream task. The rows of a split partition are sent to its
+ * consumers round robin, so this must only be used for exchanges whose consumers do not need all rows of a key.
+ * <p>
+ * Every partition starts out with the consumer of the same number. A partition can only be spread over the consecutive
+ * consumers that start with its own, up to the maximum number of consumers per partition. The bytes sent to each
+ * partition and consumer decay by half at every rebalance, so the decisions follow the recent byte rates rather than
+ * the whole history.
+ */
+@NotThreadSafe
+public class SkewedPartitionRebalancer
+{
+    private static final long DEFAULT_REBALANCE_INTERVAL_BYTES = 4 * 1024 * 1024;
+    // a partition is split when its consumers receive more than this many times the bytes of the least loaded other consumer
+    private static final double SKEW_FACTOR = 2.0;
+
+    private final int partitionCount;
+    private final int maxConsumersPerPartition;
+    private final long rebalanceIntervalBytes;
+
+    private final long[] partitionBytes;
+    private final long[] consumerBytes;
+    private final int[][] partitionConsumers;
+    private final int[] nextConsumerIndexes;
+
+    private long bytesSinceRebalance;
+
+    public SkewedPartitionRebalancer(int partitionCount, int maxConsumersPerPartition)
+    {
+        this(partitionCount, maxConsumersPerPartition, DEFAULT_REBALANCE_INTERVAL_BYTES);
+    }
+
+    @VisibleForTesting
+    SkewedPartitionRebalancer(int partitionCount, int maxConsumersPerPartition, long rebalanceIntervalBytes)
+    {
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        checkArgument(maxConsumersPerPartition > 0 && maxConsumersPerPartition <= partitionCount, "maxConsumersPerPartition must be between 1 and partitionCount");
+        checkArgument(rebalanceIntervalBytes > 0, "rebalanceIntervalBytes must be positive");
+        this.partitionCount = partitionCount;
+        this.maxConsumersPerPartition = maxConsumersPerPartition;
+        this.rebalanceIntervalBytes = rebalanceIntervalBytes;
+
+        partitionBytes = new long[partitionCount];
+        consumerBytes = new long[partitionCount];
+        partitionConsumers = new int[partitionCount][];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionConsumers[partition] = new int[] {partition};
+        }
+        nextConsumerIndexes = new int[partitionCount];
+    }
+
+    /**
+     * Returns the consumer of a row of {@code partition}, and accounts {@code rowSizeInBytes} to both of them.
+     */
+    public int getConsumer(int partition, long rowSizeInBytes)
+    {
+        int[] consumers = partitionConsumers[partition];
+        int consumer;
+        if (consumers.length == 1) {
+            consumer = consumers[0];
+        }
+        else {
+            int index = nextConsumerIndexes[partition];
+            consumer = consumers[index];
+            nextConsumerIndexes[partition] = index + 1 == consumers.length ? 0 : index + 1;
+        }
+
+        partitionBytes[partition] += rowSizeInBytes;
+        consumerBytes[consumer] += rowSizeInBytes;
+        bytesSinceRebalance += rowSizeInBytes;
+        return consumer;
+    }
+
+    public int getConsumerCount(int partition)
+    {
+        return partitionConsumers[partition].length;
+    }
+
+    /**
+     * Adds a consumer to the partition with the most bytes per consumer once enough bytes have been sent since the
+     * previous rebalance. The partition is only split if its consumers receive more than the average, and a lot more
+     * than the consumer it would be spread to. At most one partition is split per call, so that a partition is only
+     * split further if it is still skewed with the consumers it already has. Returns whether a partition was split.
+     */
+    public boolean rebalance()
+    {
+        if (bytesSinceRebalance < rebalanceIntervalBytes) {
+            return false;
+        }
+        bytesSinceRebalance = 0;
+
+        long totalBytes = 0;
+        int skewedPartition = -1;
+        double skewedPartitionBytesPerConsumer = 0;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            totalBytes += partitionBytes[partition];
+            double bytesPerConsumer = (double) partitionBytes[partition] / partitionConsumers[partition].length;
+            if (bytesPerConsumer > skewedPartitionBytesPerConsumer && partitionConsumers[partition].length < maxConsumersPerPartition) {
+                skewedPartition = partition;
+                skewedPartitionBytesPerConsumer = bytesPerConsumer;
+            }
+        }
+
+        boolean split = false;
+        if (skewedPartition >= 0 && skewedPartitionBytesPerConsumer > (double) totalBytes / partitionCount) {
+            int newConsumer = getLeastLoadedConsumer(skewedPartition);
+            if (skewedPartitionBytesPerConsumer > SKEW_FACTOR * consumerBytes[newConsumer]) {
+                int[] consumers = partitionConsumers[skewedPartition];
+                int[] newConsumers = Arrays.copyOf(consumers, consumers.length + 1);
+                newConsumers[consumers.length] = newConsumer;
+                partitionConsumers[skewedPartition] = newConsumers;
+                split = true;
+            }
+        }
+
+        for (int i = 0; i < partitionCount; i++) {
+            partitionBytes[i] /= 2;
+            consumerBytes[i] /= 2;
+        }
+        return split;
+    }
+
+    private int getLeastLoadedConsumer(int partition)
+    {
+        int leastLoadedConsumer = -1;
+        for (int i = 0; i < maxConsumersPerPartition; i++) {
+            int consumer = (partition + i) % partitionCount;
+            if ((leastLoadedConsumer < 0 || consumerBytes[consumer] < consumerBytes[leastLoadedConsumer]) && !contains(partitionConsumers[partition], consumer)) {
+                leastLoadedConsumer = consumer;
+            }
+        }
+        return leastLoadedConsumer;
+    }
+
+    private static boolean contains(int[] values, int value)
+    {
+        for (int element : values) {
+            if (element == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -17,6 +17,7 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.operator.aggregation.Accumulator;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.InternalAggregationFunction;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.WindowFunction;
 import com.facebook.presto.spi.function.WindowIndex;
@@ -25,32 +26,58 @@ import com.google.common.collect.ImmutableList;
 import java.util.List;
 import java.util.Optional;
 
+import static com.facebook.presto.spi.StandardErrorCode.NUMERIC_VALUE_OUT_OF_RANGE;
 import static java.util.Objects.requireNonNull;
 
 public class AggregateWindowFunction
-        implements WindowFunction
+        implements MemoryAwareWindowFunction
 {
+    // frames smaller than this are cheaper to re-aggregate than to evaluate through a segment tree
+    private static final int MIN_SEGMENT_TREE_FRAME_SIZE = 32;
+
     private final List<Integer> argumentChannels;
     private final AccumulatorFactory accumulatorFactory;
+    private final boolean supportsRemoveInput;
+    private final boolean supportsSegmentTree;
 
     private WindowIndex windowIndex;
     private Accumulator accumulator;
     private int currentStart;
     private int currentEnd;
+    // number of rows in the current frame that were not skipped for null arguments
+    private int currentNonNullRows;
+    private AggregationSegmentTree segmentTree;
 
     private AggregateWindowFunction(InternalAggregationFunction function, List<Integer> argumentChannels)
     {
         this.argumentChannels = ImmutableList.copyOf(argumentChannels);
         this.accumulatorFactory = function.bind(createArgs(function), Optional.empty());
+
+        Accumulator prototype = accumulatorFactory.createAccumulator();
+        this.supportsRemoveInput = prototype.supportsRemoveInput();
+        this.supportsSegmentTree = AggregationSegmentTree.isSupported(prototype.getIntermediateType());
     }
 
     @Override
     public void reset(WindowIndex windowIndex)
     {
         this.windowIndex = windowIndex;
+        this.segmentTree = null;
         resetAccumulator();
     }
 
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return segmentTree == null ? 0 : segmentTree.getRetainedSizeInBytes();
+    }
+
+    @Override
+    public void finishPartition()
+    {
+        segmentTree = null;
+    }
+
     @Override
     public void processRow(BlockBuilder output, int peerGroupStart, int peerGroupEnd, int frameStart, int frameEnd)
     {
@@ -63,6 +90,21 @@ public class AggregateWindowFunction
             accumulate(currentEnd + 1, frameEnd);
             currentEnd = frameEnd;
         }
+        else if (supportsRemoveInput && (frameStart > currentStart) && (frameStart <= currentEnd) && (frameEnd >= currentEnd)) {
+            // sliding frame
+            slide(frameStart, frameEnd);
+            currentStart = frameStart;
+            currentEnd = frameEnd;
+        }
+        else if (supportsSegmentTree && (frameEnd - frameStart + 1 >= MIN_SEGMENT_TREE_FRAME_SIZE)) {
+            // moving frame over an aggregation that cannot retract rows
+            if (segmentTree == null) {
+                segmentTree = new AggregationSegmentTree(accumulatorFactory, windowIndex, argumentChannels);
+            }
+            resetAccumulator();
+            segmentTree.evaluateFinal(frameStart, frameEnd, output);
+            return;
+        }
         else {
             // different frame
             resetAccumulator();
@@ -74,9 +116,62 @@ public class AggregateWindowFunction
         accumulator.evaluateFinal(output);
     }
 
+    private void slide(int frameStart, int frameEnd)
+    {
+        try {
+            remove(currentStart, frameStart - 1);
+            accumulate(currentEnd + 1, frameEnd);
+        }
+        catch (PrestoException e) {
+            if (!e.getErrorCode().equals(NUMERIC_VALUE_OUT_OF_RANGE.toErrorCode())) {
+                throw e;
+            }
+            // an intermediate value overflowed, which does not mean the sum of the new frame does
+            accumulator = accumulatorFactory.createAccumulator();
+            currentNonNullRows = 0;
+            accumulate(frameStart, frameEnd);
+        }
+    }
+
     private void accumulate(int start, int end)
     {
         accumulator.addInput(windowIndex, argumentChannels, start, end);
+        if (supportsRemoveInput) {
+            currentNonNullRows += countNonNullRows(start, end);
+        }
+    }
+
+    private void remove(int start, int end)
+    {
+        currentNonNullRows -= countNonNullRows(start, end);
+        if (currentNonNullRows == 0) {
+            // no values are left in the frame, so start over to restore the empty state (e.g. null for sum)
+            accumulator = accumulatorFactory.createAccumulator();
+        }
+        else {
+            accumulator.removeInput(windowIndex, argumentChannels, start, end);
+        }
+    }
+
+    private int countNonNullRows(int start, int end)
+    {
+        int count = 0;
+        for (int position = start; position <= end; position++) {
+            if (!isAnyArgumentNull(position)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isAnyArgumentNull(int position)
+    {
+        for (int channel : argumentChannels) {
+            if (windowIndex.isNull(channel, position)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void resetAccumulator()
@@ -85,6 +180,7 @@ public class AggregateWindowFunction
             accumulator = accumulatorFactory.createAccumulator();
             currentStart = -1;
             currentEnd = -1;
+            currentNonNullRows = 0;
         }
     }
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.FixedWidthType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.aggregation.Accumulator;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.spi.function.WindowIndex;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Segment tree of intermediate aggregation states over the rows of a window partition.
+ * Any frame can be evaluated by combining O(log n) intermediate states, which allows
+ * sliding frames over aggregations that cannot retract input rows.
+ * <p>
+ * The tree is stored bottom-up: node {@code i} has children {@code 2i} and {@code 2i + 1},
+ * and leaf {@code p} (one row of the partition) is node {@code size + p}.
+ */
+final class AggregationSegmentTree
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(AggregationSegmentTree.class).instanceSize();
+
+    private final AccumulatorFactory accumulatorFactory;
+    private final int size;
+    // leaf states, one position per row of the partition
+    private final Block leaves;
+    // states of the internal nodes: node i is stored at position (size - 1 - i)
+    private final Block internalNodes;
+    private final int[] rightNodes = new int[Integer.SIZE + 1];
+
+    AggregationSegmentTree(AccumulatorFactory accumulatorFactory, WindowIndex windowIndex, List<Integer> argumentChannels)
+    {
+        this.accumulatorFactory = requireNonNull(accumulatorFactory, "accumulatorFactory is null");
+        this.size = windowIndex.size();
+        checkArgument(size > 0, "window partition is empty");
+
+        Type intermediateType = accumulatorFactory.createAccumulator().getIntermediateType();
+
+        BlockBuilder leavesBuilder = intermediateType.createBlockBuilder(null, size);
+        for (int position = 0; position < size; position++) {
+            Accumulator accumulator = accumulatorFactory.createAccumulator();
+            accumulator.addInput(windowIndex, argumentChannels, position, position);
+            accumulator.evaluateIntermediate(leavesBuilder);
+        }
+        this.leaves = leavesBuilder.build();
+
+        BlockBuilder internalNodesBuilder = intermediateType.createBlockBuilder(null, size);
+        for (int node = size - 1; node > 0; node--) {
+            Accumulator accumulator = accumulatorFactory.createAccumulator();
+            accumulator.addIntermediate(getNodeWhileBuilding(internalNodesBuilder, 2 * node));
+            accumulator.addIntermediate(getNodeWhileBuilding(internalNodesBuilder, 2 * node + 1));
+            accumulator.evaluateIntermediate(internalNodesBuilder);
+        }
+        this.internalNodes = internalNodesBuilder.build();
+    }
+
+    /**
+     * Only aggregations with fixed width intermediate states are eligible, so the
+     * tree stays within a small constant factor of the partition size.
+     */
+    public static boolean isSupported(Type intermediateType)
+    {
+        if (intermediateType instanceof RowType) {
+            return intermediateType.getTypeParameters().stream().allMatch(FixedWidthType.class::isInstance);
+        }
+        return intermediateType instanceof FixedWidthType;
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + leaves.getRetainedSizeInBytes() + internalNodes.getRetainedSizeInBytes() + sizeOf(rightNodes);
+    }
+
+    /**
+     * Evaluates the aggregation over rows {@code start} to {@code end} inclusive.
+     */
+    public void evaluateFinal(int start, int end, BlockBuilder output)
+    {
+        checkArgument(start >= 0 && start <= end && end < size, "invalid frame [%s, %s] for partition of size %s", start, end, size);
+
+        Accumulator accumulator = accumulatorFactory.createAccumulator();
+
+        // nodes on the left boundary are visited in row order, and nodes on
+        // the right boundary in reverse row order, so the latter are deferred
+        int rightNodeCount = 0;
+        int left = start + size;
+        int right = end + size + 1;
+        while (left < right) {
+            if ((left & 1) == 1) {
+                accumulator.addIntermediate(getNode(left));
+                left++;
+            }
+            if ((right & 1) == 1) {
+                right--;
+                rightNodes[rightNodeCount] = right;
+                rightNodeCount++;
+            }
+            left >>= 1;
+            right >>= 1;
+        }
+        for (int i = rightNodeCount - 1; i >= 0; i--) {
+            accumulator.addIntermediate(getNode(rightNodes[i]));
+        }
+
+        accumulator.evaluateFinal(output);
+    }
+
+    private Block getNode(int node)
+    {
+        if (node >= size) {
+            return leaves.getRegion(node - size, 1);
+        }
+        return internalNodes.getRegion(size - 1 - node, 1);
+    }
+
+    private Block getNodeWhileBuilding(BlockBuilder internalNodesBuilder, int node)
+    {
+        if (node >= size) {
+            return leaves.getRegion(node - size, 1);
+        }
+        return internalNodesBuilder.getSingleValueBlock(size - 1 - node);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.spi.function.WindowFunction;
+
+/**
+ * A window function whose value does not depend on the window frame, so the values of a run of consecutive
+ * rows of a partition can be produced by a single call. {@link WindowPartition} uses this instead of calling
+ * {@link WindowFunction#processRow} for every row. The rows of a partition are passed in order, and the
+ * function is reset for every partition as usual.
+ */
+public interface BatchWindowFunction
+        extends WindowFunction
+{
+    /**
+     * Process {@code count} rows of the partition starting at {@code startPosition} by outputting
+     * the result of the window function for each of them.
+     *
+     * @param output the {@link BlockBuilder} to use for writing the output rows
+     * @param startPosition the position of the first row to process
+     * @param count the number of rows to process
+     * @param peerGroupStarts the position of the first row in the peer group of each row, indexed from 0 to {@code count - 1}
+     * @param peerGroupEnds the position of the last row in the peer group of each row, indexed from 0 to {@code count - 1}
+     */
+    void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds);
+}
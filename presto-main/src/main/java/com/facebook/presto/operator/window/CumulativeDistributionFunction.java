@@ -22,6 +22,7 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 @WindowFunctionSignature(name = "cume_dist", returnType = "double")
 public class CumulativeDistributionFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     private long totalCount;
     private long count;
@@ -41,4 +42,12 @@ public class CumulativeDistributionFunction
         }
         DOUBLE.writeDouble(output, ((double) count) / totalCount);
     }
+
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            DOUBLE.writeDouble(output, ((double) (peerGroupEnds[i] + 1)) / totalCount);
+        }
+    }
 }
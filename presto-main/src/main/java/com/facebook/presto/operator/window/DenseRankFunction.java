@@ -22,6 +22,7 @@ import static com.facebook.presto.common.type.BigintType.BIGINT;
 @WindowFunctionSignature(name = "dense_rank", returnType = "bigint")
 public class DenseRankFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     private long rank;
 
@@ -39,4 +40,15 @@ public class DenseRankFunction
         }
         BIGINT.writeLong(output, rank);
     }
+
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            if (peerGroupStarts[i] == startPosition + i) {
+                rank++;
+            }
+            BIGINT.writeLong(output, rank);
+        }
+    }
 }
@@ -28,6 +28,7 @@ import static java.lang.Math.toIntExact;
 @WindowFunctionSignature(name = "lead", typeVariable = "T", returnType = "T", argumentTypes = {"T", "bigint", "T"})
 public class LeadFunction
         extends ValueWindowFunction
+        implements BatchWindowFunction
 {
     private final int valueChannel;
     private final int offsetChannel;
@@ -81,6 +82,15 @@ public class LeadFunction
         }
     }
 
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        // the value only depends on the position of the row, not on the frame
+        for (int i = 0; i < count; i++) {
+            processRow(output, -1, -1, startPosition + i);
+        }
+    }
+
     private boolean withinPartition(long valuePosition)
     {
         return (valuePosition >= 0) && (valuePosition < windowIndex.size());
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.spi.function.WindowFunction;
+
+/**
+ * A window function that retains memory for the partition it processes, in addition to the rows of the
+ * partition. {@link WindowPartition} reports this memory so that the window operator can account for it.
+ */
+public interface MemoryAwareWindowFunction
+        extends WindowFunction
+{
+    /**
+     * Returns the memory retained for the current partition.
+     */
+    long getRetainedSizeInBytes();
+
+    /**
+     * Releases the memory retained for the current partition, after all its rows have been processed.
+     */
+    void finishPartition();
+}
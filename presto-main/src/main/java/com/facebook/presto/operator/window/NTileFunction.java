@@ -26,6 +26,7 @@ import static com.facebook.presto.util.Failures.checkCondition;
 @WindowFunctionSignature(name = "ntile", returnType = "bigint", argumentTypes = "bigint")
 public class NTileFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     private final int valueChannel;
     private int rowCount;
@@ -54,6 +55,14 @@ public class NTileFunction
         }
     }
 
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            processRow(output, false, 0, startPosition + i);
+        }
+    }
+
     private long bucket(long buckets, int currentRow)
     {
         if (rowCount < buckets) {
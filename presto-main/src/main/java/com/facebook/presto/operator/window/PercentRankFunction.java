@@ -22,6 +22,7 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 @WindowFunctionSignature(name = "percent_rank", returnType = "double")
 public class PercentRankFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     private long totalCount;
     private long rank;
@@ -53,4 +54,17 @@ public class PercentRankFunction
 
         DOUBLE.writeDouble(output, ((double) (rank - 1)) / (totalCount - 1));
     }
+
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            if (totalCount == 1) {
+                DOUBLE.writeDouble(output, 0.0);
+            }
+            else {
+                DOUBLE.writeDouble(output, ((double) peerGroupStarts[i]) / (totalCount - 1));
+            }
+        }
+    }
 }
@@ -22,6 +22,7 @@ import static com.facebook.presto.common.type.BigintType.BIGINT;
 @WindowFunctionSignature(name = "rank", returnType = "bigint")
 public class RankFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     private long rank;
     private long count;
@@ -45,4 +46,12 @@ public class RankFunction
         }
         BIGINT.writeLong(output, rank);
     }
+
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            BIGINT.writeLong(output, peerGroupStarts[i] + 1);
+        }
+    }
 }
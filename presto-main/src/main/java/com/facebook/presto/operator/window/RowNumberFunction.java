@@ -22,10 +22,19 @@ import static com.facebook.presto.common.type.BigintType.BIGINT;
 @WindowFunctionSignature(name = "row_number", returnType = "bigint")
 public class RowNumberFunction
         extends RankingWindowFunction
+        implements BatchWindowFunction
 {
     @Override
     public void processRow(BlockBuilder output, boolean newPeerGroup, int peerGroupCount, int currentPosition)
     {
         BIGINT.writeLong(output, currentPosition + 1);
     }
+
+    @Override
+    public void processRows(BlockBuilder output, int startPosition, int count, int[] peerGroupStarts, int[] peerGroupEnds)
+    {
+        for (int i = 0; i < count; i++) {
+            BIGINT.writeLong(output, startPosition + i + 1);
+        }
+    }
 }
@@ -14,8 +14,10 @@
 package com.facebook.presto.operator.window;
 
 import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.operator.PagesHashStrategy;
 import com.facebook.presto.operator.PagesIndex;
+import com.facebook.presto.spi.function.WindowFunction;
 import com.facebook.presto.spi.function.WindowIndex;
 import com.facebook.presto.sql.planner.plan.WindowNode.Frame.BoundType;
 import com.google.common.collect.ImmutableList;
@@ -34,6 +36,9 @@ import static java.lang.Math.toIntExact;
 
 public final class WindowPartition
 {
+    // upper bound of the rows processed at a time, which bounds how far the output page can exceed its target size
+    private static final int MAX_BATCH_SIZE = 256;
+
     private final PagesIndex pagesIndex;
     private final int partitionStart;
     private final int partitionEnd;
@@ -45,6 +50,10 @@ public final class WindowPartition
     private int peerGroupStart;
     private int peerGroupEnd;
 
+    // peer groups of the rows of the current batch, relative to the start of the partition
+    private final int[] peerGroupStarts;
+    private final int[] peerGroupEnds;
+
     private int currentPosition;
 
     public WindowPartition(PagesIndex pagesIndex,
@@ -67,8 +76,12 @@ public final class WindowPartition
             framedWindowFunction.getFunction().reset(windowIndex);
         }
 
+        int batchSize = Math.min(partitionEnd - partitionStart, MAX_BATCH_SIZE);
+        peerGroupStarts = new int[batchSize];
+        peerGroupEnds = new int[batchSize];
+
         currentPosition = partitionStart;
-        updatePeerGroup();
+        updatePeerGroup(partitionStart);
     }
 
     public int getPartitionStart()
@@ -86,35 +99,78 @@ public final class WindowPartition
         return currentPosition < partitionEnd;
     }
 
-    public void processNextRow(PageBuilder pageBuilder)
+    /**
+     * Outputs the next rows of the partition. A batch of up to {@value #MAX_BATCH_SIZE} rows is processed at a time, so the
+     * caller should check whether the page is full after each call.
+     */
+    public void processNextRows(PageBuilder pageBuilder)
     {
         checkState(hasNext(), "No more rows in partition");
 
+        int count = Math.min(partitionEnd - currentPosition, peerGroupStarts.length);
+        for (int i = 0; i < count; i++) {
+            // check for new peer group
+            if (currentPosition + i == peerGroupEnd) {
+                updatePeerGroup(currentPosition + i);
+            }
+            peerGroupStarts[i] = peerGroupStart - partitionStart;
+            peerGroupEnds[i] = peerGroupEnd - partitionStart - 1;
+        }
+
         // copy output channels
-        pageBuilder.declarePosition();
+        pageBuilder.declarePositions(count);
         int channel = 0;
         while (channel < outputChannels.length) {
-            pagesIndex.appendTo(outputChannels[channel], currentPosition, pageBuilder.getBlockBuilder(channel));
+            BlockBuilder output = pageBuilder.getBlockBuilder(channel);
+            for (int i = 0; i < count; i++) {
+                pagesIndex.appendTo(outputChannels[channel], currentPosition + i, output);
+            }
             channel++;
         }
 
-        // check for new peer group
-        if (currentPosition == peerGroupEnd) {
-            updatePeerGroup();
-        }
-
         for (FramedWindowFunction framedFunction : windowFunctions) {
-            Range range = getFrameRange(framedFunction.getFrame());
-            framedFunction.getFunction().processRow(
-                    pageBuilder.getBlockBuilder(channel),
-                    peerGroupStart - partitionStart,
-                    peerGroupEnd - partitionStart - 1,
-                    range.getStart(),
-                    range.getEnd());
+            BlockBuilder output = pageBuilder.getBlockBuilder(channel);
+            WindowFunction function = framedFunction.getFunction();
+            if (function instanceof BatchWindowFunction) {
+                ((BatchWindowFunction) function).processRows(output, currentPosition - partitionStart, count, peerGroupStarts, peerGroupEnds);
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    Range range = getFrameRange(framedFunction.getFrame(), currentPosition + i, peerGroupStarts[i], peerGroupEnds[i]);
+                    function.processRow(
+                            output,
+                            peerGroupStarts[i],
+                            peerGroupEnds[i],
+                            range.getStart(),
+                            range.getEnd());
+                }
+            }
             channel++;
         }
 
-        currentPosition++;
+        currentPosition += count;
+        if (!hasNext()) {
+            for (FramedWindowFunction framedFunction : windowFunctions) {
+                if (framedFunction.getFunction() instanceof MemoryAwareWindowFunction) {
+                    ((MemoryAwareWindowFunction) framedFunction.getFunction()).finishPartition();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the memory retained by the window functions for this partition, in addition to the pages index.
+     * It is released once all the rows of the partition have been processed.
+     */
+    public long getRetainedSizeInBytes()
+    {
+        long retainedSizeInBytes = 0;
+        for (FramedWindowFunction framedFunction : windowFunctions) {
+            if (framedFunction.getFunction() instanceof MemoryAwareWindowFunction) {
+                retainedSizeInBytes += ((MemoryAwareWindowFunction) framedFunction.getFunction()).getRetainedSizeInBytes();
+            }
+        }
+        return retainedSizeInBytes;
     }
 
     private static class Range
@@ -139,9 +195,9 @@ public final class WindowPartition
         }
     }
 
-    private void updatePeerGroup()
+    private void updatePeerGroup(int position)
     {
-        peerGroupStart = currentPosition;
+        peerGroupStart = position;
         // find end of peer group
         peerGroupEnd = peerGroupStart + 1;
         while ((peerGroupEnd < partitionEnd) && pagesIndex.positionEqualsPosition(peerGroupHashStrategy, peerGroupStart, peerGroupEnd)) {
@@ -149,13 +205,13 @@ public final class WindowPartition
         }
     }
 
-    private Range getFrameRange(FrameInfo frameInfo)
+    private Range getFrameRange(FrameInfo frameInfo, int position, int peerGroupStart, int peerGroupEnd)
     {
-        int rowPosition = currentPosition - partitionStart;
+        int rowPosition = position - partitionStart;
         int endPosition = partitionEnd - partitionStart - 1;
 
         // handle empty frame
-        if (emptyFrame(frameInfo, rowPosition, endPosition)) {
+        if (emptyFrame(frameInfo, position, rowPosition, endPosition)) {
             return new Range(-1, -1);
         }
 
@@ -167,13 +223,13 @@ public final class WindowPartition
             frameStart = 0;
         }
         else if (frameInfo.getStartType() == PRECEDING) {
-            frameStart = preceding(rowPosition, getStartValue(frameInfo));
+            frameStart = preceding(rowPosition, getStartValue(frameInfo, position));
         }
         else if (frameInfo.getStartType() == FOLLOWING) {
-            frameStart = following(rowPosition, endPosition, getStartValue(frameInfo));
+            frameStart = following(rowPosition, endPosition, getStartValue(frameInfo, position));
         }
         else if (frameInfo.getType() == RANGE) {
-            frameStart = peerGroupStart - partitionStart;
+            frameStart = peerGroupStart;
         }
         else {
             frameStart = rowPosition;
@@ -184,13 +240,13 @@ public final class WindowPartition
             frameEnd = endPosition;
         }
         else if (frameInfo.getEndType() == PRECEDING) {
-            frameEnd = preceding(rowPosition, getEndValue(frameInfo));
+            frameEnd = preceding(rowPosition, getEndValue(frameInfo, position));
         }
         else if (frameInfo.getEndType() == FOLLOWING) {
-            frameEnd = following(rowPosition, endPosition, getEndValue(frameInfo));
+            frameEnd = following(rowPosition, endPosition, getEndValue(frameInfo, position));
         }
         else if (frameInfo.getType() == RANGE) {
-            frameEnd = peerGroupEnd - partitionStart - 1;
+            frameEnd = peerGroupEnd;
         }
         else {
             frameEnd = rowPosition;
@@ -199,7 +255,7 @@ public final class WindowPartition
         return new Range(frameStart, frameEnd);
     }
 
-    private boolean emptyFrame(FrameInfo frameInfo, int rowPosition, int endPosition)
+    private boolean emptyFrame(FrameInfo frameInfo, int position, int rowPosition, int endPosition)
     {
         BoundType startType = frameInfo.getStartType();
         BoundType endType = frameInfo.getEndType();
@@ -207,11 +263,11 @@ public final class WindowPartition
         int positions = endPosition - rowPosition;
 
         if ((startType == UNBOUNDED_PRECEDING) && (endType == PRECEDING)) {
-            return getEndValue(frameInfo) > rowPosition;
+            return getEndValue(frameInfo, position) > rowPosition;
         }
 
         if ((startType == FOLLOWING) && (endType == UNBOUNDED_FOLLOWING)) {
-            return getStartValue(frameInfo) > positions;
+            return getStartValue(frameInfo, position) > positions;
         }
 
         if (startType != endType) {
@@ -223,8 +279,8 @@ public final class WindowPartition
             return false;
         }
 
-        long start = getStartValue(frameInfo);
-        long end = getEndValue(frameInfo);
+        long start = getStartValue(frameInfo, position);
+        long end = getEndValue(frameInfo, position);
 
         if (type == PRECEDING) {
             return (start < end) || ((start > rowPosition) && (end > rowPosition));
@@ -249,20 +305,20 @@ public final class WindowPartition
         return toIntExact(rowPosition + value);
     }
 
-    private long getStartValue(FrameInfo frameInfo)
+    private long getStartValue(FrameInfo frameInfo, int position)
     {
-        return getFrameValue(frameInfo.getStartChannel(), "starting");
+        return getFrameValue(frameInfo.getStartChannel(), position, "starting");
     }
 
-    private long getEndValue(FrameInfo frameInfo)
+    private long getEndValue(FrameInfo frameInfo, int position)
     {
-        return getFrameValue(frameInfo.getEndChannel(), "ending");
+        return getFrameValue(frameInfo.getEndChannel(), position, "ending");
     }
 
-    private long getFrameValue(int channel, String type)
+    private long getFrameValue(int channel, int position, String type)
     {
-        checkCondition(!pagesIndex.isNull(channel, currentPosition), INVALID_WINDOW_FRAME, "Window frame %s offset must not be null", type);
-        long value = pagesIndex.getLong(channel, currentPosition);
+        checkCondition(!pagesIndex.isNull(channel, position), INVALID_WINDOW_FRAME, "Window frame %s offset must not be null", type);
+        long value = pagesIndex.getLong(channel, position);
         checkCondition(value >= 0, INVALID_WINDOW_FRAME, "Window frame %s offset must not be negative", value);
         return value;
     }
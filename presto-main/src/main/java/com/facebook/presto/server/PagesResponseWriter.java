@@ -16,8 +16,6 @@ package com.facebook.presto.server;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.reflect.TypeToken;
-import io.airlift.slice.OutputStreamSliceOutput;
-import io.airlift.slice.SliceOutput;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
@@ -29,7 +27,6 @@ import javax.ws.rs.ext.Provider;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.List;
@@ -79,17 +76,14 @@ public class PagesResponseWriter
             throws IOException, WebApplicationException
     {
         try {
-            SliceOutput sliceOutput = new OutputStreamSliceOutput(output);
-            writeSerializedPages(sliceOutput, serializedPages);
+            // the data of the pages is written straight from the output buffer memory, without copying it into a buffer first
+            writeSerializedPages(output, serializedPages);
             // We use flush instead of close, because the underlying stream would be closed and that is not allowed.
-            sliceOutput.flush();
+            output.flush();
         }
-        catch (UncheckedIOException e) {
+        catch (EOFException e) {
             // EOF exception occurs when the client disconnects while writing data
             // This is not a "server" problem so we don't want to log this
-            if (!(e.getCause() instanceof EOFException)) {
-                throw e;
-            }
         }
     }
 }
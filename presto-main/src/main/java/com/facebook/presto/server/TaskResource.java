@@ -20,6 +20,7 @@ import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskInfoDelta;
 import com.facebook.presto.execution.TaskManager;
 import com.facebook.presto.execution.TaskState;
 import com.facebook.presto.execution.TaskStatus;
@@ -31,7 +32,9 @@ import com.facebook.presto.server.codec.Codec;
 import com.facebook.presto.server.smile.SmileCodec;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.sql.planner.PlanFragment;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -61,6 +64,8 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -78,12 +83,16 @@ import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INFO_FINGERPRINTS;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
+import static com.facebook.presto.execution.TaskInfoDelta.createTaskInfoDelta;
+import static com.facebook.presto.execution.TaskInfoDelta.parseFingerprints;
 import static com.facebook.presto.server.security.RoleType.INTERNAL;
 import static com.facebook.presto.server.smile.JsonCodecWrapper.wrapJsonCodec;
 import static com.facebook.presto.util.TaskUtils.DEFAULT_MAX_WAIT_TIME;
 import static com.facebook.presto.util.TaskUtils.randomizeWaitTime;
 import static com.google.common.collect.Iterables.transform;
+import static com.google.common.io.ByteStreams.nullOutputStream;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -106,6 +115,7 @@ public class TaskResource
     private final TimeStat readFromOutputBufferTime = new TimeStat();
     private final TimeStat resultsRequestTime = new TimeStat();
     private final Codec<PlanFragment> planFragmentCodec;
+    private final ObjectMapper objectMapper;
 
     @Inject
     public TaskResource(
@@ -115,13 +125,15 @@ public class TaskResource
             @ForAsyncRpc ScheduledExecutorService timeoutExecutor,
             JsonCodec<PlanFragment> planFragmentJsonCodec,
             SmileCodec<PlanFragment> planFragmentSmileCodec,
-            InternalCommunicationConfig communicationConfig)
+            InternalCommunicationConfig communicationConfig,
+            ObjectMapper objectMapper)
     {
         this.taskManager = requireNonNull(taskManager, "taskManager is null");
         this.sessionPropertyManager = requireNonNull(sessionPropertyManager, "sessionPropertyManager is null");
         this.responseExecutor = requireNonNull(responseExecutor, "responseExecutor is null");
         this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
         this.planFragmentCodec = wrapJsonCodec(planFragmentJsonCodec);
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper is null");
     }
 
     @GET
@@ -152,6 +164,10 @@ public class TaskResource
                 taskUpdateRequest.getOutputIds(),
                 taskUpdateRequest.getTableWriteInfo());
 
+        if (!taskUpdateRequest.getDynamicFilterDomains().isEmpty()) {
+            taskManager.updateDynamicFilterDomains(taskId, taskUpdateRequest.getDynamicFilterDomains());
+        }
+
         if (shouldSummarize(uriInfo)) {
             taskInfo = taskInfo.summarize();
         }
@@ -198,6 +214,44 @@ public class TaskResource
                 .withTimeout(timeout);
     }
 
+    @GET
+    @Path("{taskId}/delta")
+    @Consumes({APPLICATION_JSON, APPLICATION_JACKSON_SMILE})
+    @Produces({APPLICATION_JSON, APPLICATION_JACKSON_SMILE})
+    public void getTaskInfoDelta(
+            @PathParam("taskId") final TaskId taskId,
+            @HeaderParam(PRESTO_CURRENT_STATE) TaskState currentState,
+            @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
+            @HeaderParam(PRESTO_TASK_INFO_FINGERPRINTS) String fingerprints,
+            @Context UriInfo uriInfo,
+            @Suspended AsyncResponse asyncResponse)
+    {
+        requireNonNull(taskId, "taskId is null");
+
+        List<Long> previousFingerprints = fingerprints == null ? ImmutableList.of() : parseFingerprints(fingerprints);
+        boolean summarize = shouldSummarize(uriInfo);
+
+        if (currentState == null || maxWait == null) {
+            asyncResponse.resume(createDelta(taskManager.getTaskInfo(taskId), previousFingerprints, summarize));
+            return;
+        }
+
+        Duration waitTime = randomizeWaitTime(maxWait);
+        ListenableFuture<TaskInfoDelta> futureTaskInfoDelta = Futures.transform(
+                addTimeout(
+                        taskManager.getTaskInfo(taskId, currentState),
+                        () -> taskManager.getTaskInfo(taskId),
+                        waitTime,
+                        timeoutExecutor),
+                taskInfo -> createDelta(taskInfo, previousFingerprints, summarize),
+                directExecutor());
+
+        // For hard timeout, add an additional time to max wait for thread scheduling contention and GC
+        Duration timeout = new Duration(waitTime.toMillis() + ADDITIONAL_WAIT_TIME.toMillis(), MILLISECONDS);
+        bindAsyncResponse(asyncResponse, futureTaskInfoDelta, responseExecutor)
+                .withTimeout(timeout);
+    }
+
     @GET
     @Path("{taskId}/status")
     @Consumes({APPLICATION_JSON, APPLICATION_JACKSON_SMILE, APPLICATION_THRIFT_BINARY, APPLICATION_THRIFT_COMPACT, APPLICATION_THRIFT_FB_COMPACT})
@@ -375,6 +429,26 @@ public class TaskResource
         return resultsRequestTime;
     }
 
+    private TaskInfoDelta createDelta(TaskInfo taskInfo, List<Long> previousFingerprints, boolean summarize)
+    {
+        if (summarize) {
+            taskInfo = taskInfo.summarize();
+        }
+        return createTaskInfoDelta(taskInfo, previousFingerprints, this::serializedSize);
+    }
+
+    private long serializedSize(Object value)
+    {
+        CountingOutputStream output = new CountingOutputStream(nullOutputStream());
+        try {
+            objectMapper.writeValue(output, value);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.getCount();
+    }
+
     private static boolean shouldSummarize(UriInfo uriInfo)
     {
         return uriInfo.getQueryParameters().containsKey("summarize");
@@ -14,6 +14,7 @@
 package com.facebook.presto.server;
 
 import com.facebook.presto.SessionRepresentation;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.TaskSource;
 import com.facebook.presto.execution.buffer.OutputBuffers;
 import com.facebook.presto.execution.scheduler.TableWriteInfo;
@@ -21,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.List;
 import java.util.Map;
@@ -39,6 +41,7 @@ public class TaskUpdateRequest
     private final List<TaskSource> sources;
     private final OutputBuffers outputIds;
     private final Optional<TableWriteInfo> tableWriteInfo;
+    private final Map<String, Domain> dynamicFilterDomains;
 
     @JsonCreator
     public TaskUpdateRequest(
@@ -47,7 +50,8 @@ public class TaskUpdateRequest
             @JsonProperty("fragment") Optional<byte[]> fragment,
             @JsonProperty("sources") List<TaskSource> sources,
             @JsonProperty("outputIds") OutputBuffers outputIds,
-            @JsonProperty("tableWriteInfo") Optional<TableWriteInfo> tableWriteInfo)
+            @JsonProperty("tableWriteInfo") Optional<TableWriteInfo> tableWriteInfo,
+            @JsonProperty("dynamicFilterDomains") Map<String, Domain> dynamicFilterDomains)
     {
         requireNonNull(session, "session is null");
         requireNonNull(extraCredentials, "credentials is null");
@@ -55,6 +59,7 @@ public class TaskUpdateRequest
         requireNonNull(sources, "sources is null");
         requireNonNull(outputIds, "outputIds is null");
         requireNonNull(tableWriteInfo, "tableWriteInfo is null");
+        requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null");
 
         this.session = session;
         this.extraCredentials = extraCredentials;
@@ -62,6 +67,7 @@ public class TaskUpdateRequest
         this.sources = ImmutableList.copyOf(sources);
         this.outputIds = outputIds;
         this.tableWriteInfo = tableWriteInfo;
+        this.dynamicFilterDomains = ImmutableMap.copyOf(dynamicFilterDomains);
     }
 
     @JsonProperty
@@ -101,6 +107,12 @@ public class TaskUpdateRequest
         return tableWriteInfo;
     }
 
+    @JsonProperty
+    public Map<String, Domain> getDynamicFilterDomains()
+    {
+        return dynamicFilterDomains;
+    }
+
     @Override
     public String toString()
     {
@@ -110,6 +122,7 @@ public class TaskUpdateRequest
                 .add("fragment", fragment)
                 .add("sources", sources)
                 .add("outputIds", outputIds)
+                .add("dynamicFilterDomains", dynamicFilterDomains.keySet())
                 .toString();
     }
 }
@@ -22,6 +22,7 @@ import com.facebook.airlift.http.client.StatusResponseHandler.StatusResponse;
 import com.facebook.airlift.log.Logger;
 import com.facebook.drift.transport.netty.codec.Protocol;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.FutureStateChange;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.NodeTaskMap.PartitionedSplitCountTracker;
@@ -31,6 +32,7 @@ import com.facebook.presto.execution.ScheduledSplit;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskInfoDelta;
 import com.facebook.presto.execution.TaskSource;
 import com.facebook.presto.execution.TaskState;
 import com.facebook.presto.execution.TaskStatus;
@@ -50,12 +52,14 @@ import com.facebook.presto.server.codec.Codec;
 import com.facebook.presto.server.smile.BaseResponse;
 import com.facebook.presto.server.smile.SmileCodec;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SplitWeight;
 import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.PlanFragment;
 import com.google.common.base.Ticker;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.ObjectArrays;
@@ -78,7 +82,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
@@ -160,6 +164,8 @@ public final class HttpRemoteTask
     @GuardedBy("this")
     private volatile int pendingSourceSplitCount;
     @GuardedBy("this")
+    private volatile long pendingSourceSplitsWeight;
+    @GuardedBy("this")
     private final SetMultimap<PlanNodeId, Lifespan> pendingNoMoreSplitsForLifespan = HashMultimap.create();
     @GuardedBy("this")
     // The keys of this map represent all plan nodes that have "no more splits".
@@ -167,11 +173,13 @@ public final class HttpRemoteTask
     private final Map<PlanNodeId, Boolean> noMoreSplits = new HashMap<>();
     @GuardedBy("this")
     private final AtomicReference<OutputBuffers> outputBuffers = new AtomicReference<>();
+    // dynamic filter domains for the probe sides of the task, resent with every update as they are small
+    private final AtomicReference<Map<String, Domain>> dynamicFilterDomains = new AtomicReference<>(ImmutableMap.of());
     private final FutureStateChange<?> whenSplitQueueHasSpace = new FutureStateChange<>();
     @GuardedBy("this")
     private boolean splitQueueHasSpace = true;
     @GuardedBy("this")
-    private OptionalInt whenSplitQueueHasSpaceThreshold = OptionalInt.empty();
+    private OptionalLong whenSplitQueueHasSpaceThreshold = OptionalLong.empty();
 
     private final boolean summarizeTaskInfo;
 
@@ -219,6 +227,7 @@ public final class HttpRemoteTask
             boolean summarizeTaskInfo,
             Codec<TaskStatus> taskStatusCodec,
             Codec<TaskInfo> taskInfoCodec,
+            Optional<Codec<TaskInfoDelta>> taskInfoDeltaCodec,
             Codec<TaskUpdateRequest> taskUpdateRequestCodec,
             Codec<PlanFragment> planFragmentCodec,
             Codec<MetadataUpdates> metadataUpdatesCodec,
@@ -243,6 +252,7 @@ public final class HttpRemoteTask
         requireNonNull(executor, "executor is null");
         requireNonNull(taskStatusCodec, "taskStatusCodec is null");
         requireNonNull(taskInfoCodec, "taskInfoCodec is null");
+        requireNonNull(taskInfoDeltaCodec, "taskInfoDeltaCodec is null");
         requireNonNull(taskUpdateRequestCodec, "taskUpdateRequestCodec is null");
         requireNonNull(planFragmentCodec, "planFragmentCodec is null");
         requireNonNull(partitionedSplitCountTracker, "partitionedSplitCountTracker is null");
@@ -292,6 +302,11 @@ public final class HttpRemoteTask
                     .filter(initialSplits::containsKey)
                     .mapToInt(partitionedSource -> initialSplits.get(partitionedSource).size())
                     .sum();
+            pendingSourceSplitsWeight = planFragment.getTableScanSchedulingOrder().stream()
+                    .filter(initialSplits::containsKey)
+                    .flatMap(partitionedSource -> initialSplits.get(partitionedSource).stream())
+                    .mapToLong(split -> split.getSplitWeight().getRawValue())
+                    .sum();
 
             List<BufferInfo> bufferStates = outputBuffers.getBuffers()
                     .keySet().stream()
@@ -322,6 +337,7 @@ public final class HttpRemoteTask
                     taskInfoUpdateInterval,
                     taskInfoRefreshMaxWait,
                     taskInfoCodec,
+                    taskInfoDeltaCodec,
                     metadataUpdatesCodec,
                     maxErrorDuration,
                     summarizeTaskInfo,
@@ -340,12 +356,12 @@ public final class HttpRemoteTask
                     cleanUpTask();
                 }
                 else {
-                    partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+                    updatePartitionedSplitCountTracker();
                     updateSplitQueueSpace();
                 }
             });
 
-            partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+            updatePartitionedSplitCountTracker();
             updateSplitQueueSpace();
         }
     }
@@ -409,14 +425,17 @@ public final class HttpRemoteTask
 
             checkState(!noMoreSplits.containsKey(sourceId), "noMoreSplits has already been set for %s", sourceId);
             int added = 0;
+            long addedWeight = 0;
             for (Split split : splits) {
                 if (pendingSplits.put(sourceId, new ScheduledSplit(nextSplitId.getAndIncrement(), sourceId, split))) {
                     added++;
+                    addedWeight = SplitWeight.rawValueSum(addedWeight, split.getSplitWeight());
                 }
             }
             if (tableScanPlanNodeIds.contains(sourceId)) {
                 pendingSourceSplitCount += added;
-                partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+                pendingSourceSplitsWeight += addedWeight;
+                updatePartitionedSplitCountTracker();
             }
             needsUpdate = true;
         }
@@ -463,6 +482,24 @@ public final class HttpRemoteTask
         }
     }
 
+    @Override
+    public synchronized void addDynamicFilterDomains(Map<String, Domain> newDynamicFilterDomains)
+    {
+        if (getTaskStatus().getState().isDone()) {
+            return;
+        }
+
+        Map<String, Domain> currentDynamicFilterDomains = dynamicFilterDomains.get();
+        if (currentDynamicFilterDomains.keySet().containsAll(newDynamicFilterDomains.keySet())) {
+            return;
+        }
+        Map<String, Domain> mergedDynamicFilterDomains = new HashMap<>(currentDynamicFilterDomains);
+        mergedDynamicFilterDomains.putAll(newDynamicFilterDomains);
+        dynamicFilterDomains.set(ImmutableMap.copyOf(mergedDynamicFilterDomains));
+        needsUpdate.set(true);
+        scheduleUpdate();
+    }
+
     @Override
     public ListenableFuture<?> removeRemoteSource(TaskId remoteSourceTaskId)
     {
@@ -561,6 +598,38 @@ public final class HttpRemoteTask
         return pendingSourceSplitCount;
     }
 
+    @Override
+    public long getPartitionedSplitsWeight()
+    {
+        TaskStatus taskStatus = getTaskStatus();
+        if (taskStatus.getState().isDone()) {
+            return 0;
+        }
+        return getPendingSourceSplitsWeight() + taskStatus.getQueuedPartitionedSplitsWeight() + taskStatus.getRunningPartitionedSplitsWeight();
+    }
+
+    @Override
+    public long getQueuedPartitionedSplitsWeight()
+    {
+        TaskStatus taskStatus = getTaskStatus();
+        if (taskStatus.getState().isDone()) {
+            return 0;
+        }
+        return getPendingSourceSplitsWeight() + taskStatus.getQueuedPartitionedSplitsWeight();
+    }
+
+    @SuppressWarnings("FieldAccessNotGuarded")
+    private long getPendingSourceSplitsWeight()
+    {
+        return pendingSourceSplitsWeight;
+    }
+
+    private void updatePartitionedSplitCountTracker()
+    {
+        partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+        partitionedSplitCountTracker.setPartitionedSplitsWeight(getPartitionedSplitsWeight());
+    }
+
     @Override
     public void addStateChangeListener(StateChangeListener<TaskStatus> stateChangeListener)
     {
@@ -576,13 +645,19 @@ public final class HttpRemoteTask
     }
 
     @Override
-    public synchronized ListenableFuture<?> whenSplitQueueHasSpace(int threshold)
+    public void addDynamicFilterDomainsListener(StateChangeListener<Map<String, Domain>> stateChangeListener)
+    {
+        taskInfoFetcher.addDynamicFilterDomainsListener(stateChangeListener);
+    }
+
+    @Override
+    public synchronized ListenableFuture<?> whenSplitQueueHasSpace(long weightThreshold)
     {
         if (whenSplitQueueHasSpaceThreshold.isPresent()) {
-            checkArgument(threshold == whenSplitQueueHasSpaceThreshold.getAsInt(), "Multiple split queue space notification thresholds not supported");
+            checkArgument(weightThreshold == whenSplitQueueHasSpaceThreshold.getAsLong(), "Multiple split queue space notification thresholds not supported");
         }
         else {
-            whenSplitQueueHasSpaceThreshold = OptionalInt.of(threshold);
+            whenSplitQueueHasSpaceThreshold = OptionalLong.of(weightThreshold);
             updateSplitQueueSpace();
         }
         if (splitQueueHasSpace) {
@@ -596,7 +671,7 @@ public final class HttpRemoteTask
         if (!whenSplitQueueHasSpaceThreshold.isPresent()) {
             return;
         }
-        splitQueueHasSpace = getQueuedPartitionedSplitCount() < whenSplitQueueHasSpaceThreshold.getAsInt();
+        splitQueueHasSpace = getQueuedPartitionedSplitsWeight() < whenSplitQueueHasSpaceThreshold.getAsLong();
         if (splitQueueHasSpace) {
             whenSplitQueueHasSpace.complete(null, executor);
         }
@@ -610,9 +685,11 @@ public final class HttpRemoteTask
         for (TaskSource source : sources) {
             PlanNodeId planNodeId = source.getPlanNodeId();
             int removed = 0;
+            long removedWeight = 0;
             for (ScheduledSplit split : source.getSplits()) {
                 if (pendingSplits.remove(planNodeId, split)) {
                     removed++;
+                    removedWeight = SplitWeight.rawValueSum(removedWeight, split.getSplit().getSplitWeight());
                 }
             }
             if (source.isNoMoreSplits()) {
@@ -623,11 +700,12 @@ public final class HttpRemoteTask
             }
             if (tableScanPlanNodeIds.contains(planNodeId)) {
                 pendingSourceSplitCount -= removed;
+                pendingSourceSplitsWeight -= removedWeight;
             }
         }
         updateSplitQueueSpace();
 
-        partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+        updatePartitionedSplitCountTracker();
     }
 
     private void updateTaskInfo(TaskInfo taskInfo)
@@ -671,7 +749,8 @@ public final class HttpRemoteTask
                 fragment,
                 sources,
                 outputBuffers.get(),
-                writeInfo);
+                writeInfo,
+                dynamicFilterDomains.get());
         byte[] taskUpdateRequestJson = taskUpdateRequestCodec.toBytes(updateRequest);
 
         if (taskUpdateRequestJson.length > maxTaskUpdateSizeInBytes) {
@@ -765,7 +844,8 @@ public final class HttpRemoteTask
         // clear pending splits to free memory
         pendingSplits.clear();
         pendingSourceSplitCount = 0;
-        partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+        pendingSourceSplitsWeight = 0;
+        updatePartitionedSplitCountTracker();
         splitQueueHasSpace = true;
         whenSplitQueueHasSpace.complete(null, executor);
 
@@ -28,6 +28,7 @@ import com.facebook.presto.execution.RemoteTask;
 import com.facebook.presto.execution.RemoteTaskFactory;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskInfoDelta;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.execution.TaskStatus;
 import com.facebook.presto.execution.buffer.OutputBuffers;
@@ -51,6 +52,7 @@ import org.weakref.jmx.Nested;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -71,6 +73,7 @@ public class HttpRemoteTaskFactory
     private final LocationFactory locationFactory;
     private final Codec<TaskStatus> taskStatusCodec;
     private final Codec<TaskInfo> taskInfoCodec;
+    private final Optional<Codec<TaskInfoDelta>> taskInfoDeltaCodec;
     private final Codec<TaskUpdateRequest> taskUpdateRequestCodec;
     private final Codec<PlanFragment> planFragmentCodec;
     private final Codec<MetadataUpdates> metadataUpdatesCodec;
@@ -102,6 +105,8 @@ public class HttpRemoteTaskFactory
             ThriftCodec<TaskStatus> taskStatusThriftCodec,
             JsonCodec<TaskInfo> taskInfoJsonCodec,
             SmileCodec<TaskInfo> taskInfoSmileCodec,
+            JsonCodec<TaskInfoDelta> taskInfoDeltaJsonCodec,
+            SmileCodec<TaskInfoDelta> taskInfoDeltaSmileCodec,
             JsonCodec<TaskUpdateRequest> taskUpdateRequestJsonCodec,
             SmileCodec<TaskUpdateRequest> taskUpdateRequestSmileCodec,
             JsonCodec<PlanFragment> planFragmentJsonCodec,
@@ -139,16 +144,20 @@ public class HttpRemoteTaskFactory
             this.taskStatusCodec = wrapJsonCodec(taskStatusJsonCodec);
         }
 
+        Codec<TaskInfoDelta> taskInfoDeltaCodec;
         if (binaryTransportEnabled) {
             this.taskInfoCodec = taskInfoSmileCodec;
+            taskInfoDeltaCodec = taskInfoDeltaSmileCodec;
             this.taskUpdateRequestCodec = taskUpdateRequestSmileCodec;
             this.metadataUpdatesCodec = metadataUpdatesSmileCodec;
         }
         else {
             this.taskInfoCodec = wrapJsonCodec(taskInfoJsonCodec);
+            taskInfoDeltaCodec = wrapJsonCodec(taskInfoDeltaJsonCodec);
             this.taskUpdateRequestCodec = wrapJsonCodec(taskUpdateRequestJsonCodec);
             this.metadataUpdatesCodec = wrapJsonCodec(metadataUpdatesJsonCodec);
         }
+        this.taskInfoDeltaCodec = taskConfig.isInfoDeltaEnabled() ? Optional.of(taskInfoDeltaCodec) : Optional.empty();
         this.planFragmentCodec = wrapJsonCodec(planFragmentJsonCodec);
 
         this.metadataManager = metadataManager;
@@ -205,6 +214,7 @@ public class HttpRemoteTaskFactory
                 summarizeTaskInfo,
                 taskStatusCodec,
                 taskInfoCodec,
+                taskInfoDeltaCodec,
                 taskUpdateRequestCodec,
                 planFragmentCodec,
                 metadataUpdatesCodec,
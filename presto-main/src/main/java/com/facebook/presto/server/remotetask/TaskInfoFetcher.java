@@ -20,11 +20,13 @@ import com.facebook.airlift.http.client.Request;
 import com.facebook.airlift.http.client.Response;
 import com.facebook.airlift.http.client.ResponseHandler;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.QueryManager;
 import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskInfoDelta;
 import com.facebook.presto.execution.TaskStatus;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.metadata.MetadataUpdates;
@@ -34,6 +36,7 @@ import com.facebook.presto.server.SimpleHttpResponseHandler;
 import com.facebook.presto.server.codec.Codec;
 import com.facebook.presto.server.smile.BaseResponse;
 import com.facebook.presto.server.smile.SmileCodec;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.Duration;
@@ -41,6 +44,8 @@ import io.airlift.units.Duration;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -56,6 +61,8 @@ import static com.facebook.airlift.http.client.ResponseHandlerUtils.propagate;
 import static com.facebook.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INFO_FINGERPRINTS;
+import static com.facebook.presto.execution.TaskInfoDelta.formatFingerprints;
 import static com.facebook.presto.server.RequestErrorTracker.taskRequestErrorTracker;
 import static com.facebook.presto.server.RequestHelpers.setContentTypeHeaders;
 import static com.facebook.presto.server.smile.AdaptingJsonResponseHandler.createAdaptingJsonResponseHandler;
@@ -73,7 +80,9 @@ public class TaskInfoFetcher
     private final Consumer<Throwable> onFail;
     private final StateMachine<TaskInfo> taskInfo;
     private final StateMachine<Optional<TaskInfo>> finalTaskInfo;
+    private final StateMachine<Map<String, Domain>> dynamicFilterDomains;
     private final Codec<TaskInfo> taskInfoCodec;
+    private final Optional<Codec<TaskInfoDelta>> taskInfoDeltaCodec;
     private final Codec<MetadataUpdates> metadataUpdatesCodec;
 
     private final long updateIntervalMillis;
@@ -100,7 +109,15 @@ public class TaskInfoFetcher
     private ScheduledFuture<?> scheduledFuture;
 
     @GuardedBy("this")
-    private ListenableFuture<BaseResponse<TaskInfo>> future;
+    private ListenableFuture<?> future;
+
+    // the task info the worker computed the fingerprints of the last delta for, which is not necessarily the
+    // current task info, as that is also updated by the responses to task updates
+    @GuardedBy("this")
+    private Optional<TaskInfo> deltaBase = Optional.empty();
+
+    @GuardedBy("this")
+    private List<Long> deltaBaseFingerprints = ImmutableList.of();
 
     @GuardedBy("this")
     private ListenableFuture<?> metadataUpdateFuture;
@@ -117,6 +134,7 @@ public class TaskInfoFetcher
             Duration updateInterval,
             Duration taskInfoRefreshMaxWait,
             Codec<TaskInfo> taskInfoCodec,
+            Optional<Codec<TaskInfoDelta>> taskInfoDeltaCodec,
             Codec<MetadataUpdates> metadataUpdatesCodec,
             Duration maxErrorDuration,
             boolean summarizeTaskInfo,
@@ -136,7 +154,9 @@ public class TaskInfoFetcher
         this.onFail = requireNonNull(onFail, "onFail is null");
         this.taskInfo = new StateMachine<>("task " + taskId, executor, initialTask);
         this.finalTaskInfo = new StateMachine<>("task-" + taskId, executor, Optional.empty());
+        this.dynamicFilterDomains = new StateMachine<>("task-dynamic-filters-" + taskId, executor, initialTask.getDynamicFilterDomains());
         this.taskInfoCodec = requireNonNull(taskInfoCodec, "taskInfoCodec is null");
+        this.taskInfoDeltaCodec = requireNonNull(taskInfoDeltaCodec, "taskInfoDeltaCodec is null");
 
         this.metadataUpdatesCodec = requireNonNull(metadataUpdatesCodec, "metadataUpdatesCodec is null");
 
@@ -202,6 +222,11 @@ public class TaskInfoFetcher
         fireOnceStateChangeListener.stateChanged(finalTaskInfo.get());
     }
 
+    public void addDynamicFilterDomainsListener(StateChangeListener<Map<String, Domain>> stateChangeListener)
+    {
+        dynamicFilterDomains.addStateChangeListener(stateChangeListener);
+    }
+
     private synchronized void scheduleUpdate()
     {
         scheduledFuture = updateScheduledExecutor.scheduleWithFixedDelay(() -> {
@@ -256,6 +281,9 @@ public class TaskInfoFetcher
         }
 
         HttpUriBuilder httpUriBuilder = uriBuilderFrom(taskStatus.getSelf());
+        if (taskInfoDeltaCodec.isPresent()) {
+            httpUriBuilder.appendPath("delta");
+        }
         URI uri = summarizeTaskInfo ? httpUriBuilder.addParameter("summarize").build() : httpUriBuilder.build();
         Request.Builder uriBuilder = setContentTypeHeaders(isBinaryTransportEnabled, prepareGet());
 
@@ -263,21 +291,42 @@ public class TaskInfoFetcher
             uriBuilder.setHeader(PRESTO_CURRENT_STATE, taskStatus.getState().toString())
                     .setHeader(PRESTO_MAX_WAIT, taskInfoRefreshMaxWait.toString());
         }
+        if (taskInfoDeltaCodec.isPresent() && deltaBase.isPresent()) {
+            uriBuilder.setHeader(PRESTO_TASK_INFO_FINGERPRINTS, formatFingerprints(deltaBaseFingerprints));
+        }
 
         Request request = uriBuilder.setUri(uri).build();
 
-        ResponseHandler responseHandler;
-        if (isBinaryTransportEnabled) {
-            responseHandler = createFullSmileResponseHandler((SmileCodec<TaskInfo>) taskInfoCodec);
+        errorTracker.startRequest();
+        if (taskInfoDeltaCodec.isPresent()) {
+            ListenableFuture<BaseResponse<TaskInfoDelta>> deltaFuture = httpClient.executeAsync(request, createResponseHandler(taskInfoDeltaCodec.get()));
+            future = deltaFuture;
+            Futures.addCallback(deltaFuture, new SimpleHttpResponseHandler<>(new TaskInfoDeltaCallback(), request.getUri(), stats.getHttpResponseStats(), REMOTE_TASK_ERROR), executor);
         }
         else {
-            responseHandler = createAdaptingJsonResponseHandler(unwrapJsonCodec(taskInfoCodec));
+            ListenableFuture<BaseResponse<TaskInfo>> taskInfoFuture = httpClient.executeAsync(request, createResponseHandler(taskInfoCodec));
+            future = taskInfoFuture;
+            Futures.addCallback(taskInfoFuture, new SimpleHttpResponseHandler<>(this, request.getUri(), stats.getHttpResponseStats(), REMOTE_TASK_ERROR), executor);
         }
-
-        errorTracker.startRequest();
-        future = httpClient.executeAsync(request, responseHandler);
         currentRequestStartNanos.set(System.nanoTime());
-        Futures.addCallback(future, new SimpleHttpResponseHandler<>(this, request.getUri(), stats.getHttpResponseStats(), REMOTE_TASK_ERROR), executor);
+    }
+
+    private <T> ResponseHandler createResponseHandler(Codec<T> codec)
+    {
+        if (isBinaryTransportEnabled) {
+            return createFullSmileResponseHandler((SmileCodec<T>) codec);
+        }
+        return createAdaptingJsonResponseHandler(unwrapJsonCodec(codec));
+    }
+
+    private synchronized TaskInfo applyDelta(TaskInfoDelta delta)
+    {
+        TaskInfo taskInfo = delta.apply(deltaBase);
+        deltaBase = Optional.of(taskInfo);
+        deltaBaseFingerprints = delta.getFingerprints();
+        stats.infoDeltaOmittedParts(delta.getOmittedParts());
+        stats.infoDeltaOmittedBytes(delta.getOmittedBytes());
+        return taskInfo;
     }
 
     synchronized void updateTaskInfo(TaskInfo newValue)
@@ -293,6 +342,11 @@ public class TaskInfoFetcher
             return newTaskStatus.getVersion() >= oldTaskStatus.getVersion();
         });
 
+        if (updated) {
+            // the state machine only notifies the listeners when a new domain was collected
+            dynamicFilterDomains.set(newValue.getDynamicFilterDomains());
+        }
+
         if (updated && newValue.getTaskStatus().getState().isDone()) {
             finalTaskInfo.compareAndSet(Optional.empty(), Optional.of(newValue));
             stop();
@@ -345,6 +399,28 @@ public class TaskInfoFetcher
         }
     }
 
+    private class TaskInfoDeltaCallback
+            implements SimpleHttpResponseCallback<TaskInfoDelta>
+    {
+        @Override
+        public void success(TaskInfoDelta delta)
+        {
+            TaskInfoFetcher.this.success(applyDelta(delta));
+        }
+
+        @Override
+        public void failed(Throwable cause)
+        {
+            TaskInfoFetcher.this.failed(cause);
+        }
+
+        @Override
+        public void fatal(Throwable cause)
+        {
+            TaskInfoFetcher.this.fatal(cause);
+        }
+    }
+
     private void updateStats(long currentRequestStartNanos)
     {
         stats.infoRoundTripMillis(nanosSince(currentRequestStartNanos).toMillis());
@@ -14,6 +14,8 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import io.airlift.units.DataSize;
 
 import javax.validation.constraints.NotNull;
@@ -26,6 +28,7 @@ public class NodeSpillConfig
     private DataSize tempStorageBufferSize = new DataSize(4, DataSize.Unit.KILOBYTE);
 
     private boolean spillCompressionEnabled;
+    private CompressionCodec spillCompressionCodec = CompressionCodec.LZ4;
     private boolean spillEncryptionEnabled;
 
     @NotNull
@@ -79,6 +82,20 @@ public class NodeSpillConfig
         return this;
     }
 
+    @NotNull
+    public CompressionCodec getSpillCompressionCodec()
+    {
+        return spillCompressionCodec;
+    }
+
+    @Config("experimental.spill-compression-codec")
+    @ConfigDescription("Codec used to compress spilled pages when spill compression is enabled")
+    public NodeSpillConfig setSpillCompressionCodec(CompressionCodec spillCompressionCodec)
+    {
+        this.spillCompressionCodec = spillCompressionCodec;
+        return this;
+    }
+
     public boolean isSpillEncryptionEnabled()
     {
         return spillEncryptionEnabled;
@@ -15,6 +15,7 @@ package com.facebook.presto.spiller;
 
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.SpillContext;
@@ -35,6 +36,8 @@ import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.execution.buffer.CompressionCodec.LZ4;
+import static com.facebook.presto.execution.buffer.CompressionCodec.NONE;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.Math.toIntExact;
@@ -69,7 +72,7 @@ public class TempStorageSingleStreamSpillerFactory
                         daemonThreadsNamed("binary-spiller-%s"))),
                 blockEncodingSerde,
                 spillerStats,
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled(),
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled() ? nodeSpillConfig.getSpillCompressionCodec() : NONE,
                 requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled(),
                 toIntExact(requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").getTempStorageBufferSize().toBytes()),
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerTempStorage());
@@ -85,9 +88,22 @@ public class TempStorageSingleStreamSpillerFactory
             boolean spillEncryptionEnabled,
             int bufferSizeInBytes,
             String tempStorageName)
+    {
+        this(tempStorageManager, executor, blockEncodingSerde, spillerStats, spillCompressionEnabled ? LZ4 : NONE, spillEncryptionEnabled, bufferSizeInBytes, tempStorageName);
+    }
+
+    private TempStorageSingleStreamSpillerFactory(
+            TempStorageManager tempStorageManager,
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            CompressionCodec spillCompressionCodec,
+            boolean spillEncryptionEnabled,
+            int bufferSizeInBytes,
+            String tempStorageName)
     {
         this.tempStorageManager = requireNonNull(tempStorageManager, "tempStorageManager is null");
-        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionEnabled);
+        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionCodec, false);
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         this.spillEncryptionEnabled = spillEncryptionEnabled;
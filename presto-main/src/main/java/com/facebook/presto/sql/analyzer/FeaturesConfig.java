@@ -16,6 +16,7 @@ package com.facebook.presto.sql.analyzer;
 import com.facebook.airlift.configuration.Config;
 import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.configuration.DefunctConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -76,13 +77,20 @@ public class FeaturesConfig
     private boolean groupedExecutionEnabled = true;
     private boolean recoverableGroupedExecutionEnabled;
     private double maxFailedTaskPercentage = 0.3;
+    private boolean speculativeExecutionEnabled;
+    private double speculativeExecutionSlowTaskThreshold = 3.0;
     private int maxStageRetries;
     private int concurrentLifespansPerTask;
     private boolean spatialJoinsEnabled = true;
     private boolean fastInequalityJoins = true;
+    private boolean rangeJoinsEnabled;
+    private boolean semiJoinBloomFilterEnabled;
     private TaskSpillingStrategy taskSpillingStrategy = ORDER_BY_CREATE_TIME;
     private SingleStreamSpillerChoice singleStreamSpillerChoice = SingleStreamSpillerChoice.LOCAL_FILE;
     private String spillerTempStorage = "local";
+    private boolean spoolingOutputBufferEnabled;
+    private DataSize spoolingOutputBufferThreshold = new DataSize(8, MEGABYTE);
+    private String spoolingOutputBufferTempStorage = "local";
     private DataSize maxRevocableMemoryPerTask = new DataSize(500, MEGABYTE);
     private JoinReorderingStrategy joinReorderingStrategy = ELIMINATE_CROSS_JOINS;
     private PartialMergePushdownStrategy partialMergePushdownStrategy = PartialMergePushdownStrategy.NONE;
@@ -91,11 +99,15 @@ public class FeaturesConfig
     private boolean scaleWriters;
     private DataSize writerMinSize = new DataSize(32, DataSize.Unit.MEGABYTE);
     private boolean optimizedScaleWriterProducerBuffer;
+    private boolean splitSkewedWriterPartitions;
+    private int skewedJoinConsumersPerPartition = 1;
     private boolean optimizeMetadataQueries;
     private boolean optimizeHashGeneration = true;
     private boolean enableIntermediateAggregations;
     private boolean pushTableWriteThroughUnion = true;
     private boolean exchangeCompressionEnabled;
+    private CompressionCodec exchangeCompressionCodec = CompressionCodec.LZ4;
+    private boolean exchangeAdaptiveCompressionEnabled;
     private boolean legacyArrayAgg;
     private boolean legacyLogFunction;
     private boolean groupByUsesEqualTo;
@@ -125,6 +137,8 @@ public class FeaturesConfig
     private double spillMaxUsedSpaceThreshold = 0.9;
     private boolean iterativeOptimizerEnabled = true;
     private boolean runtimeOptimizerEnabled;
+    private boolean runtimeJoinDistributionEnabled;
+    private DataSize runtimeBroadcastJoinMaxBuildSize = new DataSize(100, MEGABYTE);
     private boolean enableStatsCalculator = true;
     private boolean enableStatsCollectionForTemporaryTable;
     private boolean ignoreStatsCalculatorFailures = true;
@@ -136,11 +150,16 @@ public class FeaturesConfig
     private boolean parseDecimalLiteralsAsDouble;
     private boolean useMarkDistinct = true;
     private boolean preferPartialAggregation = true;
+    private boolean adaptivePartialAggregationEnabled;
+    private long adaptivePartialAggregationMinRows = 100_000;
+    private double adaptivePartialAggregationUniqueRowsRatioThreshold = 0.8;
     private boolean optimizeTopNRowNumber = true;
     private boolean pushLimitThroughOuterJoin = true;
 
     private Duration iterativeOptimizerTimeout = new Duration(3, MINUTES); // by default let optimizer wait a long time in case it retrieves some data from ConnectorMetadata
     private boolean enableDynamicFiltering;
+    private boolean enableDistributedDynamicFiltering;
+    private boolean broadcastJoinBuildSharingEnabled;
     private int dynamicFilteringMaxPerDriverRowCount = 100;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(10, KILOBYTE);
 
@@ -451,6 +470,33 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isSpeculativeExecutionEnabled()
+    {
+        return speculativeExecutionEnabled;
+    }
+
+    @Config("speculative-execution-enabled")
+    @ConfigDescription("Execute the lifespans of slow tasks speculatively on other tasks in recoverable grouped execution")
+    public FeaturesConfig setSpeculativeExecutionEnabled(boolean speculativeExecutionEnabled)
+    {
+        this.speculativeExecutionEnabled = speculativeExecutionEnabled;
+        return this;
+    }
+
+    @DecimalMin("1.0")
+    public double getSpeculativeExecutionSlowTaskThreshold()
+    {
+        return speculativeExecutionSlowTaskThreshold;
+    }
+
+    @Config("speculative-execution-slow-task-threshold")
+    @ConfigDescription("A task is slow when its lifespans run longer than this multiple of the median lifespan execution time of the stage")
+    public FeaturesConfig setSpeculativeExecutionSlowTaskThreshold(double speculativeExecutionSlowTaskThreshold)
+    {
+        this.speculativeExecutionSlowTaskThreshold = speculativeExecutionSlowTaskThreshold;
+        return this;
+    }
+
     public int getMaxStageRetries()
     {
         return maxStageRetries;
@@ -518,6 +564,32 @@ public class FeaturesConfig
         return fastInequalityJoins;
     }
 
+    @Config("range-joins-enabled")
+    @ConfigDescription("Execute inner joins that only have range conditions by binary searching the sorted build side instead of as a filtered cross join")
+    public FeaturesConfig setRangeJoinsEnabled(boolean rangeJoinsEnabled)
+    {
+        this.rangeJoinsEnabled = rangeJoinsEnabled;
+        return this;
+    }
+
+    public boolean isRangeJoinsEnabled()
+    {
+        return rangeJoinsEnabled;
+    }
+
+    @Config("semi-join-bloom-filter-enabled")
+    @ConfigDescription("Check probe rows of a semi join against a Bloom filter of the filtering source before looking them up in the set")
+    public FeaturesConfig setSemiJoinBloomFilterEnabled(boolean semiJoinBloomFilterEnabled)
+    {
+        this.semiJoinBloomFilterEnabled = semiJoinBloomFilterEnabled;
+        return this;
+    }
+
+    public boolean isSemiJoinBloomFilterEnabled()
+    {
+        return semiJoinBloomFilterEnabled;
+    }
+
     public JoinReorderingStrategy getJoinReorderingStrategy()
     {
         return joinReorderingStrategy;
@@ -570,6 +642,47 @@ public class FeaturesConfig
         return spillerTempStorage;
     }
 
+    public boolean isSpoolingOutputBufferEnabled()
+    {
+        return spoolingOutputBufferEnabled;
+    }
+
+    @Config("spooling-output-buffer-enabled")
+    @ConfigDescription("Spool the output of the root stage to temp storage when the client does not fetch it fast enough")
+    public FeaturesConfig setSpoolingOutputBufferEnabled(boolean spoolingOutputBufferEnabled)
+    {
+        this.spoolingOutputBufferEnabled = spoolingOutputBufferEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getSpoolingOutputBufferThreshold()
+    {
+        return spoolingOutputBufferThreshold;
+    }
+
+    @Config("spooling-output-buffer-threshold")
+    @ConfigDescription("Amount of unacknowledged output kept in memory before it is written to temp storage")
+    public FeaturesConfig setSpoolingOutputBufferThreshold(DataSize spoolingOutputBufferThreshold)
+    {
+        this.spoolingOutputBufferThreshold = spoolingOutputBufferThreshold;
+        return this;
+    }
+
+    @NotNull
+    public String getSpoolingOutputBufferTempStorage()
+    {
+        return spoolingOutputBufferTempStorage;
+    }
+
+    @Config("spooling-output-buffer-temp-storage")
+    @ConfigDescription("Temp storage used by the spooling output buffer")
+    public FeaturesConfig setSpoolingOutputBufferTempStorage(String spoolingOutputBufferTempStorage)
+    {
+        this.spoolingOutputBufferTempStorage = spoolingOutputBufferTempStorage;
+        return this;
+    }
+
     public DataSize getMaxRevocableMemoryPerTask()
     {
         return maxRevocableMemoryPerTask;
@@ -659,6 +772,33 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isSplitSkewedWriterPartitions()
+    {
+        return splitSkewedWriterPartitions;
+    }
+
+    @Config("split-skewed-writer-partitions")
+    @ConfigDescription("Spread the rows of partitions that receive a disproportionate share of the data over several writers when the write partitioning is only preferred")
+    public FeaturesConfig setSplitSkewedWriterPartitions(boolean splitSkewedWriterPartitions)
+    {
+        this.splitSkewedWriterPartitions = splitSkewedWriterPartitions;
+        return this;
+    }
+
+    @Min(1)
+    public int getSkewedJoinConsumersPerPartition()
+    {
+        return skewedJoinConsumersPerPartition;
+    }
+
+    @Config("skewed-join-consumers-per-partition")
+    @ConfigDescription("Number of tasks the build rows of a partitioned join partition are sent to, so that a skewed probe partition can be spread over them. 1 disables this")
+    public FeaturesConfig setSkewedJoinConsumersPerPartition(int skewedJoinConsumersPerPartition)
+    {
+        this.skewedJoinConsumersPerPartition = skewedJoinConsumersPerPartition;
+        return this;
+    }
+
     public boolean isOptimizedScaleWriterProducerBuffer()
     {
         return optimizedScaleWriterProducerBuffer;
@@ -708,6 +848,48 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isAdaptivePartialAggregationEnabled()
+    {
+        return adaptivePartialAggregationEnabled;
+    }
+
+    @Config("adaptive-partial-aggregation.enabled")
+    @ConfigDescription("Stop partial aggregation and pass rows through when it does not reduce the number of rows")
+    public FeaturesConfig setAdaptivePartialAggregationEnabled(boolean adaptivePartialAggregationEnabled)
+    {
+        this.adaptivePartialAggregationEnabled = adaptivePartialAggregationEnabled;
+        return this;
+    }
+
+    @Min(0)
+    public long getAdaptivePartialAggregationMinRows()
+    {
+        return adaptivePartialAggregationMinRows;
+    }
+
+    @Config("adaptive-partial-aggregation.min-rows")
+    @ConfigDescription("Number of input rows partial aggregation processes before deciding whether to pass rows through")
+    public FeaturesConfig setAdaptivePartialAggregationMinRows(long adaptivePartialAggregationMinRows)
+    {
+        this.adaptivePartialAggregationMinRows = adaptivePartialAggregationMinRows;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getAdaptivePartialAggregationUniqueRowsRatioThreshold()
+    {
+        return adaptivePartialAggregationUniqueRowsRatioThreshold;
+    }
+
+    @Config("adaptive-partial-aggregation.unique-rows-ratio-threshold")
+    @ConfigDescription("Ratio of output groups to input rows above which partial aggregation passes rows through")
+    public FeaturesConfig setAdaptivePartialAggregationUniqueRowsRatioThreshold(double adaptivePartialAggregationUniqueRowsRatioThreshold)
+    {
+        this.adaptivePartialAggregationUniqueRowsRatioThreshold = adaptivePartialAggregationUniqueRowsRatioThreshold;
+        return this;
+    }
+
     public boolean isOptimizeTopNRowNumber()
     {
         return optimizeTopNRowNumber;
@@ -848,6 +1030,33 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isRuntimeJoinDistributionEnabled()
+    {
+        return runtimeJoinDistributionEnabled;
+    }
+
+    @Config("experimental.runtime-join-distribution-enabled")
+    @ConfigDescription("Switch partitioned joins over materialized exchanges to broadcast joins based on the actual size of the exchanges")
+    public FeaturesConfig setRuntimeJoinDistributionEnabled(boolean runtimeJoinDistributionEnabled)
+    {
+        this.runtimeJoinDistributionEnabled = runtimeJoinDistributionEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getRuntimeBroadcastJoinMaxBuildSize()
+    {
+        return runtimeBroadcastJoinMaxBuildSize;
+    }
+
+    @Config("experimental.runtime-broadcast-join-max-build-size")
+    @ConfigDescription("Maximum size of the materialized build side of a join that is switched to a broadcast join at runtime")
+    public FeaturesConfig setRuntimeBroadcastJoinMaxBuildSize(DataSize runtimeBroadcastJoinMaxBuildSize)
+    {
+        this.runtimeBroadcastJoinMaxBuildSize = runtimeBroadcastJoinMaxBuildSize;
+        return this;
+    }
+
     public Duration getIterativeOptimizerTimeout()
     {
         return iterativeOptimizerTimeout;
@@ -1019,6 +1228,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isEnableDistributedDynamicFiltering()
+    {
+        return enableDistributedDynamicFiltering;
+    }
+
+    @Config("experimental.enable-distributed-dynamic-filtering")
+    @ConfigDescription("Merge the dynamic filters of joins whose build and probe sides run in different stages on the coordinator and send them to the probe side")
+    public FeaturesConfig setEnableDistributedDynamicFiltering(boolean value)
+    {
+        this.enableDistributedDynamicFiltering = value;
+        return this;
+    }
+
     public int getDynamicFilteringMaxPerDriverRowCount()
     {
         return dynamicFilteringMaxPerDriverRowCount;
@@ -1044,6 +1266,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isBroadcastJoinBuildSharingEnabled()
+    {
+        return broadcastJoinBuildSharingEnabled;
+    }
+
+    @Config("broadcast-join-build-sharing-enabled")
+    @ConfigDescription("Build the hash table of a broadcast join once per worker and share it between the tasks of the query")
+    public FeaturesConfig setBroadcastJoinBuildSharingEnabled(boolean broadcastJoinBuildSharingEnabled)
+    {
+        this.broadcastJoinBuildSharingEnabled = broadcastJoinBuildSharingEnabled;
+        return this;
+    }
+
     public boolean isFragmentResultCachingEnabled()
     {
         return fragmentResultCachingEnabled;
@@ -1081,6 +1316,33 @@ public class FeaturesConfig
         return this;
     }
 
+    @NotNull
+    public CompressionCodec getExchangeCompressionCodec()
+    {
+        return exchangeCompressionCodec;
+    }
+
+    @Config("exchange.compression-codec")
+    @ConfigDescription("Codec used to compress exchanged pages when exchange compression is enabled")
+    public FeaturesConfig setExchangeCompressionCodec(CompressionCodec exchangeCompressionCodec)
+    {
+        this.exchangeCompressionCodec = exchangeCompressionCodec;
+        return this;
+    }
+
+    public boolean isExchangeAdaptiveCompressionEnabled()
+    {
+        return exchangeAdaptiveCompressionEnabled;
+    }
+
+    @Config("exchange.adaptive-compression-enabled")
+    @ConfigDescription("Stop compressing exchanged pages while they do not shrink")
+    public FeaturesConfig setExchangeAdaptiveCompressionEnabled(boolean exchangeAdaptiveCompressionEnabled)
+    {
+        this.exchangeAdaptiveCompressionEnabled = exchangeAdaptiveCompressionEnabled;
+        return this;
+    }
+
     public boolean isEnableIntermediateAggregations()
     {
         return enableIntermediateAggregations;
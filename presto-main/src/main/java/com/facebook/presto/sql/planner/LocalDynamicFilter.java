@@ -51,6 +51,9 @@ public class LocalDynamicFilter
 
     private final SettableFuture<TupleDomain<VariableReferenceExpression>> resultFuture;
 
+    // The resulting predicate keyed by dynamic filter ID, for the probe sides in other stages.
+    private final SettableFuture<TupleDomain<String>> filterIdResultFuture;
+
     // The resulting predicate for local dynamic filtering.
     private TupleDomain<String> result;
 
@@ -61,9 +64,10 @@ public class LocalDynamicFilter
     {
         this.probeVariables = requireNonNull(probeVariables, "probeVariables is null");
         this.buildChannels = requireNonNull(buildChannels, "buildChannels is null");
-        verify(probeVariables.keySet().equals(buildChannels.keySet()), "probeVariables and buildChannels must have same keys");
+        verify(buildChannels.keySet().containsAll(probeVariables.keySet()), "buildChannels must contain the keys of probeVariables");
 
         this.resultFuture = SettableFuture.create();
+        this.filterIdResultFuture = SettableFuture.create();
 
         this.result = TupleDomain.none();
         this.partitionsLeft = partitionCount;
@@ -80,6 +84,7 @@ public class LocalDynamicFilter
         if (partitionsLeft == 0) {
             // No more partitions are left to be processed.
             verify(resultFuture.set(convertTupleDomain(result)), "dynamic filter result is provided more than once");
+            filterIdResultFuture.set(result);
         }
     }
 
@@ -102,6 +107,15 @@ public class LocalDynamicFilter
     }
 
     public static Optional<LocalDynamicFilter> create(AbstractJoinNode planNode, int partitionCount)
+    {
+        return create(planNode, partitionCount, false);
+    }
+
+    /**
+     * Creates the dynamic filter of a join. Unless {@code includeRemoteFilters} is set, only the filters consumed by the
+     * probe side in the same plan fragment are collected.
+     */
+    public static Optional<LocalDynamicFilter> create(AbstractJoinNode planNode, int partitionCount, boolean includeRemoteFilters)
     {
         Set<String> joinDynamicFilters = planNode.getDynamicFilters().keySet();
         List<FilterNode> filterNodes = PlanNodeSearcher
@@ -128,7 +142,7 @@ public class LocalDynamicFilter
         PlanNode buildNode = planNode.getBuild();
         Map<String, Integer> buildChannels = planNode.getDynamicFilters().entrySet().stream()
                 // Skip build channels that don't match local probe dynamic filters.
-                .filter(entry -> probeVariables.containsKey(entry.getKey()))
+                .filter(entry -> includeRemoteFilters || probeVariables.containsKey(entry.getKey()))
                 .collect(toMap(
                         // Dynamic filter ID
                         Map.Entry::getKey,
@@ -161,6 +175,11 @@ public class LocalDynamicFilter
         return resultFuture;
     }
 
+    public ListenableFuture<TupleDomain<String>> getFilterIdResultFuture()
+    {
+        return filterIdResultFuture;
+    }
+
     public Consumer<TupleDomain<String>> getTupleDomainConsumer()
     {
         return this::addPartition;
@@ -23,6 +23,7 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.function.OperatorType;
 import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeSignature;
@@ -78,6 +79,7 @@ import com.facebook.presto.operator.OutputFactory;
 import com.facebook.presto.operator.PageSinkCommitStrategy;
 import com.facebook.presto.operator.PagesIndex;
 import com.facebook.presto.operator.PagesSpatialIndexFactory;
+import com.facebook.presto.operator.PartialAggregationController;
 import com.facebook.presto.operator.PartitionFunction;
 import com.facebook.presto.operator.PartitionedLookupSourceFactory;
 import com.facebook.presto.operator.PipelineExecutionStrategy;
@@ -236,17 +238,23 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationMinRows;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationUniqueRowsRatioThreshold;
 import static com.facebook.presto.SystemSessionProperties.getAggregationOperatorUnspillMemoryLimit;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
+import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageRowCount;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageSize;
 import static com.facebook.presto.SystemSessionProperties.getIndexLoaderTimeout;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
+import static com.facebook.presto.SystemSessionProperties.isAdaptivePartialAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isBroadcastJoinBuildSharingEnabled;
+import static com.facebook.presto.SystemSessionProperties.isEnableDistributedDynamicFiltering;
 import static com.facebook.presto.SystemSessionProperties.isEnableDynamicFiltering;
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.SystemSessionProperties.isExchangeAdaptiveCompressionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isJoinSpillingEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeCommonSubExpressions;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningEnabled;
@@ -528,7 +536,14 @@ public class LocalExecutionPlanner
             nullChannel = OptionalInt.of(outputLayout.indexOf(getOnlyElement(partitioningColumns)));
         }
 
-        return Optional.of(new OutputPartitioning(partitionFunction, partitionChannels, partitionConstants, partitioningScheme.isReplicateNullsAndAny(), nullChannel));
+        return Optional.of(new OutputPartitioning(
+                partitionFunction,
+                partitionChannels,
+                partitionConstants,
+                partitioningScheme.isReplicateNullsAndAny(),
+                nullChannel,
+                partitioningScheme.isSplitSkewedPartitions(),
+                partitioningScheme.getConsumersPerPartition()));
     }
 
     @VisibleForTesting
@@ -565,7 +580,7 @@ public class LocalExecutionPlanner
                                 outputTypes,
                                 pagePreprocessor,
                                 outputPartitioning,
-                                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session))))
+                                new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session), isExchangeAdaptiveCompressionEnabled(session))))
                         .build(),
                 context.getDriverInstanceCount(),
                 physicalOperation.getPipelineExecutionStrategy());
@@ -686,6 +701,11 @@ public class LocalExecutionPlanner
             return taskContext.getSession();
         }
 
+        public TaskContext getTaskContext()
+        {
+            return taskContext;
+        }
+
         public StageExecutionId getStageExecutionId()
         {
             return taskContext.getTaskId().getStageExecutionId();
@@ -930,7 +950,9 @@ public class LocalExecutionPlanner
                     node.getMaxRowCountPerPartition(),
                     hashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(partitioningSpillerFactory));
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, source);
         }
 
@@ -979,7 +1001,9 @@ public class LocalExecutionPlanner
                     node.isPartial(),
                     hashChannel,
                     1000,
-                    joinCompiler);
+                    joinCompiler,
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(spillerFactory));
 
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
@@ -1235,7 +1259,15 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForVariables(node.getDistinctVariables(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashVariable().map(variableChannelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(partitioningSpillerFactory));
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -1350,8 +1382,11 @@ public class LocalExecutionPlanner
             if (dynamicFilters.isPresent() && !dynamicFilters.get().isEmpty() && sourceNode instanceof TableScanNode) {
                 TableScanNode tableScanNode = (TableScanNode) sourceNode;
                 LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
+                List<DynamicFilterPlaceholder> placeholders = dynamicFilters.get();
+                Map<String, Domain> remoteDynamicFilterDomains = context.getTaskContext().getRemoteDynamicFilterDomains();
                 dynamicFilterSupplier = Optional.of(() -> {
-                    TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate();
+                    TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate()
+                            .intersect(getRemoteDynamicFilterPredicate(placeholders, remoteDynamicFilterDomains));
                     return predicate.transform(tableScanNode.getAssignments()::get);
                 });
             }
@@ -2168,6 +2203,12 @@ public class LocalExecutionPlanner
             boolean spillEnabled = isSpillEnabled(context.getSession()) && isJoinSpillingEnabled(context.getSession());
             boolean buildOuter = node.getType() == RIGHT || node.getType() == FULL;
             int partitionCount = buildContext.getDriverInstanceCount().orElse(1);
+            // every task of the stage receives the same build input, so the tasks running on a worker can share the lookup source
+            boolean shareLookupSource = isBroadcastJoin &&
+                    isBroadcastJoinBuildSharingEnabled(context.getSession()) &&
+                    !buildOuter &&
+                    !(spillEnabled && partitionCount > 1) &&
+                    buildSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION;
 
             Optional<JoinFilterFunctionFactory> filterFunctionFactory = node.getFilter()
                     .map(filterExpression -> compileJoinFilterFunction(
@@ -2234,7 +2275,8 @@ public class LocalExecutionPlanner
                     pagesIndexFactory,
                     spillEnabled && !buildOuter && partitionCount > 1,
                     singleStreamSpillerFactory,
-                    isBroadcastJoin);
+                    isBroadcastJoin,
+                    shareLookupSource);
 
             factoriesBuilder.add(hashBuilderOperatorFactory);
 
@@ -2283,16 +2325,54 @@ public class LocalExecutionPlanner
                 throw new PrestoException(NOT_SUPPORTED, "Dynamic filtering cannot be used with grouped execution");
             }
             LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
+            boolean distributedDynamicFiltering = isEnableDistributedDynamicFiltering(context.getSession());
             return LocalDynamicFilter
-                    .create(node, partitionCount)
+                    .create(node, partitionCount, distributedDynamicFiltering)
                     .map(filter -> {
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
                         addSuccessCallback(filter.getResultFuture(), collector::intersect);
+                        if (distributedDynamicFiltering) {
+                            // The coordinator merges the domains collected by all the tasks of the stage,
+                            // and sends them to the probe sides that run in other stages.
+                            TaskContext taskContext = context.getTaskContext();
+                            addSuccessCallback(filter.getFilterIdResultFuture(), result -> taskContext.addCollectedDynamicFilterDomains(getDynamicFilterDomains(node, result)));
+                        }
                         return filter;
                     });
         }
 
+        private Map<String, Domain> getDynamicFilterDomains(AbstractJoinNode node, TupleDomain<String> result)
+        {
+            ImmutableMap.Builder<String, Domain> domains = ImmutableMap.builder();
+            for (Map.Entry<String, VariableReferenceExpression> entry : node.getDynamicFilters().entrySet()) {
+                Type type = entry.getValue().getType();
+                if (result.isNone()) {
+                    domains.put(entry.getKey(), Domain.none(type));
+                }
+                else {
+                    // a filter is missing when the build side was too large to be collected
+                    domains.put(entry.getKey(), result.getDomains().get().getOrDefault(entry.getKey(), Domain.all(type)));
+                }
+            }
+            return domains.build();
+        }
+
+        private TupleDomain<VariableReferenceExpression> getRemoteDynamicFilterPredicate(List<DynamicFilterPlaceholder> placeholders, Map<String, Domain> remoteDynamicFilterDomains)
+        {
+            if (remoteDynamicFilterDomains.isEmpty()) {
+                return TupleDomain.all();
+            }
+            TupleDomain<VariableReferenceExpression> predicate = TupleDomain.all();
+            for (DynamicFilterPlaceholder placeholder : placeholders) {
+                Domain domain = remoteDynamicFilterDomains.get(placeholder.getId());
+                if (domain != null && placeholder.getInput() instanceof VariableReferenceExpression) {
+                    predicate = predicate.intersect(TupleDomain.withColumnDomains(ImmutableMap.of((VariableReferenceExpression) placeholder.getInput(), domain)));
+                }
+            }
+            return predicate;
+        }
+
         private JoinFilterFunctionFactory compileJoinFilterFunction(
                 SqlFunctionProperties sqlFunctionProperties,
                 RowExpression filterExpression,
@@ -3050,6 +3130,15 @@ public class LocalExecutionPlanner
             }
             else {
                 Optional<Integer> hashChannel = hashVariable.map(variableChannelGetter(source));
+                Optional<PartialAggregationController> partialAggregationController = Optional.empty();
+                if (step == Step.PARTIAL &&
+                        !groupByChannels.isEmpty() &&
+                        isAdaptivePartialAggregationEnabled(context.getSession()) &&
+                        accumulatorFactories.stream().noneMatch(factory -> factory.hasOrderBy() || factory.hasDistinct())) {
+                    partialAggregationController = Optional.of(new PartialAggregationController(
+                            getAdaptivePartialAggregationMinRows(context.getSession()),
+                            getAdaptivePartialAggregationUniqueRowsRatioThreshold(context.getSession())));
+                }
                 return new HashAggregationOperatorFactory(
                         context.getNextOperatorId(),
                         planNodeId,
@@ -3067,7 +3156,8 @@ public class LocalExecutionPlanner
                         unspillMemoryLimit,
                         spillerFactory,
                         joinCompiler,
-                        useSystemMemory);
+                        useSystemMemory,
+                        partialAggregationController);
             }
         }
     }
@@ -30,6 +30,8 @@ public class OutputPartitioning
     private final List<Optional<ConstantExpression>> partitionConstants;
     private final boolean replicateNullsAndAny;
     private final OptionalInt nullChannel;
+    private final boolean splitSkewedPartitions;
+    private final OptionalInt consumersPerPartition;
 
     public OutputPartitioning(
             PartitionFunction partitionFunction,
@@ -37,12 +39,26 @@ public class OutputPartitioning
             List<Optional<ConstantExpression>> partitionConstants,
             boolean replicateNullsAndAny,
             OptionalInt nullChannel)
+    {
+        this(partitionFunction, partitionChannels, partitionConstants, replicateNullsAndAny, nullChannel, false, OptionalInt.empty());
+    }
+
+    public OutputPartitioning(
+            PartitionFunction partitionFunction,
+            List<Integer> partitionChannels,
+            List<Optional<ConstantExpression>> partitionConstants,
+            boolean replicateNullsAndAny,
+            OptionalInt nullChannel,
+            boolean splitSkewedPartitions,
+            OptionalInt consumersPerPartition)
     {
         this.partitionFunction = requireNonNull(partitionFunction, "partitionFunction is null");
         this.partitionChannels = ImmutableList.copyOf(requireNonNull(partitionChannels, "partitionChannels is null"));
         this.partitionConstants = ImmutableList.copyOf(requireNonNull(partitionConstants, "partitionConstants is null"));
         this.replicateNullsAndAny = replicateNullsAndAny;
         this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+        this.splitSkewedPartitions = splitSkewedPartitions;
+        this.consumersPerPartition = requireNonNull(consumersPerPartition, "consumersPerPartition is null");
     }
 
     public PartitionFunction getPartitionFunction()
@@ -69,4 +85,14 @@ public class OutputPartitioning
     {
         return nullChannel;
     }
+
+    public boolean isSplitSkewedPartitions()
+    {
+        return splitSkewedPartitions;
+    }
+
+    public OptionalInt getConsumersPerPartition()
+    {
+        return consumersPerPartition;
+    }
 }
@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -35,6 +36,8 @@ public class PartitioningScheme
     private final Optional<VariableReferenceExpression> hashColumn;
     private final boolean replicateNullsAndAny;
     private final Optional<int[]> bucketToPartition;
+    private final boolean splitSkewedPartitions;
+    private final OptionalInt consumersPerPartition;
 
     public PartitioningScheme(Partitioning partitioning, List<VariableReferenceExpression> outputLayout)
     {
@@ -56,13 +59,32 @@ public class PartitioningScheme
                 Optional.empty());
     }
 
+    public PartitioningScheme(
+            Partitioning partitioning,
+            List<VariableReferenceExpression> outputLayout,
+            Optional<VariableReferenceExpression> hashColumn,
+            boolean replicateNullsAndAny,
+            Optional<int[]> bucketToPartition)
+    {
+        this(
+                partitioning,
+                outputLayout,
+                hashColumn,
+                replicateNullsAndAny,
+                bucketToPartition,
+                false,
+                OptionalInt.empty());
+    }
+
     @JsonCreator
     public PartitioningScheme(
             @JsonProperty("partitioning") Partitioning partitioning,
             @JsonProperty("outputLayout") List<VariableReferenceExpression> outputLayout,
             @JsonProperty("hashColumn") Optional<VariableReferenceExpression> hashColumn,
             @JsonProperty("replicateNullsAndAny") boolean replicateNullsAndAny,
-            @JsonProperty("bucketToPartition") Optional<int[]> bucketToPartition)
+            @JsonProperty("bucketToPartition") Optional<int[]> bucketToPartition,
+            @JsonProperty("splitSkewedPartitions") boolean splitSkewedPartitions,
+            @JsonProperty("consumersPerPartition") OptionalInt consumersPerPartition)
     {
         this.partitioning = requireNonNull(partitioning, "partitioning is null");
         this.outputLayout = ImmutableList.copyOf(requireNonNull(outputLayout, "outputLayout is null"));
@@ -78,6 +100,11 @@ public class PartitioningScheme
         checkArgument(!replicateNullsAndAny || columns.size() <= 1, "Must have at most one partitioning column when nullPartition is REPLICATE.");
         this.replicateNullsAndAny = replicateNullsAndAny;
         this.bucketToPartition = requireNonNull(bucketToPartition, "bucketToPartition is null");
+        checkArgument(!splitSkewedPartitions || !replicateNullsAndAny, "Skewed partitions cannot be split when nulls and any row are replicated");
+        this.splitSkewedPartitions = splitSkewedPartitions;
+        this.consumersPerPartition = requireNonNull(consumersPerPartition, "consumersPerPartition is null");
+        consumersPerPartition.ifPresent(consumers -> checkArgument(consumers > 1, "consumersPerPartition must be greater than one"));
+        checkArgument(!consumersPerPartition.isPresent() || !replicateNullsAndAny, "Partitions cannot be sent to several consumers when nulls and any row are replicated");
     }
 
     @JsonProperty
@@ -110,9 +137,41 @@ public class PartitioningScheme
         return bucketToPartition;
     }
 
+    /**
+     * Whether the consumers of the partitions tolerate receiving rows of a key that is sent to other consumers too,
+     * in which case the rows of skewed partitions can be spread over several consumers at runtime.
+     */
+    @JsonProperty
+    public boolean isSplitSkewedPartitions()
+    {
+        return splitSkewedPartitions;
+    }
+
+    /**
+     * The number of consecutive consumers, starting with the consumer a partition maps to, that the rows of the
+     * partition can be sent to. With {@link #isSplitSkewedPartitions()}, a skewed partition is only spread over these
+     * consumers. Otherwise every row is sent to all of them, so that the other side of a partitioned join can spread
+     * its skewed partitions over them.
+     */
+    @JsonProperty
+    public OptionalInt getConsumersPerPartition()
+    {
+        return consumersPerPartition;
+    }
+
     public PartitioningScheme withBucketToPartition(Optional<int[]> bucketToPartition)
     {
-        return new PartitioningScheme(partitioning, outputLayout, hashColumn, replicateNullsAndAny, bucketToPartition);
+        return new PartitioningScheme(partitioning, outputLayout, hashColumn, replicateNullsAndAny, bucketToPartition, splitSkewedPartitions, consumersPerPartition);
+    }
+
+    public PartitioningScheme withSplitSkewedPartitions(boolean splitSkewedPartitions)
+    {
+        return new PartitioningScheme(partitioning, outputLayout, hashColumn, replicateNullsAndAny, bucketToPartition, splitSkewedPartitions, consumersPerPartition);
+    }
+
+    public PartitioningScheme withConsumersPerPartition(OptionalInt consumersPerPartition)
+    {
+        return new PartitioningScheme(partitioning, outputLayout, hashColumn, replicateNullsAndAny, bucketToPartition, splitSkewedPartitions, consumersPerPartition);
     }
 
     public PartitioningScheme translateOutputLayout(List<VariableReferenceExpression> newOutputLayout)
@@ -127,7 +186,7 @@ public class PartitioningScheme
                 .map(outputLayout::indexOf)
                 .map(newOutputLayout::get);
 
-        return new PartitioningScheme(newPartitioning, newOutputLayout, newHashSymbol, replicateNullsAndAny, bucketToPartition);
+        return new PartitioningScheme(newPartitioning, newOutputLayout, newHashSymbol, replicateNullsAndAny, bucketToPartition, splitSkewedPartitions, consumersPerPartition);
     }
 
     @Override
@@ -143,13 +202,15 @@ public class PartitioningScheme
         return Objects.equals(partitioning, that.partitioning) &&
                 Objects.equals(outputLayout, that.outputLayout) &&
                 replicateNullsAndAny == that.replicateNullsAndAny &&
-                Objects.equals(bucketToPartition, that.bucketToPartition);
+                Objects.equals(bucketToPartition, that.bucketToPartition) &&
+                splitSkewedPartitions == that.splitSkewedPartitions &&
+                Objects.equals(consumersPerPartition, that.consumersPerPartition);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(partitioning, outputLayout, replicateNullsAndAny, bucketToPartition);
+        return Objects.hash(partitioning, outputLayout, replicateNullsAndAny, bucketToPartition, splitSkewedPartitions, consumersPerPartition);
     }
 
     @Override
@@ -161,6 +222,8 @@ public class PartitioningScheme
                 .add("hashChannel", hashColumn)
                 .add("replicateNullsAndAny", replicateNullsAndAny)
                 .add("bucketToPartition", bucketToPartition)
+                .add("splitSkewedPartitions", splitSkewedPartitions)
+                .add("consumersPerPartition", consumersPerPartition)
                 .toString();
     }
 }
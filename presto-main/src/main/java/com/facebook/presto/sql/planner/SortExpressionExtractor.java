@@ -34,6 +34,12 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import static com.facebook.presto.common.function.OperatorType.BETWEEN;
+import static com.facebook.presto.common.function.OperatorType.GREATER_THAN_OR_EQUAL;
+import static com.facebook.presto.common.function.OperatorType.LESS_THAN_OR_EQUAL;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static com.facebook.presto.sql.relational.Expressions.call;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Collections.singletonList;
@@ -51,6 +57,10 @@ import static java.util.stream.Collectors.toMap;
  * where {@code a} is the build side symbol reference and {@code x,y,z} are probe
  * side symbol references. Any of inequality operators ({@code <,<=,>,>=}) can be used.
  * Same build side symbol need to be used in all conjuncts.
+ * <p>
+ * Conjuncts of shape {@code B.x BETWEEN f(A.a) AND g(A.b)}, {@code f(A.a) BETWEEN B.x AND g(B.y)} and
+ * {@code f(A.a) BETWEEN g(B.y) AND B.x} are split into the equivalent inequalities, and the one that
+ * compares the build side symbol is used.
  */
 public final class SortExpressionExtractor
 {
@@ -113,6 +123,9 @@ public final class SortExpressionExtractor
         public Optional<SortExpressionContext> visitCall(CallExpression call, Void context)
         {
             FunctionMetadata functionMetadata = functionAndTypeManager.getFunctionMetadata(call.getFunctionHandle());
+            if (functionMetadata.getOperatorType().equals(Optional.of(BETWEEN))) {
+                return visitBetween(call);
+            }
             if (!functionMetadata.getOperatorType().map(OperatorType::isComparisonOperator).orElse(false)) {
                 return Optional.empty();
             }
@@ -139,6 +152,46 @@ public final class SortExpressionExtractor
             }
         }
 
+        private Optional<SortExpressionContext> visitBetween(CallExpression between)
+        {
+            RowExpression value = between.getArguments().get(0);
+            RowExpression min = between.getArguments().get(1);
+            RowExpression max = between.getArguments().get(2);
+
+            Optional<VariableReferenceExpression> sortChannel = asBuildVariableReference(buildVariables, value);
+            if (sortChannel.isPresent()) {
+                if (hasBuildVariableReference(buildVariables, min) || hasBuildVariableReference(buildVariables, max)) {
+                    return Optional.empty();
+                }
+                return Optional.of(new SortExpressionContext(sortChannel.get(), ImmutableList.of(
+                        comparison(GREATER_THAN_OR_EQUAL, value, min),
+                        comparison(LESS_THAN_OR_EQUAL, value, max))));
+            }
+
+            if (hasBuildVariableReference(buildVariables, value)) {
+                return Optional.empty();
+            }
+            sortChannel = asBuildVariableReference(buildVariables, min);
+            if (sortChannel.isPresent()) {
+                return Optional.of(new SortExpressionContext(sortChannel.get(), singletonList(comparison(LESS_THAN_OR_EQUAL, min, value))));
+            }
+            sortChannel = asBuildVariableReference(buildVariables, max);
+            if (sortChannel.isPresent()) {
+                return Optional.of(new SortExpressionContext(sortChannel.get(), singletonList(comparison(GREATER_THAN_OR_EQUAL, max, value))));
+            }
+            return Optional.empty();
+        }
+
+        private CallExpression comparison(OperatorType operatorType, RowExpression left, RowExpression right)
+        {
+            return call(
+                    operatorType.getFunctionName().getObjectName(),
+                    functionAndTypeManager.resolveOperator(operatorType, fromTypes(left.getType(), right.getType())),
+                    BOOLEAN,
+                    left,
+                    right);
+        }
+
         @Override
         public Optional<SortExpressionContext> visitInputReference(InputReferenceExpression input, Void context)
         {
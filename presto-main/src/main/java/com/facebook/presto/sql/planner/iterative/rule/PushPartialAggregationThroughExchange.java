@@ -183,7 +183,9 @@ public class PushPartialAggregationThroughExchange
                 aggregationOutputs,
                 exchange.getPartitioningScheme().getHashColumn(),
                 exchange.getPartitioningScheme().isReplicateNullsAndAny(),
-                exchange.getPartitioningScheme().getBucketToPartition());
+                exchange.getPartitioningScheme().getBucketToPartition(),
+                exchange.getPartitioningScheme().isSplitSkewedPartitions(),
+                exchange.getPartitioningScheme().getConsumersPerPartition());
 
         return new ExchangeNode(
                 context.getIdAllocator().getNextId(),
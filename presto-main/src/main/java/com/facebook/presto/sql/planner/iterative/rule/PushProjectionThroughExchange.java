@@ -146,7 +146,9 @@ public class PushProjectionThroughExchange
                 outputBuilder.build(),
                 exchange.getPartitioningScheme().getHashColumn(),
                 exchange.getPartitioningScheme().isReplicateNullsAndAny(),
-                exchange.getPartitioningScheme().getBucketToPartition());
+                exchange.getPartitioningScheme().getBucketToPartition(),
+                exchange.getPartitioningScheme().isSplitSkewedPartitions(),
+                exchange.getPartitioningScheme().getConsumersPerPartition());
 
         PlanNode result = new ExchangeNode(
                 exchange.getId(),
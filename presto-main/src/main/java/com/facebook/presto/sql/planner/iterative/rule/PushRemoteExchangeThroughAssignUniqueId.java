@@ -79,7 +79,9 @@ public final class PushRemoteExchangeThroughAssignUniqueId
                                 removeVariable(partitioningScheme.getOutputLayout(), assignUniqueId.getIdVariable()),
                                 partitioningScheme.getHashColumn(),
                                 partitioningScheme.isReplicateNullsAndAny(),
-                                partitioningScheme.getBucketToPartition()),
+                                partitioningScheme.getBucketToPartition(),
+                                partitioningScheme.isSplitSkewedPartitions(),
+                                partitioningScheme.getConsumersPerPartition()),
                         ImmutableList.of(assignUniqueId.getSource()),
                         ImmutableList.of(removeVariable(getOnlyElement(node.getInputs()), assignUniqueId.getIdVariable())),
                         node.isEnsureSourceOrdering(),
@@ -106,6 +106,7 @@ import static com.facebook.presto.SystemSessionProperties.isForceSingleNodeOutpu
 import static com.facebook.presto.SystemSessionProperties.isPreferDistributedUnion;
 import static com.facebook.presto.SystemSessionProperties.isRedistributeWrites;
 import static com.facebook.presto.SystemSessionProperties.isScaleWriters;
+import static com.facebook.presto.SystemSessionProperties.isSplitSkewedWriterPartitions;
 import static com.facebook.presto.SystemSessionProperties.isUseStreamingExchangeForMarkDistinctEnabled;
 import static com.facebook.presto.SystemSessionProperties.preferStreamingOperators;
 import static com.facebook.presto.expressions.LogicalRowExpressions.TRUE_CONSTANT;
@@ -172,6 +173,7 @@ public class AddExchanges
         private final boolean preferStreamingOperators;
         private final boolean redistributeWrites;
         private final boolean scaleWriters;
+        private final boolean splitSkewedWriterPartitions;
         private final boolean preferDistributedUnion;
         private final PartialMergePushdownStrategy partialMergePushdownStrategy;
         private final String partitioningProviderCatalog;
@@ -187,6 +189,7 @@ public class AddExchanges
             this.distributedIndexJoins = isDistributedIndexJoinEnabled(session);
             this.redistributeWrites = isRedistributeWrites(session);
             this.scaleWriters = isScaleWriters(session);
+            this.splitSkewedWriterPartitions = isSplitSkewedWriterPartitions(session);
             this.preferDistributedUnion = isPreferDistributedUnion(session);
             this.partialMergePushdownStrategy = getPartialMergePushdownStrategy(session);
             this.preferStreamingOperators = preferStreamingOperators(session);
@@ -581,7 +584,10 @@ public class AddExchanges
 
             Optional<PartitioningScheme> shufflePartitioningScheme = node.getTablePartitioningScheme();
             if (!shufflePartitioningScheme.isPresent()) {
-                shufflePartitioningScheme = node.getPreferredShufflePartitioningScheme();
+                // unlike the table partitioning, the preferred partitioning only limits the number of writers of a partition,
+                // so the rows of a hot partition may go to several writers
+                shufflePartitioningScheme = node.getPreferredShufflePartitioningScheme()
+                        .map(scheme -> scheme.withSplitSkewedPartitions(splitSkewedWriterPartitions));
             }
 
             if (!shufflePartitioningScheme.isPresent()) {
@@ -523,7 +523,9 @@ public class HashGenerationOptimizer
                             .build(),
                     partitionVariables.map(newHashVariables::get),
                     partitioningScheme.isReplicateNullsAndAny(),
-                    partitioningScheme.getBucketToPartition());
+                    partitioningScheme.getBucketToPartition(),
+                    partitioningScheme.isSplitSkewedPartitions(),
+                    partitioningScheme.getConsumersPerPartition());
 
             // add hash variables to sources
             ImmutableList.Builder<List<VariableReferenceExpression>> newInputs = ImmutableList.builder();
@@ -78,6 +78,8 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.SystemSessionProperties.isEnableDynamicFiltering;
+import static com.facebook.presto.SystemSessionProperties.isFastInequalityJoin;
+import static com.facebook.presto.SystemSessionProperties.isRangeJoinsEnabled;
 import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
@@ -88,6 +90,7 @@ import static com.facebook.presto.spi.plan.ProjectNode.Locality;
 import static com.facebook.presto.spi.plan.ProjectNode.Locality.LOCAL;
 import static com.facebook.presto.spi.plan.ProjectNode.Locality.REMOTE;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static com.facebook.presto.sql.planner.SortExpressionExtractor.extractSortExpression;
 import static com.facebook.presto.sql.planner.plan.AssignmentUtils.identityAssignments;
 import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
 import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
@@ -99,6 +102,8 @@ import static com.facebook.presto.sql.relational.Expressions.call;
 import static com.facebook.presto.sql.relational.Expressions.constant;
 import static com.facebook.presto.sql.relational.Expressions.constantNull;
 import static com.facebook.presto.sql.relational.Expressions.uniqueSubExpressions;
+import static com.facebook.presto.util.SpatialJoinUtils.extractSupportedSpatialComparisons;
+import static com.facebook.presto.util.SpatialJoinUtils.extractSupportedSpatialFunctions;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.in;
@@ -534,7 +539,7 @@ public class PredicatePushDown
                 newJoinFilter = Optional.empty();
             }
 
-            if (node.getType() == INNER && newJoinFilter.isPresent() && equiJoinClauses.isEmpty()) {
+            if (node.getType() == INNER && newJoinFilter.isPresent() && equiJoinClauses.isEmpty() && !isRangeJoin(node.getRight(), newJoinFilter.get())) {
                 // if we do not have any equi conjunct we do not pushdown non-equality condition into
                 // inner join, so we plan execution as nested-loops-join followed by filter instead
                 // hash join.
@@ -596,6 +601,21 @@ public class PredicatePushDown
             return output;
         }
 
+        /**
+         * An inner join whose filter compares a build side column with probe side values can keep the filter and be
+         * executed as a lookup join without join keys. All build rows then share a single position links chain that
+         * is sorted by that column, so each probe row binary searches for its first match instead of being compared
+         * with every build row. Spatial conditions are left to {@link com.facebook.presto.sql.planner.iterative.rule.ExtractSpatialJoins}.
+         */
+        private boolean isRangeJoin(PlanNode right, RowExpression joinFilter)
+        {
+            return isRangeJoinsEnabled(session) &&
+                    isFastInequalityJoin(session) &&
+                    extractSupportedSpatialFunctions(joinFilter, functionAndTypeManager).isEmpty() &&
+                    extractSupportedSpatialComparisons(joinFilter, functionAndTypeManager).isEmpty() &&
+                    extractSortExpression(ImmutableSet.copyOf(right.getOutputVariables()), joinFilter, functionAndTypeManager).isPresent();
+        }
+
         private static DynamicFiltersResult createDynamicFilters(
                 JoinNode node,
                 List<JoinNode.EquiJoinClause> equiJoinClauses,
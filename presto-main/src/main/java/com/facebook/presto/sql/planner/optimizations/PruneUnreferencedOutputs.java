@@ -168,7 +168,9 @@ public class PruneUnreferencedOutputs
                     newOutputVariables,
                     node.getPartitioningScheme().getHashColumn(),
                     node.getPartitioningScheme().isReplicateNullsAndAny(),
-                    node.getPartitioningScheme().getBucketToPartition());
+                    node.getPartitioningScheme().getBucketToPartition(),
+                    node.getPartitioningScheme().isSplitSkewedPartitions(),
+                    node.getPartitioningScheme().getConsumersPerPartition());
 
             ImmutableList.Builder<PlanNode> rewrittenSources = ImmutableList.builder();
             for (int i = 0; i < node.getSources().size(); i++) {
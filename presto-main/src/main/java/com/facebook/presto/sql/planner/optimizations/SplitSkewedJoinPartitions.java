@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.spi.WarningCollector;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanVariableAllocator;
+import com.facebook.presto.sql.planner.TypeProvider;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.SimplePlanRewriter;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.UnaryOperator;
+
+import static com.facebook.presto.SystemSessionProperties.getSkewedJoinConsumersPerPartition;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_STREAMING;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.REPARTITION;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Marks the remote exchanges of partitioned inner and left joins so that a skewed probe partition can be spread over
+ * several tasks at runtime.
+ * <p>
+ * Every build row is sent to the task of its partition and to the tasks of the following partitions, up to
+ * {@code skewed_join_consumers_per_partition} tasks in total. The producers of the probe side can then send the rows of
+ * a skewed partition to any of these tasks, without having to agree with the build producers on which partitions are
+ * skewed. A probe row is still processed by exactly one task, which has all the build rows of its key, so unmatched
+ * probe rows of a left join are produced once. This does not apply to right and full joins, which would produce the
+ * unmatched build rows once per task, nor to joins whose output is consumed in the same task by nodes that need all
+ * rows of a key, like final aggregations or other joins.
+ */
+public class SplitSkewedJoinPartitions
+        implements PlanOptimizer
+{
+    @Override
+    public PlanNode optimize(PlanNode plan, Session session, TypeProvider types, PlanVariableAllocator variableAllocator, PlanNodeIdAllocator idAllocator, WarningCollector warningCollector)
+    {
+        requireNonNull(plan, "plan is null");
+        requireNonNull(session, "session is null");
+
+        int consumersPerPartition = getSkewedJoinConsumersPerPartition(session);
+        if (consumersPerPartition <= 1) {
+            return plan;
+        }
+        return SimplePlanRewriter.rewriteWith(new Rewriter(consumersPerPartition), plan, false);
+    }
+
+    /**
+     * The context tells whether the nodes between the node and the closest remote exchange above it accept the
+     * rows of a key from several tasks.
+     */
+    private static class Rewriter
+            extends SimplePlanRewriter<Boolean>
+    {
+        private final OptionalInt consumersPerPartition;
+
+        public Rewriter(int consumersPerPartition)
+        {
+            this.consumersPerPartition = OptionalInt.of(consumersPerPartition);
+        }
+
+        @Override
+        public PlanNode visitPlan(PlanNode node, RewriteContext<Boolean> context)
+        {
+            return context.defaultRewrite(node, false);
+        }
+
+        @Override
+        public PlanNode visitProject(ProjectNode node, RewriteContext<Boolean> context)
+        {
+            return context.defaultRewrite(node, context.get());
+        }
+
+        @Override
+        public PlanNode visitFilter(FilterNode node, RewriteContext<Boolean> context)
+        {
+            return context.defaultRewrite(node, context.get());
+        }
+
+        @Override
+        public PlanNode visitAggregation(AggregationNode node, RewriteContext<Boolean> context)
+        {
+            return context.defaultRewrite(node, context.get() && node.getStep() == PARTIAL);
+        }
+
+        @Override
+        public PlanNode visitExchange(ExchangeNode node, RewriteContext<Boolean> context)
+        {
+            return context.defaultRewrite(node, node.getScope().isRemote() || context.get());
+        }
+
+        @Override
+        public PlanNode visitJoin(JoinNode node, RewriteContext<Boolean> context)
+        {
+            JoinNode rewrittenNode = (JoinNode) context.defaultRewrite(node, false);
+            if (!context.get() ||
+                    !rewrittenNode.getDistributionType().equals(Optional.of(PARTITIONED)) ||
+                    (rewrittenNode.getType() != INNER && rewrittenNode.getType() != LEFT) ||
+                    rewrittenNode.getCriteria().isEmpty()) {
+                return rewrittenNode;
+            }
+
+            Optional<PlanNode> probe = markRemoteSource(rewrittenNode.getLeft(), scheme -> scheme
+                    .withSplitSkewedPartitions(true)
+                    .withConsumersPerPartition(consumersPerPartition));
+            Optional<PlanNode> build = markRemoteSource(rewrittenNode.getRight(), scheme -> scheme.withConsumersPerPartition(consumersPerPartition));
+            if (!probe.isPresent() || !build.isPresent()) {
+                return rewrittenNode;
+            }
+            return rewrittenNode.replaceChildren(ImmutableList.of(probe.get(), build.get()));
+        }
+
+        /**
+         * Applies the marker to the hash partitioned remote exchange the join side reads from, when there are only
+         * projections, filters and local exchanges in between.
+         */
+        private static Optional<PlanNode> markRemoteSource(PlanNode node, UnaryOperator<PartitioningScheme> marker)
+        {
+            if (node instanceof ExchangeNode) {
+                ExchangeNode exchange = (ExchangeNode) node;
+                if (exchange.getScope() == LOCAL && exchange.getSources().size() == 1) {
+                    return markRemoteSource(exchange.getSources().get(0), marker)
+                            .map(source -> exchange.replaceChildren(ImmutableList.of(source)));
+                }
+
+                PartitioningScheme scheme = exchange.getPartitioningScheme();
+                if (exchange.getScope() != REMOTE_STREAMING ||
+                        exchange.getType() != REPARTITION ||
+                        !scheme.getPartitioning().getHandle().equals(FIXED_HASH_DISTRIBUTION) ||
+                        scheme.isReplicateNullsAndAny() ||
+                        scheme.isSplitSkewedPartitions() ||
+                        scheme.getConsumersPerPartition().isPresent()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new ExchangeNode(
+                        exchange.getId(),
+                        exchange.getType(),
+                        exchange.getScope(),
+                        marker.apply(scheme),
+                        exchange.getSources(),
+                        exchange.getInputs(),
+                        exchange.isEnsureSourceOrdering(),
+                        exchange.getOrderingScheme()));
+            }
+            if (node instanceof ProjectNode || node instanceof FilterNode) {
+                return markRemoteSource(getOnlyElement(node.getSources()), marker)
+                        .map(source -> node.replaceChildren(ImmutableList.of(source)));
+            }
+            return Optional.empty();
+        }
+    }
+}
@@ -280,7 +280,9 @@ public class SymbolMapper
                 mapAndDistinctVariable(source.getOutputVariables()),
                 scheme.getHashColumn().map(this::map),
                 scheme.isReplicateNullsAndAny(),
-                scheme.getBucketToPartition());
+                scheme.getBucketToPartition(),
+                scheme.isSplitSkewedPartitions(),
+                scheme.getConsumersPerPartition());
     }
 
     private StatisticAggregations map(StatisticAggregations statisticAggregations)
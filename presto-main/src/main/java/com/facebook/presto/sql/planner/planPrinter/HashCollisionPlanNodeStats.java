@@ -29,11 +29,13 @@ public class HashCollisionPlanNodeStats
         extends PlanNodeStats
 {
     private final Map<String, OperatorHashCollisionsStats> operatorHashCollisionsStats;
+    private final long partialAggregationBypassedPositions;
 
     public HashCollisionPlanNodeStats(
             PlanNodeId planNodeId,
             Duration planNodeScheduledTime,
             Duration planNodeCpuTime,
+            DataSize planNodeAllocation,
             long planNodeInputPositions,
             DataSize planNodeInputDataSize,
             long planNodeRawInputPositions,
@@ -43,8 +45,35 @@ public class HashCollisionPlanNodeStats
             Map<String, OperatorInputStats> operatorInputStats,
             Map<String, OperatorHashCollisionsStats> operatorHashCollisionsStats)
     {
-        super(planNodeId, planNodeScheduledTime, planNodeCpuTime, planNodeInputPositions, planNodeInputDataSize, planNodeRawInputPositions, planNodeRawInputDataSize, planNodeOutputPositions, planNodeOutputDataSize, operatorInputStats);
+        this(planNodeId, planNodeScheduledTime, planNodeCpuTime, planNodeAllocation, planNodeInputPositions, planNodeInputDataSize, planNodeRawInputPositions, planNodeRawInputDataSize, planNodeOutputPositions, planNodeOutputDataSize, operatorInputStats, operatorHashCollisionsStats, 0);
+    }
+
+    public HashCollisionPlanNodeStats(
+            PlanNodeId planNodeId,
+            Duration planNodeScheduledTime,
+            Duration planNodeCpuTime,
+            DataSize planNodeAllocation,
+            long planNodeInputPositions,
+            DataSize planNodeInputDataSize,
+            long planNodeRawInputPositions,
+            DataSize planNodeRawInputDataSize,
+            long planNodeOutputPositions,
+            DataSize planNodeOutputDataSize,
+            Map<String, OperatorInputStats> operatorInputStats,
+            Map<String, OperatorHashCollisionsStats> operatorHashCollisionsStats,
+            long partialAggregationBypassedPositions)
+    {
+        super(planNodeId, planNodeScheduledTime, planNodeCpuTime, planNodeAllocation, planNodeInputPositions, planNodeInputDataSize, planNodeRawInputPositions, planNodeRawInputDataSize, planNodeOutputPositions, planNodeOutputDataSize, operatorInputStats);
         this.operatorHashCollisionsStats = requireNonNull(operatorHashCollisionsStats, "operatorHashCollisionsStats is null");
+        this.partialAggregationBypassedPositions = partialAggregationBypassedPositions;
+    }
+
+    /**
+     * Number of input rows passed through a partial aggregation without being aggregated.
+     */
+    public long getPartialAggregationBypassedPositions()
+    {
+        return partialAggregationBypassedPositions;
     }
 
     public Map<String, Double> getOperatorHashCollisionsAverages()
@@ -92,6 +121,7 @@ public class HashCollisionPlanNodeStats
                 merged.getPlanNodeId(),
                 merged.getPlanNodeScheduledTime(),
                 merged.getPlanNodeCpuTime(),
+                merged.getPlanNodeAllocation(),
                 merged.getPlanNodeInputPositions(),
                 merged.getPlanNodeInputDataSize(),
                 merged.getPlanNodeRawInputPositions(),
@@ -99,6 +129,7 @@ public class HashCollisionPlanNodeStats
                 merged.getPlanNodeOutputPositions(),
                 merged.getPlanNodeOutputDataSize(),
                 merged.operatorInputStats,
-                operatorHashCollisionsStats);
+                operatorHashCollisionsStats,
+                partialAggregationBypassedPositions + ((HashCollisionPlanNodeStats) other).getPartialAggregationBypassedPositions());
     }
 }
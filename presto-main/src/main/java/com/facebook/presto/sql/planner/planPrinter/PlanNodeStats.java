@@ -37,6 +37,7 @@ public class PlanNodeStats
 
     private final Duration planNodeScheduledTime;
     private final Duration planNodeCpuTime;
+    private final DataSize planNodeAllocation;
     private final long planNodeInputPositions;
     private final DataSize planNodeInputDataSize;
     private final long planNodeRawInputPositions;
@@ -50,6 +51,7 @@ public class PlanNodeStats
             PlanNodeId planNodeId,
             Duration planNodeScheduledTime,
             Duration planNodeCpuTime,
+            DataSize planNodeAllocation,
             long planNodeInputPositions,
             DataSize planNodeInputDataSize,
             long planNodeRawInputPositions,
@@ -62,6 +64,7 @@ public class PlanNodeStats
 
         this.planNodeScheduledTime = requireNonNull(planNodeScheduledTime, "planNodeScheduledTime is null");
         this.planNodeCpuTime = requireNonNull(planNodeCpuTime, "planNodeCpuTime is null");
+        this.planNodeAllocation = requireNonNull(planNodeAllocation, "planNodeAllocation is null");
         this.planNodeInputPositions = planNodeInputPositions;
         this.planNodeInputDataSize = planNodeInputDataSize;
         this.planNodeRawInputPositions = planNodeRawInputPositions;
@@ -95,6 +98,14 @@ public class PlanNodeStats
         return planNodeCpuTime;
     }
 
+    /**
+     * Bytes allocated by the operators of the node. Only tracked when per operator allocation tracking is enabled.
+     */
+    public DataSize getPlanNodeAllocation()
+    {
+        return planNodeAllocation;
+    }
+
     public Set<String> getOperatorTypes()
     {
         return operatorInputStats.keySet();
@@ -167,6 +178,7 @@ public class PlanNodeStats
                 planNodeId,
                 new Duration(planNodeScheduledTime.toMillis() + other.getPlanNodeScheduledTime().toMillis(), MILLISECONDS),
                 new Duration(planNodeCpuTime.toMillis() + other.getPlanNodeCpuTime().toMillis(), MILLISECONDS),
+                succinctBytes(planNodeAllocation.toBytes() + other.getPlanNodeAllocation().toBytes()),
                 planNodeInputPositions, planNodeInputDataSize,
                 planNodeRawInputPositions, planNodeRawInputDataSize,
                 planNodeOutputPositions, planNodeOutputDataSize,
@@ -15,7 +15,9 @@ package com.facebook.presto.sql.planner.planPrinter;
 
 import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.operator.HashAggregationInfo;
 import com.facebook.presto.operator.HashCollisionsInfo;
+import com.facebook.presto.operator.OperatorInfo;
 import com.facebook.presto.operator.OperatorStats;
 import com.facebook.presto.operator.PipelineStats;
 import com.facebook.presto.operator.TaskStats;
@@ -80,6 +82,8 @@ public class PlanNodeStatsSummarizer
         Map<PlanNodeId, Long> planNodeOutputBytes = new HashMap<>();
         Map<PlanNodeId, Long> planNodeScheduledMillis = new HashMap<>();
         Map<PlanNodeId, Long> planNodeCpuMillis = new HashMap<>();
+        Map<PlanNodeId, Long> planNodeAllocationBytes = new HashMap<>();
+        Map<PlanNodeId, Long> planNodePartialAggregationBypassedPositions = new HashMap<>();
 
         Map<PlanNodeId, Map<String, OperatorInputStats>> operatorInputStats = new HashMap<>();
         Map<PlanNodeId, Map<String, OperatorHashCollisionsStats>> operatorHashCollisionsStats = new HashMap<>();
@@ -106,6 +110,9 @@ public class PlanNodeStatsSummarizer
                 long cpuMillis = operatorStats.getAddInputCpu().toMillis() + operatorStats.getGetOutputCpu().toMillis() + operatorStats.getFinishCpu().toMillis();
                 planNodeCpuMillis.merge(planNodeId, cpuMillis, Long::sum);
 
+                long allocationBytes = operatorStats.getAddInputAllocation().toBytes() + operatorStats.getGetOutputAllocation().toBytes() + operatorStats.getFinishAllocation().toBytes();
+                planNodeAllocationBytes.merge(planNodeId, allocationBytes, Long::sum);
+
                 // A pipeline like hash build before join might link to another "internal" pipelines which provide actual input for this plan node
                 if (operatorStats.getPlanNodeId().equals(inputPlanNode) && !pipelineStats.isInputPipeline()) {
                     continue;
@@ -123,8 +130,15 @@ public class PlanNodeStatsSummarizer
                                         operatorStats.getSumSquaredInputPositions())),
                         (map1, map2) -> mergeMaps(map1, map2, OperatorInputStats::merge));
 
-                if (operatorStats.getInfo() instanceof HashCollisionsInfo) {
-                    HashCollisionsInfo hashCollisionsInfo = (HashCollisionsInfo) operatorStats.getInfo();
+                OperatorInfo operatorInfo = operatorStats.getInfo();
+                if (operatorInfo instanceof HashAggregationInfo) {
+                    HashAggregationInfo hashAggregationInfo = (HashAggregationInfo) operatorInfo;
+                    planNodePartialAggregationBypassedPositions.merge(planNodeId, hashAggregationInfo.getPartialAggregationBypassedPositions(), Long::sum);
+                    operatorInfo = hashAggregationInfo.getHashCollisionsInfo();
+                }
+
+                if (operatorInfo instanceof HashCollisionsInfo) {
+                    HashCollisionsInfo hashCollisionsInfo = (HashCollisionsInfo) operatorInfo;
                     operatorHashCollisionsStats.merge(planNodeId,
                             ImmutableMap.of(
                                     operatorStats.getOperatorType(),
@@ -188,6 +202,7 @@ public class PlanNodeStatsSummarizer
                         planNodeId,
                         new Duration(planNodeScheduledMillis.get(planNodeId), MILLISECONDS),
                         new Duration(planNodeCpuMillis.get(planNodeId), MILLISECONDS),
+                        succinctDataSize(planNodeAllocationBytes.get(planNodeId), BYTE),
                         planNodeInputPositions.get(planNodeId),
                         succinctDataSize(planNodeInputBytes.get(planNodeId), BYTE),
                         planNodeRawInputPositions.get(planNodeId),
@@ -195,13 +210,15 @@ public class PlanNodeStatsSummarizer
                         outputPositions,
                         succinctDataSize(planNodeOutputBytes.getOrDefault(planNodeId, 0L), BYTE),
                         operatorInputStats.get(planNodeId),
-                        operatorHashCollisionsStats.get(planNodeId));
+                        operatorHashCollisionsStats.get(planNodeId),
+                        planNodePartialAggregationBypassedPositions.getOrDefault(planNodeId, 0L));
             }
             else if (windowNodeStats.containsKey(planNodeId)) {
                 nodeStats = new WindowPlanNodeStats(
                         planNodeId,
                         new Duration(planNodeScheduledMillis.get(planNodeId), MILLISECONDS),
                         new Duration(planNodeCpuMillis.get(planNodeId), MILLISECONDS),
+                        succinctDataSize(planNodeAllocationBytes.get(planNodeId), BYTE),
                         planNodeInputPositions.get(planNodeId),
                         succinctDataSize(planNodeInputBytes.get(planNodeId), BYTE),
                         planNodeRawInputPositions.get(planNodeId),
@@ -216,6 +233,7 @@ public class PlanNodeStatsSummarizer
                         planNodeId,
                         new Duration(planNodeScheduledMillis.get(planNodeId), MILLISECONDS),
                         new Duration(planNodeCpuMillis.get(planNodeId), MILLISECONDS),
+                        succinctDataSize(planNodeAllocationBytes.get(planNodeId), BYTE),
                         planNodeInputPositions.get(planNodeId),
                         succinctDataSize(planNodeInputBytes.get(planNodeId), BYTE),
                         planNodeRawInputPositions.get(planNodeId),
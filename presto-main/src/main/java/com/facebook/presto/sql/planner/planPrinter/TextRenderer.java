@@ -113,10 +113,24 @@ public class TextRenderer
                 nodeStats.getPlanNodeScheduledTime().convertToMostSuccinctTimeUnit(),
                 formatDouble(scheduledTimeFraction)));
 
+        // allocation is only tracked when per operator allocation tracking is enabled
+        if (nodeStats.getPlanNodeAllocation().toBytes() > 0) {
+            output.append(format(", Allocated: %s", nodeStats.getPlanNodeAllocation().convertToMostSuccinctDataSize()));
+        }
+
         output.append(format(", Output: %s (%s)\n", formatPositions(nodeStats.getPlanNodeOutputPositions()), nodeStats.getPlanNodeOutputDataSize().toString()));
 
         printDistributions(output, nodeStats);
 
+        if (nodeStats instanceof HashCollisionPlanNodeStats) {
+            long bypassedPositions = ((HashCollisionPlanNodeStats) nodeStats).getPartialAggregationBypassedPositions();
+            if (bypassedPositions > 0) {
+                output.append(format(Locale.US, "Partial aggregation bypassed: %s (%s%% of input)\n",
+                        formatPositions(bypassedPositions),
+                        formatDouble(100.0d * bypassedPositions / nodeStats.getPlanNodeInputPositions())));
+            }
+        }
+
         if (nodeStats instanceof WindowPlanNodeStats) {
             printWindowOperatorStats(output, ((WindowPlanNodeStats) nodeStats).getWindowOperatorStats());
         }
@@ -15,6 +15,7 @@ package com.facebook.presto.execution;
 
 import com.facebook.airlift.stats.TestingGcMonitor;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.cost.StatsAndCosts;
 import com.facebook.presto.execution.NodeTaskMap.PartitionedSplitCountTracker;
@@ -31,6 +32,7 @@ import com.facebook.presto.operator.StageExecutionDescriptor;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.operator.TaskStats;
 import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.SplitWeight;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.spi.memory.MemoryPoolId;
 import com.facebook.presto.spi.plan.PlanNode;
@@ -69,6 +71,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -82,6 +85,7 @@ import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.BROA
 import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static com.facebook.presto.metadata.MetadataUpdates.DEFAULT_METADATA_UPDATES;
+import static com.facebook.presto.spi.SplitWeight.rawValueForStandardSplitCount;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
 import static com.facebook.presto.util.Failures.toFailures;
@@ -182,6 +186,13 @@ public class MockRemoteTaskFactory
         @GuardedBy("this")
         private SettableFuture<?> whenSplitQueueHasSpace = SettableFuture.create();
 
+        @GuardedBy("this")
+        private final Set<Lifespan> completedDriverGroups = new HashSet<>();
+
+        private final List<StateChangeListener<TaskStatus>> statusListeners = new CopyOnWriteArrayList<>();
+
+        private volatile double outputBufferUtilization;
+
         private final PartitionedSplitCountTracker partitionedSplitCountTracker;
 
         public MockRemoteTask(TaskId taskId,
@@ -231,6 +242,7 @@ public class MockRemoteTaskFactory
             splits.putAll(initialSplits);
             this.partitionedSplitCountTracker = requireNonNull(partitionedSplitCountTracker, "partitionedSplitCountTracker is null");
             partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+            partitionedSplitCountTracker.setPartitionedSplitsWeight(getPartitionedSplitsWeight());
             updateSplitQueueSpace();
         }
 
@@ -267,6 +279,8 @@ public class MockRemoteTaskFactory
                             failures,
                             0,
                             0,
+                            0,
+                            0,
                             0.0,
                             false,
                             0,
@@ -280,7 +294,8 @@ public class MockRemoteTaskFactory
                     ImmutableSet.of(),
                     taskContext.getTaskStats(),
                     true,
-                    DEFAULT_METADATA_UPDATES);
+                    DEFAULT_METADATA_UPDATES,
+                    ImmutableMap.of());
         }
 
         @Override
@@ -299,11 +314,13 @@ public class MockRemoteTaskFactory
                     nextTaskInfoVersion.get(),
                     taskStateMachine.getState(),
                     location,
-                    ImmutableSet.of(),
+                    getCompletedDriverGroups(),
                     ImmutableList.of(),
                     stats.getQueuedPartitionedDrivers(),
                     stats.getRunningPartitionedDrivers(),
-                    0.0,
+                    rawValueForStandardSplitCount(stats.getQueuedPartitionedDrivers()),
+                    rawValueForStandardSplitCount(stats.getRunningPartitionedDrivers()),
+                    outputBufferUtilization,
                     false,
                     stats.getPhysicalWrittenDataSizeInBytes(),
                     stats.getUserMemoryReservationInBytes(),
@@ -313,6 +330,25 @@ public class MockRemoteTaskFactory
                     0);
         }
 
+        private synchronized Set<Lifespan> getCompletedDriverGroups()
+        {
+            return ImmutableSet.copyOf(completedDriverGroups);
+        }
+
+        public void completeDriverGroup(Lifespan driverGroup)
+        {
+            synchronized (this) {
+                completedDriverGroups.add(driverGroup);
+            }
+            TaskStatus taskStatus = getTaskStatus();
+            statusListeners.forEach(listener -> listener.stateChanged(taskStatus));
+        }
+
+        public void setOutputBufferUtilization(double outputBufferUtilization)
+        {
+            this.outputBufferUtilization = outputBufferUtilization;
+        }
+
         private synchronized void updateSplitQueueSpace()
         {
             if (getQueuedPartitionedSplitCount() < 9) {
@@ -344,6 +380,7 @@ public class MockRemoteTaskFactory
         {
             splits.clear();
             partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+            partitionedSplitCountTracker.setPartitionedSplitsWeight(getPartitionedSplitsWeight());
             runningDrivers = 0;
             updateSplitQueueSpace();
         }
@@ -372,6 +409,7 @@ public class MockRemoteTaskFactory
                 this.splits.putAll(splits);
             }
             partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
+            partitionedSplitCountTracker.setPartitionedSplitsWeight(getPartitionedSplitsWeight());
             updateSplitQueueSpace();
         }
 
@@ -394,7 +432,7 @@ public class MockRemoteTaskFactory
         @Override
         public void noMoreSplits(PlanNodeId sourceId, Lifespan lifespan)
         {
-            throw new UnsupportedOperationException();
+            // driver groups are completed explicitly, see completeDriverGroup
         }
 
         @Override
@@ -412,6 +450,7 @@ public class MockRemoteTaskFactory
         @Override
         public void addStateChangeListener(StateChangeListener<TaskStatus> stateChangeListener)
         {
+            statusListeners.add(stateChangeListener);
             taskStateMachine.addStateChangeListener(newValue -> stateChangeListener.stateChanged(getTaskStatus()));
         }
 
@@ -429,7 +468,17 @@ public class MockRemoteTaskFactory
         }
 
         @Override
-        public synchronized ListenableFuture<?> whenSplitQueueHasSpace(int threshold)
+        public void addDynamicFilterDomainsListener(StateChangeListener<Map<String, Domain>> stateChangeListener)
+        {
+        }
+
+        @Override
+        public void addDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains)
+        {
+        }
+
+        @Override
+        public synchronized ListenableFuture<?> whenSplitQueueHasSpace(long weightThreshold)
         {
             return nonCancellationPropagating(whenSplitQueueHasSpace);
         }
@@ -471,5 +520,33 @@ public class MockRemoteTaskFactory
             }
             return getPartitionedSplitCount() - runningDrivers;
         }
+
+        @Override
+        public long getPartitionedSplitsWeight()
+        {
+            if (taskStateMachine.getState().isDone()) {
+                return 0;
+            }
+            synchronized (this) {
+                long weight = 0;
+                for (PlanNodeId tableScanPlanNodeId : fragment.getTableScanSchedulingOrder()) {
+                    for (Split split : splits.get(tableScanPlanNodeId)) {
+                        weight = SplitWeight.rawValueSum(weight, split.getSplitWeight());
+                    }
+                }
+                return weight;
+            }
+        }
+
+        @Override
+        public synchronized long getQueuedPartitionedSplitsWeight()
+        {
+            int splitCount = getPartitionedSplitCount();
+            if (splitCount == 0) {
+                return 0;
+            }
+            // the running splits are not tracked individually, so they are assumed to have the average weight
+            return getPartitionedSplitsWeight() * getQueuedPartitionedSplitCount() / splitCount;
+        }
     }
 }
@@ -29,6 +29,7 @@ import com.facebook.presto.metadata.Split;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.HostAddress;
+import com.facebook.presto.spi.SplitWeight;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spi.schedule.NodeSelectionStrategy;
 import com.facebook.presto.testing.TestingTransactionHandle;
@@ -418,6 +419,42 @@ public class TestNodeScheduler
         assertEquals(nodeTaskMap.getPartitionedSplitsOnNode(newNode), 0);
     }
 
+    @Test
+    public void testMaxSplitsWeightPerNode()
+    {
+        TestingTransactionHandle transactionHandle = TestingTransactionHandle.create();
+
+        InternalNode newNode = new InternalNode("other4", URI.create("http://127.0.0.1:14"), NodeVersion.UNKNOWN, false);
+        nodeManager.addNode(CONNECTOR_ID, newNode);
+
+        // splits of twice the standard weight, so half of maxSplitsPerNode uses up the node
+        ImmutableList.Builder<Split> initialSplits = ImmutableList.builder();
+        for (int i = 0; i < 10; i++) {
+            initialSplits.add(new Split(CONNECTOR_ID, transactionHandle, new TestSplitRemote(SplitWeight.fromProportion(2.0))));
+        }
+
+        MockRemoteTaskFactory remoteTaskFactory = new MockRemoteTaskFactory(remoteTaskExecutor, remoteTaskScheduledExecutor);
+        TaskId taskId = new TaskId("test", 1, 0, 1);
+        RemoteTask remoteTask = remoteTaskFactory.createTableScanTask(taskId, newNode, initialSplits.build(), nodeTaskMap.createPartitionedSplitCountTracker(newNode, taskId));
+        nodeTaskMap.addTask(newNode, remoteTask);
+        assertEquals(nodeTaskMap.getPartitionedSplitsOnNode(newNode), 10);
+        assertEquals(nodeTaskMap.getPartitionedSplitsWeightOnNode(newNode), SplitWeight.rawValueForStandardSplitCount(20));
+
+        Set<Split> splits = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            splits.add(new Split(CONNECTOR_ID, transactionHandle, new TestSplitRemote()));
+        }
+        Multimap<InternalNode, Split> assignments = nodeSelector.computeAssignments(splits, ImmutableList.copyOf(taskMap.values())).getAssignments();
+
+        // no split should be assigned to the newNode, as the weight of its splits already reaches maxSplitsPerNode
+        assertFalse(assignments.keySet().contains(newNode));
+
+        remoteTask.abort();
+
+        assertEquals(nodeTaskMap.getPartitionedSplitsOnNode(newNode), 0);
+        assertEquals(nodeTaskMap.getPartitionedSplitsWeightOnNode(newNode), 0);
+    }
+
     @Test
     public void testMaxSplitsPerNodePerTask()
     {
@@ -635,15 +672,27 @@ public class TestNodeScheduler
             implements ConnectorSplit
     {
         private final List<HostAddress> hosts;
+        private final SplitWeight splitWeight;
 
         public TestSplitRemote()
         {
-            this(HostAddress.fromString("127.0.0.1:" + ThreadLocalRandom.current().nextInt(5000)));
+            this(SplitWeight.standard());
+        }
+
+        public TestSplitRemote(SplitWeight splitWeight)
+        {
+            this(HostAddress.fromString("127.0.0.1:" + ThreadLocalRandom.current().nextInt(5000)), splitWeight);
         }
 
         public TestSplitRemote(HostAddress host)
+        {
+            this(host, SplitWeight.standard());
+        }
+
+        private TestSplitRemote(HostAddress host, SplitWeight splitWeight)
         {
             this.hosts = ImmutableList.of(requireNonNull(host, "host is null"));
+            this.splitWeight = requireNonNull(splitWeight, "splitWeight is null");
         }
 
         @Override
@@ -658,6 +707,12 @@ public class TestNodeScheduler
             return hosts;
         }
 
+        @Override
+        public SplitWeight getSplitWeight()
+        {
+            return splitWeight;
+        }
+
         @Override
         public Object getInfo()
         {
@@ -41,6 +41,8 @@ public class TestStageExecutionStats
 
             69,
             31,
+            3,
+            2,
 
             7,
             8,
@@ -110,6 +112,8 @@ public class TestStageExecutionStats
 
         assertEquals(actual.getTotalLifespans(), 69);
         assertEquals(actual.getCompletedLifespans(), 31);
+        assertEquals(actual.getSpeculativeAttempts(), 3);
+        assertEquals(actual.getSpeculativeWins(), 2);
 
         assertEquals(actual.getTotalDrivers(), 7);
         assertEquals(actual.getQueuedDrivers(), 8);
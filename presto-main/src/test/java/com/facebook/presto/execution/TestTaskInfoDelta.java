@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.airlift.json.ObjectMapperProvider;
+import com.facebook.presto.operator.TaskStats;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.joda.time.DateTime;
+import org.testng.annotations.Test;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Optional;
+
+import static com.facebook.presto.execution.TaskInfoDelta.createTaskInfoDelta;
+import static com.facebook.presto.execution.TaskInfoDelta.formatFingerprints;
+import static com.facebook.presto.execution.TaskInfoDelta.parseFingerprints;
+import static com.facebook.presto.operator.TestPipelineStats.EXPECTED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestTaskInfoDelta
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperProvider().get();
+    private static final TaskId TASK_ID = TaskId.valueOf("query.0.0.0");
+
+    @Test
+    public void testFullDelta()
+    {
+        TaskInfo taskInfo = createTaskInfo(new TaskStats(new DateTime(1), null).withPipelines(ImmutableList.of(EXPECTED, EXPECTED.summarize())));
+
+        TaskInfoDelta delta = createTaskInfoDelta(taskInfo, ImmutableList.of(), TestTaskInfoDelta::serializedSize);
+        assertTrue(delta.getTaskStatus().isPresent());
+        assertTrue(delta.getOutputBuffers().isPresent());
+        assertTrue(delta.getStats().isPresent());
+        assertEquals(delta.getPipelines().keySet(), ImmutableSet.of(0, 1));
+        assertEquals(delta.getFingerprints().size(), 5);
+        assertEquals(delta.getOmittedParts(), 0);
+        assertEquals(delta.getOmittedBytes(), 0);
+
+        assertTaskInfoEquals(delta.apply(Optional.empty()), taskInfo);
+    }
+
+    @Test
+    public void testUnchangedParts()
+    {
+        TaskInfo taskInfo = createTaskInfo(new TaskStats(new DateTime(1), null).withPipelines(ImmutableList.of(EXPECTED, EXPECTED.summarize())));
+        TaskInfoDelta previous = createTaskInfoDelta(taskInfo, ImmutableList.of(), TestTaskInfoDelta::serializedSize);
+
+        TaskInfoDelta delta = createTaskInfoDelta(taskInfo, previous.getFingerprints(), TestTaskInfoDelta::serializedSize);
+        assertFalse(delta.getTaskStatus().isPresent());
+        assertFalse(delta.getOutputBuffers().isPresent());
+        assertFalse(delta.getStats().isPresent());
+        assertTrue(delta.getPipelines().isEmpty());
+        assertEquals(delta.getFingerprints(), previous.getFingerprints());
+        assertEquals(delta.getOmittedParts(), 5);
+        assertEquals(
+                delta.getOmittedBytes(),
+                serializedSize(taskInfo.getTaskStatus()) +
+                        serializedSize(taskInfo.getOutputBuffers()) +
+                        serializedSize(taskInfo.getStats().withPipelines(ImmutableList.of())) +
+                        serializedSize(EXPECTED) +
+                        serializedSize(EXPECTED.summarize()));
+
+        assertTaskInfoEquals(delta.apply(Optional.of(taskInfo)), taskInfo);
+    }
+
+    @Test
+    public void testChangedPipeline()
+    {
+        TaskStats stats = new TaskStats(new DateTime(1), null);
+        TaskInfo previousTaskInfo = createTaskInfo(stats.withPipelines(ImmutableList.of(EXPECTED, EXPECTED.summarize())));
+        TaskInfoDelta previous = createTaskInfoDelta(previousTaskInfo, ImmutableList.of(), TestTaskInfoDelta::serializedSize);
+
+        // the second pipeline changes and a third one is added
+        TaskInfo taskInfo = createTaskInfo(stats.withPipelines(ImmutableList.of(EXPECTED, EXPECTED, EXPECTED)));
+        TaskInfoDelta delta = createTaskInfoDelta(taskInfo, previous.getFingerprints(), TestTaskInfoDelta::serializedSize);
+        assertFalse(delta.getTaskStatus().isPresent());
+        assertFalse(delta.getStats().isPresent());
+        assertEquals(delta.getPipelines().keySet(), ImmutableSet.of(1, 2));
+        assertEquals(
+                delta.getOmittedBytes(),
+                serializedSize(taskInfo.getTaskStatus()) +
+                        serializedSize(taskInfo.getOutputBuffers()) +
+                        serializedSize(taskInfo.getStats().withPipelines(ImmutableList.of())) +
+                        serializedSize(EXPECTED));
+
+        assertTaskInfoEquals(delta.apply(Optional.of(previousTaskInfo)), taskInfo);
+    }
+
+    @Test
+    public void testChangedStats()
+    {
+        TaskInfo previousTaskInfo = createTaskInfo(new TaskStats(new DateTime(1), null).withPipelines(ImmutableList.of(EXPECTED)));
+        TaskInfoDelta previous = createTaskInfoDelta(previousTaskInfo, ImmutableList.of(), TestTaskInfoDelta::serializedSize);
+
+        TaskInfo taskInfo = createTaskInfo(new TaskStats(new DateTime(2), null).withPipelines(ImmutableList.of(EXPECTED)));
+        TaskInfoDelta delta = createTaskInfoDelta(taskInfo, previous.getFingerprints(), TestTaskInfoDelta::serializedSize);
+        assertFalse(delta.getTaskStatus().isPresent());
+        assertTrue(delta.getStats().isPresent());
+        assertTrue(delta.getPipelines().isEmpty());
+        assertEquals(delta.getOmittedParts(), 3);
+
+        assertTaskInfoEquals(delta.apply(Optional.of(previousTaskInfo)), taskInfo);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*there is no previous task info")
+    public void testMissingPrevious()
+    {
+        TaskInfo taskInfo = createTaskInfo(new TaskStats(new DateTime(1), null));
+        TaskInfoDelta previous = createTaskInfoDelta(taskInfo, ImmutableList.of(), TestTaskInfoDelta::serializedSize);
+
+        createTaskInfoDelta(taskInfo, previous.getFingerprints(), TestTaskInfoDelta::serializedSize).apply(Optional.empty());
+    }
+
+    @Test
+    public void testFingerprintsRoundTrip()
+    {
+        assertEquals(parseFingerprints(formatFingerprints(ImmutableList.of(1L, -2L, Long.MAX_VALUE))), ImmutableList.of(1L, -2L, Long.MAX_VALUE));
+        assertEquals(parseFingerprints(""), ImmutableList.of());
+    }
+
+    private static TaskInfo createTaskInfo(TaskStats stats)
+    {
+        return TaskInfo.createInitialTask(TASK_ID, URI.create("fake://task/" + TASK_ID), ImmutableList.of(), stats);
+    }
+
+    private static void assertTaskInfoEquals(TaskInfo actual, TaskInfo expected)
+    {
+        // the parts of a task info do not implement equals, so compare their serialized form
+        assertEquals(new String(serialize(actual)), new String(serialize(expected)));
+    }
+
+    private static long serializedSize(Object value)
+    {
+        return serialize(value).length;
+    }
+
+    private static byte[] serialize(Object value)
+    {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(value);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
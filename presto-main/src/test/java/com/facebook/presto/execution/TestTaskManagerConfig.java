@@ -40,6 +40,7 @@ public class TestTaskManagerConfig
                 .setStatusRefreshMaxWait(new Duration(1, TimeUnit.SECONDS))
                 .setInfoUpdateInterval(new Duration(3, TimeUnit.SECONDS))
                 .setInfoRefreshMaxWait(new Duration(0, TimeUnit.SECONDS))
+                .setInfoDeltaEnabled(false)
                 .setPerOperatorCpuTimerEnabled(true)
                 .setTaskCpuTimerEnabled(true)
                 .setPerOperatorAllocationTrackingEnabled(false)
@@ -66,6 +67,8 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(5)
                 .setTaskYieldThreads(3)
                 .setLevelTimeMultiplier(new BigDecimal("2"))
+                .setSplitQueueCount(1)
+                .setSplitQueuePinningEnabled(false)
                 .setStatisticsCpuTimerEnabled(true)
                 .setLegacyLifespanCompletionCondition(false)
                 .setTaskPriorityTracking(TASK_FAIR));
@@ -80,6 +83,7 @@ public class TestTaskManagerConfig
                 .put("task.status-refresh-max-wait", "2s")
                 .put("task.info-update-interval", "2s")
                 .put("experimental.task.info-update-refresh-max-wait", "3s")
+                .put("task.info-delta-enabled", "true")
                 .put("task.per-operator-cpu-timer-enabled", "false")
                 .put("task.cpu-timer-enabled", "false")
                 .put("task.per-operator-allocation-tracking-enabled", "true")
@@ -106,6 +110,8 @@ public class TestTaskManagerConfig
                 .put("task.task-notification-threads", "13")
                 .put("task.task-yield-threads", "8")
                 .put("task.level-time-multiplier", "2.1")
+                .put("task.split-queue-count", "2")
+                .put("task.split-queue-pinning-enabled", "true")
                 .put("task.statistics-cpu-timer-enabled", "false")
                 .put("task.legacy-lifespan-completion-condition", "true")
                 .put("task.task-priority-tracking", "QUERY_FAIR")
@@ -117,6 +123,7 @@ public class TestTaskManagerConfig
                 .setStatusRefreshMaxWait(new Duration(2, TimeUnit.SECONDS))
                 .setInfoUpdateInterval(new Duration(2, TimeUnit.SECONDS))
                 .setInfoRefreshMaxWait(new Duration(3, TimeUnit.SECONDS))
+                .setInfoDeltaEnabled(true)
                 .setPerOperatorCpuTimerEnabled(false)
                 .setTaskCpuTimerEnabled(false)
                 .setPerOperatorAllocationTrackingEnabled(true)
@@ -143,6 +150,8 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(13)
                 .setTaskYieldThreads(8)
                 .setLevelTimeMultiplier(new BigDecimal("2.1"))
+                .setSplitQueueCount(2)
+                .setSplitQueuePinningEnabled(true)
                 .setStatisticsCpuTimerEnabled(false)
                 .setLegacyLifespanCompletionCondition(true)
                 .setTaskPriorityTracking(QUERY_FAIR);
@@ -66,6 +66,8 @@ public class TestThriftTaskStatus
     public static final Set<Lifespan> LIFESPANS = ImmutableSet.of(Lifespan.taskWide(), Lifespan.driverGroup(100));
     public static final int QUEUED_PARTITIONED_DRIVERS = 100;
     public static final int RUNNING_PARTITIONED_DRIVERS = 200;
+    public static final long QUEUED_PARTITIONED_SPLITS_WEIGHT = 550;
+    public static final long RUNNING_PARTITIONED_SPLITS_WEIGHT = 1250;
     public static final double OUTPUT_BUFFER_UTILIZATION = 99.9;
     public static final boolean OUTPUT_BUFFER_OVERUTILIZED = true;
     public static final int PHYSICAL_WRITTEN_DATA_SIZE_IN_BYTES = 1024 * 1024;
@@ -128,6 +130,8 @@ public class TestThriftTaskStatus
         assertEquals(taskStatus.getCompletedDriverGroups(), LIFESPANS);
         assertEquals(taskStatus.getQueuedPartitionedDrivers(), QUEUED_PARTITIONED_DRIVERS);
         assertEquals(taskStatus.getRunningPartitionedDrivers(), RUNNING_PARTITIONED_DRIVERS);
+        assertEquals(taskStatus.getQueuedPartitionedSplitsWeight(), QUEUED_PARTITIONED_SPLITS_WEIGHT);
+        assertEquals(taskStatus.getRunningPartitionedSplitsWeight(), RUNNING_PARTITIONED_SPLITS_WEIGHT);
         assertEquals(taskStatus.getOutputBufferUtilization(), OUTPUT_BUFFER_UTILIZATION);
         assertEquals(taskStatus.isOutputBufferOverutilized(), OUTPUT_BUFFER_OVERUTILIZED);
         assertEquals(taskStatus.getPhysicalWrittenDataSizeInBytes(), PHYSICAL_WRITTEN_DATA_SIZE_IN_BYTES);
@@ -188,6 +192,8 @@ public class TestThriftTaskStatus
                 executionFailureInfos,
                 QUEUED_PARTITIONED_DRIVERS,
                 RUNNING_PARTITIONED_DRIVERS,
+                QUEUED_PARTITIONED_SPLITS_WEIGHT,
+                RUNNING_PARTITIONED_SPLITS_WEIGHT,
                 OUTPUT_BUFFER_UTILIZATION,
                 OUTPUT_BUFFER_OVERUTILIZED,
                 PHYSICAL_WRITTEN_DATA_SIZE_IN_BYTES,
@@ -13,11 +13,13 @@
  */
 package com.facebook.presto.execution.buffer;
 
+import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
@@ -25,14 +27,17 @@ import org.testng.annotations.Test;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
 {
@@ -107,6 +112,61 @@ public class TestPagesSerde
         assertEquals(secondValueSize, 4 + 3); // length + "bob" (null shared with first entry)
     }
 
+    @Test
+    public void testRoundTripWithCompressionCodecs()
+    {
+        Page page = compressiblePage();
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), codec, false).createPagesSerde();
+            SerializedPage serializedPage = serde.serialize(page);
+            assertEquals(COMPRESSED.isSet(serializedPage.getPageCodecMarkers()), codec != CompressionCodec.NONE, codec.name());
+            assertPageEquals(ImmutableList.of(VARCHAR), serde.deserialize(serializedPage), page);
+        }
+    }
+
+    @Test
+    public void testAdaptiveCompression()
+    {
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.LZ4, true).createPagesSerde();
+        Random random = new Random(0);
+        for (int i = 0; i < 8; i++) {
+            assertFalse(isCompressed(serde, BIGINT, randomPage(random)));
+        }
+
+        // compression is skipped even for pages that would compress well, until the next sample
+        Page compressiblePage = compressiblePage();
+        for (int i = 0; i < 16; i++) {
+            assertFalse(isCompressed(serde, VARCHAR, compressiblePage));
+        }
+        assertTrue(isCompressed(serde, VARCHAR, compressiblePage));
+        assertTrue(isCompressed(serde, VARCHAR, compressiblePage));
+    }
+
+    private static boolean isCompressed(PagesSerde serde, Type type, Page page)
+    {
+        SerializedPage serializedPage = serde.serialize(page);
+        assertPageEquals(ImmutableList.of(type), serde.deserialize(serializedPage), page);
+        return COMPRESSED.isSet(serializedPage.getPageCodecMarkers());
+    }
+
+    private static Page compressiblePage()
+    {
+        BlockBuilder builder = VARCHAR.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            VARCHAR.writeString(builder, "value " + (i % 10));
+        }
+        return new Page(builder.build());
+    }
+
+    private static Page randomPage(Random random)
+    {
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(builder, random.nextLong());
+        }
+        return new Page(builder.build());
+    }
+
     private static int serializedSize(List<? extends Type> types, Page expectedPage)
     {
         PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
@@ -0,0 +1,364 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.execution.StateMachine;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.memory.context.SimpleLocalMemoryContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempDataSink;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.spi.storage.TempStorageHandle;
+import com.facebook.presto.storage.TempStorageManager;
+import com.facebook.presto.testing.TestingTempStorageManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractListeningExecutorService;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.execution.buffer.BufferResult.emptyResults;
+import static com.facebook.presto.execution.buffer.BufferState.OPEN;
+import static com.facebook.presto.execution.buffer.BufferState.TERMINAL_BUFFER_STATES;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.MAX_WAIT;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.NO_WAIT;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.addPage;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.assertBufferResultEquals;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.assertFinished;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.createBufferResult;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.createPage;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.getBufferResult;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.getFuture;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.sizeOfPages;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BROADCAST_PARTITION_ID;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
+import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
+import static com.facebook.presto.execution.buffer.SpoolingOutputBuffer.OUTPUT_BUFFER_ID;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.facebook.presto.spiller.LocalTempStorage.NAME;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestSpoolingOutputBuffer
+{
+    private static final String TASK_INSTANCE_ID = "task-instance-id";
+    private static final TaskId TASK_ID = new TaskId("query", 0, 0, 0);
+
+    private static final ImmutableList<BigintType> TYPES = ImmutableList.of(BIGINT);
+
+    private ScheduledExecutorService stateNotificationExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        stateNotificationExecutor = newScheduledThreadPool(5, daemonThreadsNamed("test-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        if (stateNotificationExecutor != null) {
+            stateNotificationExecutor.shutdownNow();
+            stateNotificationExecutor = null;
+        }
+    }
+
+    @Test
+    public void testSimple()
+    {
+        SpoolingOutputBuffer buffer = createSpoolingBuffer(sizeOfPages(10), sizeOfPages(100));
+
+        for (int i = 0; i < 3; i++) {
+            addPage(buffer, createPage(i));
+        }
+        assertEquals(buffer.getSpooledBytes(), 0);
+
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 0, sizeOfPages(10), NO_WAIT), bufferResult(0, createPage(0), createPage(1), createPage(2)));
+
+        // a read of pages that were not added yet blocks until they are
+        ListenableFuture<BufferResult> future = buffer.get(OUTPUT_BUFFER_ID, 3, sizeOfPages(10));
+        assertFalse(future.isDone());
+        addPage(buffer, createPage(3));
+        assertBufferResultEquals(TYPES, getFuture(future, NO_WAIT), bufferResult(3, createPage(3)));
+
+        buffer.setNoMorePages();
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 4, sizeOfPages(10), NO_WAIT), emptyResults(TASK_INSTANCE_ID, 4, true));
+        assertFalse(buffer.isFinished());
+
+        buffer.abort(OUTPUT_BUFFER_ID);
+        assertFinished(buffer);
+    }
+
+    @Test
+    public void testSpooling()
+    {
+        // every two pages are written to the temp storage, so the buffer never fills up
+        SpoolingOutputBuffer buffer = createSpoolingBuffer(sizeOfPages(3), sizeOfPages(2));
+
+        for (int i = 0; i < 10; i++) {
+            addPage(buffer, createPage(i));
+        }
+        assertTrue(buffer.getSpooledBytes() > 0);
+        assertEquals(buffer.getInfo().getTotalBufferedBytes(), 0);
+
+        // spooled pages are read back a chunk at a time
+        for (int i = 0; i < 10; i += 2) {
+            assertBufferResultEquals(
+                    TYPES,
+                    getBufferResult(buffer, OUTPUT_BUFFER_ID, i, sizeOfPages(10), MAX_WAIT),
+                    bufferResult(i, createPage(i), createPage(i + 1)));
+        }
+
+        buffer.setNoMorePages();
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 10, sizeOfPages(10), MAX_WAIT), emptyResults(TASK_INSTANCE_ID, 10, true));
+        assertEquals(buffer.getInfo().getTotalBufferedBytes(), 0);
+
+        buffer.abort(OUTPUT_BUFFER_ID);
+        assertFinished(buffer);
+    }
+
+    @Test
+    public void testAcknowledgedPagesAreReleased()
+    {
+        SpoolingOutputBuffer buffer = createSpoolingBuffer(sizeOfPages(10), sizeOfPages(3));
+
+        addPage(buffer, createPage(0));
+        addPage(buffer, createPage(1));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 0, sizeOfPages(10), NO_WAIT), bufferResult(0, createPage(0), createPage(1)));
+        buffer.acknowledge(OUTPUT_BUFFER_ID, 2);
+        assertEquals(buffer.getInfo().getTotalBufferedBytes(), 0);
+
+        // acknowledged pages do not count towards the spooling threshold
+        addPage(buffer, createPage(2));
+        addPage(buffer, createPage(3));
+        assertEquals(buffer.getSpooledBytes(), 0);
+        addPage(buffer, createPage(4));
+        assertTrue(buffer.getSpooledBytes() > 0);
+
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 2, sizeOfPages(10), MAX_WAIT), bufferResult(2, createPage(2), createPage(3), createPage(4)));
+    }
+
+    @Test
+    public void testDestroy()
+    {
+        SpoolingOutputBuffer buffer = createSpoolingBuffer(sizeOfPages(10), sizeOfPages(2));
+
+        for (int i = 0; i < 5; i++) {
+            addPage(buffer, createPage(i));
+        }
+        buffer.destroy();
+        assertFinished(buffer);
+        assertEquals(buffer.getInfo().getTotalBufferedBytes(), 0);
+
+        // pages added after the buffer is destroyed are ignored
+        addPage(buffer, createPage(5));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, OUTPUT_BUFFER_ID, 0, sizeOfPages(10), NO_WAIT), emptyResults(TASK_INSTANCE_ID, 0, true));
+    }
+
+    @Test
+    public void testLoadFailure()
+    {
+        FailingTempStorageManager tempStorageManager = new FailingTempStorageManager();
+        QueuedExecutorService executor = new QueuedExecutorService();
+        SpoolingOutputBuffer buffer = createSpoolingBuffer(sizeOfPages(10), sizeOfPages(2), tempStorageManager, executor);
+
+        for (int i = 0; i < 4; i++) {
+            addPage(buffer, createPage(i));
+        }
+        executor.runAll();
+        assertEquals(buffer.getInfo().getTotalBufferedBytes(), 0);
+
+        // each read loads another chunk
+        ListenableFuture<BufferResult> firstChunk = buffer.get(OUTPUT_BUFFER_ID, 0, sizeOfPages(10));
+        ListenableFuture<BufferResult> secondChunk = buffer.get(OUTPUT_BUFFER_ID, 2, sizeOfPages(10));
+
+        // only the read of the chunk that failed to load fails
+        tempStorageManager.failNextOpen();
+        executor.runNext();
+        assertTrue(firstChunk.isDone());
+        try {
+            getFutureValue(firstChunk);
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), GENERIC_INTERNAL_ERROR.toErrorCode());
+        }
+        assertFalse(secondChunk.isDone());
+
+        executor.runNext();
+        assertBufferResultEquals(TYPES, getFuture(secondChunk, NO_WAIT), bufferResult(2, createPage(2), createPage(3)));
+
+        // the reader retries, which loads the chunk again
+        ListenableFuture<BufferResult> retry = buffer.get(OUTPUT_BUFFER_ID, 0, sizeOfPages(10));
+        executor.runAll();
+        assertBufferResultEquals(TYPES, getFuture(retry, NO_WAIT), bufferResult(0, createPage(0), createPage(1)));
+    }
+
+    private SpoolingOutputBuffer createSpoolingBuffer(DataSize maxBufferSize, DataSize spoolingThreshold)
+    {
+        return createSpoolingBuffer(maxBufferSize, spoolingThreshold, new TestingTempStorageManager(), newDirectExecutorService());
+    }
+
+    private SpoolingOutputBuffer createSpoolingBuffer(DataSize maxBufferSize, DataSize spoolingThreshold, TempStorageManager tempStorageManager, ListeningExecutorService executor)
+    {
+        SpoolingOutputBufferFactory factory = new SpoolingOutputBufferFactory(tempStorageManager, NAME, spoolingThreshold, executor);
+        SpoolingOutputBuffer buffer = factory.create(
+                TASK_ID,
+                TASK_INSTANCE_ID,
+                new StateMachine<>("bufferState", stateNotificationExecutor, OPEN, TERMINAL_BUFFER_STATES),
+                maxBufferSize,
+                () -> new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test"),
+                stateNotificationExecutor);
+        buffer.setOutputBuffers(createInitialEmptyOutputBuffers(SPOOLING)
+                .withBuffer(OUTPUT_BUFFER_ID, BROADCAST_PARTITION_ID)
+                .withNoMoreBufferIds());
+        buffer.registerLifespanCompletionCallback(ignore -> {});
+        return buffer;
+    }
+
+    private static BufferResult bufferResult(long token, Page firstPage, Page... otherPages)
+    {
+        List<Page> pages = ImmutableList.<Page>builder().add(firstPage).add(otherPages).build();
+        return createBufferResult(TASK_INSTANCE_ID, token, pages);
+    }
+
+    private static class FailingTempStorageManager
+            extends TestingTempStorageManager
+    {
+        private final AtomicBoolean failNextOpen = new AtomicBoolean();
+
+        public void failNextOpen()
+        {
+            failNextOpen.set(true);
+        }
+
+        @Override
+        public TempStorage getTempStorage(String name)
+        {
+            TempStorage tempStorage = super.getTempStorage(name);
+            return new TempStorage()
+            {
+                @Override
+                public void initialize()
+                        throws IOException
+                {
+                    tempStorage.initialize();
+                }
+
+                @Override
+                public TempDataSink create(TempDataOperationContext context)
+                        throws IOException
+                {
+                    return tempStorage.create(context);
+                }
+
+                @Override
+                public InputStream open(TempDataOperationContext context, TempStorageHandle handle)
+                        throws IOException
+                {
+                    if (failNextOpen.getAndSet(false)) {
+                        throw new IOException("open failed");
+                    }
+                    return tempStorage.open(context, handle);
+                }
+
+                @Override
+                public void remove(TempDataOperationContext context, TempStorageHandle handle)
+                        throws IOException
+                {
+                    tempStorage.remove(context, handle);
+                }
+            };
+        }
+    }
+
+    /**
+     * Runs the submitted tasks on the calling thread when the test asks for it.
+     */
+    private static class QueuedExecutorService
+            extends AbstractListeningExecutorService
+    {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        public void runNext()
+        {
+            tasks.remove().run();
+        }
+
+        public void runAll()
+        {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            return ImmutableList.of();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+        {
+            return false;
+        }
+    }
+}
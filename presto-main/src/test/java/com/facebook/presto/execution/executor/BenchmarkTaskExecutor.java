@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.executor;
+
+import com.facebook.presto.execution.SplitRunner;
+import com.facebook.presto.execution.TaskId;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.TASK_FAIR;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Measures the throughput of the task executor when a large number of short splits compete for the runner threads,
+ * which makes taking splits from and returning them to the split queue the dominant cost.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkTaskExecutor
+{
+    private static final int RUNNER_THREADS = 32;
+    private static final int SPLITS = 1_000;
+    private static final int QUANTA_PER_SPLIT = 100;
+
+    private static final AtomicInteger NEXT_TASK_ID = new AtomicInteger();
+
+    @Benchmark
+    @OperationsPerInvocation(SPLITS * QUANTA_PER_SPLIT)
+    public Object runSplits(BenchmarkData data)
+            throws Exception
+    {
+        TaskExecutor taskExecutor = data.getTaskExecutor();
+        TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, NEXT_TASK_ID.getAndIncrement()), () -> 0, SPLITS, new Duration(1, MILLISECONDS), OptionalInt.empty());
+        try {
+            ImmutableList.Builder<SplitRunner> splits = ImmutableList.builder();
+            for (int i = 0; i < SPLITS; i++) {
+                splits.add(new BusySplit(data.getWorkPerQuanta()));
+            }
+            // intermediate splits are started right away, so all of them are competing for the runner threads
+            List<ListenableFuture<?>> finished = taskExecutor.enqueueSplits(taskHandle, true, splits.build());
+            return Futures.allAsList(finished).get();
+        }
+        finally {
+            taskExecutor.removeTask(taskHandle);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"1", "2", "4"})
+        private int runQueueCount = 1;
+
+        @Param({"false", "true"})
+        private boolean pinSplits;
+
+        @Param({"10", "1000"})
+        private int workPerQuanta = 10;
+
+        private TaskExecutor taskExecutor;
+
+        @Setup
+        public void setup()
+        {
+            taskExecutor = new TaskExecutor(
+                    RUNNER_THREADS,
+                    RUNNER_THREADS,
+                    1,
+                    SPLITS,
+                    TASK_FAIR,
+                    new MultilevelSplitQueue(2, runQueueCount, pinSplits),
+                    Ticker.systemTicker());
+            taskExecutor.start();
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            taskExecutor.stop();
+        }
+
+        public TaskExecutor getTaskExecutor()
+        {
+            return taskExecutor;
+        }
+
+        public int getWorkPerQuanta()
+        {
+            return workPerQuanta;
+        }
+    }
+
+    private static class BusySplit
+            implements SplitRunner
+    {
+        private final int workPerQuanta;
+        private int completedQuanta;
+        private long result;
+
+        private BusySplit(int workPerQuanta)
+        {
+            this.workPerQuanta = workPerQuanta;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            for (int i = 0; i < workPerQuanta; i++) {
+                result = result * 31 + i;
+            }
+            completedQuanta++;
+            return immediateFuture(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return completedQuanta >= QUANTA_PER_SPLIT;
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "busy-split-" + result;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    public static void main(String[] args)
+            throws Throwable
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkTaskExecutor.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.execution.executor;
 
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
 import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
@@ -372,6 +374,91 @@ public class TestTaskExecutor
         }
     }
 
+    @Test
+    public void testStealFromOtherRunQueue()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2, false);
+        TestingTicker ticker = new TestingTicker();
+        TaskHandle handle = new TaskHandle(new TaskId("test", 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+
+        // splits that have not run yet are spread over the run queues
+        PrioritizedSplitRunner split0 = createSplitRunner(handle, ticker);
+        PrioritizedSplitRunner split1 = createSplitRunner(handle, ticker);
+        splitQueue.offer(split0);
+        splitQueue.offer(split1);
+        assertEquals(splitQueue.getRunQueueSize(0), 1);
+        assertEquals(splitQueue.getRunQueueSize(1), 1);
+
+        assertEquals(splitQueue.take(0), split0);
+        assertEquals(splitQueue.take(0), split1);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        assertEquals(splitQueue.size(), 0);
+
+        // a split that ran is returned to the run queue of the thread that ran it
+        splitQueue.offer(split1);
+        assertEquals(splitQueue.getRunQueueSize(0), 1);
+
+        // and moves to the run queue of the thread that stole it
+        assertEquals(splitQueue.take(1), split1);
+        splitQueue.offer(split1);
+        assertEquals(splitQueue.getRunQueueSize(1), 1);
+    }
+
+    @Test
+    public void testPinnedSplitsAreNotStolen()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2, true);
+        TestingTicker ticker = new TestingTicker();
+        TaskHandle handle = new TaskHandle(new TaskId("test", 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+
+        PrioritizedSplitRunner pinned = createSplitRunner(handle, ticker);
+        splitQueue.offer(pinned);
+        assertEquals(splitQueue.take(0), pinned);
+        splitQueue.offer(pinned);
+
+        PrioritizedSplitRunner split1 = createSplitRunner(handle, ticker);
+        PrioritizedSplitRunner split2 = createSplitRunner(handle, ticker);
+        splitQueue.offer(split1);
+        splitQueue.offer(split2);
+        assertEquals(splitQueue.getRunQueueSize(0), 2);
+        assertEquals(splitQueue.getRunQueueSize(1), 1);
+
+        assertEquals(splitQueue.take(1), split1);
+        // the pinned split has the lowest priority, but only splits that have not run yet can be stolen
+        assertEquals(splitQueue.take(1), split2);
+        assertEquals(splitQueue.getRunQueueSize(0), 1);
+
+        // a stolen split stays pinned to the run queue of the thread that stole it
+        splitQueue.offer(split2);
+        assertEquals(splitQueue.getRunQueueSize(1), 1);
+        assertEquals(splitQueue.take(0), pinned);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testPinnedSplitsRunAfterRunnerInterrupt()
+            throws Exception
+    {
+        // with one runner thread per run queue, a run queue left without a runner would never run the splits pinned to it
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2, true);
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(2, 8, 3, 4, TASK_FAIR, splitQueue, ticker);
+        taskExecutor.start();
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+
+            // every quantum interrupts the runner thread, so each split is run by a series of replacement runners
+            List<ListenableFuture<?>> futures = taskExecutor.enqueueSplits(taskHandle, false, ImmutableList.of(new InterruptingJob(20), new InterruptingJob(20)));
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
     @Test(timeOut = 30_000)
     public void testMinMaxDriversPerTask()
     {
@@ -477,6 +564,55 @@ public class TestTaskExecutor
         }
     }
 
+    private static PrioritizedSplitRunner createSplitRunner(TaskHandle handle, TestingTicker ticker)
+    {
+        return new PrioritizedSplitRunner(
+                handle,
+                new TestingJob(ticker, new Phaser(), new Phaser(), new Phaser(), 1, 0),
+                ticker,
+                new CounterStat(),
+                new CounterStat(),
+                new TimeStat(),
+                new TimeStat());
+    }
+
+    private static class InterruptingJob
+            implements SplitRunner
+    {
+        private final int requiredQuanta;
+        private final AtomicInteger completedQuanta = new AtomicInteger();
+
+        public InterruptingJob(int requiredQuanta)
+        {
+            this.requiredQuanta = requiredQuanta;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return completedQuanta.get() >= requiredQuanta;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            completedQuanta.incrementAndGet();
+            Thread.currentThread().interrupt();
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "interrupting-job";
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
     private static class TestingJob
             implements SplitRunner
     {
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.execution.TaskId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+
+public class TestDistributedDynamicFilters
+{
+    private static final TaskId TASK_0 = new TaskId("query", 0, 0, 0);
+    private static final TaskId TASK_1 = new TaskId("query", 0, 0, 1);
+    private static final TaskId TASK_2 = new TaskId("query", 0, 0, 2);
+
+    @Test
+    public void testMergeOnceAllTasksCollected()
+    {
+        List<Map<String, Domain>> delivered = new ArrayList<>();
+        DistributedDynamicFilters filters = new DistributedDynamicFilters(ImmutableSet.of("1", "2"), 100, delivered::add);
+
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L)));
+        filters.noMoreTasks(ImmutableSet.of(TASK_0, TASK_1));
+        assertEquals(delivered, ImmutableList.of());
+
+        filters.addTaskDomains(TASK_1, ImmutableMap.of("1", Domain.singleValue(BIGINT, 2L)));
+        assertEquals(delivered, ImmutableList.of(ImmutableMap.of("1", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 2L)))));
+
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L), "2", Domain.none(BIGINT)));
+        filters.addTaskDomains(TASK_1, ImmutableMap.of("1", Domain.singleValue(BIGINT, 2L), "2", Domain.none(BIGINT)));
+        assertEquals(delivered, ImmutableList.of(
+                ImmutableMap.of("1", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 2L))),
+                ImmutableMap.of("2", Domain.none(BIGINT))));
+    }
+
+    @Test
+    public void testWaitForNoMoreTasks()
+    {
+        List<Map<String, Domain>> delivered = new ArrayList<>();
+        DistributedDynamicFilters filters = new DistributedDynamicFilters(ImmutableSet.of("1"), 100, delivered::add);
+
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L)));
+        assertEquals(delivered, ImmutableList.of());
+
+        filters.noMoreTasks(ImmutableSet.of(TASK_0));
+        assertEquals(delivered, ImmutableList.of(ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L))));
+
+        // further notifications do not deliver the filter again
+        filters.noMoreTasks(ImmutableSet.of(TASK_0));
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L)));
+        assertEquals(delivered.size(), 1);
+    }
+
+    @Test
+    public void testIgnoreOtherFilters()
+    {
+        List<Map<String, Domain>> delivered = new ArrayList<>();
+        DistributedDynamicFilters filters = new DistributedDynamicFilters(ImmutableSet.of("1"), 100, delivered::add);
+
+        filters.noMoreTasks(ImmutableSet.of(TASK_0));
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("2", Domain.singleValue(BIGINT, 1L)));
+        assertEquals(delivered, ImmutableList.of());
+    }
+
+    @Test
+    public void testSimplifyLargeDomains()
+    {
+        List<Map<String, Domain>> delivered = new ArrayList<>();
+        DistributedDynamicFilters filters = new DistributedDynamicFilters(ImmutableSet.of("1"), 2, delivered::add);
+
+        filters.noMoreTasks(ImmutableSet.of(TASK_0, TASK_1, TASK_2));
+        filters.addTaskDomains(TASK_0, ImmutableMap.of("1", Domain.singleValue(BIGINT, 1L)));
+        filters.addTaskDomains(TASK_1, ImmutableMap.of("1", Domain.singleValue(BIGINT, 5L)));
+        filters.addTaskDomains(TASK_2, ImmutableMap.of("1", Domain.singleValue(BIGINT, 3L)));
+
+        assertEquals(delivered, ImmutableList.of(ImmutableMap.of("1", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 1L, true, 5L, true)), false))));
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.client.NodeVersion;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.cost.StatsAndCosts;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.execution.MockRemoteTaskFactory;
+import com.facebook.presto.execution.MockRemoteTaskFactory.MockRemoteTask;
+import com.facebook.presto.execution.NodeTaskMap;
+import com.facebook.presto.execution.SqlStageExecution;
+import com.facebook.presto.execution.StageExecutionId;
+import com.facebook.presto.execution.StageExecutionStats;
+import com.facebook.presto.execution.StageId;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.scheduler.group.DynamicBucketNodeMap;
+import com.facebook.presto.execution.scheduler.nodeSelection.NodeSelectionStats;
+import com.facebook.presto.failureDetector.NoOpFailureDetector;
+import com.facebook.presto.metadata.InMemoryNodeManager;
+import com.facebook.presto.metadata.InternalNode;
+import com.facebook.presto.metadata.Split;
+import com.facebook.presto.operator.StageExecutionDescriptor;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.QueryId;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.connector.ConnectorPartitionHandle;
+import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.split.SplitSource;
+import com.facebook.presto.sql.planner.Partitioning;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
+import com.facebook.presto.testing.TestingMetadata.TestingTableHandle;
+import com.facebook.presto.testing.TestingSplit;
+import com.facebook.presto.testing.TestingTransactionHandle;
+import com.facebook.presto.util.FinalizerService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.PARTITIONED;
+import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
+import static com.facebook.presto.execution.scheduler.TestSourcePartitionedScheduler.OUT;
+import static com.facebook.presto.spi.SplitContext.NON_CACHEABLE;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.lang.Thread.sleep;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestFixedSourcePartitionedScheduler
+{
+    private static final ConnectorId CONNECTOR_ID = new ConnectorId("connector_id");
+    private static final PlanNodeId TABLE_SCAN_NODE_ID = new PlanNodeId("plan_id");
+    private static final int BUCKET_COUNT = 2;
+
+    private final ScheduledExecutorService scheduledExecutor = newScheduledThreadPool(2, daemonThreadsNamed("stageScheduledExecutor-%s"));
+    private final InMemoryNodeManager nodeManager = new InMemoryNodeManager();
+    private final FinalizerService finalizerService = new FinalizerService();
+    private final List<InternalNode> nodes = ImmutableList.of(
+            new InternalNode("other1", URI.create("http://127.0.0.1:11"), NodeVersion.UNKNOWN, false),
+            new InternalNode("other2", URI.create("http://127.0.0.1:12"), NodeVersion.UNKNOWN, false));
+
+    public TestFixedSourcePartitionedScheduler()
+    {
+        nodeManager.addNode(CONNECTOR_ID, nodes);
+    }
+
+    @BeforeClass
+    public void setUp()
+    {
+        finalizerService.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void destroyExecutor()
+    {
+        scheduledExecutor.shutdownNow();
+        finalizerService.destroy();
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSpeculativeCopyFinishesFirst()
+            throws Exception
+    {
+        NodeTaskMap nodeTaskMap = new NodeTaskMap(finalizerService);
+        SqlStageExecution stage = createSqlStageExecution(nodeTaskMap);
+        List<TaskId> canceledTasks = new ArrayList<>();
+        NodeScheduler nodeScheduler = new NodeScheduler(new LegacyNetworkTopology(), nodeManager, new NodeSelectionStats(), new NodeSchedulerConfig().setIncludeCoordinator(false), nodeTaskMap);
+        FixedSourcePartitionedScheduler scheduler = new FixedSourcePartitionedScheduler(
+                stage,
+                ImmutableMap.of(TABLE_SCAN_NODE_ID, new BucketedSplitSource()),
+                StageExecutionDescriptor.recoverableGroupedExecution(ImmutableList.of(TABLE_SCAN_NODE_ID), BUCKET_COUNT),
+                ImmutableList.of(TABLE_SCAN_NODE_ID),
+                nodes,
+                new DynamicBucketNodeMap(split -> split.getLifespan().getId(), BUCKET_COUNT),
+                1000,
+                OptionalInt.of(1),
+                nodeScheduler.createNodeSelector(CONNECTOR_ID),
+                ImmutableList.of(new BucketPartitionHandle(0), new BucketPartitionHandle(1)),
+                OptionalDouble.of(1.0),
+                canceledTasks::add);
+
+        // each task runs one driver group
+        ScheduleResult result = scheduler.schedule();
+        assertEquals(result.getNewTasks().size(), 2);
+        assertEquals(result.getSplitsScheduled(), 2);
+        Map<Integer, MockRemoteTask> tasks = stage.getAllTasks().stream()
+                .collect(toImmutableMap(task -> task.getTaskId().getId(), MockRemoteTask.class::cast));
+        MockRemoteTask fastTask = tasks.get(0);
+        MockRemoteTask slowTask = tasks.get(1);
+
+        // the driver group of the slow task is copied to the fast task, once it has run for longer than the finished one
+        fastTask.completeDriverGroup(Lifespan.driverGroup(0));
+        sleep(10);
+        result = scheduler.schedule();
+        assertEquals(result.getSplitsScheduled(), 1);
+        assertEquals(getStats(stage).getSpeculativeAttempts(), 1);
+        assertFalse(result.isFinished());
+
+        // the copy finishes first, the slow task keeps running until its output has been consumed
+        fastTask.completeDriverGroup(Lifespan.driverGroup(1));
+        assertEquals(getStats(stage).getSpeculativeWins(), 1);
+        slowTask.setOutputBufferUtilization(0.5);
+        result = scheduler.schedule();
+        assertFalse(result.isFinished());
+        result = scheduler.schedule();
+        assertFalse(result.isFinished());
+        assertTrue(result.getBlockedReason().isPresent());
+        assertFalse(result.getBlocked().isDone());
+        assertTrue(canceledTasks.isEmpty());
+
+        // the slow task is canceled once its output has been consumed, which finishes the scheduling
+        slowTask.setOutputBufferUtilization(0);
+        result = scheduler.schedule();
+        assertTrue(result.isFinished());
+        assertEquals(canceledTasks, ImmutableList.of(slowTask.getTaskId()));
+    }
+
+    private static StageExecutionStats getStats(SqlStageExecution stage)
+    {
+        return stage.getStageExecutionInfo().getStats();
+    }
+
+    private SqlStageExecution createSqlStageExecution(NodeTaskMap nodeTaskMap)
+    {
+        VariableReferenceExpression variable = new VariableReferenceExpression("column", VARCHAR);
+        TableScanNode tableScan = new TableScanNode(
+                TABLE_SCAN_NODE_ID,
+                new TableHandle(CONNECTOR_ID, new TestingTableHandle(), TestingTransactionHandle.create(), Optional.empty()),
+                ImmutableList.of(variable),
+                ImmutableMap.of(variable, new TestingColumnHandle("column")),
+                TupleDomain.all(),
+                TupleDomain.all());
+        PlanFragment fragment = new PlanFragment(
+                new PlanFragmentId(0),
+                tableScan,
+                ImmutableSet.of(variable),
+                SOURCE_DISTRIBUTION,
+                ImmutableList.of(TABLE_SCAN_NODE_ID),
+                new PartitioningScheme(Partitioning.create(SINGLE_DISTRIBUTION, ImmutableList.of()), ImmutableList.of(variable)),
+                StageExecutionDescriptor.recoverableGroupedExecution(ImmutableList.of(TABLE_SCAN_NODE_ID), BUCKET_COUNT),
+                false,
+                StatsAndCosts.empty(),
+                Optional.empty());
+
+        // the completed driver groups are reported synchronously
+        SqlStageExecution stage = SqlStageExecution.createSqlStageExecution(
+                new StageExecutionId(new StageId(new QueryId("query"), 0), 0),
+                fragment,
+                new MockRemoteTaskFactory(newDirectExecutorService(), scheduledExecutor),
+                TEST_SESSION,
+                true,
+                nodeTaskMap,
+                newDirectExecutorService(),
+                new NoOpFailureDetector(),
+                new SplitSchedulerStats(),
+                new TableWriteInfo(Optional.empty(), Optional.empty(), Optional.empty()));
+        stage.setOutputBuffers(createInitialEmptyOutputBuffers(PARTITIONED)
+                .withBuffer(OUT, 0)
+                .withNoMoreBufferIds());
+        return stage;
+    }
+
+    // returns a single split for each attempt of a driver group
+    private static class BucketedSplitSource
+            implements SplitSource
+    {
+        private boolean closed;
+
+        @Override
+        public ConnectorId getConnectorId()
+        {
+            return CONNECTOR_ID;
+        }
+
+        @Override
+        public ConnectorTransactionHandle getTransactionHandle()
+        {
+            return TestingTransactionHandle.create();
+        }
+
+        @Override
+        public ListenableFuture<SplitBatch> getNextBatch(ConnectorPartitionHandle partitionHandle, Lifespan lifespan, int maxSize)
+        {
+            Split split = new Split(CONNECTOR_ID, getTransactionHandle(), TestingSplit.createRemoteSplit(), lifespan, NON_CACHEABLE);
+            return immediateFuture(new SplitBatch(ImmutableList.of(split), true));
+        }
+
+        @Override
+        public void rewind(ConnectorPartitionHandle partitionHandle)
+        {
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            closed = true;
+        }
+
+        @Override
+        public synchronized boolean isFinished()
+        {
+            return closed;
+        }
+    }
+
+    private static class BucketPartitionHandle
+            extends ConnectorPartitionHandle
+    {
+        private final int bucket;
+
+        public BucketPartitionHandle(int bucket)
+        {
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketPartitionHandle)) {
+                return false;
+            }
+            BucketPartitionHandle that = (BucketPartitionHandle) o;
+            return bucket == that.bucket;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(bucket);
+        }
+    }
+}
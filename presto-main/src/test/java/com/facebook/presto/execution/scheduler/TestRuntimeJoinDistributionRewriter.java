@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.cost.StatsAndCosts;
+import com.facebook.presto.execution.scheduler.RuntimeJoinDistributionRewriter.ExchangeSize;
+import com.facebook.presto.execution.scheduler.RuntimeJoinDistributionRewriter.Result;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.ConnectorTableHandle;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.connector.ConnectorPartitioningHandle;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.Partitioning;
+import com.facebook.presto.sql.planner.PartitioningHandle;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
+import com.facebook.presto.testing.TestingMetadata.TestingTableHandle;
+import com.facebook.presto.testing.TestingTransactionHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
+import static com.facebook.presto.operator.StageExecutionDescriptor.ungroupedExecution;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_BROADCAST_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.gatheringExchange;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestRuntimeJoinDistributionRewriter
+{
+    private static final ConnectorTableHandle PROBE_TABLE = new TestingTableHandle(new SchemaTableName("tmp", "probe"));
+    private static final ConnectorTableHandle BUILD_TABLE = new TestingTableHandle(new SchemaTableName("tmp", "build"));
+    private static final PartitioningHandle TEMPORARY_TABLE_PARTITIONING = new PartitioningHandle(
+            Optional.of(new ConnectorId("test")),
+            Optional.empty(),
+            new ConnectorPartitioningHandle() {});
+    private static final PlanFragmentId BUILD_FRAGMENT_ID = new PlanFragmentId(10);
+
+    private final PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+    private final PlanBuilder planBuilder = new PlanBuilder(testSessionBuilder().build(), idAllocator, createTestMetadataManager());
+    private final RuntimeJoinDistributionRewriter rewriter = new RuntimeJoinDistributionRewriter(
+            testSessionBuilder().build(),
+            createTestFunctionAndTypeManager(),
+            idAllocator,
+            new DataSize(100, MEGABYTE));
+
+    @Test
+    public void testSwitchToBroadcast()
+    {
+        JoinNode join = join(INNER);
+        PlanNode buildScan = join.getRight().getSources().get(0);
+
+        Optional<Result> result = rewriter.rewrite(createFragment(join), exchangeSizes(new DataSize(10, GIGABYTE), new DataSize(10, MEGABYTE)), () -> BUILD_FRAGMENT_ID);
+        assertTrue(result.isPresent());
+
+        PlanFragment buildFragment = result.get().getBuildFragment();
+        assertEquals(buildFragment.getId(), BUILD_FRAGMENT_ID);
+        assertEquals(buildFragment.getRoot(), buildScan);
+        assertEquals(buildFragment.getPartitioning(), SOURCE_DISTRIBUTION);
+        assertEquals(buildFragment.getPartitioningScheme().getPartitioning().getHandle(), FIXED_BROADCAST_DISTRIBUTION);
+
+        PlanFragment probeFragment = result.get().getProbeFragment();
+        assertEquals(probeFragment.getId(), new PlanFragmentId(1));
+        assertEquals(probeFragment.getPartitioning(), SOURCE_DISTRIBUTION);
+        JoinNode broadcastJoin = (JoinNode) probeFragment.getRoot();
+        assertEquals(broadcastJoin.getDistributionType(), Optional.of(REPLICATED));
+        assertEquals(broadcastJoin.getLeft(), join.getLeft());
+
+        // the local exchange of the build side stays in the join fragment
+        assertTrue(broadcastJoin.getRight() instanceof ExchangeNode);
+        RemoteSourceNode remoteSource = (RemoteSourceNode) broadcastJoin.getRight().getSources().get(0);
+        assertEquals(remoteSource.getSourceFragmentIds(), ImmutableList.of(BUILD_FRAGMENT_ID));
+        assertEquals(probeFragment.getRemoteSourceNodes(), ImmutableList.of(remoteSource));
+
+        assertEquals(result.get().getJoinId(), join.getId());
+        assertEquals(result.get().getBuildSize().getDataSize(), new DataSize(10, MEGABYTE));
+    }
+
+    @Test
+    public void testBuildSideTooLarge()
+    {
+        PlanFragment fragment = createFragment(join(INNER));
+        assertFalse(rewriter.rewrite(fragment, exchangeSizes(new DataSize(10, GIGABYTE), new DataSize(1, GIGABYTE)), () -> BUILD_FRAGMENT_ID).isPresent());
+        assertFalse(rewriter.rewrite(fragment, exchangeSizes(new DataSize(1, MEGABYTE), new DataSize(10, MEGABYTE)), () -> BUILD_FRAGMENT_ID).isPresent());
+    }
+
+    @Test
+    public void testSizeUnknown()
+    {
+        PlanFragment fragment = createFragment(join(INNER));
+        Map<ConnectorTableHandle, ExchangeSize> exchangeSizes = ImmutableMap.of(BUILD_TABLE, new ExchangeSize(10, new DataSize(10, MEGABYTE)));
+        assertFalse(rewriter.rewrite(fragment, exchangeSizes, () -> BUILD_FRAGMENT_ID).isPresent());
+    }
+
+    @Test
+    public void testUnsupportedJoinType()
+    {
+        assertFalse(rewriter.rewrite(createFragment(join(FULL)), exchangeSizes(new DataSize(10, GIGABYTE), new DataSize(10, MEGABYTE)), () -> BUILD_FRAGMENT_ID).isPresent());
+    }
+
+    @Test
+    public void testPartitionedParent()
+    {
+        JoinNode join = join(INNER);
+        PlanNode aggregation = planBuilder.aggregation(builder -> builder
+                .source(join)
+                .singleGroupingSet(join.getLeft().getOutputVariables().get(0)));
+        assertFalse(rewriter.rewrite(createFragment(aggregation), exchangeSizes(new DataSize(10, GIGABYTE), new DataSize(10, MEGABYTE)), () -> BUILD_FRAGMENT_ID).isPresent());
+    }
+
+    private JoinNode join(JoinNode.Type type)
+    {
+        VariableReferenceExpression probeKey = planBuilder.variable("probe_key");
+        VariableReferenceExpression buildKey = planBuilder.variable("build_key");
+        TableScanNode probe = planBuilder.tableScan(
+                tableHandle(PROBE_TABLE),
+                ImmutableList.of(probeKey),
+                ImmutableMap.of(probeKey, new TestingColumnHandle("probe_key")));
+        TableScanNode build = planBuilder.tableScan(
+                tableHandle(BUILD_TABLE),
+                ImmutableList.of(buildKey),
+                ImmutableMap.of(buildKey, new TestingColumnHandle("build_key")));
+        return planBuilder.join(
+                type,
+                probe,
+                gatheringExchange(idAllocator.getNextId(), LOCAL, build),
+                ImmutableList.of(new JoinNode.EquiJoinClause(probeKey, buildKey)),
+                ImmutableList.of(probeKey, buildKey),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.of(PARTITIONED),
+                ImmutableMap.of());
+    }
+
+    private static TableHandle tableHandle(ConnectorTableHandle connectorHandle)
+    {
+        return new TableHandle(new ConnectorId("test"), connectorHandle, TestingTransactionHandle.create(), Optional.empty());
+    }
+
+    private static Map<ConnectorTableHandle, ExchangeSize> exchangeSizes(DataSize probeSize, DataSize buildSize)
+    {
+        return ImmutableMap.of(
+                PROBE_TABLE, new ExchangeSize(1000, probeSize),
+                BUILD_TABLE, new ExchangeSize(10, buildSize));
+    }
+
+    private static PlanFragment createFragment(PlanNode root)
+    {
+        return new PlanFragment(
+                new PlanFragmentId(1),
+                root,
+                ImmutableSet.copyOf(root.getOutputVariables()),
+                TEMPORARY_TABLE_PARTITIONING,
+                ImmutableList.of(),
+                new PartitioningScheme(Partitioning.create(TEMPORARY_TABLE_PARTITIONING, ImmutableList.of()), root.getOutputVariables()),
+                ungroupedExecution(),
+                false,
+                StatsAndCosts.empty(),
+                Optional.empty());
+    }
+}
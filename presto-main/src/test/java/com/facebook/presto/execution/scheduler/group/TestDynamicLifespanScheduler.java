@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.execution.scheduler.group;
 
+import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.client.NodeVersion;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.scheduler.BucketNodeMap;
@@ -36,7 +37,10 @@ import java.util.stream.IntStream;
 
 import static com.facebook.presto.spi.schedule.NodeSelectionStrategy.HARD_AFFINITY;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestDynamicLifespanScheduler
 {
@@ -250,6 +254,95 @@ public class TestDynamicLifespanScheduler
         assertEquals(bucketNodeMap.getAssignedNode(9).get(), node2);
     }
 
+    @Test
+    public void testSpeculativeExecution()
+    {
+        TestingTicker ticker = new TestingTicker();
+        DynamicLifespanScheduler lifespanScheduler = new DynamicLifespanScheduler(
+                new DynamicBucketNodeMap(split -> ((TestSplit) split.getConnectorSplit()).getBucketNumber(), BUCKET_COUNT),
+                ImmutableList.of(node1, node2),
+                IntStream.range(0, 10).mapToObj(TestPartitionHandle::new).collect(toImmutableList()),
+                OptionalInt.of(1),
+                ticker);
+        TestingSourceScheduler sourceScheduler = new TestingSourceScheduler();
+        List<SourceScheduler> sourceSchedulers = ImmutableList.of(sourceScheduler);
+        lifespanScheduler.scheduleInitial(sourceScheduler);
+        assertEquals(sourceScheduler.getLastStartedLifespans(), ImmutableList.of(Lifespan.driverGroup(0), Lifespan.driverGroup(1)));
+        lifespanScheduler.onLifespansCompletelyScheduled(sourceScheduler.getLastStartedLifespans());
+        sourceScheduler.getLastStartedLifespans().clear();
+
+        // no speculation while driver groups are waiting to be scheduled
+        assertEquals(lifespanScheduler.speculateSlowTasks(sourceSchedulers, 3.0), 0);
+
+        // task 0 executes all other driver groups, one second each, while task 1 is stuck on driver group 1
+        Lifespan runningDriverGroup = Lifespan.driverGroup(0);
+        for (int i = 0; i < BUCKET_COUNT - 2; i++) {
+            ticker.increment(1, SECONDS);
+            assertEquals(lifespanScheduler.onLifespanExecutionFinished(0, ImmutableList.of(runningDriverGroup)), 0);
+            lifespanScheduler.schedule(sourceScheduler);
+            runningDriverGroup = getOnlyElement(sourceScheduler.getLastStartedLifespans());
+            lifespanScheduler.onLifespansCompletelyScheduled(sourceScheduler.getLastStartedLifespans());
+            sourceScheduler.getLastStartedLifespans().clear();
+        }
+        ticker.increment(1, SECONDS);
+        assertEquals(lifespanScheduler.onLifespanExecutionFinished(0, ImmutableList.of(runningDriverGroup)), 0);
+
+        // driver group 1 has been running for 9 seconds, more than 3 times the median of 1 second
+        assertEquals(lifespanScheduler.speculateSlowTasks(sourceSchedulers, 10.0), 0);
+        assertEquals(lifespanScheduler.speculateSlowTasks(sourceSchedulers, 3.0), 1);
+        assertEquals(sourceScheduler.getLastRewoundLifespans(), ImmutableList.of(Lifespan.driverGroup(1)));
+        assertTrue(lifespanScheduler.getObsoleteSpeculatedTasks().isEmpty());
+
+        // the speculative copy runs on the idle task 0 and finishes first
+        lifespanScheduler.schedule(sourceScheduler);
+        assertEquals(sourceScheduler.getLastStartedLifespans(), ImmutableList.of(Lifespan.driverGroup(1)));
+        ticker.increment(1, SECONDS);
+        assertEquals(lifespanScheduler.onLifespanExecutionFinished(0, ImmutableList.of(Lifespan.driverGroup(1))), 1);
+        assertTrue(lifespanScheduler.allLifespanExecutionFinished());
+
+        // the slow task is no longer needed
+        assertEquals(lifespanScheduler.getObsoleteSpeculatedTasks(), ImmutableList.of(1));
+        lifespanScheduler.onSpeculatedTaskCanceled(1);
+        assertTrue(lifespanScheduler.getObsoleteSpeculatedTasks().isEmpty());
+    }
+
+    @Test
+    public void testSpeculatedTaskFinishesFirst()
+    {
+        TestingTicker ticker = new TestingTicker();
+        DynamicLifespanScheduler lifespanScheduler = new DynamicLifespanScheduler(
+                new DynamicBucketNodeMap(split -> ((TestSplit) split.getConnectorSplit()).getBucketNumber(), BUCKET_COUNT),
+                ImmutableList.of(node1, node2),
+                IntStream.range(0, 10).mapToObj(TestPartitionHandle::new).collect(toImmutableList()),
+                OptionalInt.of(1),
+                ticker);
+        TestingSourceScheduler sourceScheduler = new TestingSourceScheduler();
+        List<SourceScheduler> sourceSchedulers = ImmutableList.of(sourceScheduler);
+        lifespanScheduler.scheduleInitial(sourceScheduler);
+        lifespanScheduler.onLifespansCompletelyScheduled(sourceScheduler.getLastStartedLifespans());
+        sourceScheduler.getLastStartedLifespans().clear();
+
+        Lifespan runningDriverGroup = Lifespan.driverGroup(0);
+        for (int i = 0; i < BUCKET_COUNT - 2; i++) {
+            ticker.increment(1, SECONDS);
+            lifespanScheduler.onLifespanExecutionFinished(0, ImmutableList.of(runningDriverGroup));
+            lifespanScheduler.schedule(sourceScheduler);
+            runningDriverGroup = getOnlyElement(sourceScheduler.getLastStartedLifespans());
+            lifespanScheduler.onLifespansCompletelyScheduled(sourceScheduler.getLastStartedLifespans());
+            sourceScheduler.getLastStartedLifespans().clear();
+        }
+        ticker.increment(1, SECONDS);
+        lifespanScheduler.onLifespanExecutionFinished(0, ImmutableList.of(runningDriverGroup));
+        assertEquals(lifespanScheduler.speculateSlowTasks(sourceSchedulers, 3.0), 1);
+
+        // the slow task finishes before the speculative copy is started, so the copy is dropped
+        assertEquals(lifespanScheduler.onLifespanExecutionFinished(1, ImmutableList.of(Lifespan.driverGroup(1))), 0);
+        assertTrue(lifespanScheduler.allLifespanExecutionFinished());
+        lifespanScheduler.schedule(sourceScheduler);
+        assertTrue(sourceScheduler.getLastStartedLifespans().isEmpty());
+        assertEquals(lifespanScheduler.getObsoleteSpeculatedTasks(), ImmutableList.of(1));
+    }
+
     private static LifespanScheduler getAffinityLifespanScheduler(BucketNodeMap bucketNodeMap)
     {
         return new DynamicLifespanScheduler(
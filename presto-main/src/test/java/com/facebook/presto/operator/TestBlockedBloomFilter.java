@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestBlockedBloomFilter
+{
+    @Test
+    public void testNoFalseNegatives()
+    {
+        int entries = 10_000;
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, entries);
+        for (long value = 0; value < entries; value++) {
+            BIGINT.writeLong(blockBuilder, value * 7);
+        }
+        Block block = blockBuilder.build();
+
+        BlockedBloomFilter bloomFilter = new BlockedBloomFilter(entries);
+        for (int position = 0; position < entries; position++) {
+            bloomFilter.put(BIGINT, block, position);
+        }
+
+        boolean[] mightContain = new boolean[entries];
+        bloomFilter.mightContain(BIGINT, block, entries, mightContain);
+        for (int position = 0; position < entries; position++) {
+            assertTrue(mightContain[position]);
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        int entries = 10_000;
+        BlockedBloomFilter bloomFilter = new BlockedBloomFilter(entries);
+        BlockBuilder blockBuilder = VARCHAR.createBlockBuilder(null, entries);
+        for (int i = 0; i < entries; i++) {
+            VARCHAR.writeSlice(blockBuilder, utf8Slice("value" + i));
+        }
+        Block block = blockBuilder.build();
+        for (int position = 0; position < entries; position++) {
+            bloomFilter.put(VARCHAR, block, position);
+        }
+
+        blockBuilder = VARCHAR.createBlockBuilder(null, entries);
+        for (int i = 0; i < entries; i++) {
+            VARCHAR.writeSlice(blockBuilder, utf8Slice("other" + i));
+        }
+        Block others = blockBuilder.build();
+        boolean[] mightContain = new boolean[entries];
+        bloomFilter.mightContain(VARCHAR, others, entries, mightContain);
+
+        int falsePositives = 0;
+        for (int position = 0; position < entries; position++) {
+            if (mightContain[position]) {
+                falsePositives++;
+            }
+        }
+        // the expected rate is about one percent
+        assertTrue(falsePositives < entries * 0.05, "too many false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testNulls()
+    {
+        BlockedBloomFilter bloomFilter = new BlockedBloomFilter(0);
+        Block block = BIGINT.createBlockBuilder(null, 1).appendNull().build();
+
+        boolean[] mightContain = {true};
+        bloomFilter.mightContain(BIGINT, block, 1, mightContain);
+        assertFalse(mightContain[0]);
+    }
+}
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.airlift.http.client.Request;
 import com.facebook.airlift.http.client.Response;
 import com.facebook.airlift.http.client.testing.TestingHttpClient;
+import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.block.BlockAssertions;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.TaskId;
@@ -35,6 +36,7 @@ import org.testng.annotations.Test;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -54,6 +56,7 @@ import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterrup
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.lang.Math.max;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -148,6 +151,63 @@ public class TestExchangeClient
         assertStatus(status.getPageBufferClientStatuses().get(0), location, "closed", 3, 3, 3, "not scheduled");
     }
 
+    @Test
+    public void testAdaptiveFlowControl()
+    {
+        DataSize bufferCapacity = new DataSize(32, MEGABYTE);
+        DataSize maxResponseSize = new DataSize(10, MEGABYTE);
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+
+        URI location = URI.create("http://localhost:8080");
+        processor.addPage(location, createPage(1));
+        processor.addPage(location, createPage(2));
+        processor.addPage(location, createPage(3));
+        processor.setComplete(location);
+
+        TestingTicker ticker = new TestingTicker();
+        @SuppressWarnings("resource")
+        ExchangeClient exchangeClient = new ExchangeClient(
+                bufferCapacity,
+                maxResponseSize,
+                1,
+                new Duration(1, MINUTES),
+                true,
+                false,
+                0.2,
+                true,
+                new Duration(1, SECONDS),
+                new TestingHttpClient(processor, scheduler),
+                new TestingDriftClient<>(),
+                Optional.empty(),
+                scheduler,
+                new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test"),
+                pageBufferClientCallbackExecutor,
+                ticker);
+
+        exchangeClient.addLocation(location, TaskId.valueOf("queryid.0.0.0"));
+        exchangeClient.noMoreLocations();
+
+        // the drain rate is unknown until the consumer takes pages out of the buffer
+        waitUntilEquals(() -> exchangeClient.getStatus().getBufferedPages(), 3, new Duration(5, SECONDS));
+        assertEquals(exchangeClient.getStatus().getTargetBufferedBytes(), bufferCapacity.toBytes());
+        assertEquals(exchangeClient.getStatus().getDrainedBytesPerSecond(), 0);
+
+        // a consumer that takes a second for a page needs far less than the buffer capacity
+        ticker.increment(1, SECONDS);
+        SerializedPage page = exchangeClient.pollPage();
+        assertPageEquals(page, createPage(1));
+
+        ExchangeClientStatus status = exchangeClient.getStatus();
+        assertEquals(status.getDrainedBytesPerSecond(), page.getRetainedSizeInBytes());
+        assertEquals(status.getTargetBufferedBytes(), max(status.getAverageBytesPerRequest(), DEFAULT_MAX_PAGE_SIZE_IN_BYTES));
+        assertLessThan(status.getTargetBufferedBytes(), bufferCapacity.toBytes());
+
+        assertPageEquals(getNextPage(exchangeClient), createPage(2));
+        assertPageEquals(getNextPage(exchangeClient), createPage(3));
+        assertNull(getNextPage(exchangeClient));
+        assertTrue(exchangeClient.isClosed());
+    }
+
     @Test(timeOut = 10000)
     public void testAddLocation()
             throws Exception
@@ -43,7 +43,10 @@ public class TestExchangeClientConfig
                 .setClientThreads(25)
                 .setAcknowledgePages(true)
                 .setResponseSizeExponentialMovingAverageDecayingAlpha(0.1)
-                .setAsyncPageTransportEnabled(true));
+                .setAsyncPageTransportEnabled(true)
+                .setAdaptiveFlowControlEnabled(false)
+                .setTargetBufferedDuration(new Duration(1, TimeUnit.SECONDS))
+                .setLocalTransportEnabled(false));
     }
 
     @Test
@@ -61,6 +64,9 @@ public class TestExchangeClientConfig
                 .put("exchange.acknowledge-pages", "false")
                 .put("exchange.response-size-exponential-moving-average-decaying-alpha", "0.42")
                 .put("exchange.async-page-transport-enabled", "false")
+                .put("exchange.adaptive-flow-control-enabled", "true")
+                .put("exchange.target-buffered-duration", "5s")
+                .put("exchange.local-transport-enabled", "true")
                 .build();
 
         ExchangeClientConfig expected = new ExchangeClientConfig()
@@ -74,7 +80,10 @@ public class TestExchangeClientConfig
                 .setPageBufferClientMaxCallbackThreads(16)
                 .setAcknowledgePages(false)
                 .setResponseSizeExponentialMovingAverageDecayingAlpha(0.42)
-                .setAsyncPageTransportEnabled(false);
+                .setAsyncPageTransportEnabled(false)
+                .setAdaptiveFlowControlEnabled(true)
+                .setTargetBufferedDuration(new Duration(5, TimeUnit.SECONDS))
+                .setLocalTransportEnabled(true);
 
         assertFullMapping(properties, expected);
     }
@@ -32,7 +32,10 @@ import org.testng.annotations.Test;
 
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
@@ -43,10 +46,12 @@ import static com.facebook.presto.block.BlockAssertions.createStringSequenceBloc
 import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.facebook.presto.type.TypeUtils.getHashBlock;
 import static com.google.common.math.DoubleMath.log2;
+import static java.lang.Math.toIntExact;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
@@ -232,6 +237,98 @@ public class TestGroupByHash
         assertTrue(groupByHash.contains(0, new Page(testValuesBlock, testStringValuesBlock, testHashBlock), hashChannels));
     }
 
+    @Test
+    public void testFixedWidthMultipleColumns()
+    {
+        List<Long> bigintValues = new ArrayList<>();
+        List<Integer> integerValues = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            bigintValues.add(i % 5 == 0 ? null : (long) (i % 50));
+            integerValues.add(i % 7 == 0 ? null : i % 2);
+        }
+        Block bigintBlock = BlockAssertions.createLongsBlock(bigintValues);
+        Block integerBlock = BlockAssertions.createIntsBlock(integerValues);
+        Block hashBlock = TypeUtils.getHashBlock(ImmutableList.of(BIGINT, INTEGER), bigintBlock, integerBlock);
+        Page page = new Page(bigintBlock, integerBlock, hashBlock);
+        int[] hashChannels = {0, 1};
+
+        // start with a tiny hash to force several rehashes
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, ImmutableList.of(BIGINT, INTEGER), hashChannels, Optional.of(2), 4, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof FixedWidthGroupByHash);
+        assertEquals(groupByHash.getTypes(), ImmutableList.of(BIGINT, INTEGER, BIGINT));
+
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        assertTrue(work.process());
+        GroupByIdBlock groupIds = work.getResult();
+
+        // rows with the same key, including null columns, must share a group
+        Map<List<Object>, Long> expectedGroups = new HashMap<>();
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            List<Object> key = Arrays.asList(bigintValues.get(position), integerValues.get(position));
+            long groupId = groupIds.getGroupId(position);
+            assertEquals(expectedGroups.computeIfAbsent(key, ignored -> groupId).longValue(), groupId);
+            assertTrue(groupByHash.contains(position, page, hashChannels));
+        }
+        assertEquals(groupByHash.getGroupCount(), expectedGroups.size());
+
+        PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+        for (int groupId = 0; groupId < groupByHash.getGroupCount(); groupId++) {
+            pageBuilder.declarePosition();
+            groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+        }
+        Page outputPage = pageBuilder.build();
+        for (Map.Entry<List<Object>, Long> entry : expectedGroups.entrySet()) {
+            int groupId = toIntExact(entry.getValue());
+            Long bigintValue = (Long) entry.getKey().get(0);
+            Integer integerValue = (Integer) entry.getKey().get(1);
+            assertEquals(outputPage.getBlock(0).isNull(groupId), bigintValue == null);
+            if (bigintValue != null) {
+                assertEquals(BIGINT.getLong(outputPage.getBlock(0), groupId), bigintValue.longValue());
+            }
+            assertEquals(outputPage.getBlock(1).isNull(groupId), integerValue == null);
+            if (integerValue != null) {
+                assertEquals(INTEGER.getLong(outputPage.getBlock(1), groupId), integerValue.longValue());
+            }
+        }
+
+        // raw hashes must match the hashes computed from the input
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            int groupId = toIntExact(groupIds.getGroupId(position));
+            assertEquals(groupByHash.getRawHash(groupId), BIGINT.getLong(hashBlock, position));
+            assertEquals(BIGINT.getLong(outputPage.getBlock(2), groupId), BIGINT.getLong(hashBlock, position));
+        }
+
+        Block testBigintBlock = BlockAssertions.createLongsBlock(51L);
+        Block testIntegerBlock = BlockAssertions.createIntsBlock(1);
+        Block testHashBlock = TypeUtils.getHashBlock(ImmutableList.of(BIGINT, INTEGER), testBigintBlock, testIntegerBlock);
+        assertFalse(groupByHash.contains(0, new Page(testBigintBlock, testIntegerBlock, testHashBlock), hashChannels));
+    }
+
+    @Test
+    public void testFixedWidthCollidingColumns()
+    {
+        // the keys (i, -31 * i) collide when the columns are combined with a polynomial hash
+        int keyCount = 10_000;
+        List<Long> firstValues = new ArrayList<>();
+        List<Long> secondValues = new ArrayList<>();
+        for (long i = 0; i < keyCount; i++) {
+            firstValues.add(i);
+            secondValues.add(-31 * i);
+        }
+        Block firstBlock = createLongsBlock(firstValues);
+        Block secondBlock = createLongsBlock(secondValues);
+        Page page = new Page(firstBlock, secondBlock, getHashBlock(ImmutableList.of(BIGINT, BIGINT), firstBlock, secondBlock));
+
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, ImmutableList.of(BIGINT, BIGINT), new int[] {0, 1}, Optional.of(2), 100, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof FixedWidthGroupByHash);
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        assertTrue(work.process());
+        assertEquals(groupByHash.getGroupCount(), keyCount);
+
+        // colliding hashes would probe quadratically many slots
+        assertTrue(groupByHash.getHashCollisions() < 10L * keyCount, "too many hash collisions: " + groupByHash.getHashCollisions());
+    }
+
     @Test
     public void testForceRehash()
     {
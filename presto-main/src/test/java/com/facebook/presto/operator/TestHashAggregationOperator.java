@@ -702,6 +702,62 @@ public class TestHashAggregationOperator
         assertEquals(outputPage.getBlock(1).getLong(0), 1L);
     }
 
+    @Test(dataProvider = "hashEnabled")
+    public void testAdaptivePartialAggregation(boolean hashEnabled)
+            throws Exception
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, hashChannels, BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(500, 0)
+                .addSequencePage(500, 500)
+                .addSequencePage(500, 1000)
+                .addSequencePage(500, 1500)
+                .build();
+
+        PartialAggregationController partialAggregationController = new PartialAggregationController(100, 0.5);
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                hashChannels,
+                ImmutableList.of(),
+                Step.PARTIAL,
+                false,
+                ImmutableList.of(LONG_SUM.bind(ImmutableList.of(0), Optional.empty())),
+                rowPagesBuilder.getHashChannel(),
+                Optional.empty(),
+                100_000,
+                Optional.of(new DataSize(1, KILOBYTE)),
+                false,
+                new DataSize(16, MEGABYTE),
+                spillerFactory,
+                joinCompiler,
+                true,
+                Optional.of(partialAggregationController));
+
+        DriverContext driverContext = createDriverContext();
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            List<Page> outputPages = toPages(operator, input.iterator());
+
+            // every key is unique, so the first flush disables partial aggregation
+            assertTrue(partialAggregationController.isPartialAggregationDisabled());
+
+            if (hashEnabled) {
+                outputPages = dropChannel(outputPages, ImmutableList.of(1));
+            }
+            MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT)
+                    .pages(rowPagesBuilder(BIGINT, BIGINT).addSequencePage(2000, 0, 0).build())
+                    .build();
+            MaterializedResult actual = toMaterializedResult(operator.getOperatorContext().getSession(), expected.getTypes(), outputPages);
+            assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+
+            HashAggregationInfo info = (HashAggregationInfo) operator.getOperatorContext().getOperatorStats().getInfo();
+            assertGreaterThan(info.getPartialAggregationBypassedPositions(), 0L);
+        }
+    }
+
     @Test
     public void testMemoryTracking()
             throws Exception
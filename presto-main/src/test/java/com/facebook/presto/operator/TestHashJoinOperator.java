@@ -21,6 +21,7 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskStateMachine;
+import com.facebook.presto.memory.QueryContext;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
 import com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
@@ -101,6 +102,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -586,6 +588,52 @@ public class TestHashJoinOperator
         assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
     }
 
+    @Test(dataProvider = "hashJoinTestValues")
+    public void testInnerJoinWithSingleBigintKey(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build factory
+        List<Type> buildTypes = ImmutableList.of(BIGINT, VARCHAR);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row(1L, "a")
+                .row(2L, "b")
+                .row(null, "null")
+                .row(1L, "c")
+                .row(-1L, "d");
+        BuildSideSetup buildSideSetup = setupBuildSide(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty(), false, SINGLE_STREAM_SPILLER_FACTORY);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row(1L)
+                .row((Long) null)
+                .row(3L)
+                .row(-1L)
+                .row(2L)
+                .row(1L)
+                .build();
+        OperatorFactory joinOperatorFactory = innerJoinOperatorFactory(lookupSourceFactory, probePages, PARTITIONING_SPILLER_FACTORY);
+
+        // build drivers and operators
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        buildLookupSource(buildSideSetup);
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildPages.getTypesWithoutHash()))
+                .row(1L, 1L, "a")
+                .row(1L, 1L, "c")
+                .row(-1L, -1L, "d")
+                .row(2L, 2L, "b")
+                .row(1L, 1L, "a")
+                .row(1L, 1L, "c")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
     @Test(dataProvider = "hashJoinTestValues")
     public void testInnerJoinWithNullBuild(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
     {
@@ -1259,11 +1307,195 @@ public class TestHashJoinOperator
                 {false, false}};
     }
 
+    @Test
+    public void testSharedLookupSource()
+    {
+        TaskContext builderTaskContext = createTaskContext();
+        QueryContext queryContext = builderTaskContext.getQueryContext();
+        TaskContext readerTaskContext = addTaskContext(queryContext, 1);
+
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), ImmutableList.of(BIGINT))
+                .addSequencePage(100, 0);
+        JoinBridgeManager<PartitionedLookupSourceFactory> builderLookupSourceFactoryManager = createLookupSourceFactoryManager(buildPages.getTypes());
+        JoinBridgeManager<PartitionedLookupSourceFactory> readerLookupSourceFactoryManager = createLookupSourceFactoryManager(buildPages.getTypes());
+        HashBuilderOperator builder = createSharedHashBuilderOperator(builderTaskContext, builderLookupSourceFactoryManager, buildPages.getTypes());
+        HashBuilderOperator reader = createSharedHashBuilderOperator(readerTaskContext, readerLookupSourceFactoryManager, buildPages.getTypes());
+
+        // only the first task indexes its build input
+        for (Page page : buildPages.build()) {
+            builder.addInput(page);
+            reader.addInput(page);
+        }
+        assertTrue(getUserMemory(builder) > 0);
+        assertEquals(getUserMemory(reader), 0);
+
+        reader.finish();
+        assertEquals(reader.getState(), HashBuilderOperator.State.CONSUMING_INPUT);
+        assertFalse(reader.isBlocked().isDone());
+        assertFalse(reader.needsInput());
+
+        builder.finish();
+        assertEquals(builder.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+        assertTrue(reader.isBlocked().isDone());
+        reader.finish();
+        assertEquals(reader.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+        assertEquals(getJoinPositionCount(readerLookupSourceFactoryManager), 100);
+
+        // the memory of the lookup source moves to the cache, which accounts it once for both tasks
+        assertEquals(getUserMemory(builder), 0);
+        assertEquals(getUserMemory(reader), 0);
+        long lookupSourceBytes = queryContext.getMemoryPool().getReservedBytes();
+        assertTrue(lookupSourceBytes > 0);
+
+        // and is released with the last task using the lookup source
+        builderLookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).destroy();
+        assertTrue(builder.isFinished());
+        assertEquals(queryContext.getMemoryPool().getReservedBytes(), lookupSourceBytes);
+        readerLookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).destroy();
+        assertTrue(reader.isFinished());
+        assertEquals(queryContext.getMemoryPool().getReservedBytes(), 0);
+        assertEquals(queryContext.getSharedLookupSourceCache().getEntryCount(), 0);
+    }
+
+    @Test
+    public void testSharedLookupSourceWithEmptyProbes()
+    {
+        TaskContext builderTaskContext = createTaskContext();
+        QueryContext queryContext = builderTaskContext.getQueryContext();
+        TaskContext readerTaskContext = addTaskContext(queryContext, 1);
+
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), ImmutableList.of(BIGINT))
+                .addSequencePage(100, 0);
+        JoinBridgeManager<PartitionedLookupSourceFactory> builderLookupSourceFactoryManager = createLookupSourceFactoryManager(buildPages.getTypes());
+        JoinBridgeManager<PartitionedLookupSourceFactory> readerLookupSourceFactoryManager = createLookupSourceFactoryManager(buildPages.getTypes());
+        HashBuilderOperator builder = createSharedHashBuilderOperator(builderTaskContext, builderLookupSourceFactoryManager, buildPages.getTypes());
+        HashBuilderOperator reader = createSharedHashBuilderOperator(readerTaskContext, readerLookupSourceFactoryManager, buildPages.getTypes());
+
+        for (Page page : buildPages.build()) {
+            builder.addInput(page);
+            reader.addInput(page);
+        }
+        reader.finish();
+        ListenableFuture<?> readerBlocked = reader.isBlocked();
+        assertFalse(readerBlocked.isDone());
+
+        // the builder keeps building while the reader is waiting for it
+        builderLookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).destroy();
+        assertFalse(builder.isFinished());
+        assertTrue(builder.needsInput());
+        assertTrue(queryContext.getMemoryPool().getReservedBytes() > 0);
+
+        // an empty probe side unblocks the reader, after which the builder abandons the lookup source
+        readerLookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).destroy();
+        assertTrue(readerBlocked.isDone());
+        assertTrue(reader.isFinished());
+        assertTrue(builder.isFinished());
+        assertEquals(getUserMemory(builder), 0);
+        assertEquals(queryContext.getMemoryPool().getReservedBytes(), 0);
+        assertEquals(queryContext.getSharedLookupSourceCache().getEntryCount(), 0);
+    }
+
+    @Test
+    public void testSharedLookupSourceBuilderClosed()
+    {
+        TaskContext builderTaskContext = createTaskContext();
+        QueryContext queryContext = builderTaskContext.getQueryContext();
+        TaskContext readerTaskContext = addTaskContext(queryContext, 1);
+
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), ImmutableList.of(BIGINT))
+                .addSequencePage(100, 0);
+        HashBuilderOperator builder = createSharedHashBuilderOperator(builderTaskContext, createLookupSourceFactoryManager(buildPages.getTypes()), buildPages.getTypes());
+        HashBuilderOperator reader = createSharedHashBuilderOperator(readerTaskContext, createLookupSourceFactoryManager(buildPages.getTypes()), buildPages.getTypes());
+
+        for (Page page : buildPages.build()) {
+            builder.addInput(page);
+            reader.addInput(page);
+        }
+        reader.finish();
+        ListenableFuture<?> readerBlocked = reader.isBlocked();
+        assertFalse(readerBlocked.isDone());
+
+        // the task of the builder goes away before the lookup source is built
+        builder.close();
+        assertEquals(getUserMemory(builder), 0);
+        assertEquals(queryContext.getMemoryPool().getReservedBytes(), 0);
+        assertTrue(readerBlocked.isDone());
+        try {
+            reader.finish();
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), GENERIC_INTERNAL_ERROR.toErrorCode());
+        }
+        reader.close();
+        assertEquals(queryContext.getSharedLookupSourceCache().getEntryCount(), 0);
+    }
+
     private TaskContext createTaskContext()
     {
         return TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION);
     }
 
+    private TaskContext addTaskContext(QueryContext queryContext, int taskId)
+    {
+        return queryContext.addTaskContext(
+                new TaskStateMachine(new TaskId("query", 0, 0, taskId), executor),
+                TEST_SESSION,
+                true,
+                true,
+                true,
+                true,
+                false,
+                Optional.empty());
+    }
+
+    private static JoinBridgeManager<PartitionedLookupSourceFactory> createLookupSourceFactoryManager(List<Type> buildTypes)
+    {
+        return JoinBridgeManager.lookupAllAtOnce(new PartitionedLookupSourceFactory(
+                buildTypes,
+                buildTypes,
+                ImmutableList.of(buildTypes.get(0)),
+                1,
+                ImmutableMap.of(),
+                false));
+    }
+
+    private static HashBuilderOperator createSharedHashBuilderOperator(
+            TaskContext taskContext,
+            JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager,
+            List<Type> buildTypes)
+    {
+        HashBuilderOperatorFactory buildOperatorFactory = new HashBuilderOperatorFactory(
+                1,
+                new PlanNodeId("build"),
+                lookupSourceFactoryManager,
+                rangeList(buildTypes.size()),
+                Ints.asList(0),
+                OptionalInt.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                ImmutableList.of(),
+                100,
+                new PagesIndex.TestingFactory(false),
+                false,
+                SINGLE_STREAM_SPILLER_FACTORY,
+                false,
+                true);
+        return buildOperatorFactory.createOperator(taskContext.addPipelineContext(1, true, true, false).addDriverContext());
+    }
+
+    private static long getUserMemory(Operator operator)
+    {
+        return operator.getOperatorContext().getOperatorMemoryContext().getUserMemory();
+    }
+
+    private static long getJoinPositionCount(JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager)
+    {
+        try (LookupSourceProvider lookupSourceProvider = getFutureValue(lookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).createLookupSourceProvider())) {
+            return lookupSourceProvider.withLease(lease -> lease.getLookupSource().getJoinPositionCount());
+        }
+    }
+
     private static List<Integer> getHashChannels(RowPagesBuilder probe, RowPagesBuilder build)
     {
         ImmutableList.Builder<Integer> hashChannels = ImmutableList.builder();
@@ -0,0 +1,236 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.airlift.node.NodeInfo;
+import com.facebook.airlift.stats.TestingGcMonitor;
+import com.facebook.presto.block.BlockEncodingManager;
+import com.facebook.presto.execution.SqlTaskManager;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskManagementExecutor;
+import com.facebook.presto.execution.TaskManagerConfig;
+import com.facebook.presto.execution.TaskSource;
+import com.facebook.presto.execution.TaskState;
+import com.facebook.presto.execution.TestSqlTaskManager.MockExchangeClientSupplier;
+import com.facebook.presto.execution.TestSqlTaskManager.MockLocationFactory;
+import com.facebook.presto.execution.buffer.BufferInfo;
+import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.buffer.SpoolingOutputBufferFactory;
+import com.facebook.presto.execution.executor.TaskExecutor;
+import com.facebook.presto.execution.scheduler.TableWriteInfo;
+import com.facebook.presto.memory.LocalMemoryManager;
+import com.facebook.presto.memory.NodeMemoryConfig;
+import com.facebook.presto.metadata.InMemoryNodeManager;
+import com.facebook.presto.operator.PageBufferClient.PagesResponse;
+import com.facebook.presto.spiller.LocalSpillManager;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.facebook.presto.sql.gen.OrderingCompiler;
+import com.facebook.presto.testing.TestingTempStorageManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.TASK_FAIR;
+import static com.facebook.presto.execution.TaskTestUtils.PLAN_FRAGMENT;
+import static com.facebook.presto.execution.TaskTestUtils.SPLIT;
+import static com.facebook.presto.execution.TaskTestUtils.TABLE_SCAN_NODE_ID;
+import static com.facebook.presto.execution.TaskTestUtils.createTestSplitMonitor;
+import static com.facebook.presto.execution.TaskTestUtils.createTestingPlanner;
+import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.PARTITIONED;
+import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestLocalRpcShuffleClient
+{
+    private static final URI LOCAL_URI = URI.create("http://127.0.0.1:8080");
+    private static final TaskId TASK_ID = new TaskId("query", 0, 0, 1);
+    private static final OutputBufferId OUT = new OutputBufferId(0);
+    private static final DataSize MAX_RESPONSE_SIZE = new DataSize(1, MEGABYTE);
+
+    private TaskExecutor taskExecutor;
+    private TaskManagementExecutor taskManagementExecutor;
+    private ScheduledExecutorService timeoutExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        taskExecutor = new TaskExecutor(8, 16, 3, 4, TASK_FAIR, Ticker.systemTicker());
+        taskExecutor.start();
+        taskManagementExecutor = new TaskManagementExecutor();
+        timeoutExecutor = newSingleThreadScheduledExecutor(daemonThreadsNamed("test-local-rpc-shuffle-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        taskExecutor.stop();
+        taskManagementExecutor.close();
+        timeoutExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyLocalLocations()
+    {
+        try (SqlTaskManager taskManager = createSqlTaskManager()) {
+            LocalRpcShuffleClientFactory factory = createFactory(taskManager);
+
+            assertTrue(factory.create(resultsLocation("http://127.0.0.1:8080"), directExecutor()).isPresent());
+            assertTrue(factory.create(resultsLocation("HTTP://127.0.0.1:8080"), directExecutor()).isPresent());
+            assertFalse(factory.create(resultsLocation("http://127.0.0.1:8081"), directExecutor()).isPresent());
+            assertFalse(factory.create(resultsLocation("http://10.0.0.1:8080"), directExecutor()).isPresent());
+            assertFalse(factory.create(resultsLocation("https://127.0.0.1:8080"), directExecutor()).isPresent());
+            assertFalse(factory.create(resultsLocation("thrift://127.0.0.1:8080"), directExecutor()).isPresent());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Location is not a task results location: .*/status")
+    public void testInvalidLocation()
+    {
+        try (SqlTaskManager taskManager = createSqlTaskManager()) {
+            createFactory(taskManager).create(URI.create(LOCAL_URI + "/v1/task/" + TASK_ID + "/status"), directExecutor());
+        }
+    }
+
+    @Test
+    public void testResults()
+            throws Exception
+    {
+        try (SqlTaskManager taskManager = createSqlTaskManager()) {
+            TaskInfo taskInfo = createTask(taskManager);
+            assertEquals(taskInfo.getTaskStatus().getState(), TaskState.RUNNING);
+            RpcShuffleClient client = createClient(taskManager);
+
+            PagesResponse response = client.getResults(0, MAX_RESPONSE_SIZE).get();
+            assertEquals(response.getTaskInstanceId(), taskManager.getTaskInstanceId(TASK_ID));
+            assertEquals(response.getToken(), 0);
+            assertEquals(response.getNextToken(), 1);
+            assertEquals(response.getPages().size(), 1);
+            assertEquals(response.getPages().get(0).getPositionCount(), 1);
+            assertFalse(response.isClientComplete());
+
+            // until it is acknowledged, a token can be read again
+            response = client.getResults(0, MAX_RESPONSE_SIZE).get();
+            assertEquals(response.getNextToken(), 1);
+            assertEquals(response.getPages().size(), 1);
+
+            client.acknowledgeResultsAsync(response.getNextToken());
+            assertEquals(getBufferInfo(taskManager).getPagesSent(), 1);
+            assertEquals(getBufferInfo(taskManager).getBufferedPages(), 0);
+
+            while (!response.isClientComplete()) {
+                response = client.getResults(response.getNextToken(), MAX_RESPONSE_SIZE).get();
+            }
+            assertEquals(response.getPages().size(), 0);
+
+            // complete the task by aborting the results
+            client.abortResults().get();
+            taskInfo = taskManager.getTaskInfo(TASK_ID, taskInfo.getTaskStatus().getState()).get(1, SECONDS);
+            assertEquals(taskInfo.getTaskStatus().getState(), TaskState.FINISHED);
+        }
+    }
+
+    @Test
+    public void testTaskGone()
+            throws Exception
+    {
+        try (SqlTaskManager taskManager = createSqlTaskManager()) {
+            createTask(taskManager);
+            RpcShuffleClient client = createClient(taskManager);
+            taskManager.cancelTask(TASK_ID);
+
+            PagesResponse response = client.getResults(0, MAX_RESPONSE_SIZE).get(10, SECONDS);
+            assertTrue(response.isClientComplete());
+            assertEquals(response.getPages().size(), 0);
+
+            client.acknowledgeResultsAsync(response.getNextToken());
+            client.abortResults().get();
+            assertEquals(taskManager.getTaskInfo(TASK_ID).getTaskStatus().getState(), TaskState.CANCELED);
+        }
+    }
+
+    private RpcShuffleClient createClient(SqlTaskManager taskManager)
+    {
+        return createFactory(taskManager).create(resultsLocation(LOCAL_URI.toString()), directExecutor()).get();
+    }
+
+    private LocalRpcShuffleClientFactory createFactory(SqlTaskManager taskManager)
+    {
+        return new LocalRpcShuffleClientFactory(new InMemoryNodeManager(LOCAL_URI), () -> taskManager, timeoutExecutor);
+    }
+
+    private static URI resultsLocation(String server)
+    {
+        return URI.create(server + "/v1/task/" + TASK_ID + "/results/" + OUT);
+    }
+
+    private static BufferInfo getBufferInfo(SqlTaskManager taskManager)
+    {
+        return getOnlyElement(taskManager.getTaskInfo(TASK_ID).getOutputBuffers().getBuffers());
+    }
+
+    private static TaskInfo createTask(SqlTaskManager taskManager)
+    {
+        return taskManager.updateTask(
+                TEST_SESSION,
+                TASK_ID,
+                Optional.of(PLAN_FRAGMENT),
+                ImmutableList.of(new TaskSource(TABLE_SCAN_NODE_ID, ImmutableSet.of(SPLIT), true)),
+                createInitialEmptyOutputBuffers(PARTITIONED).withBuffer(OUT, 0).withNoMoreBufferIds(),
+                Optional.of(new TableWriteInfo(Optional.empty(), Optional.empty(), Optional.empty())));
+    }
+
+    private SqlTaskManager createSqlTaskManager()
+    {
+        return new SqlTaskManager(
+                createTestingPlanner(),
+                new MockLocationFactory(),
+                taskExecutor,
+                createTestSplitMonitor(),
+                new NodeInfo("test"),
+                new LocalMemoryManager(new NodeMemoryConfig()),
+                taskManagementExecutor,
+                new TaskManagerConfig(),
+                new NodeMemoryConfig(),
+                new LocalSpillManager(new NodeSpillConfig()),
+                new MockExchangeClientSupplier(),
+                new NodeSpillConfig(),
+                new TestingGcMonitor(),
+                new BlockEncodingManager(),
+                new OrderingCompiler(),
+                new NoOpFragmentResultCacheManager(),
+                new ObjectMapper(),
+                new SpoolingOutputBufferFactory(new FeaturesConfig(), new TestingTempStorageManager()));
+    }
+}
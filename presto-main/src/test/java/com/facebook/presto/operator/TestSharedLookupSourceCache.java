@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.StageExecutionId;
+import com.facebook.presto.execution.StageId;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.operator.SharedLookupSourceCache.SharedLookupSource;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.QueryId;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.Test;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestSharedLookupSourceCache
+{
+    private static final StageExecutionId STAGE_EXECUTION_ID = new StageExecutionId(new StageId(new QueryId("query"), 0), 0);
+    private static final PlanNodeId PLAN_NODE_ID = new PlanNodeId("join");
+
+    @Test
+    public void testSharing()
+    {
+        AggregatedMemoryContext memoryContext = newSimpleAggregatedMemoryContext();
+        SharedLookupSourceCache cache = new SharedLookupSourceCache(memoryContext);
+
+        SharedLookupSource builder = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 2);
+        SharedLookupSource reader = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 2);
+        SharedLookupSource otherPartition = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 1, 2);
+        assertTrue(builder.isBuilder());
+        assertFalse(reader.isBuilder());
+        assertTrue(otherPartition.isBuilder());
+        assertEquals(cache.getEntryCount(), 2);
+
+        ListenableFuture<LookupSourceSupplier> lookupSourceSupplier = reader.getLookupSourceSupplier();
+        assertFalse(lookupSourceSupplier.isDone());
+        LookupSourceSupplier supplier = new TestingLookupSourceSupplier();
+        builder.setLookupSourceSupplier(supplier, 100, false);
+        assertSame(getFutureValue(lookupSourceSupplier), supplier);
+
+        // the lookup source is accounted once, until the last task using it releases it
+        assertEquals(memoryContext.getBytes(), 100);
+        builder.release();
+        assertEquals(memoryContext.getBytes(), 100);
+        reader.release();
+        assertEquals(memoryContext.getBytes(), 0);
+        assertEquals(cache.getEntryCount(), 1);
+
+        otherPartition.release();
+        assertEquals(cache.getEntryCount(), 0);
+    }
+
+    @Test
+    public void testLateReader()
+    {
+        SharedLookupSourceCache cache = new SharedLookupSourceCache(newSimpleAggregatedMemoryContext());
+
+        SharedLookupSource builder = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+        LookupSourceSupplier supplier = new TestingLookupSourceSupplier();
+        builder.setLookupSourceSupplier(supplier, 100, false);
+
+        SharedLookupSource reader = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+        assertFalse(reader.isBuilder());
+        assertSame(getFutureValue(reader.getLookupSourceSupplier()), supplier);
+
+        builder.release();
+        reader.release();
+
+        // once released, the next task builds the lookup source again
+        assertTrue(cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1).isBuilder());
+    }
+
+    @Test
+    public void testAbandon()
+    {
+        SharedLookupSourceCache cache = new SharedLookupSourceCache(newSimpleAggregatedMemoryContext());
+
+        SharedLookupSource builder = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+        SharedLookupSource reader = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+
+        // another task is waiting for the lookup source
+        assertFalse(builder.tryAbandon());
+        reader.release();
+        assertTrue(builder.tryAbandon());
+        assertEquals(cache.getEntryCount(), 0);
+    }
+
+    @Test
+    public void testBuilderFailure()
+    {
+        SharedLookupSourceCache cache = new SharedLookupSourceCache(newSimpleAggregatedMemoryContext());
+
+        SharedLookupSource builder = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+        SharedLookupSource reader = cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1);
+        builder.release();
+
+        try {
+            getFutureValue(reader.getLookupSourceSupplier());
+            fail("expected exception");
+        }
+        catch (PrestoException ignored) {
+        }
+
+        // a task acquiring the partition later builds it on its own
+        assertTrue(cache.acquire(STAGE_EXECUTION_ID, PLAN_NODE_ID, 0, 1).isBuilder());
+        reader.release();
+    }
+
+    private static class TestingLookupSourceSupplier
+            implements LookupSourceSupplier
+    {
+        @Override
+        public LookupSource get()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getHashCollisions()
+        {
+            return 0;
+        }
+
+        @Override
+        public double getExpectedHashCollisions()
+        {
+            return 0;
+        }
+
+        @Override
+        public long checksum()
+        {
+            return 0;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
@@ -43,6 +44,10 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.finishOperator;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.operator.TopNRowNumberOperator.TopNRowNumberOperatorFactory;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
@@ -137,6 +142,91 @@ public class TestTopNRowNumberOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testPartitionedWithSpill(boolean hashEnabled)
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, DOUBLE);
+        List<Page> input = rowPagesBuilder
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(3L, 0.1)
+                .row(3L, 0.91)
+                .pageBreak()
+                .row(1L, 0.4)
+                .pageBreak()
+                .row(1L, 0.5)
+                .row(1L, 0.6)
+                .row(2L, 0.7)
+                .row(2L, 0.8)
+                .pageBreak()
+                .row(2L, 0.9)
+                .build();
+
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        TopNRowNumberOperatorFactory operatorFactory = createSpillableOperatorFactory(spillerFactory);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.3, 1L, 1L)
+                .row(0.4, 1L, 2L)
+                .row(0.5, 1L, 3L)
+                .row(0.2, 2L, 1L)
+                .row(0.7, 2L, 2L)
+                .row(0.8, 2L, 3L)
+                .row(0.1, 3L, 1L)
+                .row(0.91, 3L, 2L)
+                .build();
+
+        assertOperatorEqualsIgnoreOrder(operatorFactory, driverContext, input, expected, true);
+        assertGreaterThan(spillerFactory.getSpillsCount(), 1L);
+    }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testMergeSpilledRowsWithRowsInMemory(boolean hashEnabled)
+    {
+        List<Page> spilledInput = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, DOUBLE)
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(3L, 0.1)
+                .row(3L, 0.91)
+                .pageBreak()
+                .row(1L, 0.4)
+                .row(2L, 0.9)
+                .build();
+        List<Page> inMemoryInput = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, DOUBLE)
+                .row(1L, 0.5)
+                .row(1L, 0.6)
+                .row(2L, 0.7)
+                .row(2L, 0.8)
+                .row(4L, 0.1)
+                .build();
+
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        Operator operator = createSpillableOperatorFactory(spillerFactory).createOperator(driverContext);
+
+        // the last input stays in memory, so the result is merged from the spilled rows and the rows in memory
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        output.addAll(toPagesPartial(operator, spilledInput.iterator(), true));
+        long spillsCount = spillerFactory.getSpillsCount();
+        assertGreaterThan(spillsCount, 0L);
+        output.addAll(toPagesPartial(operator, inMemoryInput.iterator(), false));
+        output.addAll(finishOperator(operator));
+        assertEquals(spillerFactory.getSpillsCount(), spillsCount);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.3, 1L, 1L)
+                .row(0.4, 1L, 2L)
+                .row(0.5, 1L, 3L)
+                .row(0.2, 2L, 1L)
+                .row(0.7, 2L, 2L)
+                .row(0.8, 2L, 3L)
+                .row(0.1, 3L, 1L)
+                .row(0.91, 3L, 2L)
+                .row(0.1, 4L, 1L)
+                .build();
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), expected.getTypes(), output.build());
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+    }
+
     @Test(dataProvider = "partial")
     public void testUnPartitioned(boolean partial)
     {
@@ -230,4 +320,24 @@ public class TestTopNRowNumberOperator
         }
         assertEquals(count, 6_000 * 600);
     }
+
+    private TopNRowNumberOperatorFactory createSpillableOperatorFactory(DummySpillerFactory spillerFactory)
+    {
+        return new TopNRowNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                3,
+                false,
+                Optional.empty(),
+                10,
+                joinCompiler,
+                true,
+                Optional.of(spillerFactory));
+    }
 }
@@ -14,18 +14,24 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
+import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.WindowOperator.WindowOperatorFactory;
+import com.facebook.presto.operator.window.DenseRankFunction;
 import com.facebook.presto.operator.window.FirstValueFunction;
 import com.facebook.presto.operator.window.FrameInfo;
 import com.facebook.presto.operator.window.LagFunction;
 import com.facebook.presto.operator.window.LastValueFunction;
 import com.facebook.presto.operator.window.LeadFunction;
 import com.facebook.presto.operator.window.NthValueFunction;
+import com.facebook.presto.operator.window.RankFunction;
 import com.facebook.presto.operator.window.ReflectionWindowFunctionSupplier;
 import com.facebook.presto.operator.window.RowNumberFunction;
+import com.facebook.presto.operator.window.WindowFunctionSupplier;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.gen.OrderingCompiler;
@@ -49,6 +55,8 @@ import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
@@ -58,9 +66,13 @@ import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqual
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.WindowFunctionDefinition.window;
+import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.BoundType.CURRENT_ROW;
+import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.BoundType.PRECEDING;
 import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.BoundType.UNBOUNDED_FOLLOWING;
 import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.BoundType.UNBOUNDED_PRECEDING;
 import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.WindowType.RANGE;
+import static com.facebook.presto.sql.planner.plan.WindowNode.Frame.WindowType.ROWS;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static io.airlift.units.DataSize.succinctBytes;
@@ -73,6 +85,8 @@ import static org.testng.Assert.assertTrue;
 @Test(singleThreaded = true)
 public class TestWindowOperator
 {
+    private static final FunctionAndTypeManager FUNCTION_AND_TYPE_MANAGER = MetadataManager.createTestMetadataManager().getFunctionAndTypeManager();
+    private static final int SEGMENT_TREE_PARTITION_SIZE = 100_000;
     private static final FrameInfo UNBOUNDED_FRAME = new FrameInfo(RANGE, UNBOUNDED_PRECEDING, Optional.empty(), UNBOUNDED_FOLLOWING, Optional.empty());
 
     public static final List<WindowFunctionDefinition> ROW_NUMBER = ImmutableList.of(
@@ -700,6 +714,38 @@ public class TestWindowOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected, revokeMemoryWhenAddingPages);
     }
 
+    @Test(dataProvider = "spillEnabled")
+    public void testRankingPeerGroupsAcrossBatches(boolean spillEnabled, boolean revokeMemoryWhenAddingPages, long memoryLimit)
+    {
+        // peer groups of three rows, so that some of them span the batches the rows of a partition are processed in
+        int numberOfRows = 1_000;
+        RowPagesBuilder inputBuilder = rowPagesBuilder(BIGINT);
+        for (int i = 0; i < numberOfRows; i++) {
+            inputBuilder.row((long) (i / 3));
+        }
+        List<Page> input = inputBuilder.build();
+
+        WindowOperatorFactory operatorFactory = createFactoryUnbounded(
+                ImmutableList.of(BIGINT),
+                Ints.asList(0),
+                ImmutableList.of(
+                        window(new ReflectionWindowFunctionSupplier<>("row_number", BIGINT, ImmutableList.of(), RowNumberFunction.class), BIGINT, UNBOUNDED_FRAME),
+                        window(new ReflectionWindowFunctionSupplier<>("rank", BIGINT, ImmutableList.of(), RankFunction.class), BIGINT, UNBOUNDED_FRAME),
+                        window(new ReflectionWindowFunctionSupplier<>("dense_rank", BIGINT, ImmutableList.of(), DenseRankFunction.class), BIGINT, UNBOUNDED_FRAME)),
+                Ints.asList(),
+                Ints.asList(0),
+                ImmutableList.copyOf(new SortOrder[] {SortOrder.ASC_NULLS_LAST}),
+                spillEnabled);
+
+        DriverContext driverContext = createDriverContext(memoryLimit);
+        MaterializedResult.Builder expectedBuilder = resultBuilder(driverContext.getSession(), BIGINT, BIGINT, BIGINT, BIGINT);
+        for (int i = 0; i < numberOfRows; i++) {
+            expectedBuilder.row((long) (i / 3), (long) i + 1, (long) (i / 3) * 3 + 1, (long) (i / 3) + 1);
+        }
+
+        assertOperatorEquals(operatorFactory, driverContext, input, expectedBuilder.build(), revokeMemoryWhenAddingPages);
+    }
+
     @Test
     public void testFindEndPosition()
     {
@@ -732,6 +778,56 @@ public class TestWindowOperator
         assertEquals(WindowOperator.findEndPosition(0, array.length, (first, second) -> array[first] == array[second]), expected);
     }
 
+    @Test
+    public void testSegmentTreeMemoryAccounting()
+    {
+        FrameInfo frame = new FrameInfo(ROWS, PRECEDING, Optional.of(1), CURRENT_ROW, Optional.empty());
+        // max cannot retract rows, so its moving frames are evaluated through a segment tree, unlike sum
+        long memoryWithSegmentTree = getMemoryWhileOutputtingPartition(aggregation("max", frame));
+        long memoryWithoutSegmentTree = getMemoryWhileOutputtingPartition(aggregation("sum", frame));
+        assertGreaterThan(memoryWithSegmentTree - memoryWithoutSegmentTree, (long) SEGMENT_TREE_PARTITION_SIZE * Long.BYTES);
+    }
+
+    private long getMemoryWhileOutputtingPartition(List<WindowFunctionDefinition> functions)
+    {
+        // large enough for the partition to span several output pages
+        List<Page> input = rowPagesBuilder(BIGINT, BIGINT)
+                .addBlocksPage(createLongSequenceBlock(0, SEGMENT_TREE_PARTITION_SIZE), createLongRepeatBlock(50, SEGMENT_TREE_PARTITION_SIZE))
+                .build();
+        WindowOperatorFactory operatorFactory = createFactoryUnbounded(
+                ImmutableList.of(BIGINT, BIGINT),
+                Ints.asList(0),
+                functions,
+                Ints.asList(),
+                Ints.asList(0),
+                ImmutableList.copyOf(new SortOrder[] {SortOrder.ASC_NULLS_LAST}),
+                false);
+        Operator operator = operatorFactory.createOperator(createDriverContext());
+        for (Page page : input) {
+            operator.addInput(page);
+        }
+        operator.finish();
+
+        Page output = null;
+        while (output == null) {
+            output = operator.getOutput();
+        }
+        assertTrue(output.getPositionCount() < SEGMENT_TREE_PARTITION_SIZE);
+        long memoryWhileOutputting = operator.getOperatorContext().getOperatorMemoryContext().getUserMemory();
+
+        while (!operator.isFinished()) {
+            operator.getOutput();
+        }
+        assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), 0);
+        return memoryWhileOutputting;
+    }
+
+    private static List<WindowFunctionDefinition> aggregation(String name, FrameInfo frame)
+    {
+        WindowFunctionSupplier functionSupplier = FUNCTION_AND_TYPE_MANAGER.getWindowFunctionImplementation(FUNCTION_AND_TYPE_MANAGER.lookupFunction(name, fromTypes(BIGINT)));
+        return ImmutableList.of(window(functionSupplier, BIGINT, frame, 0));
+    }
+
     private WindowOperatorFactory createFactoryUnbounded(
             List<? extends Type> sourceTypes,
             List<Integer> outputChannels,
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.InterpretedHashGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.SequencePageBuilder.createSequencePage;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+
+/**
+ * Measures the throughput of a local exchange with as many writing as reading drivers. The total number
+ * of pages is the same for every driver count, so the scores of different driver counts are comparable.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkLocalExchange
+{
+    private static final int PAGE_COUNT = 4096;
+    private static final int POSITIONS_PER_PAGE = 1024;
+    private static final long MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, BIGINT);
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"1", "4", "16", "64"})
+        private String driverCount = "1";
+
+        @Param({"partitioned", "random", "broadcast"})
+        private String exchangeType = "partitioned";
+
+        private ExecutorService executor;
+        private Page page;
+
+        @Setup
+        public void setup()
+        {
+            executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+            page = createSequencePage(TYPES, POSITIONS_PER_PAGE);
+        }
+
+        @TearDown
+        public void cleanup()
+        {
+            executor.shutdownNow();
+        }
+
+        public long exchange()
+                throws Exception
+        {
+            int drivers = Integer.parseInt(driverCount);
+            LocalExchangeMemoryManager memoryManager = new LocalExchangeMemoryManager(MAX_BUFFERED_BYTES);
+            List<LocalExchangeSource> sources = new ArrayList<>();
+            for (int i = 0; i < drivers; i++) {
+                sources.add(new LocalExchangeSource(source -> {}));
+            }
+            List<Consumer<PageReference>> buffers = sources.stream()
+                    .map(source -> (Consumer<PageReference>) source::addPage)
+                    .collect(toImmutableList());
+
+            List<Future<Long>> readers = new ArrayList<>();
+            for (LocalExchangeSource source : sources) {
+                readers.add(executor.submit(() -> read(source)));
+            }
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < drivers; i++) {
+                LocalExchanger exchanger = createExchanger(buffers, memoryManager, drivers);
+                writers.add(executor.submit(() -> write(exchanger, PAGE_COUNT / drivers)));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            sources.forEach(LocalExchangeSource::finish);
+
+            long positions = 0;
+            for (Future<Long> reader : readers) {
+                positions += reader.get();
+            }
+            return positions;
+        }
+
+        private LocalExchanger createExchanger(List<Consumer<PageReference>> buffers, LocalExchangeMemoryManager memoryManager, int partitionCount)
+        {
+            switch (exchangeType) {
+                case "partitioned":
+                    return new PartitioningExchanger(
+                            buffers,
+                            memoryManager,
+                            new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0}), partitionCount),
+                            ImmutableList.of(0),
+                            Optional.empty());
+                case "random":
+                    return new RandomExchanger(buffers, memoryManager);
+                case "broadcast":
+                    return new BroadcastExchanger(buffers, memoryManager);
+                default:
+                    throw new IllegalArgumentException("Unsupported exchange type " + exchangeType);
+            }
+        }
+
+        private void write(LocalExchanger exchanger, int pageCount)
+        {
+            for (int i = 0; i < pageCount; i++) {
+                ListenableFuture<?> blocked = exchanger.waitForWriting();
+                if (!blocked.isDone()) {
+                    getFutureValue(blocked);
+                }
+                exchanger.accept(page);
+            }
+        }
+
+        private static long read(LocalExchangeSource source)
+        {
+            long positions = 0;
+            while (true) {
+                Page page = source.removePage();
+                if (page != null) {
+                    positions += page.getPositionCount();
+                }
+                else if (source.isFinished()) {
+                    return positions;
+                }
+                else {
+                    getFutureValue(source.waitForReading());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long exchange(BenchmarkData data)
+            throws Exception
+    {
+        return data.exchange();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkLocalExchange.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -33,11 +33,17 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertContains;
+import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.GROUPED_EXECUTION;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
@@ -48,10 +54,13 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_PAS
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static io.airlift.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -434,6 +443,127 @@ public class TestLocalExchange
         });
     }
 
+    @Test(dataProvider = "executionStrategy")
+    public void testPartitionWithSinglePartitionPage(PipelineExecutionStrategy executionStrategy)
+    {
+        LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
+                partitioningProviderManager,
+                session,
+                FIXED_HASH_DISTRIBUTION,
+                2,
+                TYPES,
+                ImmutableList.of(0),
+                Optional.empty(),
+                executionStrategy,
+                LOCAL_EXCHANGE_MAX_BUFFERED_BYTES);
+        LocalExchangeSinkFactoryId localExchangeSinkFactoryId = localExchangeFactory.newSinkFactoryId();
+        localExchangeFactory.noMoreSinkFactories();
+
+        run(localExchangeFactory, executionStrategy, exchange -> {
+            LocalExchangeSinkFactory sinkFactory = exchange.getSinkFactory(localExchangeSinkFactoryId);
+            LocalExchangeSink sink = sinkFactory.createSink();
+            sinkFactory.close();
+            sinkFactory.noMoreSinkFactories();
+
+            // all the rows of the page belong to the same partition
+            Page page = new Page(createLongRepeatBlock(42, 100));
+            int partition = new LocalPartitionGenerator(new InterpretedHashGenerator(TYPES, new int[] {0}), 2).getPartition(page, 0);
+            LocalExchangeSource source = exchange.getSource(partition);
+            LocalExchangeSource otherSource = exchange.getSource(1 - partition);
+
+            sink.addPage(page);
+            assertSource(source, 1);
+            assertSource(otherSource, 0);
+            assertEquals(exchange.getBufferedBytes(), page.getRetainedSizeInBytes());
+
+            // the page is passed on without copying its rows
+            assertTrue(source.waitForReading().isDone());
+            assertSame(source.removePage(), page);
+            assertExchangeTotalBufferedBytes(exchange, 0);
+
+            sink.finish();
+            assertSourceFinished(source);
+            assertSourceFinished(otherSource);
+        });
+    }
+
+    @Test
+    public void testConcurrentPartition()
+            throws Exception
+    {
+        int writerCount = 8;
+        int readerCount = 8;
+        int pagesPerWriter = 1000;
+
+        LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
+                partitioningProviderManager,
+                session,
+                FIXED_HASH_DISTRIBUTION,
+                readerCount,
+                TYPES,
+                ImmutableList.of(0),
+                Optional.empty(),
+                UNGROUPED_EXECUTION,
+                new DataSize(retainedSizeOfPages(4), BYTE));
+        LocalExchangeSinkFactoryId localExchangeSinkFactoryId = localExchangeFactory.newSinkFactoryId();
+        localExchangeFactory.noMoreSinkFactories();
+        LocalExchange exchange = localExchangeFactory.getLocalExchange(Lifespan.taskWide());
+
+        LocalExchangeSinkFactory sinkFactory = exchange.getSinkFactory(localExchangeSinkFactoryId);
+        List<LocalExchangeSink> sinks = new ArrayList<>();
+        for (int i = 0; i < writerCount; i++) {
+            sinks.add(sinkFactory.createSink());
+        }
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+        try {
+            // the buffer only holds a few pages, so writers and readers keep blocking on each other
+            List<Future<Long>> readers = new ArrayList<>();
+            for (int i = 0; i < readerCount; i++) {
+                LocalExchangeSource source = exchange.getSource(i);
+                readers.add(executor.submit(() -> {
+                    long positions = 0;
+                    while (!source.isFinished()) {
+                        Page page = source.removePage();
+                        if (page != null) {
+                            positions += page.getPositionCount();
+                        }
+                        else {
+                            getFutureValue(source.waitForReading());
+                        }
+                    }
+                    return positions;
+                }));
+            }
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (LocalExchangeSink sink : sinks) {
+                writers.add(executor.submit(() -> {
+                    for (int page = 0; page < pagesPerWriter; page++) {
+                        getFutureValue(sink.waitForWriting());
+                        sink.addPage(createPage(page));
+                    }
+                    sink.finish();
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(10, SECONDS);
+            }
+
+            long positions = 0;
+            for (Future<Long> reader : readers) {
+                positions += reader.get(10, SECONDS);
+            }
+            assertEquals(positions, (long) writerCount * pagesPerWriter * createPage(0).getPositionCount());
+            assertExchangeTotalBufferedBytes(exchange, 0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test(dataProvider = "executionStrategy")
     public void writeUnblockWhenAllReadersFinish(PipelineExecutionStrategy executionStrategy)
     {
@@ -16,6 +16,7 @@ package com.facebook.presto.operator.repartition;
 import com.facebook.presto.Session;
 import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.ArrayType;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
@@ -70,6 +71,9 @@ import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.block.BlockAssertions.createMapType;
+import static com.facebook.presto.block.BlockAssertions.createRandomBlockForType;
+import static com.facebook.presto.block.BlockAssertions.createRandomDictionaryBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DecimalType.createDecimalType;
@@ -144,8 +148,8 @@ public class BenchmarkPartitionedOutputOperator
     @State(Scope.Thread)
     public static class BenchmarkData
     {
-        private static final int PARTITION_COUNT = 256;
         private static final int POSITION_COUNT = 8192;
+        private static final int DICTIONARY_SIZE = 1000;
         private static final DataSize MAX_MEMORY = new DataSize(4, GIGABYTE);
         private static final DataSize MAX_PARTITION_BUFFER_SIZE = new DataSize(256, MEGABYTE);
         private static final ExecutorService EXECUTOR = newCachedThreadPool(daemonThreadsNamed("test-EXECUTOR-%s"));
@@ -155,6 +159,9 @@ public class BenchmarkPartitionedOutputOperator
         @Param({"true", "false"})
         private boolean enableCompression;
 
+        @Param({"8", "64", "256"})
+        private int partitionCount = 256;
+
         @Param({"1", "2"})
         private int channelCount = 1;
 
@@ -173,7 +180,11 @@ public class BenchmarkPartitionedOutputOperator
                 "MAP(BIGINT,BIGINT)",
                 "MAP(BIGINT,MAP(BIGINT,BIGINT))",
                 "ROW(BIGINT,BIGINT)",
-                "ROW(ARRAY(BIGINT),ARRAY(BIGINT))"
+                "ROW(ARRAY(BIGINT),ARRAY(BIGINT))",
+                "DICTIONARY(ARRAY(BIGINT))",
+                "DICTIONARY(MAP(BIGINT,BIGINT))",
+                "DICTIONARY(ROW(BIGINT,BIGINT))",
+                "RLE(MAP(BIGINT,BIGINT))"
         })
         private String type = "BIGINT";
 
@@ -276,6 +287,26 @@ public class BenchmarkPartitionedOutputOperator
                     dataPage = PageAssertions.createPageWithRandomData(types, POSITION_COUNT, primitiveNullRate, nestedNullRate);
                     pageCount = 1000;
                     break;
+                case "DICTIONARY(ARRAY(BIGINT))":
+                    types = nCopies(channelCount, new ArrayType(BIGINT));
+                    dataPage = createSmallDictionaryPage(types, primitiveNullRate, nestedNullRate);
+                    pageCount = 1000;
+                    break;
+                case "DICTIONARY(MAP(BIGINT,BIGINT))":
+                    types = nCopies(channelCount, createMapType(BIGINT, BIGINT));
+                    dataPage = createSmallDictionaryPage(types, primitiveNullRate, nestedNullRate);
+                    pageCount = 1000;
+                    break;
+                case "DICTIONARY(ROW(BIGINT,BIGINT))":
+                    types = nCopies(channelCount, withDefaultFieldNames(ImmutableList.of(BIGINT, BIGINT)));
+                    dataPage = createSmallDictionaryPage(types, primitiveNullRate, nestedNullRate);
+                    pageCount = 1000;
+                    break;
+                case "RLE(MAP(BIGINT,BIGINT))":
+                    types = nCopies(channelCount, createMapType(BIGINT, BIGINT));
+                    dataPage = createRlePageWithRandomData(types, POSITION_COUNT, primitiveNullRate, nestedNullRate);
+                    pageCount = 1000;
+                    break;
 
                 default:
                     throw new UnsupportedOperationException("Unsupported dataType");
@@ -284,10 +315,25 @@ public class BenchmarkPartitionedOutputOperator
             types = updateBlockTypesWithHashBlockAndNullBlock(types, true, false);
         }
 
+        /**
+         * Creates a page whose blocks are dictionaries much smaller than the page, with a precomputed hash block at channel 0.
+         * The same page is added over and over, so all the pages share the same dictionaries.
+         */
+        private static Page createSmallDictionaryPage(List<Type> types, float primitiveNullRate, float nestedNullRate)
+        {
+            Block[] blocks = new Block[types.size() + 1];
+            blocks[0] = createRandomLongsBlock(POSITION_COUNT, 0.0f);
+            for (int i = 0; i < types.size(); i++) {
+                Block dictionary = createRandomBlockForType(types.get(i), DICTIONARY_SIZE, primitiveNullRate, nestedNullRate, false, ImmutableList.of());
+                blocks[i + 1] = createRandomDictionaryBlock(dictionary, POSITION_COUNT);
+            }
+            return new Page(blocks);
+        }
+
         private PartitionedOutputBuffer createPartitionedOutputBuffer()
         {
             OutputBuffers buffers = createInitialEmptyOutputBuffers(PARTITIONED);
-            for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            for (int partition = 0; partition < partitionCount; partition++) {
                 buffers = buffers.withBuffer(new OutputBuffers.OutputBufferId(partition), partition);
             }
             PartitionedOutputBuffer buffer = createPartitionedBuffer(
@@ -301,8 +347,8 @@ public class BenchmarkPartitionedOutputOperator
         private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator()
         {
             PartitionFunction partitionFunction = new BucketPartitionFunction(
-                    HASH.createBucketFunction(ImmutableList.of(BIGINT), true, PARTITION_COUNT),
-                    IntStream.range(0, PARTITION_COUNT).toArray());
+                    HASH.createBucketFunction(ImmutableList.of(BIGINT), true, partitionCount),
+                    IntStream.range(0, partitionCount).toArray());
             OutputPartitioning outputPartitioning = createOutputPartitioning(partitionFunction);
 
             PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), enableCompression);
@@ -317,7 +363,7 @@ public class BenchmarkPartitionedOutputOperator
 
         private PartitionedOutputOperator createPartitionedOutputOperator()
         {
-            PartitionFunction partitionFunction = new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT);
+            PartitionFunction partitionFunction = new LocalPartitionGenerator(new PrecomputedHashGenerator(0), partitionCount);
             OutputPartitioning outputPartitioning = createOutputPartitioning(partitionFunction);
 
             PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), enableCompression);
@@ -17,6 +17,9 @@ import com.facebook.presto.Session;
 import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.block.VariableWidthBlock;
 import com.facebook.presto.common.type.ArrayType;
 import com.facebook.presto.common.type.Type;
@@ -66,9 +69,12 @@ import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.block.BlockAssertions.Encoding.DICTIONARY;
 import static com.facebook.presto.block.BlockAssertions.Encoding.RUN_LENGTH;
 import static com.facebook.presto.block.BlockAssertions.createMapType;
+import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomBlockForType;
 import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
 import static com.facebook.presto.block.BlockAssertions.wrapBlock;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DecimalType.createDecimalType;
@@ -95,6 +101,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOptimizedPartitionedOutputOperator
 {
@@ -601,6 +608,80 @@ public class TestOptimizedPartitionedOutputOperator
         testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE));
     }
 
+    @Test
+    public void testDictionaryAndRunLengthEncodingsAcrossPages()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, createMapType(BIGINT, BIGINT), BIGINT);
+        Block dictionary = createRandomStringBlock(10, 0.2f, 10);
+        Block mapDictionary = createRandomBlockForType(createMapType(BIGINT, BIGINT), 10, 0.2f, 0.2f, false, ImmutableList.of());
+        DictionaryId dictionaryId = randomDictionaryId();
+        DictionaryId mapDictionaryId = randomDictionaryId();
+
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages.add(new Page(
+                    createRandomLongsBlock(POSITION_COUNT, 0.0f),
+                    createDictionaryBlock(dictionary, dictionaryId),
+                    createDictionaryBlock(mapDictionary, mapDictionaryId),
+                    createRLEBlock(42, POSITION_COUNT)));
+        }
+
+        // All the pages share the dictionaries and the value, so they are sent without being decoded
+        TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(
+                types,
+                ImmutableList.of(0),
+                new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT),
+                outputBuffer,
+                OptionalInt.empty(),
+                new DataSize(128, MEGABYTE));
+        pages.forEach(operator::addInput);
+        operator.finish();
+        for (List<Page> partitionPages : outputBuffer.getPages().values()) {
+            for (Page page : partitionPages) {
+                assertTrue(page.getBlock(1) instanceof DictionaryBlock);
+                assertTrue(page.getBlock(2) instanceof DictionaryBlock);
+                assertTrue(page.getBlock(3) instanceof RunLengthEncodedBlock);
+            }
+        }
+
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE));
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE));
+
+        // Change the dictionaries and the value half way through
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages.add(new Page(
+                    createRandomLongsBlock(POSITION_COUNT, 0.0f),
+                    createDictionaryBlock(dictionary, randomDictionaryId()),
+                    createDictionaryBlock(mapDictionary, randomDictionaryId()),
+                    createRLEBlock(i, POSITION_COUNT)));
+        }
+
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE));
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE));
+    }
+
+    @Test
+    public void testPartitionedToConsecutiveConsumers()
+    {
+        List<Type> targetTypes = ImmutableList.of(BIGINT, VARCHAR);
+        List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages.add(PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT, true, false, 0.2f, 0.2f, false, ImmutableList.of()));
+        }
+
+        // every row is sent to the partition it hashes to and to the two partitions after it
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE), ImmutableList.of(0), new PrecomputedHashGenerator(0), OptionalInt.of(3));
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE), ImmutableList.of(0), new PrecomputedHashGenerator(0), OptionalInt.of(3));
+    }
+
+    private static DictionaryBlock createDictionaryBlock(Block dictionary, DictionaryId dictionaryId)
+    {
+        int[] ids = IntStream.range(0, POSITION_COUNT).map(i -> RANDOM.nextInt(dictionary.getPositionCount())).toArray();
+        return new DictionaryBlock(0, POSITION_COUNT, dictionary, ids, false, dictionaryId);
+    }
+
     private void testPartitionedSinglePage(List<Type> targetTypes)
     {
         List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
@@ -678,6 +759,11 @@ public class TestOptimizedPartitionedOutputOperator
     }
 
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator)
+    {
+        testPartitioned(types, pages, maxMemory, partitionChannel, hashGenerator, OptionalInt.empty());
+    }
+
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator, OptionalInt consumersPerPartition)
     {
         TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
         PartitionFunction partitionFunction = new LocalPartitionGenerator(hashGenerator, PARTITION_COUNT);
@@ -687,6 +773,7 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionFunction,
                 outputBuffer,
                 OptionalInt.empty(),
+                consumersPerPartition,
                 maxMemory);
 
         Map<Integer, List<Page>> expectedPageList = new HashMap<>();
@@ -695,7 +782,9 @@ public class TestOptimizedPartitionedOutputOperator
             Map<Integer, List<Integer>> positionsByPartition = new HashMap<>();
             for (int i = 0; i < page.getPositionCount(); i++) {
                 int partitionNumber = partitionFunction.getPartition(page, i);
-                positionsByPartition.computeIfAbsent(partitionNumber, k -> new ArrayList<>()).add(i);
+                for (int consumer = 0; consumer < consumersPerPartition.orElse(1); consumer++) {
+                    positionsByPartition.computeIfAbsent((partitionNumber + consumer) % PARTITION_COUNT, k -> new ArrayList<>()).add(i);
+                }
             }
 
             for (Map.Entry<Integer, List<Integer>> entry : positionsByPartition.entrySet()) {
@@ -776,6 +865,18 @@ public class TestOptimizedPartitionedOutputOperator
             PartitionedOutputBuffer buffer,
             OptionalInt nullChannel,
             DataSize maxMemory)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, OptionalInt.empty(), maxMemory);
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            OptionalInt consumersPerPartition,
+            DataSize maxMemory)
     {
         PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), false);
 
@@ -784,7 +885,9 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionChannel,
                 ImmutableList.of(Optional.empty()),
                 false,
-                nullChannel);
+                nullChannel,
+                false,
+                consumersPerPartition);
 
         OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory);
 
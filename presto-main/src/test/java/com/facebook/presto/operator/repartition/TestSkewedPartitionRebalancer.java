@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSkewedPartitionRebalancer
+{
+    private static final long REBALANCE_INTERVAL_BYTES = 1000;
+
+    @Test
+    public void testUniformPartitionsAreNotSplit()
+    {
+        SkewedPartitionRebalancer rebalancer = new SkewedPartitionRebalancer(4, 4, REBALANCE_INTERVAL_BYTES);
+        for (int i = 0; i < 10; i++) {
+            for (int partition = 0; partition < 4; partition++) {
+                assertEquals(rebalancer.getConsumer(partition, 100), partition);
+            }
+            assertFalse(rebalancer.rebalance());
+        }
+    }
+
+    @Test
+    public void testNoRebalanceBeforeInterval()
+    {
+        SkewedPartitionRebalancer rebalancer = new SkewedPartitionRebalancer(4, 4, REBALANCE_INTERVAL_BYTES);
+        rebalancer.getConsumer(0, REBALANCE_INTERVAL_BYTES - 1);
+        assertFalse(rebalancer.rebalance());
+        assertEquals(rebalancer.getConsumerCount(0), 1);
+
+        rebalancer.getConsumer(0, 1);
+        assertTrue(rebalancer.rebalance());
+        assertEquals(rebalancer.getConsumerCount(0), 2);
+    }
+
+    @Test
+    public void testSkewedPartitionIsSplit()
+    {
+        SkewedPartitionRebalancer rebalancer = new SkewedPartitionRebalancer(4, 4, REBALANCE_INTERVAL_BYTES);
+        rebalancer.getConsumer(0, 700);
+        rebalancer.getConsumer(1, 200);
+        rebalancer.getConsumer(2, 100);
+        assertTrue(rebalancer.rebalance());
+        assertEquals(rebalancer.getConsumerCount(0), 2);
+        assertEquals(rebalancer.getConsumerCount(1), 1);
+
+        // the new consumer is the one that received the least data
+        Set<Integer> consumers = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            consumers.add(rebalancer.getConsumer(0, 1));
+        }
+        assertEquals(consumers, ImmutableSet.of(0, 3));
+
+        // other partitions keep their consumer
+        assertEquals(rebalancer.getConsumer(1, 1), 1);
+        assertEquals(rebalancer.getConsumer(2, 1), 2);
+    }
+
+    @Test
+    public void testSinglePartitionSpreadsOverAllConsumers()
+    {
+        int partitionCount = 4;
+        SkewedPartitionRebalancer rebalancer = new SkewedPartitionRebalancer(partitionCount, partitionCount, REBALANCE_INTERVAL_BYTES);
+        for (int i = 0; i < 10; i++) {
+            for (int row = 0; row < 10; row++) {
+                rebalancer.getConsumer(0, 100);
+            }
+            rebalancer.rebalance();
+        }
+        assertEquals(rebalancer.getConsumerCount(0), partitionCount);
+
+        // rows are sent round robin
+        int first = rebalancer.getConsumer(0, 1);
+        assertNotEquals(rebalancer.getConsumer(0, 1), first);
+        for (int i = 0; i < partitionCount - 2; i++) {
+            rebalancer.getConsumer(0, 1);
+        }
+        assertEquals(rebalancer.getConsumer(0, 1), first);
+
+        // all consumers already receive the partition
+        for (int row = 0; row < 10; row++) {
+            rebalancer.getConsumer(0, 100);
+        }
+        assertFalse(rebalancer.rebalance());
+    }
+
+    @Test
+    public void testConsumersAreLimitedToFollowingPartitions()
+    {
+        SkewedPartitionRebalancer rebalancer = new SkewedPartitionRebalancer(4, 2, REBALANCE_INTERVAL_BYTES);
+        rebalancer.getConsumer(3, 700);
+        rebalancer.getConsumer(2, 300);
+        rebalancer.getConsumer(0, 100);
+        assertTrue(rebalancer.rebalance());
+        assertEquals(rebalancer.getConsumerCount(3), 2);
+
+        // the partition after the last one is the first one, even though the second one received less data
+        Set<Integer> consumers = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            consumers.add(rebalancer.getConsumer(3, 1));
+        }
+        assertEquals(consumers, ImmutableSet.of(3, 0));
+
+        // no more consumers can be added to the partition
+        for (int i = 0; i < 10; i++) {
+            rebalancer.getConsumer(3, 1000);
+        }
+        assertFalse(rebalancer.rebalance());
+        assertEquals(rebalancer.getConsumerCount(3), 2);
+    }
+}
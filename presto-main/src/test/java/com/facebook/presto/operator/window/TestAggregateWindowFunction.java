@@ -17,8 +17,10 @@ import com.facebook.presto.testing.MaterializedResult;
 import org.intellij.lang.annotations.Language;
 import org.testng.annotations.Test;
 
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
@@ -530,4 +532,81 @@ public class TestAggregateWindowFunction
                         .row(null, null, null)
                         .build());
     }
+
+    @Test
+    public void testSlidingFrameWithNulls()
+    {
+        assertWindowQueryWithNulls("sum(orderkey) OVER (PARTITION BY orderstatus ORDER BY orderkey " +
+                        "ROWS BETWEEN 1 PRECEDING AND CURRENT ROW)",
+                resultBuilder(TEST_SESSION, BIGINT, VARCHAR, BIGINT)
+                        .row(3L, "F", 3L)
+                        .row(5L, "F", 8L)
+                        .row(6L, "F", 11L)
+                        .row(null, "F", 6L)
+                        .row(34L, "O", 34L)
+                        .row(null, "O", 34L)
+                        .row(1L, null, 1L)
+                        .row(7L, null, 8L)
+                        .row(null, null, 7L)
+                        .row(null, null, null)
+                        .build());
+
+        assertWindowQueryWithNulls("count(orderkey) OVER (PARTITION BY orderstatus ORDER BY orderkey " +
+                        "ROWS BETWEEN 1 PRECEDING AND CURRENT ROW)",
+                resultBuilder(TEST_SESSION, BIGINT, VARCHAR, BIGINT)
+                        .row(3L, "F", 1L)
+                        .row(5L, "F", 2L)
+                        .row(6L, "F", 2L)
+                        .row(null, "F", 1L)
+                        .row(34L, "O", 1L)
+                        .row(null, "O", 1L)
+                        .row(1L, null, 1L)
+                        .row(7L, null, 2L)
+                        .row(null, null, 1L)
+                        .row(null, null, 0L)
+                        .build());
+    }
+
+    @Test
+    public void testSlidingFrameIntermediateOverflow()
+    {
+        // retracting the first row of the frame ending at k = 2 overflows, while the sum of the next frame does not
+        MaterializedResult actual = queryRunner.execute("" +
+                "SELECT k, sum(x) OVER (ORDER BY k ROWS BETWEEN s PRECEDING AND CURRENT ROW)\n" +
+                "FROM (VALUES (0, BIGINT '9223372036854775807', 0), (1, BIGINT '-9223372036854775807', 1), (2, BIGINT '-10', 2), (3, BIGINT '5', 1)) t(k, x, s)");
+
+        MaterializedResult expected = resultBuilder(TEST_SESSION, INTEGER, BIGINT)
+                .row(0, Long.MAX_VALUE)
+                .row(1, 0L)
+                .row(2, -10L)
+                .row(3, -5L)
+                .build();
+
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+    }
+
+    @Test
+    public void testLargeSlidingFrame()
+    {
+        MaterializedResult actual = queryRunner.execute("" +
+                "SELECT x,\n" +
+                "  min(x) OVER (ORDER BY x ROWS BETWEEN 40 PRECEDING AND CURRENT ROW),\n" +
+                "  avg(x) OVER (ORDER BY x ROWS BETWEEN 40 PRECEDING AND CURRENT ROW),\n" +
+                "  max(x) OVER (ORDER BY x ROWS BETWEEN 10 FOLLOWING AND 50 FOLLOWING),\n" +
+                "  sum(x) OVER (ORDER BY x ROWS BETWEEN 40 PRECEDING AND CURRENT ROW)\n" +
+                "FROM UNNEST(sequence(1, 100)) t(x)");
+
+        MaterializedResult.Builder expected = resultBuilder(TEST_SESSION, BIGINT, BIGINT, DOUBLE, BIGINT, BIGINT);
+        for (long x = 1; x <= 100; x++) {
+            long frameStart = Math.max(1, x - 40);
+            expected.row(
+                    x,
+                    frameStart,
+                    (frameStart + x) / 2.0,
+                    x + 10 <= 100 ? Math.min(x + 50, 100) : null,
+                    (frameStart + x) * (x - frameStart + 1) / 2);
+        }
+
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.build().getMaterializedRows());
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.presto.spi.page.PageCodecMarker;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPage;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPages;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Sends a gigabyte of serialized pages over a loopback connection per operation, so the score is the time
+ * it takes to move a gigabyte through the exchange path. The {@code cpuMillisPerGigabyte} counter reports
+ * the CPU time spent by the sending and the receiving thread per gigabyte.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 2000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 2000, timeUnit = MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkPageTransport
+{
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final long BYTES_PER_OPERATION = 1L << 30;
+
+    @Benchmark
+    public long sliceStream(BenchmarkData data, CpuCounters counters)
+            throws Exception
+    {
+        long cpuStart = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        Future<Long> writerCpu = data.writer.submit(() -> {
+            long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            SliceOutput output = new OutputStreamSliceOutput(data.output);
+            for (int i = 0; i < data.iterations; i++) {
+                writeSerializedPages(output, data.pages);
+            }
+            output.flush();
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime() - start;
+        });
+
+        long positions = 0;
+        for (int i = 0; i < data.pageCountPerOperation; i++) {
+            positions += readSerializedPage(data.sliceInput).getPositionCount();
+        }
+        counters.add(THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart + writerCpu.get());
+        return positions;
+    }
+
+    @Benchmark
+    public long directStream(BenchmarkData data, CpuCounters counters)
+            throws Exception
+    {
+        long cpuStart = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        Future<Long> writerCpu = data.writer.submit(() -> {
+            long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            for (int i = 0; i < data.iterations; i++) {
+                writeSerializedPages(data.output, data.pages);
+            }
+            data.output.flush();
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime() - start;
+        });
+
+        long positions = 0;
+        for (int i = 0; i < data.pageCountPerOperation; i++) {
+            positions += data.pageIterator.next().getPositionCount();
+        }
+        counters.add(THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart + writerCpu.get());
+        return positions;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class CpuCounters
+    {
+        private long cpuNanos;
+        private long operations;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            cpuNanos = 0;
+            operations = 0;
+        }
+
+        private void add(long cpuNanos)
+        {
+            this.cpuNanos += cpuNanos;
+            operations++;
+        }
+
+        public double cpuMillisPerGigabyte()
+        {
+            return operations == 0 ? 0 : (double) cpuNanos / operations / MILLISECONDS.toNanos(1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"16384", "1048576"})
+        private int pageSizeInBytes = 1048576;
+
+        private List<SerializedPage> pages;
+        private int iterations;
+        private int pageCountPerOperation;
+
+        private final ExecutorService writer = newSingleThreadExecutor(daemonThreadsNamed("benchmark-page-transport-writer"));
+        private ServerSocket serverSocket;
+        private Socket clientSocket;
+        private Socket serverSideSocket;
+        private OutputStream output;
+        private SliceInput sliceInput;
+        private Iterator<SerializedPage> pageIterator;
+
+        @Setup
+        public void setup()
+                throws IOException
+        {
+            byte[] bytes = new byte[pageSizeInBytes];
+            new Random(0).nextBytes(bytes);
+
+            // a batch of pages as returned by a single exchange request
+            int pagesPerBatch = Math.max(1, (16 << 20) / pageSizeInBytes);
+            ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+            for (int i = 0; i < pagesPerBatch; i++) {
+                pages.add(new SerializedPage(Slices.wrappedBuffer(bytes), PageCodecMarker.none(), 1024, pageSizeInBytes));
+            }
+            this.pages = pages.build();
+            this.iterations = (int) (BYTES_PER_OPERATION / ((long) pagesPerBatch * pageSizeInBytes));
+            this.pageCountPerOperation = iterations * pagesPerBatch;
+
+            serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+            serverSideSocket = serverSocket.accept();
+            output = serverSideSocket.getOutputStream();
+            InputStream input = clientSocket.getInputStream();
+            sliceInput = new InputStreamSliceInput(input);
+            pageIterator = readSerializedPages(input);
+        }
+
+        @TearDown
+        public void tearDown()
+                throws IOException
+        {
+            writer.shutdownNow();
+            clientSocket.close();
+            serverSideSocket.close();
+            serverSocket.close();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkPageTransport.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -31,6 +31,7 @@ import com.facebook.presto.execution.QueryManagerConfig;
 import com.facebook.presto.execution.RemoteTask;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskInfoDelta;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.execution.TaskSource;
 import com.facebook.presto.execution.TaskState;
@@ -45,6 +46,7 @@ import com.facebook.presto.metadata.HandleResolver;
 import com.facebook.presto.metadata.InternalNode;
 import com.facebook.presto.metadata.MetadataUpdates;
 import com.facebook.presto.metadata.Split;
+import com.facebook.presto.operator.PipelineStats;
 import com.facebook.presto.server.InternalCommunicationConfig;
 import com.facebook.presto.server.TaskUpdateRequest;
 import com.facebook.presto.server.smile.SmileCodec;
@@ -60,6 +62,7 @@ import com.facebook.presto.testing.TestingHandleResolver;
 import com.facebook.presto.testing.TestingSplit;
 import com.facebook.presto.testing.TestingTransactionHandle;
 import com.facebook.presto.type.TypeDeserializer;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Binder;
@@ -85,7 +88,9 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -104,11 +109,15 @@ import static com.facebook.drift.codec.guice.ThriftCodecBinder.thriftCodecBinder
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INFO_FINGERPRINTS;
+import static com.facebook.presto.execution.TaskInfoDelta.createTaskInfoDelta;
+import static com.facebook.presto.execution.TaskInfoDelta.parseFingerprints;
 import static com.facebook.presto.execution.TaskTestUtils.TABLE_SCAN_NODE_ID;
 import static com.facebook.presto.execution.TaskTestUtils.createPlanFragment;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
 import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
 import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
+import static com.facebook.presto.operator.TestPipelineStats.EXPECTED;
 import static com.facebook.presto.server.smile.SmileCodecBinder.smileCodecBinder;
 import static com.facebook.presto.spi.SplitContext.NON_CACHEABLE;
 import static com.facebook.presto.spi.StandardErrorCode.REMOTE_TASK_ERROR;
@@ -196,6 +205,55 @@ public class TestHttpRemoteTask
         httpRemoteTaskFactory.stop();
     }
 
+    @Test(timeOut = 30000)
+    public void testInfoDelta()
+            throws Exception
+    {
+        AtomicLong lastActivityNanos = new AtomicLong(System.nanoTime());
+        TestingTaskResource testingTaskResource = new TestingTaskResource(lastActivityNanos, FailureScenario.NO_FAILURE);
+
+        TaskManagerConfig taskManagerConfig = new TaskManagerConfig()
+                .setStatusRefreshMaxWait(TASK_MANAGER_CONFIG.getStatusRefreshMaxWait())
+                .setInfoUpdateInterval(TASK_MANAGER_CONFIG.getInfoUpdateInterval())
+                .setInfoDeltaEnabled(true);
+        HttpRemoteTaskFactory httpRemoteTaskFactory = createHttpRemoteTaskFactory(testingTaskResource, false, taskManagerConfig);
+
+        RemoteTask remoteTask = createRemoteTask(httpRemoteTaskFactory);
+
+        testingTaskResource.setInitialTaskInfo(remoteTask.getTaskInfo());
+        remoteTask.start();
+
+        testingTaskResource.setPipelines(ImmutableList.of(EXPECTED, EXPECTED.summarize()));
+        poll(() -> remoteTask.getTaskInfo().getStats().getPipelines().size() == 2);
+        // once the coordinator sends the fingerprints of both pipelines, the unchanged pipelines are left out
+        poll(() -> testingTaskResource.getInfoDeltas().stream()
+                .anyMatch(delta -> delta.getFingerprints().size() == 5 && delta.getPipelines().isEmpty() && delta.getOmittedParts() == 4 && delta.getOmittedBytes() == 4));
+
+        // the second pipeline changes and a third one is added
+        testingTaskResource.setPipelines(ImmutableList.of(EXPECTED, EXPECTED, EXPECTED));
+        poll(() -> remoteTask.getTaskInfo().getStats().getPipelines().size() == 3);
+        assertTrue(testingTaskResource.getInfoDeltas().stream()
+                .anyMatch(delta -> delta.getPipelines().keySet().equals(ImmutableSet.of(1, 2))));
+
+        // more polls rebuild the same task info from the previous one
+        int deltas = testingTaskResource.getInfoDeltas().size();
+        poll(() -> testingTaskResource.getInfoDeltas().size() >= deltas + 3);
+        TaskInfo taskInfo = remoteTask.getTaskInfo();
+        assertEquals(taskInfo.getTaskId(), testingTaskResource.getInitialTaskInfo().getTaskId());
+        for (PipelineStats pipeline : taskInfo.getStats().getPipelines()) {
+            assertEquals(pipeline.getPipelineId(), EXPECTED.getPipelineId());
+            assertEquals(pipeline.getTotalCpuTimeInNanos(), EXPECTED.getTotalCpuTimeInNanos());
+            assertEquals(pipeline.getOperatorSummaries().size(), EXPECTED.getOperatorSummaries().size());
+            assertEquals(pipeline.getDrivers().size(), EXPECTED.getDrivers().size());
+        }
+
+        remoteTask.cancel();
+        poll(() -> remoteTask.getTaskStatus().getState().isDone());
+        poll(() -> remoteTask.getTaskInfo().getTaskStatus().getState().isDone());
+
+        httpRemoteTaskFactory.stop();
+    }
+
     private void runTest(FailureScenario failureScenario, boolean useThriftEncoding)
             throws Exception
     {
@@ -245,6 +303,12 @@ public class TestHttpRemoteTask
 
     private static HttpRemoteTaskFactory createHttpRemoteTaskFactory(TestingTaskResource testingTaskResource, boolean useThriftEncoding)
             throws Exception
+    {
+        return createHttpRemoteTaskFactory(testingTaskResource, useThriftEncoding, TASK_MANAGER_CONFIG);
+    }
+
+    private static HttpRemoteTaskFactory createHttpRemoteTaskFactory(TestingTaskResource testingTaskResource, boolean useThriftEncoding, TaskManagerConfig taskManagerConfig)
+            throws Exception
     {
         Bootstrap app = new Bootstrap(
                 new JsonModule(),
@@ -265,11 +329,13 @@ public class TestHttpRemoteTask
                         newSetBinder(binder, Type.class);
                         smileCodecBinder(binder).bindSmileCodec(TaskStatus.class);
                         smileCodecBinder(binder).bindSmileCodec(TaskInfo.class);
+                        smileCodecBinder(binder).bindSmileCodec(TaskInfoDelta.class);
                         smileCodecBinder(binder).bindSmileCodec(TaskUpdateRequest.class);
                         smileCodecBinder(binder).bindSmileCodec(PlanFragment.class);
                         smileCodecBinder(binder).bindSmileCodec(MetadataUpdates.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskStatus.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskInfo.class);
+                        jsonCodecBinder(binder).bindJsonCodec(TaskInfoDelta.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskUpdateRequest.class);
                         jsonCodecBinder(binder).bindJsonCodec(PlanFragment.class);
                         jsonCodecBinder(binder).bindJsonCodec(MetadataUpdates.class);
@@ -287,6 +353,8 @@ public class TestHttpRemoteTask
                             ThriftCodec<TaskStatus> taskStatusThriftCodec,
                             JsonCodec<TaskInfo> taskInfoJsonCodec,
                             SmileCodec<TaskInfo> taskInfoSmileCodec,
+                            JsonCodec<TaskInfoDelta> taskInfoDeltaJsonCodec,
+                            SmileCodec<TaskInfoDelta> taskInfoDeltaSmileCodec,
                             JsonCodec<TaskUpdateRequest> taskUpdateRequestJsonCodec,
                             SmileCodec<TaskUpdateRequest> taskUpdateRequestSmileCodec,
                             JsonCodec<PlanFragment> planFragmentJsonCodec,
@@ -299,7 +367,7 @@ public class TestHttpRemoteTask
                         testingTaskResource.setHttpClient(testingHttpClient);
                         return new HttpRemoteTaskFactory(
                                 new QueryManagerConfig(),
-                                TASK_MANAGER_CONFIG,
+                                taskManagerConfig,
                                 testingHttpClient,
                                 new TestSqlTaskManager.MockLocationFactory(),
                                 taskStatusJsonCodec,
@@ -307,6 +375,8 @@ public class TestHttpRemoteTask
                                 taskStatusThriftCodec,
                                 taskInfoJsonCodec,
                                 taskInfoSmileCodec,
+                                taskInfoDeltaJsonCodec,
+                                taskInfoDeltaSmileCodec,
                                 taskUpdateRequestJsonCodec,
                                 taskUpdateRequestSmileCodec,
                                 planFragmentJsonCodec,
@@ -390,6 +460,9 @@ public class TestHttpRemoteTask
 
         private long statusFetchCounter;
 
+        private List<PipelineStats> pipelines = ImmutableList.of();
+        private final List<TaskInfoDelta> infoDeltas = new ArrayList<>();
+
         public TestingTaskResource(AtomicLong lastActivityNanos, FailureScenario failureScenario)
         {
             this.lastActivityNanos = requireNonNull(lastActivityNanos, "lastActivityNanos is null");
@@ -414,6 +487,33 @@ public class TestHttpRemoteTask
             return buildTaskInfo();
         }
 
+        @GET
+        @Path("{taskId}/delta")
+        @Produces(MediaType.APPLICATION_JSON)
+        public synchronized TaskInfoDelta getTaskInfoDelta(
+                @PathParam("taskId") final TaskId taskId,
+                @HeaderParam(PRESTO_CURRENT_STATE) TaskState currentState,
+                @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
+                @HeaderParam(PRESTO_TASK_INFO_FINGERPRINTS) String fingerprints,
+                @Context UriInfo uriInfo)
+        {
+            lastActivityNanos.set(System.nanoTime());
+            // every omitted part counts as one byte
+            TaskInfoDelta delta = createTaskInfoDelta(buildTaskInfo(), fingerprints == null ? ImmutableList.of() : parseFingerprints(fingerprints), value -> 1);
+            infoDeltas.add(delta);
+            return delta;
+        }
+
+        public synchronized List<TaskInfoDelta> getInfoDeltas()
+        {
+            return ImmutableList.copyOf(infoDeltas);
+        }
+
+        public synchronized void setPipelines(List<PipelineStats> pipelines)
+        {
+            this.pipelines = ImmutableList.copyOf(pipelines);
+        }
+
         Map<PlanNodeId, TaskSource> taskSourceMap = new HashMap<>();
 
         @POST
@@ -471,6 +571,11 @@ public class TestHttpRemoteTask
             return buildTaskInfo();
         }
 
+        public TaskInfo getInitialTaskInfo()
+        {
+            return initialTaskInfo;
+        }
+
         public void setInitialTaskInfo(TaskInfo initialTaskInfo)
         {
             this.initialTaskInfo = initialTaskInfo;
@@ -500,9 +605,10 @@ public class TestHttpRemoteTask
                     initialTaskInfo.getLastHeartbeat(),
                     initialTaskInfo.getOutputBuffers(),
                     initialTaskInfo.getNoMoreSplits(),
-                    initialTaskInfo.getStats(),
+                    initialTaskInfo.getStats().withPipelines(pipelines),
                     initialTaskInfo.isNeedsPlan(),
-                    initialTaskInfo.getMetadataUpdates());
+                    initialTaskInfo.getMetadataUpdates(),
+                    initialTaskInfo.getDynamicFilterDomains());
         }
 
         private TaskStatus buildTaskStatus()
@@ -540,6 +646,8 @@ public class TestHttpRemoteTask
                     initialTaskStatus.getFailures(),
                     initialTaskStatus.getQueuedPartitionedDrivers(),
                     initialTaskStatus.getRunningPartitionedDrivers(),
+                    initialTaskStatus.getQueuedPartitionedSplitsWeight(),
+                    initialTaskStatus.getRunningPartitionedSplitsWeight(),
                     initialTaskStatus.getOutputBufferUtilization(),
                     initialTaskStatus.isOutputBufferOverutilized(),
                     initialTaskStatus.getPhysicalWrittenDataSizeInBytes(),
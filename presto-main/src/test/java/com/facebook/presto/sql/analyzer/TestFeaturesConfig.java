@@ -15,6 +15,7 @@ package com.facebook.presto.sql.analyzer;
 
 import com.facebook.airlift.configuration.ConfigurationFactory;
 import com.facebook.airlift.configuration.testing.ConfigAssertions;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -63,9 +64,13 @@ public class TestFeaturesConfig
                 .setGroupedExecutionEnabled(true)
                 .setRecoverableGroupedExecutionEnabled(false)
                 .setMaxFailedTaskPercentage(0.3)
+                .setSpeculativeExecutionEnabled(false)
+                .setSpeculativeExecutionSlowTaskThreshold(3.0)
                 .setMaxStageRetries(0)
                 .setConcurrentLifespansPerTask(0)
                 .setFastInequalityJoins(true)
+                .setRangeJoinsEnabled(false)
+                .setSemiJoinBloomFilterEnabled(false)
                 .setColocatedJoinsEnabled(true)
                 .setSpatialJoinsEnabled(true)
                 .setJoinReorderingStrategy(ELIMINATE_CROSS_JOINS)
@@ -75,6 +80,8 @@ public class TestFeaturesConfig
                 .setScaleWriters(false)
                 .setWriterMinSize(new DataSize(32, MEGABYTE))
                 .setOptimizedScaleWriterProducerBuffer(false)
+                .setSplitSkewedWriterPartitions(false)
+                .setSkewedJoinConsumersPerPartition(1)
                 .setOptimizeMetadataQueries(false)
                 .setOptimizeHashGeneration(true)
                 .setPushTableWriteThroughUnion(true)
@@ -97,15 +104,22 @@ public class TestFeaturesConfig
                 .setTaskSpillingStrategy(ORDER_BY_CREATE_TIME)
                 .setSingleStreamSpillerChoice(SingleStreamSpillerChoice.LOCAL_FILE)
                 .setSpillerTempStorage("local")
+                .setSpoolingOutputBufferEnabled(false)
+                .setSpoolingOutputBufferThreshold(new DataSize(8, MEGABYTE))
+                .setSpoolingOutputBufferTempStorage("local")
                 .setMaxRevocableMemoryPerTask(new DataSize(500, MEGABYTE))
                 .setOptimizeMixedDistinctAggregations(false)
                 .setLegacyLogFunction(false)
                 .setIterativeOptimizerEnabled(true)
                 .setIterativeOptimizerTimeout(new Duration(3, MINUTES))
                 .setRuntimeOptimizerEnabled(false)
+                .setRuntimeJoinDistributionEnabled(false)
+                .setRuntimeBroadcastJoinMaxBuildSize(new DataSize(100, MEGABYTE))
                 .setEnableDynamicFiltering(false)
+                .setEnableDistributedDynamicFiltering(false)
                 .setDynamicFilteringMaxPerDriverRowCount(100)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(10, KILOBYTE))
+                .setBroadcastJoinBuildSharingEnabled(false)
                 .setFragmentResultCachingEnabled(false)
                 .setEnableStatsCalculator(true)
                 .setEnableStatsCollectionForTemporaryTable(false)
@@ -113,6 +127,8 @@ public class TestFeaturesConfig
                 .setPrintStatsForNonJoinQuery(false)
                 .setDefaultFilterFactorEnabled(false)
                 .setExchangeCompressionEnabled(false)
+                .setExchangeCompressionCodec(CompressionCodec.LZ4)
+                .setExchangeAdaptiveCompressionEnabled(false)
                 .setLegacyTimestamp(true)
                 .setLegacyRowFieldOrdinalAccess(false)
                 .setLegacyCharToVarcharCoercion(false)
@@ -126,6 +142,9 @@ public class TestFeaturesConfig
                 .setFilterAndProjectMinOutputPageRowCount(256)
                 .setUseMarkDistinct(true)
                 .setPreferPartialAggregation(true)
+                .setAdaptivePartialAggregationEnabled(false)
+                .setAdaptivePartialAggregationMinRows(100_000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.8)
                 .setOptimizeTopNRowNumber(true)
                 .setHistogramGroupImplementation(HistogramGroupImplementation.NEW)
                 .setArrayAggGroupImplementation(ArrayAggGroupImplementation.NEW)
@@ -163,9 +182,13 @@ public class TestFeaturesConfig
                 .put("experimental.iterative-optimizer-enabled", "false")
                 .put("experimental.iterative-optimizer-timeout", "10s")
                 .put("experimental.runtime-optimizer-enabled", "true")
+                .put("experimental.runtime-join-distribution-enabled", "true")
+                .put("experimental.runtime-broadcast-join-max-build-size", "1GB")
                 .put("experimental.enable-dynamic-filtering", "true")
+                .put("experimental.enable-distributed-dynamic-filtering", "true")
                 .put("experimental.dynamic-filtering-max-per-driver-row-count", "256")
                 .put("experimental.dynamic-filtering-max-per-driver-size", "64kB")
+                .put("broadcast-join-build-sharing-enabled", "true")
                 .put("experimental.fragment-result-caching-enabled", "true")
                 .put("experimental.enable-stats-calculator", "false")
                 .put("experimental.enable-stats-collection-for-temporary-table", "true")
@@ -185,9 +208,13 @@ public class TestFeaturesConfig
                 .put("grouped-execution-enabled", "false")
                 .put("recoverable-grouped-execution-enabled", "true")
                 .put("max-failed-task-percentage", "0.8")
+                .put("speculative-execution-enabled", "true")
+                .put("speculative-execution-slow-task-threshold", "2.5")
                 .put("max-stage-retries", "10")
                 .put("concurrent-lifespans-per-task", "1")
                 .put("fast-inequality-joins", "false")
+                .put("range-joins-enabled", "true")
+                .put("semi-join-bloom-filter-enabled", "true")
                 .put("colocated-joins-enabled", "false")
                 .put("spatial-joins-enabled", "false")
                 .put("optimizer.join-reordering-strategy", "NONE")
@@ -197,6 +224,8 @@ public class TestFeaturesConfig
                 .put("scale-writers", "true")
                 .put("writer-min-size", "42GB")
                 .put("optimized-scale-writer-producer-buffer", "true")
+                .put("split-skewed-writer-partitions", "true")
+                .put("skewed-join-consumers-per-partition", "4")
                 .put("optimizer.optimize-metadata-queries", "true")
                 .put("optimizer.optimize-hash-generation", "false")
                 .put("optimizer.optimize-mixed-distinct-aggregations", "true")
@@ -218,8 +247,13 @@ public class TestFeaturesConfig
                 .put("experimental.spiller.task-spilling-strategy", "PER_TASK_MEMORY_THRESHOLD")
                 .put("experimental.spiller.single-stream-spiller-choice", "TEMP_STORAGE")
                 .put("experimental.spiller.spiller-temp-storage", "crail")
+                .put("spooling-output-buffer-enabled", "true")
+                .put("spooling-output-buffer-threshold", "16MB")
+                .put("spooling-output-buffer-temp-storage", "tempfs")
                 .put("experimental.spiller.max-revocable-task-memory", "1GB")
                 .put("exchange.compression-enabled", "true")
+                .put("exchange.compression-codec", "ZSTD")
+                .put("exchange.adaptive-compression-enabled", "true")
                 .put("deprecated.legacy-timestamp", "false")
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .put("parse-decimal-literals-as-double", "true")
@@ -232,6 +266,9 @@ public class TestFeaturesConfig
                 .put("multimapagg.implementation", "LEGACY")
                 .put("optimizer.use-mark-distinct", "false")
                 .put("optimizer.prefer-partial-aggregation", "false")
+                .put("adaptive-partial-aggregation.enabled", "true")
+                .put("adaptive-partial-aggregation.min-rows", "1000")
+                .put("adaptive-partial-aggregation.unique-rows-ratio-threshold", "0.5")
                 .put("optimizer.optimize-top-n-row-number", "false")
                 .put("distributed-sort", "false")
                 .put("analyzer.max-grouping-sets", "2047")
@@ -263,9 +300,13 @@ public class TestFeaturesConfig
                 .setIterativeOptimizerEnabled(false)
                 .setIterativeOptimizerTimeout(new Duration(10, SECONDS))
                 .setRuntimeOptimizerEnabled(true)
+                .setRuntimeJoinDistributionEnabled(true)
+                .setRuntimeBroadcastJoinMaxBuildSize(new DataSize(1, GIGABYTE))
                 .setEnableDynamicFiltering(true)
+                .setEnableDistributedDynamicFiltering(true)
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
+                .setBroadcastJoinBuildSharingEnabled(true)
                 .setFragmentResultCachingEnabled(true)
                 .setEnableStatsCalculator(false)
                 .setEnableStatsCollectionForTemporaryTable(true)
@@ -277,9 +318,13 @@ public class TestFeaturesConfig
                 .setGroupedExecutionEnabled(false)
                 .setRecoverableGroupedExecutionEnabled(true)
                 .setMaxFailedTaskPercentage(0.8)
+                .setSpeculativeExecutionEnabled(true)
+                .setSpeculativeExecutionSlowTaskThreshold(2.5)
                 .setMaxStageRetries(10)
                 .setConcurrentLifespansPerTask(1)
                 .setFastInequalityJoins(false)
+                .setRangeJoinsEnabled(true)
+                .setSemiJoinBloomFilterEnabled(true)
                 .setColocatedJoinsEnabled(false)
                 .setSpatialJoinsEnabled(false)
                 .setJoinReorderingStrategy(NONE)
@@ -289,6 +334,8 @@ public class TestFeaturesConfig
                 .setScaleWriters(true)
                 .setWriterMinSize(new DataSize(42, GIGABYTE))
                 .setOptimizedScaleWriterProducerBuffer(true)
+                .setSplitSkewedWriterPartitions(true)
+                .setSkewedJoinConsumersPerPartition(4)
                 .setOptimizeMetadataQueries(true)
                 .setOptimizeHashGeneration(false)
                 .setOptimizeMixedDistinctAggregations(true)
@@ -313,9 +360,14 @@ public class TestFeaturesConfig
                 .setTaskSpillingStrategy(PER_TASK_MEMORY_THRESHOLD)
                 .setSingleStreamSpillerChoice(SingleStreamSpillerChoice.TEMP_STORAGE)
                 .setSpillerTempStorage("crail")
+                .setSpoolingOutputBufferEnabled(true)
+                .setSpoolingOutputBufferThreshold(new DataSize(16, MEGABYTE))
+                .setSpoolingOutputBufferTempStorage("tempfs")
                 .setMaxRevocableMemoryPerTask(new DataSize(1, GIGABYTE))
                 .setLegacyLogFunction(true)
                 .setExchangeCompressionEnabled(true)
+                .setExchangeCompressionCodec(CompressionCodec.ZSTD)
+                .setExchangeAdaptiveCompressionEnabled(true)
                 .setLegacyTimestamp(false)
                 .setLegacyRowFieldOrdinalAccess(true)
                 .setLegacyCharToVarcharCoercion(true)
@@ -328,6 +380,9 @@ public class TestFeaturesConfig
                 .setFilterAndProjectMinOutputPageRowCount(2048)
                 .setUseMarkDistinct(false)
                 .setPreferPartialAggregation(false)
+                .setAdaptivePartialAggregationEnabled(true)
+                .setAdaptivePartialAggregationMinRows(1000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.5)
                 .setOptimizeTopNRowNumber(false)
                 .setHistogramGroupImplementation(HistogramGroupImplementation.LEGACY)
                 .setArrayAggGroupImplementation(ArrayAggGroupImplementation.LEGACY)
@@ -224,6 +224,34 @@ public class TestLocalDynamicFilter
         assertEquals(LocalDynamicFilter.create(joinNode, 1), Optional.empty());
     }
 
+    @Test
+    public void testCreateDistributedJoinWithRemoteFilters()
+            throws ExecutionException, InterruptedException
+    {
+        Session session = Session.builder(getQueryRunner().getDefaultSession())
+                .setSystemProperty(JOIN_DISTRIBUTION_TYPE, "PARTITIONED")
+                .build();
+        SubPlan subplan = subplan(
+                "SELECT count() FROM nation, region WHERE nation.regionkey = region.regionkey " + "AND region.comment = 'abc'",
+                LogicalPlanner.Stage.OPTIMIZED_AND_VALIDATED,
+                false,
+                session);
+        JoinNode joinNode = searchJoins(subplan.getChildren().get(0).getFragment()).findOnlyElement();
+        LocalDynamicFilter filter = LocalDynamicFilter.create(joinNode, 2, true).orElseThrow(NoSuchElementException::new);
+        String filterId = Iterables.getOnlyElement(filter.getBuildChannels().keySet());
+
+        filter.getTupleDomainConsumer().accept(TupleDomain.withColumnDomains(ImmutableMap.of(
+                filterId, Domain.singleValue(BIGINT, 1L))));
+        assertFalse(filter.getFilterIdResultFuture().isDone());
+        filter.getTupleDomainConsumer().accept(TupleDomain.withColumnDomains(ImmutableMap.of(
+                filterId, Domain.singleValue(BIGINT, 2L))));
+
+        // the probe side is in another fragment, so there is nothing to filter locally
+        assertEquals(filter.getResultFuture().get(), TupleDomain.all());
+        assertEquals(filter.getFilterIdResultFuture().get(), TupleDomain.withColumnDomains(ImmutableMap.of(
+                filterId, Domain.multipleValues(BIGINT, ImmutableList.of(1L, 2L)))));
+    }
+
     @Test
     public void testCreateMultipleCriteria()
             throws ExecutionException, InterruptedException
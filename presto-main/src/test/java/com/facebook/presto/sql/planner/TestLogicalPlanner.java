@@ -51,6 +51,7 @@ import static com.facebook.presto.SystemSessionProperties.FORCE_SINGLE_NODE_OUTP
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
 import static com.facebook.presto.SystemSessionProperties.OPTIMIZE_HASH_GENERATION;
 import static com.facebook.presto.SystemSessionProperties.OPTIMIZE_NULLS_IN_JOINS;
+import static com.facebook.presto.SystemSessionProperties.RANGE_JOINS;
 import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
 import static com.facebook.presto.common.predicate.Domain.singleValue;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -357,6 +358,32 @@ public class TestLogicalPlanner
                                         any(tableScan("lineitem", ImmutableMap.of("L_ORDERKEY", "orderkey")))))));
     }
 
+    @Test
+    public void testRangeJoin()
+    {
+        Session rangeJoins = Session.builder(this.getQueryRunner().getDefaultSession())
+                .setSystemProperty(RANGE_JOINS, "true")
+                .build();
+        assertDistributedPlan("SELECT 1 FROM orders o JOIN lineitem l ON o.orderkey BETWEEN l.orderkey AND l.partkey",
+                rangeJoins,
+                anyTree(
+                        anyNot(FilterNode.class,
+                                join(INNER, ImmutableList.of(), Optional.of("O_ORDERKEY BETWEEN L_ORDERKEY AND L_PARTKEY"),
+                                        anyTree(tableScan("orders", ImmutableMap.of("O_ORDERKEY", "orderkey"))),
+                                        anyTree(tableScan("lineitem", ImmutableMap.of(
+                                                "L_ORDERKEY", "orderkey",
+                                                "L_PARTKEY", "partkey")))))));
+
+        // a filter that cannot be used to binary search the build side is still planned as a cross join
+        assertDistributedPlan("SELECT 1 FROM orders o JOIN lineitem l ON o.orderkey + l.orderkey < 10",
+                rangeJoins,
+                anyTree(
+                        filter("O_ORDERKEY + L_ORDERKEY < BIGINT '10'",
+                                join(INNER, ImmutableList.of(), Optional.empty(),
+                                        anyTree(tableScan("orders", ImmutableMap.of("O_ORDERKEY", "orderkey"))),
+                                        anyTree(tableScan("lineitem", ImmutableMap.of("L_ORDERKEY", "orderkey")))))));
+    }
+
     @Test
     public void testInnerInequalityJoinWithEquiJoinConjuncts()
     {
@@ -81,6 +81,24 @@ public class TestSortExpressionExtractor
         assertGetSortExpression("b1 > p1 AND b1 <= p1 AND b2 > p1 AND b2 < p1 + 10 AND b2 > p2", "b2", "b2 > p1", "b2 < p1 + 10", "b2 > p2");
     }
 
+    @Test
+    public void testGetSortExpressionFromBetween()
+    {
+        assertGetSortExpression("b1 BETWEEN p1 AND p2 + 10", "b1", "b1 >= p1", "b1 <= p2 + 10");
+
+        assertGetSortExpression("p1 BETWEEN b1 AND b2", "b1", "b1 <= p1");
+
+        assertGetSortExpression("p1 BETWEEN b1 + 1 AND b2", "b2", "b2 >= p1");
+
+        assertGetSortExpression("p1 BETWEEN b1 AND b2 AND b1 > p2", "b1", "b1 <= p1", "b1 > p2");
+
+        assertNoSortExpression("b1 BETWEEN p1 AND b2");
+
+        assertNoSortExpression("p1 + b1 BETWEEN b1 AND b2");
+
+        assertNoSortExpression("p1 BETWEEN p2 AND 10");
+    }
+
     private Expression expression(String sql)
     {
         return rewriteIdentifiersToSymbolReferences(new SqlParser().createExpression(sql));
@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanVariableAllocator;
+import com.facebook.presto.sql.planner.TypeProvider;
+import com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.facebook.presto.SystemSessionProperties.SKEWED_JOIN_CONSUMERS_PER_PARTITION;
+import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
+import static com.facebook.presto.spi.WarningCollector.NOOP;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.FINAL;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_STREAMING;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.GATHER;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.REPARTITION;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSplitSkewedJoinPartitions
+{
+    private static final Session SESSION = testSessionBuilder()
+            .setSystemProperty(SKEWED_JOIN_CONSUMERS_PER_PARTITION, "3")
+            .build();
+
+    private final PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+    private final PlanBuilder planBuilder = new PlanBuilder(SESSION, idAllocator, createTestMetadataManager());
+    private final VariableReferenceExpression probeKey = planBuilder.variable("probe_key");
+    private final VariableReferenceExpression buildKey = planBuilder.variable("build_key");
+
+    @Test
+    public void testSplitProbeAndReplicateBuild()
+    {
+        for (JoinNode.Type joinType : ImmutableList.of(INNER, LEFT)) {
+            JoinNode join = getJoin(optimize(gather(join(joinType)), SESSION));
+
+            PartitioningScheme probeScheme = ((ExchangeNode) join.getLeft()).getPartitioningScheme();
+            assertTrue(probeScheme.isSplitSkewedPartitions());
+            assertEquals(probeScheme.getConsumersPerPartition(), OptionalInt.of(3));
+
+            // the build side is read through a local exchange
+            PartitioningScheme buildScheme = ((ExchangeNode) join.getRight().getSources().get(0)).getPartitioningScheme();
+            assertFalse(buildScheme.isSplitSkewedPartitions());
+            assertEquals(buildScheme.getConsumersPerPartition(), OptionalInt.of(3));
+        }
+    }
+
+    @Test
+    public void testPartialAggregationAboveJoin()
+    {
+        PlanNode plan = gather(planBuilder.aggregation(aggregation -> aggregation
+                .step(PARTIAL)
+                .singleGroupingSet(probeKey)
+                .source(join(INNER))));
+        JoinNode join = getJoin(optimize(plan, SESSION));
+        assertTrue(((ExchangeNode) join.getLeft()).getPartitioningScheme().isSplitSkewedPartitions());
+    }
+
+    @Test
+    public void testFinalAggregationAboveJoin()
+    {
+        // the aggregation relies on the join output being partitioned on the key
+        PlanNode plan = gather(planBuilder.aggregation(aggregation -> aggregation
+                .step(FINAL)
+                .singleGroupingSet(probeKey)
+                .source(join(INNER))));
+        assertUnchanged(plan, SESSION);
+    }
+
+    @Test
+    public void testFullJoin()
+    {
+        assertUnchanged(gather(join(FULL)), SESSION);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        assertUnchanged(gather(join(INNER)), testSessionBuilder().build());
+    }
+
+    private void assertUnchanged(PlanNode plan, Session session)
+    {
+        JoinNode join = getJoin(optimize(plan, session));
+        for (PartitioningScheme scheme : ImmutableList.of(
+                ((ExchangeNode) join.getLeft()).getPartitioningScheme(),
+                ((ExchangeNode) join.getRight().getSources().get(0)).getPartitioningScheme())) {
+            assertFalse(scheme.isSplitSkewedPartitions());
+            assertFalse(scheme.getConsumersPerPartition().isPresent());
+        }
+    }
+
+    private PlanNode optimize(PlanNode plan, Session session)
+    {
+        return new SplitSkewedJoinPartitions().optimize(plan, session, TypeProvider.empty(), new PlanVariableAllocator(), idAllocator, NOOP);
+    }
+
+    private static JoinNode getJoin(PlanNode plan)
+    {
+        return PlanNodeSearcher.searchFrom(plan)
+                .where(JoinNode.class::isInstance)
+                .findOnlyElement();
+    }
+
+    private JoinNode join(JoinNode.Type joinType)
+    {
+        ExchangeNode probe = partitionedExchange(REMOTE_STREAMING, planBuilder.values(probeKey), probeKey);
+        ExchangeNode build = partitionedExchange(LOCAL, partitionedExchange(REMOTE_STREAMING, planBuilder.values(buildKey), buildKey), buildKey);
+        return planBuilder.join(
+                joinType,
+                probe,
+                build,
+                ImmutableList.of(new JoinNode.EquiJoinClause(probeKey, buildKey)),
+                ImmutableList.of(probeKey, buildKey),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.of(PARTITIONED),
+                ImmutableMap.of());
+    }
+
+    private ExchangeNode partitionedExchange(ExchangeNode.Scope scope, PlanNode source, VariableReferenceExpression key)
+    {
+        return planBuilder.exchange(exchange -> exchange
+                .type(REPARTITION)
+                .scope(scope)
+                .fixedHashDistributionParitioningScheme(ImmutableList.of(key), ImmutableList.of(key))
+                .addSource(source)
+                .addInputsSet(key));
+    }
+
+    private ExchangeNode gather(PlanNode source)
+    {
+        List<VariableReferenceExpression> outputs = source.getOutputVariables();
+        return planBuilder.exchange(exchange -> exchange
+                .type(GATHER)
+                .scope(REMOTE_STREAMING)
+                .singleDistributionPartitioningScheme(outputs)
+                .addSource(source)
+                .addInputsSet(outputs));
+    }
+}
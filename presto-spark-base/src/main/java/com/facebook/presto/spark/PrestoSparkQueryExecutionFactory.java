@@ -575,7 +575,9 @@ public class PrestoSparkQueryExecutionFactory
                 succinctBytes(peakUserMemoryReservationInBytes),
                 succinctBytes(peakNodeTotalMemoryReservationInBytes),
                 1,
-                1);
+                1,
+                0,
+                0);
         return new StageInfo(
                 stageId,
                 URI.create("http://fake.invalid/stage/" + stageId),
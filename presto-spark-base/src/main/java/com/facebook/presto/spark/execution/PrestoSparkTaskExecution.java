@@ -214,7 +214,10 @@ public class PrestoSparkTaskExecution
 
     private synchronized void scheduleTableScanSource(DriverSplitRunnerFactory factory, List<ScheduledSplit> splits)
     {
-        factory.splitsAdded(splits.size());
+        long splitsWeight = splits.stream()
+                .mapToLong(scheduledSplit -> scheduledSplit.getSplit().getSplitWeight().getRawValue())
+                .sum();
+        factory.splitsAdded(splits.size(), splitsWeight);
 
         // Enqueue driver runners with split lifecycle for this plan node and driver life cycle combination.
         ImmutableList.Builder<DriverSplitRunner> runners = ImmutableList.builder();
@@ -339,7 +342,8 @@ public class PrestoSparkTaskExecution
             pendingCreation.incrementAndGet();
             // create driver context immediately so the driver existence is recorded in the stats
             // the number of drivers is used to balance work across nodes
-            DriverContext driverContext = pipelineContext.addDriverContext(Lifespan.taskWide());
+            long splitWeight = partitionedSplit == null ? 0 : partitionedSplit.getSplit().getSplitWeight().getRawValue();
+            DriverContext driverContext = pipelineContext.addDriverContext(Lifespan.taskWide(), splitWeight);
             return new DriverSplitRunner(this, driverContext, partitionedSplit);
         }
 
@@ -394,9 +398,9 @@ public class PrestoSparkTaskExecution
             return driverFactory.getDriverInstances();
         }
 
-        public void splitsAdded(int count)
+        public void splitsAdded(int count, long weightSum)
         {
-            pipelineContext.splitsAdded(count);
+            pipelineContext.splitsAdded(count, weightSum);
         }
     }
 
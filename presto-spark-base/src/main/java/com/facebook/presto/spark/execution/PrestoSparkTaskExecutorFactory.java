@@ -110,6 +110,7 @@ import static com.facebook.presto.spark.classloader_interface.PrestoSparkShuffle
 import static com.facebook.presto.spark.util.PrestoSparkUtils.compress;
 import static com.facebook.presto.spark.util.PrestoSparkUtils.decompress;
 import static com.facebook.presto.spark.util.PrestoSparkUtils.toPrestoSparkSerializedPage;
+import static com.facebook.presto.spi.SplitWeight.rawValueForStandardSplitCount;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
 import static com.facebook.presto.util.Failures.toFailures;
 import static com.fasterxml.jackson.databind.SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS;
@@ -678,6 +679,8 @@ public class PrestoSparkTaskExecutorFactory
                     failures,
                     taskStats.getQueuedPartitionedDrivers(),
                     taskStats.getRunningPartitionedDrivers(),
+                    rawValueForStandardSplitCount(taskStats.getQueuedPartitionedDrivers()),
+                    rawValueForStandardSplitCount(taskStats.getRunningPartitionedDrivers()),
                     0,
                     false,
                     taskStats.getPhysicalWrittenDataSizeInBytes(),
@@ -706,7 +709,8 @@ public class PrestoSparkTaskExecutorFactory
                     ImmutableSet.of(),
                     taskStats,
                     false,
-                    DEFAULT_METADATA_UPDATES);
+                    DEFAULT_METADATA_UPDATES,
+                    ImmutableMap.of());
         }
     }
 
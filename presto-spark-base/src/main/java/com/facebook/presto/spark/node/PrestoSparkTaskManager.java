@@ -14,6 +14,7 @@
 package com.facebook.presto.spark.node;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskInfo;
@@ -31,6 +32,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class PrestoSparkTaskManager
@@ -131,4 +133,10 @@ public class PrestoSparkTaskManager
     {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void updateDynamicFilterDomains(TaskId taskId, Map<String, Domain> dynamicFilterDomains)
+    {
+        throw new UnsupportedOperationException();
+    }
 }
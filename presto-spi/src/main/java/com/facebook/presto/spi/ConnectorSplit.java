@@ -48,4 +48,12 @@ public interface ConnectorSplit
     {
         return OptionalLong.empty();
     }
+
+    /**
+     * The relative amount of work of the split, which the scheduler balances across the nodes.
+     */
+    default SplitWeight getSplitWeight()
+    {
+        return SplitWeight.standard();
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import static java.lang.Math.addExact;
+import static java.lang.Math.multiplyExact;
+import static java.lang.String.format;
+
+/**
+ * The relative amount of work a split represents, used by the scheduler to balance the splits assigned to
+ * the nodes by weight rather than by count. A standard split has a weight of 1, which is stored as a raw
+ * value of {@value #UNIT_VALUE} so that fractional weights can be represented without floating point.
+ */
+public final class SplitWeight
+{
+    private static final long UNIT_VALUE = 100;
+    private static final SplitWeight STANDARD_WEIGHT = new SplitWeight(UNIT_VALUE);
+
+    private final long value;
+
+    private SplitWeight(long value)
+    {
+        if (value <= 0) {
+            throw new IllegalArgumentException("value must be positive: " + value);
+        }
+        this.value = value;
+    }
+
+    @JsonCreator
+    public static SplitWeight fromRawValue(long value)
+    {
+        return value == UNIT_VALUE ? STANDARD_WEIGHT : new SplitWeight(value);
+    }
+
+    /**
+     * Creates the weight of a split that represents {@code weight} times the work of a standard split.
+     * Weights are rounded up to the precision of the raw value, so they never become zero.
+     */
+    public static SplitWeight fromProportion(double weight)
+    {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException(format("invalid weight: %s", weight));
+        }
+        return fromRawValue((long) Math.ceil(weight * UNIT_VALUE));
+    }
+
+    public static SplitWeight standard()
+    {
+        return STANDARD_WEIGHT;
+    }
+
+    /**
+     * The raw value of the total weight of {@code splitCount} standard splits.
+     */
+    public static long rawValueForStandardSplitCount(int splitCount)
+    {
+        if (splitCount < 0) {
+            throw new IllegalArgumentException("splitCount must be non-negative: " + splitCount);
+        }
+        return multiplyExact(splitCount, UNIT_VALUE);
+    }
+
+    public static long rawValueSum(long left, SplitWeight right)
+    {
+        return addExact(left, right.getRawValue());
+    }
+
+    @JsonValue
+    public long getRawValue()
+    {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return value == ((SplitWeight) o).value;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("%s.%02d", value / UNIT_VALUE, value % UNIT_VALUE);
+    }
+}
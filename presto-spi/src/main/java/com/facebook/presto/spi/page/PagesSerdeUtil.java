@@ -19,18 +19,32 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import static com.facebook.presto.common.block.BlockSerdeUtil.readBlock;
 import static com.facebook.presto.common.block.BlockSerdeUtil.writeBlock;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
 import static java.lang.Math.toIntExact;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 
 public class PagesSerdeUtil
 {
+    /**
+     * Size of the header preceding the data of a serialized page: the position count, the codec markers,
+     * the uncompressed size and the size.
+     */
+    public static final int SERIALIZED_PAGE_HEADER_SIZE = SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT + SIZE_OF_INT;
+
     private PagesSerdeUtil()
     {
     }
@@ -85,6 +99,32 @@ public class PagesSerdeUtil
         return size;
     }
 
+    /**
+     * Writes the pages in the same format as {@link #writeSerializedPages(SliceOutput, Iterable)}, but hands the
+     * data of each page to the stream straight from the memory of its slice instead of copying it into a buffer first.
+     */
+    public static long writeSerializedPages(OutputStream output, Iterable<SerializedPage> pages)
+            throws IOException
+    {
+        Slice header = Slices.allocate(SERIALIZED_PAGE_HEADER_SIZE);
+        long size = 0;
+        for (SerializedPage page : pages) {
+            writeSerializedPageHeader(header, page);
+            output.write((byte[]) header.getBase(), 0, SERIALIZED_PAGE_HEADER_SIZE);
+            page.getSlice().getBytes(0, output, page.getSizeInBytes());
+            size += page.getSizeInBytes();
+        }
+        return size;
+    }
+
+    private static void writeSerializedPageHeader(Slice header, SerializedPage page)
+    {
+        header.setInt(0, page.getPositionCount());
+        header.setByte(SIZE_OF_INT, page.getPageCodecMarkers());
+        header.setInt(SIZE_OF_INT + SIZE_OF_BYTE, page.getUncompressedSizeInBytes());
+        header.setInt(SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT, page.getSizeInBytes());
+    }
+
     public static long writePages(PagesSerde serde, SliceOutput sliceOutput, Page... pages)
     {
         return writePages(serde, sliceOutput, asList(pages).iterator());
@@ -139,6 +179,91 @@ public class PagesSerdeUtil
         return new SerializedPageReader(sliceInput);
     }
 
+    /**
+     * Reads pages written by {@link #writeSerializedPages(OutputStream, Iterable)}. Unlike reading through an
+     * {@link io.airlift.slice.InputStreamSliceInput}, the data of each page is read from the stream straight into
+     * the array backing the page, so it is copied once instead of twice. The iterator reads until the end of the stream.
+     */
+    public static Iterator<SerializedPage> readSerializedPages(InputStream input)
+    {
+        return new SerializedPageStreamReader(input);
+    }
+
+    private static class SerializedPageStreamReader
+            implements Iterator<SerializedPage>
+    {
+        private final InputStream input;
+        private final Slice header = Slices.allocate(SERIALIZED_PAGE_HEADER_SIZE);
+        private boolean headerRead;
+        private boolean finished;
+
+        SerializedPageStreamReader(InputStream input)
+        {
+            this.input = requireNonNull(input, "input is null");
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (headerRead) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                byte[] headerBytes = (byte[]) header.getBase();
+                int firstByte = input.read();
+                if (firstByte < 0) {
+                    finished = true;
+                    return false;
+                }
+                headerBytes[0] = (byte) firstByte;
+                readFully(input, headerBytes, 1, SERIALIZED_PAGE_HEADER_SIZE - 1);
+                headerRead = true;
+                return true;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public SerializedPage next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            headerRead = false;
+
+            int positionCount = header.getInt(0);
+            byte codecMarker = header.getByte(SIZE_OF_INT);
+            int uncompressedSizeInBytes = header.getInt(SIZE_OF_INT + SIZE_OF_BYTE);
+            int sizeInBytes = header.getInt(SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT);
+            byte[] data = new byte[sizeInBytes];
+            try {
+                readFully(input, data, 0, sizeInBytes);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new SerializedPage(Slices.wrappedBuffer(data), codecMarker, positionCount, uncompressedSizeInBytes);
+        }
+
+        private static void readFully(InputStream input, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            while (length > 0) {
+                int read = input.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of serialized pages");
+                }
+                offset += read;
+                length -= read;
+            }
+        }
+    }
+
     private static class SerializedPageReader
             implements Iterator<SerializedPage>
     {
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class TestSplitWeight
+{
+    @Test
+    public void testFromProportion()
+    {
+        assertSame(SplitWeight.fromProportion(1.0), SplitWeight.standard());
+        assertEquals(SplitWeight.fromProportion(0.5).getRawValue(), 50);
+        assertEquals(SplitWeight.fromProportion(2.0).getRawValue(), 200);
+        // fractions below the precision of the raw value are rounded up
+        assertEquals(SplitWeight.fromProportion(0.0001).getRawValue(), 1);
+        assertEquals(SplitWeight.fromProportion(0.505).getRawValue(), 51);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroProportion()
+    {
+        SplitWeight.fromProportion(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNaNProportion()
+    {
+        SplitWeight.fromProportion(Double.NaN);
+    }
+
+    @Test
+    public void testStandardSplitCount()
+    {
+        assertEquals(SplitWeight.rawValueForStandardSplitCount(0), 0);
+        assertEquals(SplitWeight.rawValueForStandardSplitCount(3), 3 * SplitWeight.standard().getRawValue());
+        assertEquals(SplitWeight.rawValueSum(50, SplitWeight.standard()), 150);
+    }
+
+    @Test
+    public void testToString()
+    {
+        assertEquals(SplitWeight.standard().toString(), "1.00");
+        assertEquals(SplitWeight.fromProportion(0.05).toString(), "0.05");
+        assertEquals(SplitWeight.fromProportion(12.5).toString(), "12.50");
+    }
+}
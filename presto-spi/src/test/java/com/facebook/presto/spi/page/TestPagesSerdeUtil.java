@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi.page;
+
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slices;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPages;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class TestPagesSerdeUtil
+{
+    private static final List<SerializedPage> PAGES = Arrays.asList(
+            new SerializedPage(Slices.utf8Slice("hello"), PageCodecMarker.none(), 1, 5),
+            new SerializedPage(Slices.allocate(0), PageCodecMarker.none(), 0, 0),
+            new SerializedPage(Slices.wrappedBuffer(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, 2, 4), COMPRESSED.set(PageCodecMarker.none()), 3, 100));
+
+    @Test
+    public void testStreamRoundTrip()
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeSerializedPages(output, PAGES);
+
+        // the stream format is the same as the slice format
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(64);
+        writeSerializedPages(sliceOutput, PAGES);
+        assertEquals(Slices.wrappedBuffer(output.toByteArray()), sliceOutput.slice());
+
+        assertEquals(readAll(readSerializedPages(new ByteArrayInputStream(output.toByteArray()))), PAGES);
+        assertEquals(readAll(readSerializedPages(sliceOutput.slice().getInput())), PAGES);
+    }
+
+    @Test
+    public void testEmptyStream()
+    {
+        assertFalse(readSerializedPages(new ByteArrayInputStream(new byte[0])).hasNext());
+    }
+
+    @Test(expectedExceptions = UncheckedIOException.class)
+    public void testTruncatedStream()
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeSerializedPages(output, PAGES);
+        byte[] bytes = output.toByteArray();
+        readAll(readSerializedPages(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))));
+    }
+
+    private static List<SerializedPage> readAll(Iterator<SerializedPage> pages)
+    {
+        List<SerializedPage> result = new ArrayList<>();
+        pages.forEachRemaining(result::add);
+        return result;
+    }
+}
@@ -36,6 +36,7 @@ import org.testng.annotations.Test;
 import java.util.Optional;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.PER_OPERATOR_ALLOCATION_TRACKING_ENABLED;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.connector.informationSchema.InformationSchemaMetadata.INFORMATION_SCHEMA;
@@ -303,6 +304,16 @@ public abstract class AbstractTestDistributedQueries
         assertExplainAnalyze("EXPLAIN ANALYZE VERBOSE SELECT rank() OVER (PARTITION BY orderkey ORDER BY clerk DESC) FROM orders WHERE orderkey < 0");
     }
 
+    @Test
+    public void testExplainAnalyzeWithAllocationTracking()
+    {
+        Session session = Session.builder(getSession())
+                .setSystemProperty(PER_OPERATOR_ALLOCATION_TRACKING_ENABLED, "true")
+                .build();
+        String value = (String) computeActual(session, "EXPLAIN ANALYZE SELECT count(*), clerk FROM orders GROUP BY clerk").getOnlyValue();
+        assertTrue(value.contains("Allocated: "), format("Expected output to contain \"Allocated: \", but it is %s", value));
+    }
+
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "EXPLAIN ANALYZE doesn't support statement type: DropTable")
     public void testExplainAnalyzeDDL()
     {
@@ -24,6 +24,7 @@ import org.testng.annotations.Test;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
 import static com.facebook.presto.SystemSessionProperties.JOIN_REORDERING_STRATEGY;
 import static com.facebook.presto.SystemSessionProperties.OPTIMIZE_NULLS_IN_JOINS;
+import static com.facebook.presto.SystemSessionProperties.RANGE_JOINS;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
@@ -217,6 +218,21 @@ public class AbstractTestJoinQueries
                 "SELECT o.orderkey, o.orderdate, l.shipdate FROM orders o JOIN lineitem l ON o.orderkey=l.orderkey AND DATEADD('DAY', 2, o.orderdate) <= l.shipdate AND l.shipdate < DATEADD('DAY', 7, o.orderdate)");
     }
 
+    @Test
+    public void testRangeJoin()
+    {
+        Session session = Session.builder(getSession())
+                .setSystemProperty(RANGE_JOINS, "true")
+                .build();
+
+        assertQuery(session, "SELECT n.name, r.name FROM nation n JOIN region r ON n.nationkey < r.regionkey");
+        assertQuery(session, "SELECT count(*) FROM lineitem l JOIN nation n ON l.suppkey BETWEEN n.nationkey AND n.nationkey + n.regionkey");
+        assertQuery(session, "SELECT count(*) FROM nation n JOIN lineitem l ON l.suppkey BETWEEN n.nationkey AND n.nationkey + n.regionkey");
+        assertQuery(session, "SELECT count(*) FROM orders o JOIN region r ON o.custkey % 10 >= r.regionkey AND o.custkey % 10 < r.regionkey * 2 AND o.orderstatus <> r.name");
+        assertQuery(session, "SELECT o.orderkey, o.orderdate, c.orderdate FROM orders o JOIN (SELECT orderdate FROM orders WHERE orderkey < 100) c ON o.orderdate BETWEEN c.orderdate - INTERVAL '1' DAY AND c.orderdate",
+                "SELECT o.orderkey, o.orderdate, c.orderdate FROM orders o JOIN (SELECT orderdate FROM orders WHERE orderkey < 100) c ON o.orderdate BETWEEN DATEADD('DAY', -1, c.orderdate) AND c.orderdate");
+    }
+
     @Test
     public void testJoinWithNonDeterministicLessThan()
     {
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.Test;
 
 import java.nio.file.Paths;
+import java.util.Map;
 
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.facebook.presto.tpch.TpchMetadata.TINY_SCHEMA_NAME;
@@ -40,15 +41,22 @@ public class TestDistributedSpilledQueries
     public static DistributedQueryRunner createQueryRunner()
             throws Exception
     {
-        Session defaultSession = testSessionBuilder()
+        return createQueryRunner(ImmutableMap.of());
+    }
+
+    protected static DistributedQueryRunner createQueryRunner(Map<String, String> extraSessionProperties)
+            throws Exception
+    {
+        Session.SessionBuilder sessionBuilder = testSessionBuilder()
                 .setCatalog("tpch")
                 .setSchema(TINY_SCHEMA_NAME)
                 .setSystemProperty(SystemSessionProperties.TASK_CONCURRENCY, "2")
                 .setSystemProperty(SystemSessionProperties.SPILL_ENABLED, "true")
                 .setSystemProperty(SystemSessionProperties.JOIN_SPILL_ENABLED, "true")
                 .setSystemProperty(SystemSessionProperties.AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT, "128kB")
-                .setSystemProperty(SystemSessionProperties.USE_MARK_DISTINCT, "false")
-                .build();
+                .setSystemProperty(SystemSessionProperties.USE_MARK_DISTINCT, "false");
+        extraSessionProperties.forEach(sessionBuilder::setSystemProperty);
+        Session defaultSession = sessionBuilder.build();
 
         ImmutableMap<String, String> extraProperties = ImmutableMap.<String, String>builder()
                 .put("experimental.spill-enabled", "true")